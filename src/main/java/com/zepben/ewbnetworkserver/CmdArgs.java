@@ -21,7 +21,11 @@ package com.zepben.ewbnetworkserver;
 import com.google.common.base.Enums;
 import com.zepben.annotations.EverythingIsNonnullByDefault;
 import com.zepben.commandlinearguments.CmdArgsBase;
+import com.zepben.ewbnetworkserver.models.NetworkModels;
+import com.zepben.ewbnetworkserver.tiles.TileConfig;
+import com.zepben.ewbnetworkserver.tiles.TileKey;
 import io.grpc.netty.shaded.io.netty.handler.ssl.ClientAuth;
+import io.vertx.core.http.Http2Settings;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
@@ -29,29 +33,73 @@ import org.apache.commons.cli.ParseException;
 import javax.annotation.Nullable;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @EverythingIsNonnullByDefault
 class CmdArgs extends CmdArgsBase {
 
+    private static final Pattern MODEL_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    @Nullable private RunMode runMode = null;
     @Nullable private Integer port = null;
     @Nullable private String ewbDataRoot = null;
     @Nullable private LocalDate currentDate = null;
     @Nullable private Integer daysToSearch = null;
+    @Nullable private Integer historicDates = null;
+    @Nullable private Integer databaseConnections = null;
+    @Nullable private List<String> feeders = null;
+    @Nullable private List<String> zones = null;
+    @Nullable private Map<String, String> models = null;
     @Nullable private String patchApi = null;
     @Nullable private Integer timeout = null;
     @Nullable private String patchAuthHeader = null;
     @Nullable private String s3Bucket = null;
     @Nullable private String output = null;
+    @Nullable private String patchedModel = null;
     @Nullable private String cors = null;
     @Nullable private String routeDebugFile = null;
+    @Nullable private List<String> routeDebugFilters = null;
+    @Nullable private Integer routeDebugSampleEvery = null;
+    @Nullable private Integer routeDebugBufferSize = null;
+    @Nullable private Integer routeDebugMaxFileSize = null;
+    @Nullable private Integer routeDebugMaxFiles = null;
     @Nullable private Integer grpcPort = null;
     @Nullable private String grpcCertPath = null;
     @Nullable private String grpcKeyPath = null;
     @Nullable private ClientAuth grpcClientAuth = null;
     @Nullable private String grpcTrustPath = null;
+    @Nullable private Integer grpcExecutorThreads = null;
+    @Nullable private Boolean grpcVirtualThreads = null;
+    @Nullable private Integer grpcBossThreads = null;
+    @Nullable private Integer grpcWorkerThreads = null;
+    @Nullable private Integer grpcMaxMessageSize = null;
+    @Nullable private Integer grpcFlowControlWindow = null;
+    @Nullable private Long grpcKeepAliveTime = null;
+    @Nullable private Long grpcKeepAliveTimeout = null;
+    @Nullable private Integer grpcMaxConcurrentCalls = null;
+    @Nullable private Integer grpcChangeFeedSize = null;
+    @Nullable private Integer grpcResponseCacheSize = null;
+    @Nullable private Integer grpcSlowCallThreshold = null;
+    @Nullable private String httpCertPath = null;
+    @Nullable private String httpKeyPath = null;
+    @Nullable private Integer http2MaxConcurrentStreams = null;
+    @Nullable private Integer http2InitialWindowSize = null;
+    @Nullable private Integer http2ConnectionWindowSize = null;
+    @Nullable private Integer tileCacheSize = null;
+    @Nullable private Integer tilePreRenderZoom = null;
+    @Nullable private Integer tileFullDetailZoom = null;
+    @Nullable private Integer tileRenderConcurrency = null;
+
+    RunMode runMode() {
+        return ensureOptionInitialised(runMode);
+    }
 
     int port() {
         return ensureOptionInitialised(port);
@@ -77,6 +125,90 @@ class CmdArgs extends CmdArgsBase {
         return ensureOptionInitialised(grpcTrustPath);
     }
 
+    public int grpcExecutorThreads() {
+        return ensureOptionInitialised(grpcExecutorThreads);
+    }
+
+    public boolean grpcVirtualThreads() {
+        return ensureOptionInitialised(grpcVirtualThreads);
+    }
+
+    public int grpcBossThreads() {
+        return ensureOptionInitialised(grpcBossThreads);
+    }
+
+    public int grpcWorkerThreads() {
+        return ensureOptionInitialised(grpcWorkerThreads);
+    }
+
+    public int grpcMaxMessageSize() {
+        return ensureOptionInitialised(grpcMaxMessageSize);
+    }
+
+    public int grpcFlowControlWindow() {
+        return ensureOptionInitialised(grpcFlowControlWindow);
+    }
+
+    public long grpcKeepAliveTime() {
+        return ensureOptionInitialised(grpcKeepAliveTime);
+    }
+
+    public long grpcKeepAliveTimeout() {
+        return ensureOptionInitialised(grpcKeepAliveTimeout);
+    }
+
+    public int grpcMaxConcurrentCalls() {
+        return ensureOptionInitialised(grpcMaxConcurrentCalls);
+    }
+
+    public int grpcChangeFeedSize() {
+        return ensureOptionInitialised(grpcChangeFeedSize);
+    }
+
+    public int grpcResponseCacheSize() {
+        return ensureOptionInitialised(grpcResponseCacheSize);
+    }
+
+    public int grpcSlowCallThreshold() {
+        return ensureOptionInitialised(grpcSlowCallThreshold);
+    }
+
+    String httpCertPath() {
+        return ensureOptionInitialised(httpCertPath);
+    }
+
+    String httpKeyPath() {
+        return ensureOptionInitialised(httpKeyPath);
+    }
+
+    int http2MaxConcurrentStreams() {
+        return ensureOptionInitialised(http2MaxConcurrentStreams);
+    }
+
+    int http2InitialWindowSize() {
+        return ensureOptionInitialised(http2InitialWindowSize);
+    }
+
+    int http2ConnectionWindowSize() {
+        return ensureOptionInitialised(http2ConnectionWindowSize);
+    }
+
+    int tileCacheSize() {
+        return ensureOptionInitialised(tileCacheSize);
+    }
+
+    int tilePreRenderZoom() {
+        return ensureOptionInitialised(tilePreRenderZoom);
+    }
+
+    int tileFullDetailZoom() {
+        return ensureOptionInitialised(tileFullDetailZoom);
+    }
+
+    int tileRenderConcurrency() {
+        return ensureOptionInitialised(tileRenderConcurrency);
+    }
+
     String ewbDataRoot() {
         return ensureOptionInitialised(ewbDataRoot);
     }
@@ -89,6 +221,26 @@ class CmdArgs extends CmdArgsBase {
         return ensureOptionInitialised(daysToSearch);
     }
 
+    int databaseConnections() {
+        return ensureOptionInitialised(databaseConnections);
+    }
+
+    List<String> feeders() {
+        return ensureOptionInitialised(feeders);
+    }
+
+    int historicDates() {
+        return ensureOptionInitialised(historicDates);
+    }
+
+    List<String> zones() {
+        return ensureOptionInitialised(zones);
+    }
+
+    Map<String, String> models() {
+        return ensureOptionInitialised(models);
+    }
+
     String patchApi() {
         return ensureOptionInitialised(patchApi);
     }
@@ -109,6 +261,10 @@ class CmdArgs extends CmdArgsBase {
         return ensureOptionInitialised(output);
     }
 
+    String patchedModel() {
+        return ensureOptionInitialised(patchedModel);
+    }
+
     String cors() {
         return ensureOptionInitialised(cors);
     }
@@ -117,6 +273,26 @@ class CmdArgs extends CmdArgsBase {
         return ensureOptionInitialised(routeDebugFile);
     }
 
+    List<String> routeDebugFilters() {
+        return ensureOptionInitialised(routeDebugFilters);
+    }
+
+    int routeDebugSampleEvery() {
+        return ensureOptionInitialised(routeDebugSampleEvery);
+    }
+
+    int routeDebugBufferSize() {
+        return ensureOptionInitialised(routeDebugBufferSize);
+    }
+
+    int routeDebugMaxFileSize() {
+        return ensureOptionInitialised(routeDebugMaxFileSize);
+    }
+
+    int routeDebugMaxFiles() {
+        return ensureOptionInitialised(routeDebugMaxFiles);
+    }
+
     @Override
     protected void addCustomOptions(Options options) {
         options.addOption(Option
@@ -124,7 +300,16 @@ class CmdArgs extends CmdArgsBase {
             .longOpt("port")
             .hasArg()
             .argName("PORT")
-            .desc("the port number the REST API will listen on.")
+            .desc("the port number the REST API will listen on. Not required in BATCH mode.")
+            .build());
+
+        options.addOption(Option
+            .builder("rm")
+            .longOpt("run-mode")
+            .hasArg()
+            .argName("MODE")
+            .desc("how the server is run {SERVER|BATCH}. BATCH loads the network, applies the patches, writes the patch results (and " +
+                "the patched model if requested) and then exits without starting the REST or gRPC servers. (DEFAULT: SERVER).")
             .build());
 
         options.addOption(Option
@@ -151,6 +336,53 @@ class CmdArgs extends CmdArgsBase {
             .desc("the number of days to search for a network database in the EWB data root. (DEFAULT: 0).")
             .build());
 
+        options.addOption(Option
+            .builder("hd")
+            .longOpt("historic-dates")
+            .hasArg()
+            .argName("NUM_DATES")
+            .desc("the number of other dates that can be loaded on demand, served under /dates/yyyy-MM-dd or to requests with an " +
+                "EWB-Date: yyyy-MM-dd header. The least recently used date is unloaded when the limit is reached. Zero to disable. " +
+                "(DEFAULT: 0).")
+            .build());
+
+        options.addOption(Option
+            .builder("dc")
+            .longOpt("database-connections")
+            .hasArg()
+            .argName("NUM_CONNECTIONS")
+            .desc("the number of read-only connections used to load the network database. With more than one, the network, diagram, " +
+                "customer and metadata tables are read in parallel. (DEFAULT: 1).")
+            .build());
+
+        options.addOption(Option
+            .builder("f")
+            .longOpt("feeders")
+            .hasArgs()
+            .argName("MRID")
+            .desc("only load the equipment of the specified feeders, and the path back to their source. Can be combined with --zones. " +
+                "(DEFAULT: all feeders).")
+            .build());
+
+        options.addOption(Option
+            .builder("z")
+            .longOpt("zones")
+            .hasArgs()
+            .argName("MRID")
+            .desc("only load the equipment of the specified zone substations and their feeders. Can be combined with --feeders. " +
+                "(DEFAULT: all zones).")
+            .build());
+
+        options.addOption(Option
+            .builder("m")
+            .longOpt("model")
+            .argName("NAME> <EWB_DATA_ROOT")
+            .numberOfArgs(2)
+            .desc("host another network model, loaded from the specified EWB data root and served under /models/NAME or to requests " +
+                "with an EWB-Model: NAME header. Can be repeated. The patch API must contain {model}, which is replaced with NAME, " +
+                "so each model fetches its own patches. It is removed from the patch API of the main model. (DEFAULT: none).")
+            .build());
+
         options.addOption(Option
             .builder("pa")
             .longOpt("patch-api")
@@ -191,6 +423,15 @@ class CmdArgs extends CmdArgsBase {
             .desc("the network build status file (including path). (DEFAULT: ewb-network-server-status.json).")
             .build());
 
+        options.addOption(Option
+            .builder("pm")
+            .longOpt("patched-model")
+            .hasArg()
+            .argName("FILE")
+            .desc("write the network, with the patches applied, to this sqlite network database file (including path) once the patches " +
+                "have been applied. (DEFAULT: none).")
+            .build());
+
         options.addOption(Option
             .builder("cors")
             .longOpt("cors")
@@ -204,7 +445,49 @@ class CmdArgs extends CmdArgsBase {
             .longOpt("debug-routing")
             .hasArg()
             .argName("FILE")
-            .desc("Enable route debugging. Request bodies will be saved to the specified file.. (DEFAULT: none).")
+            .desc("Enable route debugging. Request bodies will be saved to the specified file. If the file name ends in .gz the output " +
+                "will be gzip compressed. (DEFAULT: none).")
+            .build());
+
+        options.addOption(Option
+            .builder("dbgf")
+            .longOpt("debug-route-filter")
+            .hasArgs()
+            .argName("REGEX")
+            .desc("only save request bodies for paths matching one of the specified regular expressions when route debugging. (DEFAULT: all paths).")
+            .build());
+
+        options.addOption(Option
+            .builder("dbgs")
+            .longOpt("debug-sample-every")
+            .hasArg()
+            .argName("NUM_REQUESTS")
+            .desc("only save one in every NUM_REQUESTS matching request bodies when route debugging. (DEFAULT: 1).")
+            .build());
+
+        options.addOption(Option
+            .builder("dbgb")
+            .longOpt("debug-buffer-size")
+            .hasArg()
+            .argName("NUM_REQUESTS")
+            .desc("the number of request bodies buffered in memory waiting to be written when route debugging. Requests are dropped " +
+                "rather than delayed when the buffer is full. (DEFAULT: 10000).")
+            .build());
+
+        options.addOption(Option
+            .builder("dbgm")
+            .longOpt("debug-max-file-size")
+            .hasArg()
+            .argName("MEGABYTES")
+            .desc("the size the route debugging file can grow to before it is rotated. (DEFAULT: 100).")
+            .build());
+
+        options.addOption(Option
+            .builder("dbgn")
+            .longOpt("debug-max-files")
+            .hasArg()
+            .argName("NUM_FILES")
+            .desc("the number of rotated route debugging files to keep. (DEFAULT: 5).")
             .build());
 
         options.addOption(Option
@@ -233,24 +516,213 @@ class CmdArgs extends CmdArgsBase {
                 "specifies the path to the trusted certificate for verifying the remote endpoint's certificate.")
             .build());
 
+        options.addOption(Option
+            .builder("ge")
+            .longOpt("grpc-executor")
+            .hasArg()
+            .argName("NUM_THREADS|virtual")
+            .desc("the executor gRPC calls are handled on. Either a fixed number of threads, or 'virtual' for a virtual thread per " +
+                "call (requires Java 21). (DEFAULT: an unbounded cached thread pool).")
+            .build());
+
+        options.addOption(Option
+            .builder("gbt")
+            .longOpt("grpc-boss-threads")
+            .hasArg()
+            .argName("NUM_THREADS")
+            .desc("the number of Netty threads accepting gRPC connections. (DEFAULT: shared with the gRPC library).")
+            .build());
+
+        options.addOption(Option
+            .builder("gwt")
+            .longOpt("grpc-worker-threads")
+            .hasArg()
+            .argName("NUM_THREADS")
+            .desc("the number of Netty threads handling gRPC connection IO. (DEFAULT: shared with the gRPC library).")
+            .build());
+
+        options.addOption(Option
+            .builder("gms")
+            .longOpt("grpc-max-message-size")
+            .hasArg()
+            .argName("BYTES")
+            .desc("the largest gRPC message that will be accepted. (DEFAULT: 4194304).")
+            .build());
+
+        options.addOption(Option
+            .builder("gfw")
+            .longOpt("grpc-flow-control-window")
+            .hasArg()
+            .argName("BYTES")
+            .desc("a fixed HTTP/2 flow control window for each gRPC stream. Zero to tune the window automatically. (DEFAULT: 0).")
+            .build());
+
+        options.addOption(Option
+            .builder("gk")
+            .longOpt("grpc-keepalive")
+            .argName("TIME_SECONDS> <TIMEOUT_SECONDS")
+            .numberOfArgs(2)
+            .desc("TIME_SECONDS is how long a gRPC connection can be idle before it is pinged, and TIMEOUT_SECONDS is how long to " +
+                "wait for the ping to be acknowledged before closing the connection. (DEFAULT: 7200 20).")
+            .build());
+
+        options.addOption(Option
+            .builder("gmc")
+            .longOpt("grpc-max-concurrent-calls")
+            .hasArg()
+            .argName("NUM_CALLS")
+            .desc("the number of concurrent gRPC calls allowed on each connection. Zero for no limit. (DEFAULT: 0).")
+            .build());
+
+        options.addOption(Option
+            .builder("gcf")
+            .longOpt("grpc-change-feed-size")
+            .hasArg()
+            .argName("NUM_CHANGES")
+            .desc("the number of network changes kept for clients of the gRPC change feed to resume from. Clients further behind " +
+                "than this are told to resynchronise. (DEFAULT: 100000).")
+            .build());
+
+        options.addOption(Option
+            .builder("grc")
+            .longOpt("grpc-response-cache-size")
+            .hasArg()
+            .argName("MEGABYTES")
+            .desc("the amount of memory used to cache serialized gRPC network consumer responses, with the least recently used " +
+                "responses evicted when it is full. Any change to the network clears the cache. Zero to disable. (DEFAULT: 0, disabled).")
+            .build());
+
+        options.addOption(Option
+            .builder("gsc")
+            .longOpt("grpc-slow-call-threshold")
+            .hasArg()
+            .argName("MILLISECONDS")
+            .desc("log gRPC calls that take at least this long, along with their request. Zero to disable. (DEFAULT: 0).")
+            .build());
+
+        options.addOption(Option
+            .builder("ht")
+            .longOpt("http-tls")
+            .argName("CERT_PATH> <KEY_PATH")
+            .numberOfArgs(2)
+            .desc("enable TLS on the REST API, negotiating HTTP/2 via ALPN. CERT_PATH specifies the path to the certificate to use, and KEY_PATH " +
+                "specifies the path to the private key for the certificate. (DEFAULT: none, cleartext HTTP/1.1 and HTTP/2 (h2c) are accepted).")
+            .build());
+
+        options.addOption(Option
+            .builder("h2s")
+            .longOpt("http2-max-concurrent-streams")
+            .hasArg()
+            .argName("NUM_STREAMS")
+            .desc("the maximum number of concurrent streams allowed on each HTTP/2 connection to the REST API. (DEFAULT: 100).")
+            .build());
+
+        options.addOption(Option
+            .builder("h2w")
+            .longOpt("http2-initial-window-size")
+            .hasArg()
+            .argName("BYTES")
+            .desc("the initial HTTP/2 flow control window size for each stream on the REST API. (DEFAULT: 65535).")
+            .build());
+
+        options.addOption(Option
+            .builder("h2cw")
+            .longOpt("http2-connection-window-size")
+            .hasArg()
+            .argName("BYTES")
+            .desc("the HTTP/2 flow control window size for each connection to the REST API. (DEFAULT: 65535).")
+            .build());
+
+        options.addOption(Option
+            .builder("tc")
+            .longOpt("tile-cache-size")
+            .hasArg()
+            .argName("MEGABYTES")
+            .desc("the amount of memory used to cache compressed map tiles, with the least recently used tiles evicted when it is " +
+                "full. Zero disables tile caching and pre-rendering. (DEFAULT: 0, disabled).")
+            .build());
+
+        options.addOption(Option
+            .builder("tz")
+            .longOpt("tile-pre-render-zoom")
+            .hasArg()
+            .argName("ZOOM")
+            .desc("the deepest zoom level of map tiles pre-rendered into the tile cache once the server has started. Requires " +
+                "--tile-cache-size. (DEFAULT: none, tiles are only rendered when they are requested).")
+            .build());
+
+        options.addOption(Option
+            .builder("tf")
+            .longOpt("tile-full-detail-zoom")
+            .hasArg()
+            .argName("ZOOM")
+            .desc("the zoom level from which cached map tiles are served in full detail. Tiles at lower zoom levels have their " +
+                "geometry simplified and point features thinned. (DEFAULT: 16).")
+            .build());
+
+        options.addOption(Option
+            .builder("tn")
+            .longOpt("tile-render-concurrency")
+            .hasArg()
+            .argName("NUM_TILES")
+            .desc("the number of map tiles rendered in parallel when pre-rendering the tile cache. (DEFAULT: 4).")
+            .build());
+
     }
 
     @Override
     protected void extractCustomOptions() throws ParseException {
-        port = getRequiredIntArg("port", 1, 65535);
+        String runModeArg = getOptionalStringArg("run-mode").orElse(RunMode.SERVER.name());
+        runMode = Enums.getIfPresent(RunMode.class, runModeArg).orNull();
+        if (runMode == null)
+            throw new ParseException("Unknown MODE value '" + runModeArg + "', expected SERVER or BATCH.");
+
+        // Nothing is served in batch mode, so the ports are only needed when running as a server.
+        boolean isBatch = runMode == RunMode.BATCH;
+        port = isBatch ? getOptionalIntArg("port", 1).orElse(0) : getRequiredIntArg("port", 1, 65535);
         ewbDataRoot = getRequiredStringArg("ewb-data-root");
         currentDate = getOptionalDateArg("current-date").orElse(LocalDate.now(ZoneId.systemDefault()));
         daysToSearch = getOptionalIntArg("days-to-search", 0).orElse(0);
+        historicDates = getOptionalIntArg("historic-dates", 0).orElse(0);
+        databaseConnections = getOptionalIntArg("database-connections", 1).orElse(1);
+        feeders = getOptionalStringArgList("feeders").orElse(Collections.emptyList());
+        zones = getOptionalStringArgList("zones").orElse(Collections.emptyList());
+        models = new LinkedHashMap<>();
+        List<String> modelArgs = getOptionalStringArgList("model").orElse(Collections.emptyList());
+        for (int i = 0; i + 1 < modelArgs.size(); i += 2) {
+            String name = modelArgs.get(i);
+            if (!MODEL_NAME.matcher(name).matches())
+                throw new ParseException("Invalid model name '" + name + "' for argument model, expected letters, digits, '-' or '_'.");
+            if (models.put(name, modelArgs.get(i + 1)) != null)
+                throw new ParseException("Duplicate model name '" + name + "' for argument model.");
+        }
+        if (isBatch && (!models.isEmpty() || (historicDates > 0)))
+            throw new ParseException("model and historic-dates cannot be used in BATCH mode.");
         patchApi = getOptionalStringArg("patch-api").orElse("");
+        if (!models.isEmpty() && !patchApi.isEmpty() && !patchApi.contains(NetworkModels.MODEL_PLACEHOLDER))
+            throw new ParseException("patch-api must contain " + NetworkModels.MODEL_PLACEHOLDER + " when model is used.");
         timeout = getOptionalIntArg("timeout", 0).orElse(60);
         patchAuthHeader = getOptionalStringArg("patch-auth-header").orElse("");
         s3Bucket = getOptionalStringArg("s3-bucket").orElse("");
         output = getOptionalStringArg("output").orElse("ewb-network-server-status.json");
+        patchedModel = getOptionalStringArg("patched-model").orElse("");
         cors = getOptionalStringArg("cors").orElse("");
         routeDebugFile = getOptionalStringArg("debug-routing").orElse("");
-        grpcPort = getRequiredIntArg("grpc-port", 1, 65535);
+        routeDebugFilters = getOptionalStringArgList("debug-route-filter").orElse(Collections.emptyList());
+        for (String filter : routeDebugFilters) {
+            try {
+                Pattern.compile(filter);
+            } catch (PatternSyntaxException e) {
+                throw new ParseException("Invalid regular expression '" + filter + "' for argument debug-route-filter.");
+            }
+        }
+        routeDebugSampleEvery = getOptionalIntArg("debug-sample-every", 1).orElse(1);
+        routeDebugBufferSize = getOptionalIntArg("debug-buffer-size", 1).orElse(10000);
+        routeDebugMaxFileSize = getOptionalIntArg("debug-max-file-size", 1).orElse(100);
+        routeDebugMaxFiles = getOptionalIntArg("debug-max-files", 1).orElse(5);
+        grpcPort = isBatch ? getOptionalIntArg("grpc-port", 1).orElse(0) : getRequiredIntArg("grpc-port", 1, 65535);
 
-        if (Objects.equals(grpcPort, port))
+        if (!isBatch && Objects.equals(grpcPort, port))
             throw new ParseException("grpc-port cannot be the same number as port.");
 
         Optional<List<String>> tlsArgs = getOptionalStringArgList("grpc-tls");
@@ -273,6 +745,67 @@ class CmdArgs extends CmdArgsBase {
             grpcClientAuth = ClientAuth.NONE;
             grpcTrustPath = "";
         }
+
+        String grpcExecutor = getOptionalStringArg("grpc-executor").orElse("0");
+        grpcVirtualThreads = grpcExecutor.equalsIgnoreCase("virtual");
+        if (grpcVirtualThreads) {
+            if (!GrpcConfig.supportsVirtualThreads())
+                throw new ParseException("grpc-executor 'virtual' requires Java 21 or later.");
+            grpcExecutorThreads = 0;
+        } else
+            grpcExecutorThreads = getOptionalIntArg("grpc-executor", 1).orElse(0);
+
+        grpcBossThreads = getOptionalIntArg("grpc-boss-threads", 1).orElse(0);
+        grpcWorkerThreads = getOptionalIntArg("grpc-worker-threads", 1).orElse(0);
+        grpcMaxMessageSize = getOptionalIntArg("grpc-max-message-size", 1).orElse(GrpcConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE);
+        grpcFlowControlWindow = getOptionalIntArg("grpc-flow-control-window", 0).orElse(0);
+
+        Optional<List<String>> keepAliveArgs = getOptionalStringArgList("grpc-keepalive");
+        if (keepAliveArgs.isPresent()) {
+            grpcKeepAliveTime = parseSeconds(keepAliveArgs.get().get(0), "grpc-keepalive");
+            grpcKeepAliveTimeout = parseSeconds(keepAliveArgs.get().get(1), "grpc-keepalive");
+        } else {
+            grpcKeepAliveTime = GrpcConfig.DEFAULT_KEEPALIVE_TIME;
+            grpcKeepAliveTimeout = GrpcConfig.DEFAULT_KEEPALIVE_TIMEOUT;
+        }
+
+        grpcMaxConcurrentCalls = getOptionalIntArg("grpc-max-concurrent-calls", 0).orElse(0);
+        grpcChangeFeedSize = getOptionalIntArg("grpc-change-feed-size", 1).orElse(100000);
+        grpcResponseCacheSize = getOptionalIntArg("grpc-response-cache-size", 0).orElse(0);
+        grpcSlowCallThreshold = getOptionalIntArg("grpc-slow-call-threshold", 0).orElse(0);
+
+        Optional<List<String>> httpTlsArgs = getOptionalStringArgList("http-tls");
+        if (httpTlsArgs.isPresent()) {
+            httpCertPath = httpTlsArgs.get().get(0);
+            httpKeyPath = httpTlsArgs.get().get(1);
+        } else {
+            httpCertPath = "";
+            httpKeyPath = "";
+        }
+
+        http2MaxConcurrentStreams = getOptionalIntArg("http2-max-concurrent-streams", 1).orElse(100);
+        http2InitialWindowSize = getOptionalIntArg("http2-initial-window-size", 1).orElse(Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE);
+        http2ConnectionWindowSize = getOptionalIntArg("http2-connection-window-size", Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE)
+            .orElse(Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE);
+
+        tileCacheSize = getOptionalIntArg("tile-cache-size", 0).orElse(0);
+        tilePreRenderZoom = getOptionalIntArg("tile-pre-render-zoom", 0).orElse(TileConfig.NO_PRE_RENDER);
+        if (tilePreRenderZoom > TileKey.MAX_ZOOM)
+            throw new ParseException("tile-pre-render-zoom cannot be greater than " + TileKey.MAX_ZOOM + ".");
+        tileFullDetailZoom = getOptionalIntArg("tile-full-detail-zoom", 0).orElse(16);
+        tileRenderConcurrency = getOptionalIntArg("tile-render-concurrency", 1).orElse(4);
+    }
+
+    private long parseSeconds(String value, String argName) throws ParseException {
+        try {
+            long seconds = Long.parseLong(value);
+            if (seconds > 0)
+                return seconds;
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+
+        throw new ParseException("Invalid number of seconds '" + value + "' for argument " + argName + ".");
     }
 
 }
@@ -22,6 +22,8 @@ import com.zepben.evolve.conn.grpc.ExceptionInterceptor
 import com.zepben.evolve.conn.grpc.GrpcServer
 import com.zepben.evolve.conn.grpc.SslContextConfig
 import io.grpc.BindableService
+import io.grpc.ServerInterceptor
+import io.grpc.ServerStreamTracer
 import io.grpc.netty.shaded.io.netty.handler.ssl.ClientAuth
 
 class EwbGrpcServer(
@@ -30,13 +32,18 @@ class EwbGrpcServer(
     keyPath: String,
     clientAuth: ClientAuth,
     trustPath: String,
+    grpcConfig: GrpcConfig,
+    interceptors: List<ServerInterceptor>,
+    streamTracerFactories: List<ServerStreamTracer.Factory>,
     vararg services: BindableService
 ) : GrpcServer(
     port,
     if (!certPath.isBlank()) SslContextConfig(certPath, keyPath, trustPath, clientAuth) else null,
-    listOf(ExceptionInterceptor())
+    listOf(ExceptionInterceptor()) + interceptors
 ) {
     init {
+        grpcConfig.applyTo(serverBuilder)
+        streamTracerFactories.forEach { serverBuilder.addStreamTracerFactory(it) }
         services.forEach { serverBuilder.addService(it) }
     }
 }
\ No newline at end of file
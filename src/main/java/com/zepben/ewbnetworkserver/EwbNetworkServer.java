@@ -32,11 +32,35 @@ import com.zepben.ewbnetworkroutes.network.graphics.NetworkGraphicsRouteGroup;
 import com.zepben.ewbnetworkroutes.network.trace.NetworkTraceRouteGroup;
 import com.zepben.ewbnetworkroutes.network.translation.IdTranslator;
 import com.zepben.ewbnetworkroutes.network.translation.TranslationHelper;
+import com.zepben.ewbnetworkserver.changes.NetworkChangeFeed;
+import com.zepben.ewbnetworkserver.correlations.CompactIdCorrelator;
+import com.zepben.ewbnetworkserver.correlations.CorrelationsCacheFile;
+import com.zepben.ewbnetworkserver.database.NetworkDatabaseWriter;
+import com.zepben.ewbnetworkserver.database.ParallelDatabaseReader;
+import com.zepben.ewbnetworkserver.diff.DiffRouteGroup;
+import com.zepben.ewbnetworkserver.diff.NetworkSnapshot;
+import com.zepben.ewbnetworkserver.digest.CanonicalEncoder;
+import com.zepben.ewbnetworkserver.digest.DigestRouteGroup;
+import com.zepben.ewbnetworkserver.digest.NetworkDigests;
+import com.zepben.ewbnetworkserver.export.ContainerMembership;
+import com.zepben.ewbnetworkserver.export.ExportRouteGroup;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import com.zepben.ewbnetworkserver.lookup.LookupRouteGroup;
+import com.zepben.ewbnetworkserver.metrics.ServerMetrics;
+import com.zepben.ewbnetworkserver.models.HistoricDates;
+import com.zepben.ewbnetworkserver.models.ModelsRouteGroup;
+import com.zepben.ewbnetworkserver.models.NetworkModels;
+import com.zepben.ewbnetworkserver.models.ReferenceData;
+import com.zepben.ewbnetworkserver.partition.NetworkPartition;
 import com.zepben.ewbnetworkserver.patch.LoadManipulations;
 import com.zepben.ewbnetworkserver.patch.PatchResult;
+import com.zepben.ewbnetworkserver.patch.PatchResults;
 import com.zepben.ewbnetworkserver.patch.routes.LoadManipulationsToJson;
+import com.zepben.ewbnetworkserver.patch.routes.PatchResultToJson;
 import com.zepben.ewbnetworkserver.patch.routes.PatchRouteGroup;
-import com.zepben.idcorrelator.IdCorrelator;
+import com.zepben.ewbnetworkserver.spatial.SpatialIndex;
+import com.zepben.ewbnetworkserver.spatial.SpatialRouteGroup;
+import com.zepben.ewbnetworkserver.tiles.*;
 import com.zepben.idcorrelator.io.FailedCorrelationInfo;
 import com.zepben.idcorrelator.io.IdCorrelatorReadException;
 import com.zepben.idcorrelator.io.IdCorrelatorReader;
@@ -45,9 +69,11 @@ import com.zepben.vertxutils.routing.RouteRegisterLogger;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.RequestOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.impl.ConnectionBase;
@@ -58,83 +84,166 @@ import io.vertx.ext.web.handler.LoggerHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.joining;
 
 @EverythingIsNonnullByDefault
-class EwbNetworkServer {
+class EwbNetworkServer implements NetworkModels.Model {
 
     private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+    private static final long TILE_RENDER_TIMEOUT_MS = 120_000;
 
-    private final Vertx vertx;
-    private final Router router;
+    // Batch runs never serve anything, so vert.x and its router are only created when they are first used.
+    private final Supplier<Vertx> vertx;
+    private final Supplier<Router> router;
     private final Consumer<ProgramStatus> onShutdown;
     private final int port;
+    private final Http2Config http2Config;
     private final EwbGrpcServer ewbGrpcServer;
     private final EwbDataFilePaths ewbDataFilePaths;
     private final EwbDataFilePathsHelper ewbDataFilePathsHelper;
     private final LocalDate currentDate;
     private final int daysToSearch;
+    private final int databaseConnections;
     private final Function<Path, DatabaseReader> networkDatabaseProvider;
+    private final Function<Path, ParallelDatabaseReader> parallelNetworkDatabaseProvider;
     private final Function<Path, IdCorrelatorReader> idCorrelatorReaderProvider;
     private final String cors;
+    private final NetworkPartition networkPartition;
+    private final NetworkModels networkModels;
+    private final HistoricDates historicDates;
+    private final ReferenceData referenceData;
     private final Services services;
     private final LoadManipulations loadManipulations;
     private final LoadManipulationsToJson loadManipulationsToJson;
-    private final IdCorrelator idCorrelator;
+    private final PatchResults patchResults;
+    private final PatchResultToJson patchResultToJson;
+    private final CompactIdCorrelator idCorrelator;
+    private final CorrelationsCacheFile correlationsCacheFile;
     private final PatchProcessor patchProcessor;
     private final RouteDebug routeDebug;
     private final ResultsWriter resultsWriter;
+    private final NetworkDatabaseWriter patchedModelWriter;
+    private final ServerMetrics serverMetrics;
+    private final TileCache tileCache;
+    private final TileConfig tileConfig;
+    private final SpatialIndex spatialIndex;
+    private final ContainerMembership containerMembership;
+    private final NetworkDigests networkDigests;
+    private final NetworkChangeFeed networkChangeFeed;
 
     private final List<HttpServer> httpServers = new ArrayList<>();
+    @Nullable private TilePreRenderer tilePreRenderer = null;
+    @Nullable private LocalDate networkDate = null;
+    @Nullable private NetworkSnapshot snapshot = null;
 
     EwbNetworkServer(Dependencies dependencies) {
-        vertx = dependencies.vertx();
-        router = dependencies.router();
+        vertx = dependencies::vertx;
+        router = dependencies::router;
         onShutdown = dependencies.onShutdown();
         port = dependencies.port();
+        http2Config = dependencies.http2Config();
         ewbGrpcServer = dependencies.ewbGrpcServer();
         ewbDataFilePaths = dependencies.ewbDataFilePaths();
         ewbDataFilePathsHelper = dependencies.ewbDataFilePathsHelper();
         currentDate = dependencies.currentDate();
         daysToSearch = dependencies.daysToSearch();
+        databaseConnections = dependencies.databaseConnections();
         networkDatabaseProvider = dependencies.networkDatabaseProvider();
+        parallelNetworkDatabaseProvider = dependencies.parallelNetworkDatabaseProvider();
         idCorrelatorReaderProvider = dependencies.idCorrelatorReaderProvider();
         cors = dependencies.cors();
+        networkPartition = dependencies.networkPartition();
+        networkModels = dependencies.networkModels();
+        historicDates = dependencies.historicDates();
+        referenceData = dependencies.referenceData();
         services = dependencies.services();
         loadManipulations = dependencies.loadManipulations();
         loadManipulationsToJson = dependencies.loadManipulationsToJson();
+        patchResults = dependencies.patchResults();
+        patchResultToJson = dependencies.patchResultToJson();
         idCorrelator = dependencies.idCorrelator();
+        correlationsCacheFile = dependencies.correlationsCacheFile();
         patchProcessor = dependencies.patchProcessor();
         routeDebug = dependencies.routeDebug();
         resultsWriter = dependencies.resultsWriter();
+        patchedModelWriter = dependencies.patchedModelWriter();
+        serverMetrics = dependencies.serverMetrics();
+        tileCache = dependencies.tileCache();
+        tileConfig = dependencies.tileConfig();
+        spatialIndex = dependencies.spatialIndex();
+        containerMembership = dependencies.containerMembership();
+        networkDigests = dependencies.networkDigests();
+        networkChangeFeed = dependencies.networkChangeFeed();
     }
 
-    boolean load() {
-        LocalDate date = ewbDataFilePathsHelper.findClosestDateWithDbs(currentDate, daysToSearch);
-        if (date == null) {
-            logger.error("Failed to find network model and id correlations file within '{}' days of '{}'", daysToSearch, currentDate);
+    @Override
+    public boolean load() {
+        LocalDate date = findNetworkDate();
+        if (date == null)
             return false;
-        }
-
-        boolean status = loadNetwork(date)
-            && applyPatches()
-            && loadIdCorrelator(date);
 
-        if (status)
+        boolean status = timed("load_network", () -> loadNetwork(date))
+            && (!networkPartition.isEnabled() || timed("partition_network", this::partitionNetwork))
+            && (!referenceData.isShared() || timed("share_reference_data", this::shareReferenceData))
+            && timed("build_spatial_index", this::buildSpatialIndex)
+            && timed("build_container_membership", this::buildContainerMembership)
+            && (!historicDates.isEnabled() || timed("snapshot_network", this::snapshotNetwork))
+            && timed("apply_patches", this::applyPatches)
+            && (!patchedModelWriter.isEnabled() || timed("write_patched_model", this::writePatchedModel))
+            && timed("build_network_digests", this::buildNetworkDigests)
+            && timed("load_id_correlations", () -> loadIdCorrelator(date));
+
+        if (status) {
+            serverMetrics.updateNetworkObjectCounts(services.networkService());
+
+            long start = System.nanoTime();
             createRoutes();
+            serverMetrics.recordStartupPhase("create_routes", System.nanoTime() - start);
+        }
 
         return status;
     }
 
+    // Pipelines only want the patch results and the patched model, so none of the indexes or the ID correlations used to serve
+    // requests are built.
+    boolean runBatch() {
+        LocalDate date = findNetworkDate();
+        if (date == null)
+            return false;
+
+        return timed("load_network", () -> loadNetwork(date))
+            && (!networkPartition.isEnabled() || timed("partition_network", this::partitionNetwork))
+            && timed("apply_patches", this::applyPatches)
+            && (!patchedModelWriter.isEnabled() || timed("write_patched_model", this::writePatchedModel));
+    }
+
+    @Override
+    public Router router() {
+        return router.get();
+    }
+
+    // The main model takes its snapshot before applying the patches when there are historic dates to compare it with. Historic dates
+    // have no patches, so take theirs when they are first compared.
+    @Override
+    public synchronized NetworkSnapshot snapshot() {
+        if (snapshot == null)
+            snapshot = NetworkSnapshot.of(Objects.requireNonNull(networkDate), services.networkService(), new CanonicalEncoder());
+        return snapshot;
+    }
+
     Future<Void> startHttpServer() {
         logger.info("Starting HTTP server on port {}...", port);
 
@@ -143,19 +252,23 @@ class EwbNetworkServer {
         vertxLogger.setLevel(Level.OFF);
 
         // Get HTTP server options
-        HttpServerOptions serverOptions = new HttpServerOptions()
+        HttpServerOptions serverOptions = http2Config.applyTo(new HttpServerOptions()
             .setPort(port)
-            .setCompressionSupported(true);
+            .setCompressionSupported(true));
+
+        serverMetrics.start(vertx.get());
 
         // Handler for HTTP server creation result
         Future<Void> future = Future.future();
-        httpServers.add(vertx.createHttpServer(serverOptions)
-            .requestHandler(router)
+        httpServers.add(vertx.get().createHttpServer(serverOptions)
+            .requestHandler(router.get())
             .exceptionHandler(this::serverExceptionHandler)
             .listen(result -> {
                 if (result.succeeded()) {
                     logger.info("HTTP server started");
                     future.complete();
+                    preRenderTiles();
+                    networkModels.loadAll(vertx.get());
                 } else {
                     logger.error("Failed to start HTTP server.");
                     future.fail(result.cause());
@@ -176,18 +289,38 @@ class EwbNetworkServer {
             })
             .collect(Collectors.toList())
         ).setHandler(event -> {
-            vertx.close();
+            routeDebug.stop();
+            vertx.get().close();
             onShutdown.accept(ProgramStatus.OK);
         });
     }
 
+    @Nullable
+    private LocalDate findNetworkDate() {
+        LocalDate date = timed("find_date", () -> ewbDataFilePathsHelper.findClosestDateWithDbs(currentDate, daysToSearch));
+        if (date == null)
+            logger.error("Failed to find network model and id correlations file within '{}' days of '{}'", daysToSearch, currentDate);
+        else
+            networkDate = date;
+        return date;
+    }
+
     private boolean loadNetwork(LocalDate date) {
         Path networkDbFile = ewbDataFilePaths.networkModel(date);
-        logger.info("Loading network from '{}'...", networkDbFile);
+        boolean loaded;
+        if (databaseConnections > 1) {
+            logger.info("Loading network from '{}' over {} connections...", networkDbFile, databaseConnections);
+            ParallelDatabaseReader database = parallelNetworkDatabaseProvider.apply(networkDbFile);
+            loaded = database.load(services.metadataCollection, services.networkService(), services.diagramService(), services.customerService());
+        } else {
+            logger.info("Loading network from '{}'...", networkDbFile);
+            DatabaseReader database = networkDatabaseProvider.apply(networkDbFile);
+            loaded = database.load(services.metadataCollection, services.networkService(), services.diagramService(), services.customerService());
+        }
 
-        DatabaseReader database = networkDatabaseProvider.apply(networkDbFile);
-        if (database.load(services.metadataCollection, services.networkService(), services.diagramService(), services.customerService())) {
+        if (loaded) {
             logger.info("Network loaded [v{}].", new TableVersion().getSUPPORTED_VERSION());
+            networkChangeFeed.onReloaded();
             return true;
         } else {
             String msg = "Failed to load network model.";
@@ -196,16 +329,68 @@ class EwbNetworkServer {
         }
     }
 
+    private boolean partitionNetwork() {
+        logger.info("Partitioning network...");
+        networkPartition.prune(services);
+        return true;
+    }
+
+    private boolean shareReferenceData() {
+        logger.info("Sharing reference data...");
+        int replaced = referenceData.intern(services.networkService());
+        logger.info("Reference data shared [{} replaced, {} base voltages].", replaced, referenceData.numBaseVoltages());
+        return true;
+    }
+
+    private boolean buildSpatialIndex() {
+        logger.info("Building spatial index...");
+        spatialIndex.build(services.networkService());
+        logger.info("Spatial index built [{} objects].", spatialIndex.size());
+        return true;
+    }
+
+    private boolean buildContainerMembership() {
+        logger.info("Building container membership...");
+        containerMembership.build();
+        logger.info("Container membership built [{} feeders and zone substations].", containerMembership.size());
+        return true;
+    }
+
+    private boolean snapshotNetwork() {
+        logger.info("Taking network snapshot...");
+        logger.info("Network snapshot taken [{} objects].", snapshot().size());
+        return true;
+    }
+
+    private boolean writePatchedModel() {
+        logger.info("Writing patched network model to '{}'...", patchedModelWriter.databaseFile());
+        if (!patchedModelWriter.save(services)) {
+            logger.error("Failed to write patched network model.");
+            return false;
+        }
+
+        logger.info("Patched network model written.");
+        return true;
+    }
+
+    private boolean buildNetworkDigests() {
+        logger.info("Building network digests...");
+        networkDigests.build();
+        logger.info("Network digests built [{} feeders and zone substations].", networkDigests.size());
+        return true;
+    }
+
     private boolean applyPatches() {
         logger.info("Applying patches...");
-        List<PatchResult> patchResults = patchProcessor.applyPatches();
-        if (patchResults == null) {
+        List<PatchResult> applied = patchProcessor.applyPatches();
+        if (applied == null) {
             logger.error("Failed to apply patches.");
             return false;
         }
 
         JsonArray results = new JsonArray();
-        patchResults.stream().map(this::toJson).forEach(results::add);
+        applied.stream().map(patchResultToJson::convert).forEach(results::add);
+        patchResults.set(applied);
 
         try {
             resultsWriter.save(new JsonObject().put("results", results));
@@ -222,6 +407,16 @@ class EwbNetworkServer {
 
     private boolean loadIdCorrelator(LocalDate date) {
         Path correlationsFile = ewbDataFilePaths.correlations(date);
+        if (correlationsCacheFile.read(correlationsFile, idCorrelator)) {
+            logger.info("ID correlations mapped from '{}' [{} ids, {} MB].",
+                correlationsCacheFile.path(correlationsFile),
+                idCorrelator.numIds(),
+                String.format("%.1f", idCorrelator.numBytes() / (1024.0 * 1024.0)));
+            serverMetrics.updateIdCorrelations(idCorrelator.numCorrelations(), idCorrelator.numBytes());
+
+            return true;
+        }
+
         logger.info("Loading ID correlations from '{}'...", correlationsFile);
 
         Collection<FailedCorrelationInfo> failedMapInfoList;
@@ -235,6 +430,18 @@ class EwbNetworkServer {
 
         if (failedMapInfoList.isEmpty()) {
             logger.info("ID correlations loaded.");
+
+            long start = System.nanoTime();
+            idCorrelator.seal();
+            logger.info("ID correlations compacted [{} ids, {} MB] in {} ms.",
+                idCorrelator.numIds(),
+                String.format("%.1f", idCorrelator.numBytes() / (1024.0 * 1024.0)),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            serverMetrics.updateIdCorrelations(idCorrelator.numCorrelations(), idCorrelator.numBytes());
+
+            if (correlationsCacheFile.write(correlationsFile, idCorrelator))
+                logger.info("ID correlations cached to '{}'.", correlationsCacheFile.path(correlationsFile));
+
             return true;
         } else {
             String msg = "Failed to load idCorrelator caches: " +
@@ -250,14 +457,28 @@ class EwbNetworkServer {
     private void createRoutes() {
         logger.info("Initialising route handlers...");
 
+        Router router = this.router.get();
         RouteRegister routeRegister = new RouteRegister(router, "/ewb", false);
 
+        setupMetrics(router);
+
         if (!cors.isEmpty())
             setupCors(router);
 
         if (routeDebug.isDebugging())
             setupRouteDebugging(router, routeRegister);
 
+        if (tileCache.isEnabled())
+            setupTileCache(router);
+
+        if (!networkModels.isEmpty()) {
+            networkModels.mount(router);
+            routeRegister.add(ModelsRouteGroup.api(networkModels));
+        }
+
+        if (historicDates.isEnabled())
+            historicDates.mount(router);
+
         IdTranslator idTranslator = new IdTranslator(services.networkService(), idCorrelator);
         GeoViewConfig geoViewConfig = GeoViewConfig.builder().build();
         TranslationHelper translationHelper = new TranslationHelper(idTranslator);
@@ -271,11 +492,21 @@ class EwbNetworkServer {
             .add(NetworkTraceRouteGroup.api(services.networkService(), services.diagramService(), services.customerService(), idTranslator))
             .add(NetworkGraphicsRouteGroup.api(services.networkService(), services.diagramService(), services.customerService(), idTranslator, geoViewConfig))
             .add(GeoviewRouteGroup.api(idTranslator, geoViewConfig))
-            .add(PatchRouteGroup.api(loadManipulations, loadManipulationsToJson));
+            .add(PatchRouteGroup.api(loadManipulations, loadManipulationsToJson))
+            .add(ExportRouteGroup.api(services.networkService(), new NetworkExportToJson()))
+            .add(DigestRouteGroup.api(networkDigests))
+            .add(DiffRouteGroup.api(historicDates, this::snapshot))
+            .add(SpatialRouteGroup.api(spatialIndex, new NetworkExportToJson()))
+            .add(LookupRouteGroup.api(services.networkService(), idCorrelator, new NetworkExportToJson()));
 
         logger.info("Route handlers initialised.");
     }
 
+    private void setupMetrics(Router router) {
+        router.route().handler(serverMetrics.routeMetricsHandler());
+        router.get(ServerMetrics.METRICS_PATH).handler(serverMetrics.scrapeHandler());
+    }
+
     private void setupCors(Router router) {
         router.route().handler(CorsHandler.create(cors).allowedMethod(HttpMethod.GET));
     }
@@ -285,26 +516,52 @@ class EwbNetworkServer {
 
         router.route().handler(LoggerHandler.create());
         router.route().handler(BodyHandler.create());
-        router.route().blockingHandler(routeDebug::saveRequestBody);
+        router.route().handler(routeDebug::saveRequestBody);
+
+        routeDebug.start();
     }
 
-    private void serverExceptionHandler(Throwable throwable) {
-        logger.error("Exception caught in HTTP server.", throwable);
+    private void setupTileCache(Router router) {
+        HttpClientOptions clientOptions = new HttpClientOptions()
+            .setSsl(http2Config.isTls())
+            .setTrustAll(true)
+            .setVerifyHost(false)
+            .setMaxPoolSize(tileConfig.renderConcurrency());
+
+        RequestOptions target = new RequestOptions()
+            .setHost("localhost")
+            .setPort(port)
+            .setSsl(http2Config.isTls())
+            .setURI(TileCacheHandler.PATH);
+
+        TileRenderer tileRenderer = new TileRenderer(vertx.get(),
+            vertx.get().createHttpClient(clientOptions),
+            target,
+            TILE_RENDER_TIMEOUT_MS,
+            tileCache,
+            tileConfig.fullDetailZoom());
+
+        router.get(TileCacheHandler.ROUTE_PATH).handler(new TileCacheHandler(tileCache, tileRenderer));
+        if (tileConfig.preRenderZoom() != TileConfig.NO_PRE_RENDER)
+            tilePreRenderer = new TilePreRenderer(tileRenderer, tileConfig.preRenderZoom(), tileConfig.renderConcurrency());
     }
 
-    private JsonObject toJson(PatchResult patchResult) {
-        return new JsonObject()
-            .put("patchId", patchResult.patchId())
-            .put("affectedNormalFeeders", toJson(patchResult.affectedNormalFeeders()))
-            .put("affectedCurrentFeeders", toJson(patchResult.affectedCurrentFeeders()))
-            .put("errors", patchResult.errors())
-            .put("warnings", patchResult.warnings());
+    private void preRenderTiles() {
+        if (tilePreRenderer != null)
+            tilePreRenderer.start(TilePreRenderer.networkExtent(services.networkService()));
     }
 
-    private JsonArray toJson(Iterable<String> strings) {
-        JsonArray array = new JsonArray();
-        strings.forEach(array::add);
-        return array;
+    private <T> T timed(String phase, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            serverMetrics.recordStartupPhase(phase, System.nanoTime() - start);
+        }
+    }
+
+    private void serverExceptionHandler(Throwable throwable) {
+        logger.error("Exception caught in HTTP server.", throwable);
     }
 
     public void startGrpcServer() {
@@ -332,6 +589,8 @@ class EwbNetworkServer {
 
         int port();
 
+        Http2Config http2Config();
+
         EwbGrpcServer ewbGrpcServer();
 
         EwbDataFilePaths ewbDataFilePaths();
@@ -342,19 +601,37 @@ class EwbNetworkServer {
 
         int daysToSearch();
 
+        int databaseConnections();
+
         Function<Path, DatabaseReader> networkDatabaseProvider();
 
+        Function<Path, ParallelDatabaseReader> parallelNetworkDatabaseProvider();
+
         Function<Path, IdCorrelatorReader> idCorrelatorReaderProvider();
 
         String cors();
 
+        NetworkPartition networkPartition();
+
+        NetworkModels networkModels();
+
+        HistoricDates historicDates();
+
+        ReferenceData referenceData();
+
         Services services();
 
         LoadManipulations loadManipulations();
 
         LoadManipulationsToJson loadManipulationsToJson();
 
-        IdCorrelator idCorrelator();
+        PatchResults patchResults();
+
+        PatchResultToJson patchResultToJson();
+
+        CompactIdCorrelator idCorrelator();
+
+        CorrelationsCacheFile correlationsCacheFile();
 
         PatchProcessor patchProcessor();
 
@@ -362,6 +639,22 @@ class EwbNetworkServer {
 
         ResultsWriter resultsWriter();
 
+        NetworkDatabaseWriter patchedModelWriter();
+
+        ServerMetrics serverMetrics();
+
+        TileCache tileCache();
+
+        TileConfig tileConfig();
+
+        SpatialIndex spatialIndex();
+
+        ContainerMembership containerMembership();
+
+        NetworkDigests networkDigests();
+
+        NetworkChangeFeed networkChangeFeed();
+
     }
 
 }
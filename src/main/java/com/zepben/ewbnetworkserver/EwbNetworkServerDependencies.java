@@ -18,81 +18,239 @@
 
 package com.zepben.ewbnetworkserver;
 
+import com.google.common.base.Suppliers;
 import com.zepben.annotations.EverythingIsNonnullByDefault;
 import com.zepben.awsutils.S3;
 import com.zepben.awsutils.S3Dependencies;
 import com.zepben.evolve.database.sqlite.DatabaseReader;
 import com.zepben.ewb.filepaths.EwbDataFilePaths;
 import com.zepben.ewbnc.NetworkConsumerService;
+import com.zepben.ewbnetworkserver.changes.NetworkChangeFeed;
+import com.zepben.ewbnetworkserver.changes.NetworkChangeService;
+import com.zepben.ewbnetworkserver.correlations.CompactIdCorrelator;
+import com.zepben.ewbnetworkserver.correlations.CorrelationsCacheFile;
+import com.zepben.ewbnetworkserver.correlations.StreamingIdCorrelatorReader;
+import com.zepben.ewbnetworkserver.database.NetworkDatabaseWriter;
+import com.zepben.ewbnetworkserver.database.ParallelDatabaseReader;
+import com.zepben.ewbnetworkserver.digest.CanonicalEncoder;
+import com.zepben.ewbnetworkserver.digest.NetworkDigestService;
+import com.zepben.ewbnetworkserver.digest.NetworkDigests;
+import com.zepben.ewbnetworkserver.export.ContainerMembership;
+import com.zepben.ewbnetworkserver.export.NetworkExportService;
+import com.zepben.ewbnetworkserver.grpc.CachedResponseService;
+import com.zepben.ewbnetworkserver.grpc.GrpcResponseCache;
+import com.zepben.ewbnetworkserver.metrics.ServerMetrics;
+import com.zepben.ewbnetworkserver.models.HistoricDates;
+import com.zepben.ewbnetworkserver.models.NetworkModels;
+import com.zepben.ewbnetworkserver.models.ReferenceData;
+import com.zepben.ewbnetworkserver.partition.NetworkPartition;
 import com.zepben.ewbnetworkserver.patch.LoadManipulations;
+import com.zepben.ewbnetworkserver.patch.PatchResults;
+import com.zepben.ewbnetworkserver.patch.grpc.PatchDataService;
 import com.zepben.ewbnetworkserver.patch.routes.LoadManipulationsToJson;
-import com.zepben.idcorrelator.IdCorrelator;
-import com.zepben.idcorrelator.MapBackedIdCorrelator;
+import com.zepben.ewbnetworkserver.patch.routes.PatchResultToJson;
+import com.zepben.ewbnetworkserver.spatial.SpatialIndex;
+import com.zepben.ewbnetworkserver.tiles.TileCache;
+import com.zepben.ewbnetworkserver.tiles.TileConfig;
 import com.zepben.idcorrelator.io.IdCorrelatorReader;
-import com.zepben.idcorrelator.io.json.IdCorrelatorJSONReaderWriter;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 
+import javax.annotation.Nullable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 @EverythingIsNonnullByDefault
 class EwbNetworkServerDependencies implements EwbNetworkServer.Dependencies {
 
-    private final Vertx vertx = Vertx.vertx();
-    private final Router router = Router.router(vertx);
+    private final Supplier<Vertx> vertx;
+    private final Supplier<Router> router;
     private final Consumer<ProgramStatus> onShutdown;
     private final int port;
+    private final Http2Config http2Config;
     private final EwbGrpcServer ewbGrpcServer;
     private final EwbDataFilePaths ewbDataFilePaths;
     private final EwbDataFilePathsHelper ewbDataFilePathsHelper;
     private final LocalDate currentDate;
     private final int daysToSearch;
+    private final int databaseConnections;
     private final String cors;
+    private final NetworkPartition networkPartition;
+    private final NetworkModels networkModels;
+    private final HistoricDates historicDates;
+    private final ReferenceData referenceData;
     private final Services services = new Services();
+    private final ServerMetrics serverMetrics;
     private final LoadManipulations loadManipulations = new LoadManipulations();
     private final LoadManipulationsToJson loadManipulationsToJson = new LoadManipulationsToJson();
-    private final IdCorrelator idCorrelator = MapBackedIdCorrelator.newCorrelator();
+    private final PatchResults patchResults = new PatchResults();
+    private final PatchResultToJson patchResultToJson = new PatchResultToJson();
+    private final CompactIdCorrelator idCorrelator = new CompactIdCorrelator();
+    private final CorrelationsCacheFile correlationsCacheFile = new CorrelationsCacheFile();
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private final ContainerMembership containerMembership = new ContainerMembership(services.networkService());
+    private final NetworkDigests networkDigests = new NetworkDigests(services.networkService(), containerMembership, new CanonicalEncoder());
+    private final NetworkChangeFeed networkChangeFeed;
     private final PatchProcessor patchProcessor;
     private final RouteDebug routeDebug;
     private final EwbNetworkServer.ResultsWriter resultsWriter;
+    private final NetworkDatabaseWriter patchedModelWriter;
+    private final TileCache tileCache;
+    private final TileConfig tileConfig;
 
     EwbNetworkServerDependencies(CmdArgs cmdArgs, Consumer<ProgramStatus> onShutdown, FileWriter fileWriter, Function<S3Dependencies, S3> s3Provider) {
+        this(cmdArgs,
+            null,
+            null,
+            Suppliers.memoize(Vertx::vertx),
+            new ReferenceData(!cmdArgs.models().isEmpty() || (cmdArgs.historicDates() > 0)),
+            onShutdown,
+            fileWriter,
+            s3Provider);
+    }
+
+    // Hosted models and historic dates share the vert.x instance and reference data of the main model. Hosted models load their own
+    // network from their own EWB data root, while historic dates load the main model's network for another date without patches.
+    // The main model handles CORS, route debugging and map tiles for every request, and serves the gRPC API. Batch runs of the main
+    // model serve nothing, so they leave out everything that only exists to serve requests, including the vert.x instance.
+    private EwbNetworkServerDependencies(CmdArgs cmdArgs,
+                                         @Nullable String model,
+                                         @Nullable LocalDate date,
+                                         Supplier<Vertx> vertx,
+                                         ReferenceData referenceData,
+                                         Consumer<ProgramStatus> onShutdown,
+                                         FileWriter fileWriter,
+                                         Function<S3Dependencies, S3> s3Provider) {
+        boolean isMain = (model == null) && (date == null);
+        boolean isBatch = cmdArgs.runMode() == RunMode.BATCH;
+        boolean isServing = isMain && !isBatch;
+        this.vertx = vertx;
+        this.referenceData = referenceData;
         this.onShutdown = onShutdown;
+        router = Suppliers.memoize(() -> Router.router(vertx.get()));
         port = cmdArgs.port();
+        http2Config = new Http2Config(cmdArgs.httpCertPath(),
+            cmdArgs.httpKeyPath(),
+            cmdArgs.http2MaxConcurrentStreams(),
+            cmdArgs.http2InitialWindowSize(),
+            cmdArgs.http2ConnectionWindowSize());
+        serverMetrics = new ServerMetrics(isServing ? cmdArgs.grpcSlowCallThreshold() : 0);
+        networkChangeFeed = new NetworkChangeFeed(isServing ? cmdArgs.grpcChangeFeedSize() : 1);
+        GrpcResponseCache grpcResponseCache = new GrpcResponseCache(isServing ? cmdArgs.grpcResponseCacheSize() * 1024L * 1024L : 0);
+        NetworkConsumerService networkConsumerService = new NetworkConsumerService(services.networkService());
         ewbGrpcServer = new EwbGrpcServer(cmdArgs.grpcPort(),
             cmdArgs.grpcCertPath(),
             cmdArgs.grpcKeyPath(),
             cmdArgs.grpcClientAuth(),
             cmdArgs.grpcTrustPath(),
-            new NetworkConsumerService(services.networkService()));
-        ewbDataFilePaths = new EwbDataFilePaths(cmdArgs.ewbDataRoot());
+            isServing ? grpcConfig(cmdArgs) : GrpcConfig.defaults(),
+            Collections.singletonList(serverMetrics.grpcMetricsInterceptor()),
+            Collections.singletonList(serverMetrics.grpcStreamTracerFactory()),
+            new CachedResponseService(networkConsumerService, grpcResponseCache),
+            new NetworkChangeService(networkChangeFeed, cmdArgs.grpcChangeFeedSize()),
+            new PatchDataService(loadManipulations, loadManipulationsToJson, patchResults, patchResultToJson, services.networkService()),
+            new NetworkExportService(containerMembership, networkConsumerService),
+            new NetworkDigestService(networkDigests));
+        ewbDataFilePaths = new EwbDataFilePaths(model == null ? cmdArgs.ewbDataRoot() : cmdArgs.models().get(model));
         ewbDataFilePathsHelper = new EwbDataFilePathsHelper(ewbDataFilePaths);
-        currentDate = cmdArgs.currentDate();
+        currentDate = date == null ? cmdArgs.currentDate() : date;
         daysToSearch = cmdArgs.daysToSearch();
-        cors = cmdArgs.cors();
-        patchProcessor = new PatchProcessor(new PatchProcessorDependencies(services, loadManipulations, cmdArgs));
-        routeDebug = new RouteDebug(new RouteDebugDependencies(cmdArgs));
+        databaseConnections = cmdArgs.databaseConnections();
+        tileConfig = new TileConfig(cmdArgs.tileFullDetailZoom(), cmdArgs.tilePreRenderZoom(), cmdArgs.tileRenderConcurrency());
+
+        String api;
+        if (isMain) {
+            cors = cmdArgs.cors();
+            networkPartition = new NetworkPartition(cmdArgs.feeders(), cmdArgs.zones());
+            networkModels = new NetworkModels(cmdArgs.models().keySet(),
+                name -> new EwbNetworkServer(new EwbNetworkServerDependencies(cmdArgs, name, null, vertx, referenceData, onShutdown, fileWriter, s3Provider)));
+            historicDates = new HistoricDates(vertx, cmdArgs.historicDates(),
+                historicDate -> ewbDataFilePathsHelper.findClosestDateWithDbs(historicDate, daysToSearch),
+                historicDate -> new EwbNetworkServer(new EwbNetworkServerDependencies(cmdArgs, null, historicDate, vertx, referenceData, onShutdown, fileWriter, s3Provider)));
+            tileCache = new TileCache(isServing ? cmdArgs.tileCacheSize() * 1024L * 1024L : 0);
+            routeDebug = new RouteDebug(new RouteDebugDependencies(cmdArgs));
+            api = NetworkModels.patchApiFor(cmdArgs.patchApi(), null);
+        } else {
+            cors = "";
+            if (date == null)
+                networkPartition = new NetworkPartition(Collections.emptyList(), Collections.emptyList());
+            else
+                networkPartition = new NetworkPartition(cmdArgs.feeders(), cmdArgs.zones());
+            networkModels = new NetworkModels(Collections.emptyList(), name -> {
+                throw new IllegalStateException("Only the main model can host other models.");
+            });
+            historicDates = new HistoricDates(vertx, 0, historicDate -> null, historicDate -> {
+                throw new IllegalStateException("Only the main model can load historic dates.");
+            });
+            tileCache = new TileCache(0);
+            routeDebug = new RouteDebug(new RouteDebugDependencies(cmdArgs, ""));
+            api = model == null ? "" : NetworkModels.patchApiFor(cmdArgs.patchApi(), model);
+        }
+
+        patchProcessor = new PatchProcessor(new PatchProcessorDependencies(services,
+            loadManipulations,
+            serverMetrics.patchMetrics(),
+            isBatch
+                ? Collections.emptyList()
+                : Arrays.asList(tileCache, spatialIndex, containerMembership, networkDigests, networkChangeFeed, grpcResponseCache),
+            networkPartition,
+            api,
+            cmdArgs.patchAuthHeader()));
 
-        if (cmdArgs.s3Bucket().isEmpty())
-            resultsWriter = json -> fileWriter.write(Paths.get(cmdArgs.output()), json.toBuffer().getBytes());
-        else {
+        String output = outputFor(cmdArgs.output(), model);
+        if (date != null) {
+            // Patches are not applied to historic dates, so there are no results to save.
+            resultsWriter = json -> {
+            };
+        } else if (cmdArgs.s3Bucket().isEmpty()) {
+            resultsWriter = json -> fileWriter.write(Paths.get(output), json.toBuffer().getBytes());
+        } else {
             S3 s3 = s3Provider.apply(new S3Dependencies());
-            resultsWriter = json -> s3.putObject(cmdArgs.s3Bucket(), cmdArgs.output(), json.toString());
+            resultsWriter = json -> s3.putObject(cmdArgs.s3Bucket(), output, json.toString());
         }
+
+        // The patched model is always written locally, as it is a database rather than a document that can be put in S3.
+        if ((date != null) || cmdArgs.patchedModel().isEmpty())
+            patchedModelWriter = new NetworkDatabaseWriter("");
+        else
+            patchedModelWriter = new NetworkDatabaseWriter(outputFor(cmdArgs.patchedModel(), model));
+    }
+
+    private static GrpcConfig grpcConfig(CmdArgs cmdArgs) {
+        return new GrpcConfig(cmdArgs.grpcExecutorThreads(),
+            cmdArgs.grpcVirtualThreads(),
+            cmdArgs.grpcBossThreads(),
+            cmdArgs.grpcWorkerThreads(),
+            cmdArgs.grpcMaxMessageSize(),
+            cmdArgs.grpcFlowControlWindow(),
+            cmdArgs.grpcKeepAliveTime(),
+            cmdArgs.grpcKeepAliveTimeout(),
+            cmdArgs.grpcMaxConcurrentCalls());
+    }
+
+    // Each hosted model writes its patch results alongside those of the main model, prefixed with its name.
+    static String outputFor(String output, @Nullable String model) {
+        if (model == null)
+            return output;
+
+        int fileNameStart = Math.max(output.lastIndexOf('/'), output.lastIndexOf('\\')) + 1;
+        return output.substring(0, fileNameStart) + model + "-" + output.substring(fileNameStart);
     }
 
     @Override
     public Vertx vertx() {
-        return vertx;
+        return vertx.get();
     }
 
     @Override
     public Router router() {
-        return router;
+        return router.get();
     }
 
     @Override
@@ -105,6 +263,11 @@ class EwbNetworkServerDependencies implements EwbNetworkServer.Dependencies {
         return port;
     }
 
+    @Override
+    public Http2Config http2Config() {
+        return http2Config;
+    }
+
     @Override
     public EwbGrpcServer ewbGrpcServer() {
         return ewbGrpcServer;
@@ -130,14 +293,24 @@ class EwbNetworkServerDependencies implements EwbNetworkServer.Dependencies {
         return daysToSearch;
     }
 
+    @Override
+    public int databaseConnections() {
+        return databaseConnections;
+    }
+
     @Override
     public Function<Path, DatabaseReader> networkDatabaseProvider() {
         return path -> new DatabaseReader(path.toString());
     }
 
+    @Override
+    public Function<Path, ParallelDatabaseReader> parallelNetworkDatabaseProvider() {
+        return path -> new ParallelDatabaseReader(path, databaseConnections);
+    }
+
     @Override
     public Function<Path, IdCorrelatorReader> idCorrelatorReaderProvider() {
-        return path -> new IdCorrelatorJSONReaderWriter(path, false);
+        return StreamingIdCorrelatorReader::new;
     }
 
     @Override
@@ -145,6 +318,26 @@ class EwbNetworkServerDependencies implements EwbNetworkServer.Dependencies {
         return cors;
     }
 
+    @Override
+    public NetworkPartition networkPartition() {
+        return networkPartition;
+    }
+
+    @Override
+    public NetworkModels networkModels() {
+        return networkModels;
+    }
+
+    @Override
+    public HistoricDates historicDates() {
+        return historicDates;
+    }
+
+    @Override
+    public ReferenceData referenceData() {
+        return referenceData;
+    }
+
     @Override
     public Services services() {
         return services;
@@ -161,10 +354,25 @@ class EwbNetworkServerDependencies implements EwbNetworkServer.Dependencies {
     }
 
     @Override
-    public IdCorrelator idCorrelator() {
+    public PatchResults patchResults() {
+        return patchResults;
+    }
+
+    @Override
+    public PatchResultToJson patchResultToJson() {
+        return patchResultToJson;
+    }
+
+    @Override
+    public CompactIdCorrelator idCorrelator() {
         return idCorrelator;
     }
 
+    @Override
+    public CorrelationsCacheFile correlationsCacheFile() {
+        return correlationsCacheFile;
+    }
+
     @Override
     public PatchProcessor patchProcessor() {
         return patchProcessor;
@@ -180,6 +388,46 @@ class EwbNetworkServerDependencies implements EwbNetworkServer.Dependencies {
         return resultsWriter;
     }
 
+    @Override
+    public NetworkDatabaseWriter patchedModelWriter() {
+        return patchedModelWriter;
+    }
+
+    @Override
+    public ServerMetrics serverMetrics() {
+        return serverMetrics;
+    }
+
+    @Override
+    public TileCache tileCache() {
+        return tileCache;
+    }
+
+    @Override
+    public TileConfig tileConfig() {
+        return tileConfig;
+    }
+
+    @Override
+    public SpatialIndex spatialIndex() {
+        return spatialIndex;
+    }
+
+    @Override
+    public ContainerMembership containerMembership() {
+        return containerMembership;
+    }
+
+    @Override
+    public NetworkDigests networkDigests() {
+        return networkDigests;
+    }
+
+    @Override
+    public NetworkChangeFeed networkChangeFeed() {
+        return networkChangeFeed;
+    }
+
     @FunctionalInterface
     interface FileWriter {
 
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+@EverythingIsNonnullByDefault
+public class GrpcConfig {
+
+    static final int DEFAULT_MAX_INBOUND_MESSAGE_SIZE = 4 * 1024 * 1024;
+    static final long DEFAULT_KEEPALIVE_TIME = TimeUnit.HOURS.toSeconds(2);
+    static final long DEFAULT_KEEPALIVE_TIMEOUT = 20;
+
+    private final int executorThreads;
+    private final boolean virtualThreads;
+    private final int bossThreads;
+    private final int workerThreads;
+    private final int maxInboundMessageSize;
+    private final int flowControlWindow;
+    private final long keepAliveTime;
+    private final long keepAliveTimeout;
+    private final int maxConcurrentCallsPerConnection;
+
+    GrpcConfig(int executorThreads,
+               boolean virtualThreads,
+               int bossThreads,
+               int workerThreads,
+               int maxInboundMessageSize,
+               int flowControlWindow,
+               long keepAliveTime,
+               long keepAliveTimeout,
+               int maxConcurrentCallsPerConnection) {
+        this.executorThreads = executorThreads;
+        this.virtualThreads = virtualThreads;
+        this.bossThreads = bossThreads;
+        this.workerThreads = workerThreads;
+        this.maxInboundMessageSize = maxInboundMessageSize;
+        this.flowControlWindow = flowControlWindow;
+        this.keepAliveTime = keepAliveTime;
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+    }
+
+    static GrpcConfig defaults() {
+        return new GrpcConfig(0, false, 0, 0, DEFAULT_MAX_INBOUND_MESSAGE_SIZE, 0, DEFAULT_KEEPALIVE_TIME, DEFAULT_KEEPALIVE_TIMEOUT, 0);
+    }
+
+    static boolean supportsVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public NettyServerBuilder applyTo(NettyServerBuilder serverBuilder) {
+        Executor executor = createExecutor();
+        if (executor != null)
+            serverBuilder.executor(executor);
+
+        // Netty requires the boss and worker groups to be provided along with a matching channel type, or not at all.
+        if ((bossThreads > 0) || (workerThreads > 0)) {
+            boolean useEpoll = Epoll.isAvailable();
+            Class<? extends ServerChannel> channelType = useEpoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+            serverBuilder
+                .bossEventLoopGroup(createEventLoopGroup(useEpoll, Math.max(bossThreads, 1), "grpc-boss"))
+                .workerEventLoopGroup(createEventLoopGroup(useEpoll, workerThreads, "grpc-worker"))
+                .channelType(channelType);
+        }
+
+        // A fixed window turns off gRPC's automatic window tuning, so it is only set when requested.
+        if (flowControlWindow > 0)
+            serverBuilder.flowControlWindow(flowControlWindow);
+
+        if (maxConcurrentCallsPerConnection > 0)
+            serverBuilder.maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection);
+
+        return serverBuilder
+            .maxInboundMessageSize(maxInboundMessageSize)
+            .keepAliveTime(keepAliveTime, TimeUnit.SECONDS)
+            .keepAliveTimeout(keepAliveTimeout, TimeUnit.SECONDS);
+    }
+
+    // Returns null to keep gRPC's default cached thread pool, which grows without bound under load.
+    @Nullable
+    Executor createExecutor() {
+        if (virtualThreads)
+            return createVirtualThreadExecutor();
+        else if (executorThreads > 0)
+            return Executors.newFixedThreadPool(executorThreads, new DefaultThreadFactory("grpc-executor", true));
+        else
+            return null;
+    }
+
+    private static Executor createVirtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later.", e);
+        }
+    }
+
+    private static EventLoopGroup createEventLoopGroup(boolean useEpoll, int numThreads, String name) {
+        ThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+        return useEpoll ? new EpollEventLoopGroup(numThreads, threadFactory) : new NioEventLoopGroup(numThreads, threadFactory);
+    }
+
+}
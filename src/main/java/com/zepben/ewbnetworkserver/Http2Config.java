@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.net.PemKeyCertOptions;
+
+import java.util.Arrays;
+
+@EverythingIsNonnullByDefault
+class Http2Config {
+
+    private final String certPath;
+    private final String keyPath;
+    private final long maxConcurrentStreams;
+    private final int initialWindowSize;
+    private final int connectionWindowSize;
+
+    Http2Config(String certPath, String keyPath, long maxConcurrentStreams, int initialWindowSize, int connectionWindowSize) {
+        this.certPath = certPath;
+        this.keyPath = keyPath;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.initialWindowSize = initialWindowSize;
+        this.connectionWindowSize = connectionWindowSize;
+    }
+
+    boolean isTls() {
+        return !certPath.isEmpty();
+    }
+
+    long maxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    int initialWindowSize() {
+        return initialWindowSize;
+    }
+
+    int connectionWindowSize() {
+        return connectionWindowSize;
+    }
+
+    HttpServerOptions applyTo(HttpServerOptions serverOptions) {
+        // Without TLS vert.x accepts cleartext HTTP/2 (h2c) via both prior knowledge and the HTTP/1.1 upgrade.
+        if (isTls()) {
+            serverOptions
+                .setSsl(true)
+                .setUseAlpn(true)
+                .setPemKeyCertOptions(new PemKeyCertOptions().setCertPath(certPath).setKeyPath(keyPath))
+                .setAlpnVersions(Arrays.asList(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1));
+        }
+
+        return serverOptions
+            .setInitialSettings(new Http2Settings()
+                .setMaxConcurrentStreams(maxConcurrentStreams)
+                .setInitialWindowSize(initialWindowSize))
+            .setHttp2ConnectionWindowSize(connectionWindowSize);
+    }
+
+}
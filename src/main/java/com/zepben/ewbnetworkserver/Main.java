@@ -50,8 +50,9 @@ public class Main {
 
         ProgramStatus programStatus = run(args, MainDependencies::new, Main::logAppInfo);
 
-        // If run returned OK then the exit will be delayed until the main verticle is complete.
-        if (programStatus != ProgramStatus.OK)
+        // If run returned OK then the exit will be delayed until the main verticle is complete, unless it was a batch run, which
+        // leaves no verticle running.
+        if ((programStatus != ProgramStatus.OK) || (ewbNetworkServer == null))
             shutdownAndExit(programStatus);
     }
 
@@ -80,6 +81,12 @@ public class Main {
         try {
             Dependencies dependencies = dependencyProvider.create(cmdArgs);
 
+            // Batch runs are not kept for the shutdown hook, as there is nothing running for it to stop.
+            if (cmdArgs.runMode() == RunMode.BATCH) {
+                Unirest.setTimeouts(10000, cmdArgs.timeout() * 1000);
+                return dependencies.ewbNetworkServerVerticle().runBatch() ? ProgramStatus.OK : ProgramStatus.FAILED_TO_START;
+            }
+
             ewbNetworkServer = dependencies.ewbNetworkServerVerticle();
             if (!ewbNetworkServer.load())
                 return ProgramStatus.FAILED_TO_START;
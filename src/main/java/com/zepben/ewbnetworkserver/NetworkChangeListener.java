@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+
+@EverythingIsNonnullByDefault
+public interface NetworkChangeListener {
+
+    // Called before and after each run of patches, so listeners can publish all of the changes made by a run at once.
+    default void onPatchesStarted() {
+    }
+
+    default void onPatchesFinished() {
+    }
+
+    void onAdded(IdentifiedObject identifiedObject);
+
+    // Called before any of the linkages of the object, such as its location, are removed.
+    void onRemoved(IdentifiedObject identifiedObject);
+
+    // Called after a termination has connected or disconnected the equipment.
+    default void onReconnected(ConductingEquipment conductingEquipment) {
+    }
+
+    // Called once for each feeder whose equipment, or the phases of its equipment, were changed by the patches.
+    default void onFeederChanged(String feederMRID) {
+    }
+
+}
@@ -34,6 +34,8 @@ import com.zepben.evolve.services.network.tracing.Tracing;
 import com.zepben.evolve.services.network.tracing.phases.PhaseDirection;
 import com.zepben.evolve.services.network.tracing.phases.PhaseSelector;
 import com.zepben.ewbnetworkserver.geojson.GeoJson;
+import com.zepben.ewbnetworkserver.metrics.PatchMetrics;
+import com.zepben.ewbnetworkserver.partition.NetworkPartition;
 import com.zepben.ewbnetworkserver.patch.*;
 import com.zepben.nearestlocation.LocationUtility;
 import com.zepben.vertxutils.json.JsonUtils;
@@ -70,6 +72,9 @@ public class PatchProcessor {
     private final PatchFeatureCreators patchFeatureCreators;
     private final PatchTerminationProcessor patchTerminationProcessor;
     private final FeederProcessor feederProcessor;
+    private final PatchMetrics patchMetrics;
+    private final List<NetworkChangeListener> networkChangeListeners;
+    private final NetworkPartition networkPartition;
 
     private final Map<String, PhaseCode> assetPhases = new HashMap<>();
 
@@ -81,6 +86,9 @@ public class PatchProcessor {
         patchFeatureCreators = dependencies.patchFeatureCreators();
         patchTerminationProcessor = dependencies.patchTerminationProcessor();
         feederProcessor = dependencies.feederProcessor();
+        patchMetrics = dependencies.patchMetrics();
+        networkChangeListeners = dependencies.networkChangeListeners();
+        networkPartition = dependencies.networkPartition();
 
         services.networkService().add(unknownWireInfo);
         services.networkService().add(unknownPerLengthSequenceImpedance);
@@ -102,35 +110,73 @@ public class PatchProcessor {
 
     private List<PatchResult> processPatches(String responseBody) throws JsonUtils.ParsingException {
         logger.info("   Applying patches...");
-        List<Patch> patches = convertToObjectList(new JsonArray(responseBody))
+        List<Patch> parsedPatches = convertToObjectList(new JsonArray(responseBody))
             .stream()
             .map(Patch::parse)
             .filter(Optional::isPresent)
             .map(Optional::get)
+            .collect(Collectors.toList());
+
+        // Patches outside the partition are dropped before sorting, so they cost nothing beyond being parsed.
+        List<Patch> patches = parsedPatches
+            .stream()
+            .filter(patch -> networkPartition.includes(patch, services.networkService()))
             .sorted(Comparator.comparing(Patch::id))
             .collect(Collectors.toList());
 
+        if (patches.size() < parsedPatches.size())
+            logger.info("   Skipped {} patches outside the network partition.", parsedPatches.size() - patches.size());
+
         List<PatchFeature> addFeatures = new ArrayList<>();
         List<PatchFeature> addTerminations = new ArrayList<>();
         List<CutConductorAction> cutConductorActions = new ArrayList<>();
         List<PatchFeature> removeFeatures = new ArrayList<>();
         List<PatchFeature> removeTerminations = new ArrayList<>();
 
-        patches.forEach(patch -> sortFeatures(patch, addFeatures, addTerminations, cutConductorActions, removeFeatures, removeTerminations));
+        patches.forEach(patch -> {
+            patch.addFeatures().forEach(feature -> patchMetrics.addFeature(feature.geoJson().patchLayer()));
+            patch.removeFeatures().forEach(feature -> patchMetrics.removeFeature(feature.geoJson().patchLayer()));
+            sortFeatures(patch, addFeatures, addTerminations, cutConductorActions, removeFeatures, removeTerminations);
+        });
 
-        process(addFeatures, this::processAddFeature);
-        process(addTerminations, this::processAddFeature);
-        process(cutConductorActions, this::processCutConductorAction);
-        process(removeTerminations, this::processRemoveFeature);
-        process(removeFeatures, this::processRemoveFeature);
+        networkChangeListeners.forEach(NetworkChangeListener::onPatchesStarted);
+        try {
+            process(addFeatures, this::processAddFeature);
+            process(addTerminations, this::processAddFeature);
+            process(cutConductorActions, this::processCutConductorAction);
+            process(removeTerminations, this::processRemoveFeature);
+            process(removeFeatures, this::processRemoveFeature);
+        } finally {
+            networkChangeListeners.forEach(NetworkChangeListener::onPatchesFinished);
+        }
 
         logger.info("   Patches applied.");
 
-        return patches
+        List<PatchResult> results = patches
             .stream()
             .map(Patch::result)
             .sorted(Comparator.comparing(PatchResult::patchId))
             .collect(Collectors.toList());
+
+        results.forEach(patchMetrics::addResult);
+        notifyFeedersChanged(results);
+        return results;
+    }
+
+    private void notifyReconnected(@Nullable PatchTermination patchTermination) {
+        if (patchTermination != null)
+            patchTermination.conductingEquipment().forEach(conductingEquipment ->
+                networkChangeListeners.forEach(listener -> listener.onReconnected(conductingEquipment)));
+    }
+
+    private void notifyFeedersChanged(List<PatchResult> results) {
+        Set<String> feeders = new TreeSet<>();
+        results.forEach(result -> {
+            feeders.addAll(result.affectedNormalFeeders());
+            feeders.addAll(result.affectedCurrentFeeders());
+        });
+
+        feeders.forEach(feeder -> networkChangeListeners.forEach(listener -> listener.onFeederChanged(feeder)));
     }
 
     private <T> void process(List<T> items, Processor<T> processor) throws ParsingException {
@@ -305,6 +351,7 @@ public class PatchProcessor {
                 break;
             case terminations:
                 patchTerminationProcessor.connect(geoJson, assetPhases, patchResult);
+                notifyReconnected(patchTerminationProcessor.termination(geoJson.gisId()));
                 break;
             case transformers:
                 patchFeatureCreators.addTransformer(geoJson, assetPhases, patchResult);
@@ -315,6 +362,10 @@ public class PatchProcessor {
             default:
                 throw new IllegalArgumentException(String.format("Unsupported layer '%s' used for add feature.", geoJson.patchLayer()));
         }
+
+        IdentifiedObject added = services.networkService().get(IdentifiedObject.class, geoJson.gisId());
+        if (added != null)
+            networkChangeListeners.forEach(listener -> listener.onAdded(added));
     }
 
     private void processRemoveFeature(PatchFeature patchFeature) throws ParsingException {
@@ -365,13 +416,19 @@ public class PatchProcessor {
                 removeAsset(geoJson, EnergyConsumer.class, patchResult, true);
                 break;
             case terminations:
-                patchTerminationProcessor.disconnect(geoJson, patchResult);
+                disconnectTermination(geoJson, patchResult);
                 break;
             default:
                 removeAsset(geoJson, IdentifiedObject.class, patchResult, false);
         }
     }
 
+    private void disconnectTermination(GeoJson geoJson, PatchResult patchResult) throws ParsingException {
+        PatchTermination patchTermination = patchTerminationProcessor.termination(geoJson.gisId());
+        patchTerminationProcessor.disconnect(geoJson, patchResult);
+        notifyReconnected(patchTermination);
+    }
+
     private void removeAsset(GeoJson geoJson,
                              Class<? extends IdentifiedObject> expectedClass,
                              PatchResult patchResult,
@@ -396,6 +453,8 @@ public class PatchProcessor {
     }
 
     private void removeAssetLinkages(IdentifiedObject identifiedObject, PatchResult patchResult) {
+        networkChangeListeners.forEach(listener -> listener.onRemoved(identifiedObject));
+
         services.diagramService().getDiagramObjects(identifiedObject.getMRID()).forEach(services.diagramService()::remove);
 
         if (identifiedObject instanceof ConductingEquipment) {
@@ -675,6 +734,12 @@ public class PatchProcessor {
 
         String authHeader();
 
+        PatchMetrics patchMetrics();
+
+        List<NetworkChangeListener> networkChangeListeners();
+
+        NetworkPartition networkPartition();
+
     }
 
 }
@@ -20,11 +20,15 @@ package com.zepben.ewbnetworkserver;
 
 import com.mashape.unirest.http.Unirest;
 import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.metrics.PatchMetrics;
+import com.zepben.ewbnetworkserver.partition.NetworkPartition;
 import com.zepben.ewbnetworkserver.patch.FeederProcessor;
 import com.zepben.ewbnetworkserver.patch.LoadManipulations;
 import com.zepben.ewbnetworkserver.patch.PatchFeatureCreators;
 import com.zepben.ewbnetworkserver.patch.PatchTerminationProcessor;
 
+import java.util.List;
+
 @EverythingIsNonnullByDefault
 class PatchProcessorDependencies implements PatchProcessor.Dependencies {
 
@@ -35,15 +39,27 @@ class PatchProcessorDependencies implements PatchProcessor.Dependencies {
     private final HttpClient httpClient = new HttpClient(Unirest::get);
     private final String api;
     private final String authHeader;
+    private final PatchMetrics patchMetrics;
+    private final List<NetworkChangeListener> networkChangeListeners;
+    private final NetworkPartition networkPartition;
 
-    PatchProcessorDependencies(Services services, LoadManipulations loadManipulations, CmdArgs cmdArgs) {
+    PatchProcessorDependencies(Services services,
+                               LoadManipulations loadManipulations,
+                               PatchMetrics patchMetrics,
+                               List<NetworkChangeListener> networkChangeListeners,
+                               NetworkPartition networkPartition,
+                               String api,
+                               String authHeader) {
         this.services = services;
+        this.patchMetrics = patchMetrics;
+        this.networkChangeListeners = networkChangeListeners;
+        this.networkPartition = networkPartition;
         patchFeatureCreators = new PatchFeatureCreators(services, loadManipulations);
         feederProcessor = new FeederProcessor();
         patchTerminationProcessor = new PatchTerminationProcessor(services, feederProcessor);
 
-        api = cmdArgs.patchApi();
-        authHeader = cmdArgs.patchAuthHeader();
+        this.api = api;
+        this.authHeader = authHeader;
     }
 
     @Override
@@ -81,4 +97,19 @@ class PatchProcessorDependencies implements PatchProcessor.Dependencies {
         return authHeader;
     }
 
+    @Override
+    public PatchMetrics patchMetrics() {
+        return patchMetrics;
+    }
+
+    @Override
+    public List<NetworkChangeListener> networkChangeListeners() {
+        return networkChangeListeners;
+    }
+
+    @Override
+    public NetworkPartition networkPartition() {
+        return networkPartition;
+    }
+
 }
@@ -18,7 +18,7 @@
 
 package com.zepben.ewbnetworkserver;
 
-enum ProgramStatus {
+public enum ProgramStatus {
     OK(0),
     SHOW_HELP(1),
     FAILED_TO_START(-1),
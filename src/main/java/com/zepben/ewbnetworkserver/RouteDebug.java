@@ -25,6 +25,8 @@ import io.vertx.ext.web.RoutingContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
@@ -32,6 +34,16 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -40,46 +52,174 @@ class RouteDebug {
 
     private static Logger logger = LoggerFactory.getLogger("ewb-network-server");
 
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final String COMPRESSED_EXTENSION = ".gz";
+
     private final boolean isDebugging;
     private final Path routeDebugFile;
+    private final boolean compress;
+    private final List<Pattern> routeFilters;
+    private final int sampleEvery;
+    private final long maxFileSize;
+    private final int maxFiles;
     private final FileWriter fileWriter;
+    private final FileMover fileMover;
+    private final FileSizer fileSizer;
+
+    // Bodies are queued by the request handlers and written in batches by a background writer, dropping them rather than
+    // blocking the event loop if the writer falls behind.
+    private final BlockingQueue<byte[]> buffer;
+    private final AtomicLong numMatched = new AtomicLong();
+    private final AtomicLong numDropped = new AtomicLong();
+
+    private final List<byte[]> batch = new ArrayList<>();
+    private long currentFileSize = 0;
+    @Nullable private ScheduledExecutorService writer = null;
 
     RouteDebug(Dependencies dependencies) {
         isDebugging = !dependencies.routeDebugFile().isEmpty();
         routeDebugFile = Paths.get(dependencies.routeDebugFile());
+        compress = dependencies.routeDebugFile().endsWith(COMPRESSED_EXTENSION);
+        routeFilters = dependencies.routeFilters();
+        sampleEvery = dependencies.sampleEvery();
+        maxFileSize = dependencies.maxFileSize();
+        maxFiles = dependencies.maxFiles();
+        buffer = new ArrayBlockingQueue<>(dependencies.bufferSize());
         fileWriter = dependencies.fileWriter();
+        fileMover = dependencies.fileMover();
+        fileSizer = dependencies.fileSizer();
     }
 
     boolean isDebugging() {
         return isDebugging;
     }
 
+    synchronized void start() {
+        if (writer != null)
+            return;
+
+        // The debug file is appended to, so anything left from a previous run counts towards its rotation.
+        try {
+            currentFileSize = fileSizer.size(routeDebugFile);
+        } catch (IOException e) {
+            logger.warn("Failed to read the size of the route debug file, it will not rotate until it has been written to.");
+            currentFileSize = 0;
+        }
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "route-debug-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        ScheduledExecutorService toStop;
+        synchronized (this) {
+            toStop = writer;
+            writer = null;
+        }
+
+        if (toStop != null) {
+            toStop.shutdown();
+            try {
+                toStop.awaitTermination(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+    }
+
     void saveRequestBody(RoutingContext context) {
         Buffer body = context.getBody();
-        if (body != null && body.length() > 0) {
+        if ((body != null) && (body.length() > 0) && shouldSave(context.request().path())) {
             HttpMethod method = context.request().method();
             String uri = context.request().uri();
             String ls = System.lineSeparator();
-            String time = Instant.now().atZone(ZoneId.systemDefault()).toLocalDateTime().toString();
 
-            String info = String.format("%s %s %s%s", time, method, uri, ls);
-            byte[] writeBytes = Buffer.buffer(info.length() + body.length())
+            String info = String.format("%s %s %s%s", now(), method, uri, ls);
+            byte[] entry = Buffer.buffer(info.length() + body.length())
                 .appendBytes(info.getBytes(UTF_8))
                 .appendBuffer(body)
                 .appendBytes(ls.getBytes(UTF_8))
                 .appendBytes(ls.getBytes(UTF_8))
                 .getBytes();
 
-            try {
-                fileWriter.write(routeDebugFile, writeBytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            } catch (IOException e) {
-                logger.warn("Failed to save route body to debug file.");
-            }
+            if (!buffer.offer(entry))
+                numDropped.incrementAndGet();
         }
 
         context.next();
     }
 
+    synchronized void flush() {
+        buffer.drainTo(batch);
+        long dropped = numDropped.getAndSet(0);
+        if (batch.isEmpty() && (dropped == 0))
+            return;
+
+        Buffer data = Buffer.buffer();
+        if (dropped > 0) {
+            String ls = System.lineSeparator();
+            data.appendString(String.format("%s Dropped %d request bodies as the route debug buffer was full.%s%s", now(), dropped, ls, ls));
+        }
+        batch.forEach(data::appendBytes);
+        batch.clear();
+
+        try {
+            byte[] bytes = compress ? gzip(data.getBytes()) : data.getBytes();
+            if ((currentFileSize > 0) && (currentFileSize + bytes.length > maxFileSize))
+                rotate();
+
+            fileWriter.write(routeDebugFile, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            currentFileSize += bytes.length;
+        } catch (IOException e) {
+            logger.warn("Failed to save route body to debug file.");
+        }
+    }
+
+    private boolean shouldSave(@Nullable String path) {
+        if (!routeFilters.isEmpty()) {
+            String checkPath = path != null ? path : "";
+            if (routeFilters.stream().noneMatch(filter -> filter.matcher(checkPath).find()))
+                return false;
+        }
+
+        return numMatched.getAndIncrement() % sampleEvery == 0;
+    }
+
+    private void rotate() throws IOException {
+        for (int i = maxFiles - 1; i > 0; --i)
+            fileMover.move(rotatedFile(i), rotatedFile(i + 1));
+
+        fileMover.move(routeDebugFile, rotatedFile(1));
+        currentFileSize = 0;
+    }
+
+    private Path rotatedFile(int index) {
+        String fileName = routeDebugFile.toString();
+        if (compress)
+            return Paths.get(String.format("%s.%d%s", fileName.substring(0, fileName.length() - COMPRESSED_EXTENSION.length()), index, COMPRESSED_EXTENSION));
+        else
+            return Paths.get(String.format("%s.%d", fileName, index));
+    }
+
+    // Each batch is written as its own gzip member, which standard tools read back as a single stream.
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream)) {
+            gzipStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static String now() {
+        return Instant.now().atZone(ZoneId.systemDefault()).toLocalDateTime().toString();
+    }
+
     @FunctionalInterface
     interface FileWriter {
 
@@ -87,12 +227,40 @@ class RouteDebug {
 
     }
 
+    @FunctionalInterface
+    interface FileMover {
+
+        void move(Path source, Path target) throws IOException;
+
+    }
+
+    @FunctionalInterface
+    interface FileSizer {
+
+        long size(Path path) throws IOException;
+
+    }
+
     interface Dependencies {
 
         String routeDebugFile();
 
+        List<Pattern> routeFilters();
+
+        int sampleEvery();
+
+        int bufferSize();
+
+        long maxFileSize();
+
+        int maxFiles();
+
         FileWriter fileWriter();
 
+        FileMover fileMover();
+
+        FileSizer fileSizer();
+
     }
 
 }
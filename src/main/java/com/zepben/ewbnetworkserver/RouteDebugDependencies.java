@@ -21,16 +21,41 @@ package com.zepben.ewbnetworkserver;
 import com.zepben.annotations.EverythingIsNonnullByDefault;
 
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @EverythingIsNonnullByDefault
 class RouteDebugDependencies implements RouteDebug.Dependencies {
 
     private final String routeDebugFile;
+    private final List<Pattern> routeFilters;
+    private final int sampleEvery;
+    private final int bufferSize;
+    private final long maxFileSize;
+    private final int maxFiles;
     private final RouteDebug.FileWriter fileWriter;
+    private final RouteDebug.FileMover fileMover;
+    private final RouteDebug.FileSizer fileSizer;
 
     RouteDebugDependencies(CmdArgs cmdArgs) {
-        routeDebugFile = cmdArgs.routeDebugFile();
+        this(cmdArgs, cmdArgs.routeDebugFile());
+    }
+
+    RouteDebugDependencies(CmdArgs cmdArgs, String routeDebugFile) {
+        this.routeDebugFile = routeDebugFile;
+        routeFilters = cmdArgs.routeDebugFilters().stream().map(Pattern::compile).collect(Collectors.toList());
+        sampleEvery = cmdArgs.routeDebugSampleEvery();
+        bufferSize = cmdArgs.routeDebugBufferSize();
+        maxFileSize = cmdArgs.routeDebugMaxFileSize() * 1024L * 1024L;
+        maxFiles = cmdArgs.routeDebugMaxFiles();
         fileWriter = Files::write;
+        fileMover = (source, target) -> {
+            if (Files.exists(source))
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        };
+        fileSizer = path -> Files.exists(path) ? Files.size(path) : 0;
     }
 
     @Override
@@ -38,9 +63,44 @@ class RouteDebugDependencies implements RouteDebug.Dependencies {
         return routeDebugFile;
     }
 
+    @Override
+    public List<Pattern> routeFilters() {
+        return routeFilters;
+    }
+
+    @Override
+    public int sampleEvery() {
+        return sampleEvery;
+    }
+
+    @Override
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public long maxFileSize() {
+        return maxFileSize;
+    }
+
+    @Override
+    public int maxFiles() {
+        return maxFiles;
+    }
+
     @Override
     public RouteDebug.FileWriter fileWriter() {
         return fileWriter;
     }
 
+    @Override
+    public RouteDebug.FileMover fileMover() {
+        return fileMover;
+    }
+
+    @Override
+    public RouteDebug.FileSizer fileSizer() {
+        return fileSizer;
+    }
+
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.changes;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.json.JsonObject;
+
+@EverythingIsNonnullByDefault
+public class NetworkChange {
+
+    public enum Type {
+        ADDED,
+        REMOVED,
+        RECONNECTED,
+        FEEDER_CHANGED,
+        // The network was loaded from the database, so clients need to fetch it again.
+        RELOADED,
+        // The changes the client asked to resume from are no longer available, so it needs to fetch the network again.
+        RESYNC
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String mRID;
+    private final String objectType;
+
+    NetworkChange(long sequence, Type type, String mRID, String objectType) {
+        this.sequence = sequence;
+        this.type = type;
+        this.mRID = mRID;
+        this.objectType = objectType;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public String mRID() {
+        return mRID;
+    }
+
+    public String objectType() {
+        return objectType;
+    }
+
+    JsonObject toJson() {
+        JsonObject json = new JsonObject()
+            .put("sequence", sequence)
+            .put("type", type.name());
+
+        if (!mRID.isEmpty())
+            json.put("mRID", mRID).put("objectType", objectType);
+
+        return json;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.changes;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.ewbnetworkserver.NetworkChangeListener;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@EverythingIsNonnullByDefault
+public class NetworkChangeFeed implements NetworkChangeListener {
+
+    private final int capacity;
+    private final Deque<NetworkChange> changes = new ArrayDeque<>();
+    private final List<Consumer<NetworkChange>> subscribers = new CopyOnWriteArrayList<>();
+
+    private long sequence;
+
+    // Sequences start from the time the feed was created, so the sequences of a restarted server are always ahead of any a client
+    // saw before the restart, and resuming from one of those tells the client to resynchronise.
+    public NetworkChangeFeed(int capacity) {
+        this(capacity, System.currentTimeMillis() * 1000);
+    }
+
+    NetworkChangeFeed(int capacity, long initialSequence) {
+        this.capacity = capacity;
+        sequence = initialSequence;
+    }
+
+    public synchronized long sequence() {
+        return sequence;
+    }
+
+    public synchronized int size() {
+        return changes.size();
+    }
+
+    @Override
+    public void onAdded(IdentifiedObject identifiedObject) {
+        publish(NetworkChange.Type.ADDED, identifiedObject);
+    }
+
+    @Override
+    public void onRemoved(IdentifiedObject identifiedObject) {
+        publish(NetworkChange.Type.REMOVED, identifiedObject);
+    }
+
+    @Override
+    public void onReconnected(ConductingEquipment conductingEquipment) {
+        publish(NetworkChange.Type.RECONNECTED, conductingEquipment);
+    }
+
+    @Override
+    public void onFeederChanged(String feederMRID) {
+        publish(NetworkChange.Type.FEEDER_CHANGED, feederMRID, Feeder.class.getSimpleName());
+    }
+
+    public void onReloaded() {
+        publish(NetworkChange.Type.RELOADED, "", "");
+    }
+
+    // Passes the changes after fromSequence to the subscriber, or a RESYNC if some of them are no longer kept, followed by every
+    // new change until the returned unsubscribe is run. The subscriber is called while the feed is locked, so must not block.
+    public synchronized Runnable subscribe(long fromSequence, Consumer<NetworkChange> subscriber) {
+        if ((fromSequence > sequence) || (sequence - fromSequence > changes.size()))
+            subscriber.accept(new NetworkChange(sequence, NetworkChange.Type.RESYNC, "", ""));
+        else
+            changes.stream().filter(change -> change.sequence() > fromSequence).forEach(subscriber);
+
+        subscribers.add(subscriber);
+        return () -> unsubscribe(subscriber);
+    }
+
+    private synchronized void unsubscribe(Consumer<NetworkChange> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    private void publish(NetworkChange.Type type, IdentifiedObject identifiedObject) {
+        publish(type, identifiedObject.getMRID(), identifiedObject.getClass().getSimpleName());
+    }
+
+    private synchronized void publish(NetworkChange.Type type, String mRID, String objectType) {
+        NetworkChange change = new NetworkChange(++sequence, type, mRID, objectType);
+
+        changes.addLast(change);
+        while (changes.size() > capacity)
+            changes.removeFirst();
+
+        subscribers.forEach(subscriber -> subscriber.accept(change));
+    }
+
+}
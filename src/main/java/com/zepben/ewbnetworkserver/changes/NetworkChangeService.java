@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.changes;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.grpc.JsonMethods;
+import io.grpc.*;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The request is {"fromSequence": n}, where n is the sequence of the last change the client received, and each response is a
+// change from NetworkChange.toJson().
+@EverythingIsNonnullByDefault
+public class NetworkChangeService implements BindableService {
+
+    public static final String SERVICE_NAME = "zepben.ewbnetworkserver.NetworkChangeFeed";
+
+    static final MethodDescriptor<JsonObject, JsonObject> STREAM_CHANGES = JsonMethods.serverStreaming(SERVICE_NAME, "StreamChanges");
+
+    private final NetworkChangeFeed networkChangeFeed;
+    private final int maxQueued;
+
+    // Changes are queued for each client while it is not ready to receive them. A client that falls more than maxQueued changes
+    // behind has its stream closed, and can resume from the last change it received.
+    public NetworkChangeService(NetworkChangeFeed networkChangeFeed, int maxQueued) {
+        this.networkChangeFeed = networkChangeFeed;
+        this.maxQueued = maxQueued;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerServiceDefinition.builder(SERVICE_NAME)
+            .addMethod(STREAM_CHANGES, ServerCalls.asyncServerStreamingCall(this::streamChanges))
+            .build();
+    }
+
+    private void streamChanges(JsonObject request, StreamObserver<JsonObject> responseObserver) {
+        long fromSequence;
+        try {
+            fromSequence = request.getLong("fromSequence", 0L);
+        } catch (ClassCastException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("fromSequence must be a number.").asRuntimeException());
+            return;
+        }
+
+        ChangeStream changeStream = new ChangeStream((ServerCallStreamObserver<JsonObject>) responseObserver);
+        changeStream.start(networkChangeFeed.subscribe(fromSequence, changeStream::offer));
+    }
+
+    @EverythingIsNonnullByDefault
+    private class ChangeStream {
+
+        private final ServerCallStreamObserver<JsonObject> observer;
+        private final Queue<NetworkChange> queued = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger numQueued = new AtomicInteger(0);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private volatile Runnable unsubscribe = () -> {
+        };
+
+        ChangeStream(ServerCallStreamObserver<JsonObject> observer) {
+            this.observer = observer;
+            observer.setOnReadyHandler(this::drain);
+            observer.setOnCancelHandler(this::close);
+        }
+
+        void start(Runnable unsubscribe) {
+            this.unsubscribe = unsubscribe;
+            if (closed.get())
+                unsubscribe.run();
+            else
+                drain();
+        }
+
+        void offer(NetworkChange change) {
+            if (closed.get())
+                return;
+
+            if (numQueued.incrementAndGet() > maxQueued) {
+                if (close())
+                    fail();
+                return;
+            }
+
+            queued.add(change);
+            drain();
+        }
+
+        private synchronized void drain() {
+            NetworkChange change;
+            while (!closed.get() && observer.isReady() && ((change = queued.poll()) != null)) {
+                numQueued.decrementAndGet();
+                observer.onNext(change.toJson());
+            }
+        }
+
+        private synchronized void fail() {
+            observer.onError(Status.RESOURCE_EXHAUSTED
+                .withDescription("Too far behind the change feed, resume from the last change received.")
+                .asRuntimeException());
+        }
+
+        private boolean close() {
+            if (!closed.compareAndSet(false, true))
+                return false;
+
+            unsubscribe.run();
+            return true;
+        }
+
+    }
+
+}
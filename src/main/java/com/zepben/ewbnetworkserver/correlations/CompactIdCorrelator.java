@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.idcorrelator.IdCorrelator;
+
+import javax.annotation.Nullable;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// A read optimised IdCorrelator. Correlations are added while the correlations file is loaded, then seal() packs them into a
+// dictionary of the unique ids and, for each system tag, sorted arrays of dictionary indexes in both directions. After sealing
+// it is immutable and no new correlations can be added. A sealed correlator can also be loaded directly from a correlations cache
+// file, in which case the arrays are mapped from the file rather than held on the heap.
+@EverythingIsNonnullByDefault
+public class CompactIdCorrelator implements IdCorrelator {
+
+    @Nullable private Map<String, Integer> loadingIds = new HashMap<>();
+    @Nullable private List<String> loadingStrings = new ArrayList<>();
+    @Nullable private Map<String, PackedPairs> loadingCorrelations = new LinkedHashMap<>();
+
+    private volatile StringDictionary dictionary = new StringDictionary(Collections.emptyList());
+    private volatile Map<String, TagIndex> tagIndexes = Collections.emptyMap();
+
+    @Override
+    public synchronized boolean addCorrelation(String coreId, String systemTag, String systemId) {
+        if ((loadingIds == null) || (loadingCorrelations == null))
+            return false;
+
+        loadingCorrelations.computeIfAbsent(systemTag, tag -> new PackedPairs()).add(pack(loadingId(systemId), loadingId(coreId)));
+        return true;
+    }
+
+    @Override
+    public Set<String> systemTags() {
+        return Collections.unmodifiableSet(tagIndexes.keySet());
+    }
+
+    @Override
+    public Set<String> coreIds(String systemTag, String systemId) {
+        TagIndex tagIndex = tagIndexes.get(systemTag);
+        return tagIndex == null ? Collections.emptySet() : lookup(tagIndex.systemKeys, tagIndex.systemValues, systemId);
+    }
+
+    @Override
+    public Set<String> systemIds(String systemTag, String coreId) {
+        TagIndex tagIndex = tagIndexes.get(systemTag);
+        return tagIndex == null ? Collections.emptySet() : lookup(tagIndex.coreKeys, tagIndex.coreValues, coreId);
+    }
+
+    public synchronized void seal() {
+        if ((loadingStrings == null) || (loadingCorrelations == null))
+            return;
+
+        StringDictionary sealedDictionary = new StringDictionary(loadingStrings);
+
+        int[] remap = new int[loadingStrings.size()];
+        for (int i = 0; i < remap.length; ++i)
+            remap[i] = sealedDictionary.indexOf(loadingStrings.get(i));
+
+        // Release the loading structures before building the indexes to keep the peak memory down.
+        Map<String, PackedPairs> correlations = loadingCorrelations;
+        loadingIds = null;
+        loadingStrings = null;
+        loadingCorrelations = null;
+
+        Map<String, TagIndex> sealedTagIndexes = new LinkedHashMap<>();
+        correlations.forEach((systemTag, pairs) -> sealedTagIndexes.put(systemTag, TagIndex.of(pairs, remap)));
+
+        dictionary = sealedDictionary;
+        tagIndexes = sealedTagIndexes;
+    }
+
+    // Replaces anything added so far with already sealed correlations.
+    synchronized void seal(StringDictionary sealedDictionary, Map<String, TagIndex> sealedTagIndexes) {
+        loadingIds = null;
+        loadingStrings = null;
+        loadingCorrelations = null;
+
+        dictionary = sealedDictionary;
+        tagIndexes = sealedTagIndexes;
+    }
+
+    public boolean isSealed() {
+        return loadingCorrelations == null;
+    }
+
+    public Map<String, Integer> numCorrelations() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        tagIndexes.forEach((systemTag, tagIndex) -> counts.put(systemTag, tagIndex.size()));
+        return counts;
+    }
+
+    public int numIds() {
+        return dictionary.size();
+    }
+
+    // An estimate of the heap used once sealed.
+    public long numBytes() {
+        long numBytes = dictionary.numBytes();
+        for (TagIndex tagIndex : tagIndexes.values())
+            numBytes += 16L * tagIndex.size();
+        return numBytes;
+    }
+
+    StringDictionary dictionary() {
+        return dictionary;
+    }
+
+    Map<String, TagIndex> tagIndexes() {
+        return tagIndexes;
+    }
+
+    private int loadingId(String id) {
+        return loadingIds.computeIfAbsent(id, key -> {
+            loadingStrings.add(key);
+            return loadingStrings.size() - 1;
+        });
+    }
+
+    private Set<String> lookup(IntBuffer keys, IntBuffer values, String id) {
+        int index = dictionary.indexOf(id);
+        if (index < 0)
+            return Collections.emptySet();
+
+        int from = lowerBound(keys, index);
+        if ((from == keys.limit()) || (keys.get(from) != index))
+            return Collections.emptySet();
+
+        Set<String> ids = new LinkedHashSet<>();
+        for (int i = from; (i < keys.limit()) && (keys.get(i) == index); ++i)
+            ids.add(dictionary.get(values.get(i)));
+
+        return ids;
+    }
+
+    private static int lowerBound(IntBuffer keys, int key) {
+        int low = 0;
+        int high = keys.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys.get(mid) < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xffffffffL);
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class PackedPairs {
+
+        private long[] values = new long[16];
+        private int size = 0;
+
+        private void add(long value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+    }
+
+    // The correlations for a single system tag, as (system id, core id) dictionary indexes sorted by system id, and the same pairs
+    // sorted by core id.
+    @EverythingIsNonnullByDefault
+    static final class TagIndex {
+
+        final IntBuffer systemKeys;
+        final IntBuffer systemValues;
+        final IntBuffer coreKeys;
+        final IntBuffer coreValues;
+
+        TagIndex(IntBuffer systemKeys, IntBuffer systemValues, IntBuffer coreKeys, IntBuffer coreValues) {
+            this.systemKeys = systemKeys;
+            this.systemValues = systemValues;
+            this.coreKeys = coreKeys;
+            this.coreValues = coreValues;
+        }
+
+        int size() {
+            return systemKeys.limit();
+        }
+
+        // The pairs are (system id, core id) in loading ids, which are remapped to dictionary indexes.
+        private static TagIndex of(PackedPairs pairs, int[] remap) {
+            long[] bySystem = new long[pairs.size];
+            for (int i = 0; i < pairs.size; ++i)
+                bySystem[i] = pack(remap[(int) (pairs.values[i] >>> 32)], remap[(int) pairs.values[i]]);
+
+            bySystem = sortedUnique(bySystem);
+
+            long[] byCore = new long[bySystem.length];
+            for (int i = 0; i < bySystem.length; ++i)
+                byCore[i] = pack((int) bySystem[i], (int) (bySystem[i] >>> 32));
+
+            Arrays.sort(byCore);
+
+            return new TagIndex(keys(bySystem), values(bySystem), keys(byCore), values(byCore));
+        }
+
+        private static long[] sortedUnique(long[] values) {
+            Arrays.sort(values);
+
+            int size = 0;
+            for (int i = 0; i < values.length; ++i) {
+                if ((i == 0) || (values[i] != values[i - 1]))
+                    values[size++] = values[i];
+            }
+
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+
+        private static IntBuffer keys(long[] pairs) {
+            int[] keys = new int[pairs.length];
+            for (int i = 0; i < pairs.length; ++i)
+                keys[i] = (int) (pairs[i] >>> 32);
+            return IntBuffer.wrap(keys);
+        }
+
+        private static IntBuffer values(long[] pairs) {
+            int[] values = new int[pairs.length];
+            for (int i = 0; i < pairs.length; ++i)
+                values[i] = (int) pairs[i];
+            return IntBuffer.wrap(values);
+        }
+
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A binary copy of a sealed CompactIdCorrelator, written next to the correlations JSON file the first time it is loaded. Later
+// loads map the file straight into the correlator instead of parsing the JSON. The cache records the size and modification time
+// of the JSON file it was built from, and is ignored (and rewritten) if they no longer match.
+//
+// The layout is big endian, with every section aligned to 4 bytes:
+//   header:     magic, version, source size (long), source modified millis (long), number of ids, number of id bytes
+//   dictionary: (number of ids + 1) id offsets, the UTF-8 id bytes
+//   tags:       number of tags, then for each tag its UTF-8 name length and bytes, the number of correlations, and the system
+//               keys, system values, core keys and core values arrays
+@EverythingIsNonnullByDefault
+public class CorrelationsCacheFile {
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    static final String SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x45574249;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    public Path path(Path correlationsFile) {
+        return correlationsFile.resolveSibling(correlationsFile.getFileName() + SUFFIX);
+    }
+
+    // Returns false if there is no usable cache for the correlations file, in which case the correlator is left untouched.
+    public boolean read(Path correlationsFile, CompactIdCorrelator idCorrelator) {
+        Path cacheFile = path(correlationsFile);
+        if (!Files.exists(cacheFile))
+            return false;
+
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                logger.warn("Ignoring ID correlations cache '{}', it is too large to map.", cacheFile);
+                return false;
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!matchesSource(buffer, correlationsFile)) {
+                logger.info("Ignoring ID correlations cache '{}', it is out of date.", cacheFile);
+                return false;
+            }
+
+            load(buffer, idCorrelator);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring ID correlations cache '{}': {}", cacheFile, e.getMessage());
+            return false;
+        }
+    }
+
+    // The correlator must be sealed. Returns false if the cache could not be written, which only means the next load will have
+    // to read the JSON again.
+    public boolean write(Path correlationsFile, CompactIdCorrelator idCorrelator) {
+        Path cacheFile = path(correlationsFile);
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), COPY_BUFFER_SIZE))) {
+                save(out, correlationsFile, idCorrelator);
+            }
+
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to write ID correlations cache '{}': {}", cacheFile, e.getMessage());
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // Nothing more we can do, the temporary file is just left behind.
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean matchesSource(ByteBuffer buffer, Path correlationsFile) throws IOException {
+        check(buffer.capacity() >= HEADER_SIZE, "the header is truncated");
+        check(buffer.getInt(0) == MAGIC, "it is not an ID correlations cache");
+        check(buffer.getInt(4) == VERSION, "it was written by an incompatible version");
+
+        return (buffer.getLong(8) == Files.size(correlationsFile))
+            && (buffer.getLong(16) == Files.getLastModifiedTime(correlationsFile).toMillis());
+    }
+
+    private static void load(ByteBuffer buffer, CompactIdCorrelator idCorrelator) {
+        int numIds = buffer.getInt(24);
+        int numIdBytes = buffer.getInt(28);
+        check((numIds >= 0) && (numIdBytes >= 0), "the dictionary size is invalid");
+
+        int position = HEADER_SIZE;
+        IntBuffer offsets = ints(buffer, position, numIds + 1);
+        position += 4 * (numIds + 1);
+        ByteBuffer bytes = bytes(buffer, position, numIdBytes);
+        position += align(numIdBytes);
+
+        check(offsets.get(numIds) == numIdBytes, "the dictionary is corrupt");
+
+        int numTags = readInt(buffer, position);
+        position += 4;
+
+        Map<String, CompactIdCorrelator.TagIndex> tagIndexes = new LinkedHashMap<>();
+        for (int tag = 0; tag < numTags; ++tag) {
+            int numTagBytes = readInt(buffer, position);
+            position += 4;
+            byte[] tagBytes = new byte[numTagBytes];
+            bytes(buffer, position, numTagBytes).get(tagBytes);
+            position += align(numTagBytes);
+
+            int numCorrelations = readInt(buffer, position);
+            position += 4;
+
+            IntBuffer[] arrays = new IntBuffer[4];
+            for (int i = 0; i < arrays.length; ++i) {
+                arrays[i] = ints(buffer, position, numCorrelations);
+                position += 4 * numCorrelations;
+            }
+
+            tagIndexes.put(new String(tagBytes, StandardCharsets.UTF_8), new CompactIdCorrelator.TagIndex(arrays[0], arrays[1], arrays[2], arrays[3]));
+        }
+
+        check(position == buffer.capacity(), "it has unexpected trailing data");
+
+        idCorrelator.seal(new StringDictionary(bytes, offsets), tagIndexes);
+    }
+
+    private static void save(DataOutputStream out, Path correlationsFile, CompactIdCorrelator idCorrelator) throws IOException {
+        StringDictionary dictionary = idCorrelator.dictionary();
+        ByteBuffer bytes = dictionary.bytes();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(Files.size(correlationsFile));
+        out.writeLong(Files.getLastModifiedTime(correlationsFile).toMillis());
+        out.writeInt(dictionary.size());
+        out.writeInt(bytes.remaining());
+
+        writeInts(out, dictionary.offsets());
+        writeBytes(out, bytes);
+
+        Map<String, CompactIdCorrelator.TagIndex> tagIndexes = idCorrelator.tagIndexes();
+        out.writeInt(tagIndexes.size());
+        for (Map.Entry<String, CompactIdCorrelator.TagIndex> entry : tagIndexes.entrySet()) {
+            byte[] tagBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(tagBytes.length);
+            writeBytes(out, ByteBuffer.wrap(tagBytes));
+
+            CompactIdCorrelator.TagIndex tagIndex = entry.getValue();
+            out.writeInt(tagIndex.size());
+            writeInts(out, tagIndex.systemKeys.duplicate());
+            writeInts(out, tagIndex.systemValues.duplicate());
+            writeInts(out, tagIndex.coreKeys.duplicate());
+            writeInts(out, tagIndex.coreValues.duplicate());
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, IntBuffer ints) throws IOException {
+        ints.rewind();
+        while (ints.hasRemaining())
+            out.writeInt(ints.get());
+    }
+
+    // Writes the bytes followed by the padding needed to keep the next section aligned.
+    private static void writeBytes(DataOutputStream out, ByteBuffer bytes) throws IOException {
+        bytes.rewind();
+        int length = bytes.remaining();
+
+        byte[] chunk = new byte[Math.min(length, COPY_BUFFER_SIZE)];
+        while (bytes.hasRemaining()) {
+            int size = Math.min(chunk.length, bytes.remaining());
+            bytes.get(chunk, 0, size);
+            out.write(chunk, 0, size);
+        }
+
+        for (int i = length; i < align(length); ++i)
+            out.writeByte(0);
+    }
+
+    private static int readInt(ByteBuffer buffer, int position) {
+        check(position + 4 <= buffer.capacity(), "it is truncated");
+        return buffer.getInt(position);
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, int position, int count) {
+        check((count >= 0) && (4L * count <= buffer.capacity()), "an array size is invalid");
+        return bytes(buffer, position, 4 * count).asIntBuffer();
+    }
+
+    private static ByteBuffer bytes(ByteBuffer buffer, int position, int length) {
+        check((length >= 0) && ((long) position + length <= buffer.capacity()), "it is truncated");
+
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position);
+        slice.limit(position + length);
+        return slice.slice();
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static void check(boolean condition, String reason) {
+        if (!condition)
+            throw new IllegalStateException(reason);
+    }
+
+}
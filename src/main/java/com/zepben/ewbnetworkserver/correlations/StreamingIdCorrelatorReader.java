@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.idcorrelator.IdCorrelator;
+import com.zepben.idcorrelator.io.FailedCorrelationInfo;
+import com.zepben.idcorrelator.io.IdCorrelatorReadException;
+import com.zepben.idcorrelator.io.IdCorrelatorReader;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.google.common.base.Strings.nullToEmpty;
+
+// Reads a correlations JSON file a token at a time, adding each correlation as soon as it has been parsed rather than building
+// the whole document in memory first. A correlation is any object with "coreId" and "systemId" string fields, and a "systemTag"
+// field or, if it has none, the name of the field it is nested under, so the reader doesn't depend on how the file is grouped.
+// Objects with only some of the correlation fields, or with fields that aren't strings, are reported as failed correlations.
+@EverythingIsNonnullByDefault
+public class StreamingIdCorrelatorReader implements IdCorrelatorReader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Path path;
+
+    public StreamingIdCorrelatorReader(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Collection<FailedCorrelationInfo> read(IdCorrelator idCorrelator) throws IdCorrelatorReadException {
+        List<FailedCorrelationInfo> failures = new ArrayList<>();
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+             JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if (token == null)
+                throw new IdCorrelatorReadException(String.format("'%s' is empty.", path));
+
+            readValue(parser, token, null, idCorrelator, failures);
+        } catch (IOException e) {
+            throw new IdCorrelatorReadException(String.format("Failed to read '%s': %s", path, e.getMessage()), e);
+        }
+
+        return failures;
+    }
+
+    private void readValue(JsonParser parser,
+                           JsonToken token,
+                           @Nullable String fieldName,
+                           IdCorrelator idCorrelator,
+                           List<FailedCorrelationInfo> failures) throws IOException, IdCorrelatorReadException {
+        if (token == JsonToken.START_OBJECT)
+            readObject(parser, fieldName, idCorrelator, failures);
+        else if (token == JsonToken.START_ARRAY) {
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY)
+                readValue(parser, token, fieldName, idCorrelator, failures);
+        }
+    }
+
+    private void readObject(JsonParser parser,
+                            @Nullable String fieldName,
+                            IdCorrelator idCorrelator,
+                            List<FailedCorrelationInfo> failures) throws IOException, IdCorrelatorReadException {
+        String coreId = null;
+        String systemTag = null;
+        String systemId = null;
+        boolean hasCorrelationFields = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            boolean isCorrelationField = "coreId".equals(name) || "systemTag".equals(name) || "systemId".equals(name);
+            hasCorrelationFields |= isCorrelationField;
+
+            if (isCorrelationField && (token == JsonToken.VALUE_STRING)) {
+                if ("coreId".equals(name))
+                    coreId = parser.getText();
+                else if ("systemTag".equals(name))
+                    systemTag = parser.getText();
+                else
+                    systemId = parser.getText();
+            } else
+                readValue(parser, token, name, idCorrelator, failures);
+        }
+
+        if (!hasCorrelationFields)
+            return;
+
+        if (systemTag == null)
+            systemTag = fieldName;
+
+        if ((coreId == null) || (systemTag == null) || (systemId == null)) {
+            failures.add(new FailedCorrelationInfo(nullToEmpty(systemTag),
+                nullToEmpty(coreId),
+                nullToEmpty(systemId),
+                String.format("Incomplete correlation near line %d, expected string coreId, systemId and systemTag fields.",
+                    parser.getCurrentLocation().getLineNr())));
+            return;
+        }
+
+        if (!idCorrelator.addCorrelation(coreId, systemTag, systemId))
+            throw new IdCorrelatorReadException(String.format("Failed to add correlation [systemTag: %s, coreId: %s, systemId: %s].", systemTag, coreId, systemId));
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+// A sorted set of strings stored as UTF-8 in a single buffer, rather than as millions of separate String objects. Strings are
+// identified by their index in the sorted order, and looked up with a binary search. The buffers are either on the heap or
+// mapped from a correlations cache file, and are only ever read with absolute gets so the dictionary can be shared between threads.
+@EverythingIsNonnullByDefault
+final class StringDictionary {
+
+    private final ByteBuffer bytes;
+    private final IntBuffer offsets;
+
+    // The strings must be unique.
+    StringDictionary(List<String> strings) {
+        byte[][] encoded = new byte[strings.size()][];
+        int numBytes = 0;
+        for (int i = 0; i < encoded.length; ++i) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            numBytes += encoded[i].length;
+        }
+
+        Arrays.sort(encoded, StringDictionary::compare);
+
+        byte[] sortedBytes = new byte[numBytes];
+        int[] sortedOffsets = new int[encoded.length + 1];
+        for (int i = 0; i < encoded.length; ++i) {
+            System.arraycopy(encoded[i], 0, sortedBytes, sortedOffsets[i], encoded[i].length);
+            sortedOffsets[i + 1] = sortedOffsets[i] + encoded[i].length;
+        }
+
+        bytes = ByteBuffer.wrap(sortedBytes);
+        offsets = IntBuffer.wrap(sortedOffsets);
+    }
+
+    // The offsets must have one more entry than there are strings, with the last marking the end of the bytes.
+    StringDictionary(ByteBuffer bytes, IntBuffer offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+    }
+
+    int size() {
+        return offsets.limit() - 1;
+    }
+
+    String get(int index) {
+        int from = offsets.get(index);
+        byte[] encoded = new byte[offsets.get(index + 1) - from];
+        for (int i = 0; i < encoded.length; ++i)
+            encoded[i] = bytes.get(from + i);
+
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    // Returns -1 if the string is not in the dictionary.
+    int indexOf(String string) {
+        byte[] key = string.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(offsets.get(mid), offsets.get(mid + 1), key);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+
+        return -1;
+    }
+
+    long numBytes() {
+        return bytes.limit() + 4L * offsets.limit();
+    }
+
+    ByteBuffer bytes() {
+        return bytes.duplicate();
+    }
+
+    IntBuffer offsets() {
+        return offsets.duplicate();
+    }
+
+    // Compares as unsigned bytes, which orders UTF-8 strings by code point.
+    private int compare(int from, int to, byte[] key) {
+        int length = Math.min(to - from, key.length);
+        for (int i = 0; i < length; ++i) {
+            int cmp = Integer.compare(bytes.get(from + i) & 0xff, key[i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(to - from, key.length);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; ++i) {
+            int cmp = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.database;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Wraps a connection so the rows DatabaseWriter inserts one at a time are sent to sqlite in batches, all in a single transaction. Each
+// prepared statement queues its updates until it has a full batch, and every queued update is sent before the transaction is committed
+// or the statement is closed. DatabaseWriter only checks that each update changed a row, so queued updates report that they did, which
+// means a failed update is only reported when its batch is sent. The table and rows of the batch are logged when that happens, as the
+// object DatabaseWriter reports the failure against is whichever one filled the batch.
+@EverythingIsNonnullByDefault
+class BatchingConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+    private static final Pattern INSERT_TABLE = Pattern.compile("^\\s*INSERT\\s+(?:OR\\s+\\w+\\s+)?INTO\\s+[\"`\\[]?(\\w+)",
+        Pattern.CASE_INSENSITIVE);
+
+    static Connection wrap(Connection connection, int batchSize) throws SQLException {
+        connection.setAutoCommit(false);
+
+        List<BatchingStatement> statements = new ArrayList<>();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    PreparedStatement statement = (PreparedStatement) invoke(connection, method, args);
+                    if (args.length > 1)
+                        return statement;
+
+                    BatchingStatement batchingStatement = new BatchingStatement(statement, tableOf((String) args[0]), batchSize);
+                    statements.add(batchingStatement);
+                    return batchingStatement.proxy();
+                case "setAutoCommit":
+                    return null;
+                case "commit":
+                    for (BatchingStatement batching : statements)
+                        batching.flush();
+                    connection.commit();
+                    return null;
+                default:
+                    return invoke(connection, method, args);
+            }
+        });
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class BatchingStatement {
+
+        private final PreparedStatement statement;
+        private final String table;
+        private final int batchSize;
+        private int queued = 0;
+        private long sent = 0;
+
+        BatchingStatement(PreparedStatement statement, String table, int batchSize) {
+            this.statement = statement;
+            this.table = table;
+            this.batchSize = batchSize;
+        }
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                if (method.getName().equals("executeUpdate") && (args == null)) {
+                    statement.addBatch();
+                    if (++queued >= batchSize)
+                        flush();
+                    return 1;
+                } else if (method.getName().equals("close")) {
+                    if (!statement.isClosed())
+                        flush();
+                    statement.close();
+                    return null;
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        void flush() throws SQLException {
+            if (queued == 0)
+                return;
+
+            int batch = queued;
+            queued = 0;
+            try {
+                statement.executeBatch();
+                sent += batch;
+            } catch (SQLException e) {
+                // Depending on its version, sqlite-jdbc reports a failed batch as a BatchUpdateException with the counts of the
+                // updates before the failure, or as a plain SQLException, in which case only the rows of the batch are known.
+                String rows = (e instanceof BatchUpdateException) ?
+                    "row " + (sent + failedIndex(((BatchUpdateException) e).getUpdateCounts()) + 1) :
+                    "rows " + (sent + 1) + " to " + (sent + batch);
+                logger.error("Failed to write {} of {} in a batch of {}: {}", rows, table, batch, e.getMessage());
+                throw e;
+            }
+        }
+
+        // Drivers either stop at the first failure, returning the counts of the updates before it, or mark each failed update.
+        private static int failedIndex(int[] updateCounts) {
+            for (int i = 0; i < updateCounts.length; ++i) {
+                if (updateCounts[i] == Statement.EXECUTE_FAILED)
+                    return i;
+            }
+            return updateCounts.length;
+        }
+
+    }
+
+    private static String tableOf(String sql) {
+        Matcher matcher = INSERT_TABLE.matcher(sql);
+        return matcher.find() ? matcher.group(1) : "'" + sql + "'";
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private BatchingConnection() {
+    }
+
+}
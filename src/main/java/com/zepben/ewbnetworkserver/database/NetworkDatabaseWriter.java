@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.database;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.database.sqlite.DatabaseWriter;
+import com.zepben.ewbnetworkserver.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// Writes services to a new network database with the same schema DatabaseReader loads. The database is written to a temporary file
+// next to the final one, which only replaces it once it is complete, so readers never see a partial database. The temporary file is
+// thrown away if the write fails, so sqlite doesn't need its journal or to sync to disk while writing it. It is synced to disk once
+// it is complete and before it is moved, so a crash can't leave the final file pointing at a partially written database.
+@EverythingIsNonnullByDefault
+public class NetworkDatabaseWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    static final int BATCH_SIZE = 10000;
+
+    private final String databaseFile;
+    private final DatabaseSaver databaseSaver;
+
+    // Disabled if the database file is empty.
+    public NetworkDatabaseWriter(String databaseFile) {
+        this(databaseFile, NetworkDatabaseWriter::saveDatabase);
+    }
+
+    NetworkDatabaseWriter(String databaseFile, DatabaseSaver databaseSaver) {
+        this.databaseFile = databaseFile;
+        this.databaseSaver = databaseSaver;
+    }
+
+    public boolean isEnabled() {
+        return !databaseFile.isEmpty();
+    }
+
+    public String databaseFile() {
+        return databaseFile;
+    }
+
+    public boolean save(Services services) {
+        Path target = Paths.get(databaseFile);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temporary);
+            if (!databaseSaver.save(temporary, services)) {
+                logger.error("Failed to write the network database '{}'.", databaseFile);
+                Files.deleteIfExists(temporary);
+                return false;
+            }
+
+            try (FileChannel channel = FileChannel.open(temporary, WRITE)) {
+                channel.force(true);
+            }
+
+            Files.move(temporary, target, REPLACE_EXISTING, ATOMIC_MOVE);
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to write the network database '{}': {}", databaseFile, e.getMessage(), e);
+            deleteTemporary(temporary);
+            return false;
+        }
+    }
+
+    private static void deleteTemporary(Path temporary) {
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            logger.warn("Failed to delete the temporary network database '{}': {}", temporary, e.getMessage());
+        }
+    }
+
+    private static boolean saveDatabase(Path databaseFile, Services services) {
+        return new DatabaseWriter(databaseFile.toString(), NetworkDatabaseWriter::openBatching)
+            .save(services.metadataCollection, Arrays.asList(services.networkService(), services.diagramService(), services.customerService()));
+    }
+
+    private static Connection openBatching(String url) {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.OFF);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.OFF);
+        try {
+            return BatchingConnection.wrap(config.createConnection(url), BATCH_SIZE);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    interface DatabaseSaver {
+
+        boolean save(Path databaseFile, Services services) throws Exception;
+
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.database;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.database.sqlite.readers.CustomerCIMReader;
+import com.zepben.evolve.database.sqlite.readers.CustomerServiceReader;
+import com.zepben.evolve.database.sqlite.readers.DiagramCIMReader;
+import com.zepben.evolve.database.sqlite.readers.DiagramServiceReader;
+import com.zepben.evolve.database.sqlite.readers.MetadataCollectionReader;
+import com.zepben.evolve.database.sqlite.readers.MetadataEntryReader;
+import com.zepben.evolve.database.sqlite.readers.NetworkCIMReader;
+import com.zepben.evolve.database.sqlite.readers.NetworkServiceReader;
+import com.zepben.evolve.database.sqlite.tables.TableVersion;
+import com.zepben.evolve.services.common.meta.MetadataCollection;
+import com.zepben.evolve.services.customer.CustomerService;
+import com.zepben.evolve.services.diagram.DiagramService;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.evolve.services.network.tracing.Tracing;
+import kotlin.jvm.functions.Function0;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Loads a network database over several read-only connections. The metadata, network, diagram and customer tables don't reference
+// each other, so each group is read on its own connection in parallel into its own service. Once they have all been read, the
+// network is post processed on the calling thread in the same way as DatabaseReader, so the loaded services are the same.
+@EverythingIsNonnullByDefault
+public class ParallelDatabaseReader {
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    private static final int QUERY_TIMEOUT_SECONDS = 60;
+
+    private final Path databaseFile;
+    private final int numConnections;
+    private final ConnectionProvider connectionProvider;
+
+    public ParallelDatabaseReader(Path databaseFile, int numConnections) {
+        this(databaseFile, numConnections, ParallelDatabaseReader::openReadOnly);
+    }
+
+    ParallelDatabaseReader(Path databaseFile, int numConnections, ConnectionProvider connectionProvider) {
+        this.databaseFile = databaseFile;
+        this.numConnections = Math.max(1, numConnections);
+        this.connectionProvider = connectionProvider;
+    }
+
+    public boolean load(MetadataCollection metadataCollection, NetworkService networkService, DiagramService diagramService, CustomerService customerService) {
+        List<TableGroup> tableGroups = Arrays.asList(
+            new TableGroup("metadata", connection -> new MetadataCollectionReader(statements(connection)).load(new MetadataEntryReader(metadataCollection))),
+            new TableGroup("network", connection -> new NetworkServiceReader(statements(connection)).load(new NetworkCIMReader(networkService))),
+            new TableGroup("diagram", connection -> new DiagramServiceReader(statements(connection)).load(new DiagramCIMReader(diagramService))),
+            new TableGroup("customer", connection -> new CustomerServiceReader(statements(connection)).load(new CustomerCIMReader(customerService))));
+
+        return load(tableGroups, () -> {
+            Tracing.setPhases().run(networkService);
+            Tracing.assignEquipmentContainersToFeeders().run(networkService);
+        });
+    }
+
+    boolean load(List<TableGroup> tableGroups, Runnable postLoad) {
+        if (!checkVersion())
+            return false;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numConnections, tableGroups.size()), runnable -> {
+            Thread thread = new Thread(runnable, "database-reader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (TableGroup tableGroup : tableGroups)
+                futures.add(executor.submit(() -> read(tableGroup)));
+
+            // Wait for every group, even if one fails, so nothing is still writing to the services when we return.
+            boolean status = true;
+            for (Future<Boolean> future : futures)
+                status &= waitFor(future);
+
+            if (!status)
+                return false;
+
+            postLoad.run();
+            return true;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean checkVersion() {
+        int supportedVersion = new TableVersion().getSUPPORTED_VERSION();
+        try (Connection connection = connectionProvider.open(databaseFile);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version FROM version")) {
+            if (resultSet.next() && (resultSet.getInt(1) == supportedVersion))
+                return true;
+
+            logger.error("Unsupported network database version, expected v{}.", supportedVersion);
+            return false;
+        } catch (SQLException e) {
+            logger.error("Failed to read the network database version: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private boolean read(TableGroup tableGroup) throws Exception {
+        long start = System.nanoTime();
+        try (Connection connection = connectionProvider.open(databaseFile)) {
+            if (!tableGroup.reader.read(connection)) {
+                logger.error("Failed to read the {} tables.", tableGroup.name);
+                return false;
+            }
+        }
+
+        logger.debug("Read the {} tables in {} ms.", tableGroup.name, (System.nanoTime() - start) / 1000000);
+        return true;
+    }
+
+    private static boolean waitFor(Future<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.error("Exception caught while reading the network database: {}", e.getCause().getMessage(), e.getCause());
+            return false;
+        }
+    }
+
+    private static Function0<Statement> statements(Connection connection) {
+        return () -> {
+            try {
+                Statement statement = connection.createStatement();
+                statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                return statement;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static Connection openReadOnly(Path databaseFile) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        return config.createConnection("jdbc:sqlite:" + databaseFile);
+    }
+
+    @FunctionalInterface
+    interface ConnectionProvider {
+
+        Connection open(Path databaseFile) throws SQLException;
+
+    }
+
+    @FunctionalInterface
+    interface TableReader {
+
+        boolean read(Connection connection) throws Exception;
+
+    }
+
+    @EverythingIsNonnullByDefault
+    static class TableGroup {
+
+        private final String name;
+        private final TableReader reader;
+
+        TableGroup(String name, TableReader reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+
+    }
+
+}
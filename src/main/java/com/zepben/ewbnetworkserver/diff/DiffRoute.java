@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.diff;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.models.HistoricDates;
+import com.zepben.vertxutils.routing.Respond;
+import com.zepben.vertxutils.routing.Route;
+import com.zepben.vertxutils.routing.RouteVersion;
+import com.zepben.vertxutils.routing.VersionableRoute;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static io.vertx.core.http.HttpMethod.GET;
+
+// Compares the network for another date with this one, loading the other date through HistoricDates if it isn't already held.
+// Comparing snapshots takes a while on a large network, so it is handled off the event loop.
+@EverythingIsNonnullByDefault
+public class DiffRoute {
+
+    static final String DATE_PARAM = "date";
+
+    private final HistoricDates historicDates;
+    private final Supplier<NetworkSnapshot> snapshot;
+
+    @EverythingIsNonnullByDefault
+    public enum AvailableRoute implements VersionableRoute {
+        DATE(RouteVersion.since(1));
+
+        private final RouteVersion rv;
+
+        AvailableRoute(RouteVersion rv) {
+            this.rv = rv;
+        }
+
+        @Override
+        public RouteVersion routeVersion() {
+            return rv;
+        }
+    }
+
+    static Function<AvailableRoute, Route> routeFactory(HistoricDates historicDates, Supplier<NetworkSnapshot> snapshot) {
+        DiffRoute route = new DiffRoute(historicDates, snapshot);
+
+        return availableRoute -> {
+            if (availableRoute == AvailableRoute.DATE) {
+                return Route.builder()
+                    .method(GET)
+                    .path("/dates/:" + DATE_PARAM)
+                    .addBlockingHandler(route::diffDate)
+                    .build();
+            }
+            throw new IllegalArgumentException("INTERNAL ERROR: Missing route factory method.");
+        };
+    }
+
+    void diffDate(RoutingContext context) {
+        if (!historicDates.isEnabled()) {
+            Respond.withJson(context, NOT_FOUND, new JsonObject().put("message", "Historic dates are not enabled."));
+            return;
+        }
+
+        String dateParam = context.pathParam(DATE_PARAM);
+        LocalDate date;
+        try {
+            date = LocalDate.parse(dateParam);
+        } catch (DateTimeParseException e) {
+            Respond.withJson(context, BAD_REQUEST, new JsonObject()
+                .put("message", "Invalid date '" + dateParam + "', expected yyyy-MM-dd."));
+            return;
+        }
+
+        historicDates.withModel(context, date, model ->
+            Respond.withJson(context, OK, NetworkChangeSet.between(model.snapshot(), snapshot.get()).toJson()));
+    }
+
+    DiffRoute(HistoricDates historicDates, Supplier<NetworkSnapshot> snapshot) {
+        this.historicDates = historicDates;
+        this.snapshot = snapshot;
+    }
+
+}
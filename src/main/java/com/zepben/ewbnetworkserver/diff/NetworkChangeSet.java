@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.diff;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// The mRIDs of the objects that were added, removed or modified between two networks, for each type of object that changed.
+@EverythingIsNonnullByDefault
+public class NetworkChangeSet {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Map<String, TypeChanges> changesByType;
+
+    public static NetworkChangeSet between(NetworkSnapshot from, NetworkSnapshot to) {
+        Set<String> types = new HashSet<>(from.types());
+        types.addAll(to.types());
+
+        Map<String, TypeChanges> changesByType = types.parallelStream()
+            .map(type -> TypeChanges.between(type, from, to))
+            .filter(changes -> !changes.isEmpty())
+            .collect(Collectors.toMap(changes -> changes.type, changes -> changes, (first, second) -> first, TreeMap::new));
+
+        return new NetworkChangeSet(from.date(), to.date(), changesByType);
+    }
+
+    public boolean isEmpty() {
+        return changesByType.isEmpty();
+    }
+
+    public int added() {
+        return changesByType.values().stream().mapToInt(changes -> changes.added.size()).sum();
+    }
+
+    public int removed() {
+        return changesByType.values().stream().mapToInt(changes -> changes.removed.size()).sum();
+    }
+
+    public int modified() {
+        return changesByType.values().stream().mapToInt(changes -> changes.modified.size()).sum();
+    }
+
+    public JsonObject toJson() {
+        JsonObject types = new JsonObject();
+        changesByType.forEach((type, changes) -> types.put(type, new JsonObject()
+            .put("added", new JsonArray(changes.added))
+            .put("removed", new JsonArray(changes.removed))
+            .put("modified", new JsonArray(changes.modified))));
+
+        return new JsonObject()
+            .put("from", from.toString())
+            .put("to", to.toString())
+            .put("added", added())
+            .put("removed", removed())
+            .put("modified", modified())
+            .put("types", types);
+    }
+
+    private NetworkChangeSet(LocalDate from, LocalDate to, Map<String, TypeChanges> changesByType) {
+        this.from = from;
+        this.to = to;
+        this.changesByType = changesByType;
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class TypeChanges {
+
+        final String type;
+        final List<String> added;
+        final List<String> removed;
+        final List<String> modified;
+
+        static TypeChanges between(String type, NetworkSnapshot from, NetworkSnapshot to) {
+            Map<String, Long> before = from.hashes(type);
+            Map<String, Long> after = to.hashes(type);
+
+            return new TypeChanges(type,
+                after.keySet().stream().filter(mRID -> !before.containsKey(mRID)).sorted().collect(Collectors.toList()),
+                before.keySet().stream().filter(mRID -> !after.containsKey(mRID)).sorted().collect(Collectors.toList()),
+                after.entrySet().stream()
+                    .filter(entry -> before.containsKey(entry.getKey()) && !before.get(entry.getKey()).equals(entry.getValue()))
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .collect(Collectors.toList()));
+        }
+
+        boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+        }
+
+        private TypeChanges(String type, List<String> added, List<String> removed, List<String> modified) {
+            this.type = type;
+            this.added = added;
+            this.removed = removed;
+            this.modified = modified;
+        }
+
+    }
+
+}
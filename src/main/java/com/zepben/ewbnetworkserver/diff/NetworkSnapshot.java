@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.diff;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.digest.CanonicalEncoder;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// A 64-bit hash of the content of each object in a network, grouped by type, which is all that is needed to compare it with another
+// network. Each object is hashed from the same canonical encoding of all of its attributes as the digests, with the types hashed in
+// parallel.
+@EverythingIsNonnullByDefault
+public class NetworkSnapshot {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final LocalDate date;
+    private final Map<String, Map<String, Long>> hashesByType;
+
+    public static NetworkSnapshot of(LocalDate date, NetworkService networkService, CanonicalEncoder canonicalEncoder) {
+        Map<String, List<PowerSystemResource>> objectsByType = networkService.listOf(PowerSystemResource.class)
+            .stream()
+            .collect(Collectors.groupingBy(psr -> psr.getClass().getSimpleName()));
+
+        Map<String, Map<String, Long>> hashesByType = objectsByType.entrySet()
+            .parallelStream()
+            .collect(Collectors.toConcurrentMap(Map.Entry::getKey, entry -> hash(entry.getValue(), canonicalEncoder)));
+
+        return new NetworkSnapshot(date, hashesByType);
+    }
+
+    public LocalDate date() {
+        return date;
+    }
+
+    public int size() {
+        return hashesByType.values().stream().mapToInt(Map::size).sum();
+    }
+
+    Set<String> types() {
+        return hashesByType.keySet();
+    }
+
+    Map<String, Long> hashes(String type) {
+        return hashesByType.getOrDefault(type, Collections.emptyMap());
+    }
+
+    private static Map<String, Long> hash(List<PowerSystemResource> objects, CanonicalEncoder canonicalEncoder) {
+        Map<String, Long> hashes = new HashMap<>(objects.size() * 4 / 3 + 1);
+        objects.forEach(psr -> hashes.put(psr.getMRID(), HASH_FUNCTION.hashBytes(canonicalEncoder.encode(psr)).asLong()));
+        return hashes;
+    }
+
+    NetworkSnapshot(LocalDate date, Map<String, Map<String, Long>> hashesByType) {
+        this.date = date;
+        this.hashesByType = hashesByType;
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.UnsignedBytes;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.Equipment;
+import com.zepben.evolve.cim.iec61970.base.core.EquipmentContainer;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Encodes everything that can be read from an object through its public getters, so objects with the same content always encode
+// to the same bytes and any change to an attribute changes them. Getters are encoded in name order. Collections are sorted, other
+// than lists of plain values such as position points, as the order of identified objects only reflects the order they were added
+// in. Equipment and equipment containers the object refers to are encoded as their type and mRID, as they are hashed as objects
+// of their own. Other identified objects it refers to directly, such as its terminals, transformer ends, location, asset info and
+// base voltage, are encoded in full, and anything further away by its type and mRID.
+@EverythingIsNonnullByDefault
+public class CanonicalEncoder {
+
+    // Plain objects are followed no further than this, in case a getter leads somewhere unexpected.
+    private static final int MAX_DEPTH = 6;
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INTEGER = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte STRING = 4;
+    private static final byte ENUM = 5;
+    private static final byte LIST = 6;
+    private static final byte SET = 7;
+    private static final byte MAP = 8;
+    private static final byte OBJECT = 9;
+    private static final byte REFERENCE = 10;
+    private static final byte FAILED = 11;
+
+    private static final ClassValue<List<Method>> GETTERS = new ClassValue<List<Method>>() {
+        @Override
+        protected List<Method> computeValue(Class<?> type) {
+            return getters(type);
+        }
+    };
+
+    public byte[] encode(IdentifiedObject identifiedObject) {
+        ByteArrayDataOutput output = ByteStreams.newDataOutput();
+        encodeValue(identifiedObject, 0, output, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return output.toByteArray();
+    }
+
+    private void encodeValue(@Nullable Object value, int depth, ByteArrayDataOutput output, Set<Object> path) {
+        if (value == null)
+            output.writeByte(NULL);
+        else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte)) {
+            output.writeByte(INTEGER);
+            output.writeLong(((Number) value).longValue());
+        } else if ((value instanceof Double) || (value instanceof Float)) {
+            output.writeByte(DOUBLE);
+            output.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if ((value instanceof CharSequence) || (value instanceof Character) || (value instanceof Number)) {
+            output.writeByte(STRING);
+            writeString(value.toString(), output);
+        } else if (value instanceof Enum) {
+            output.writeByte(ENUM);
+            writeString(((Enum<?>) value).name(), output);
+        } else if (value instanceof IdentifiedObject)
+            encodeIdentifiedObject((IdentifiedObject) value, depth, output, path);
+        else if ((value instanceof List) && ((List<?>) value).stream().noneMatch(item -> item instanceof IdentifiedObject)) {
+            output.writeByte(LIST);
+            List<?> list = (List<?>) value;
+            output.writeInt(list.size());
+            list.forEach(item -> encodeValue(item, depth, output, path));
+        } else if (value.getClass().isArray()) {
+            output.writeByte(LIST);
+            int length = Array.getLength(value);
+            output.writeInt(length);
+            for (int i = 0; i < length; ++i)
+                encodeValue(Array.get(value, i), depth, output, path);
+        } else if (value instanceof Collection) {
+            output.writeByte(SET);
+            List<byte[]> items = new ArrayList<>();
+            ((Collection<?>) value).forEach(item -> items.add(encodeSeparately(item, null, depth, path)));
+            writeSorted(items, output);
+        } else if (value instanceof Map) {
+            output.writeByte(MAP);
+            List<byte[]> entries = new ArrayList<>();
+            ((Map<?, ?>) value).forEach((key, item) -> entries.add(encodeSeparately(key, item, depth, path)));
+            writeSorted(entries, output);
+        } else if (value.getClass().getName().startsWith("java.")) {
+            // Dates, times and the like have a canonical string form, and their internals may not be accessible.
+            output.writeByte(STRING);
+            writeString(value.toString(), output);
+        } else
+            encodeObject(value, depth, output, path);
+    }
+
+    private void encodeIdentifiedObject(IdentifiedObject identifiedObject, int depth, ByteArrayDataOutput output, Set<Object> path) {
+        boolean isOwned = (depth == 1) && !(identifiedObject instanceof Equipment) && !(identifiedObject instanceof EquipmentContainer);
+        if (((depth == 0) || isOwned) && !path.contains(identifiedObject))
+            encodeObject(identifiedObject, depth, output, path);
+        else {
+            output.writeByte(REFERENCE);
+            writeString(identifiedObject.getClass().getName(), output);
+            writeString(identifiedObject.getMRID(), output);
+        }
+    }
+
+    private void encodeObject(Object value, int depth, ByteArrayDataOutput output, Set<Object> path) {
+        if ((depth > MAX_DEPTH) || !path.add(value)) {
+            output.writeByte(REFERENCE);
+            writeString(value.getClass().getName(), output);
+            writeString("", output);
+            return;
+        }
+
+        output.writeByte(OBJECT);
+        writeString(value.getClass().getName(), output);
+        for (Method getter : GETTERS.get(value.getClass())) {
+            writeString(getter.getName(), output);
+            try {
+                encodeValue(getter.invoke(value), depth + 1, output, path);
+            } catch (InvocationTargetException | IllegalAccessException e) {
+                Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                output.writeByte(FAILED);
+                writeString(cause == null ? "" : cause.getClass().getName(), output);
+            }
+        }
+
+        path.remove(value);
+    }
+
+    private byte[] encodeSeparately(@Nullable Object value, @Nullable Object other, int depth, Set<Object> path) {
+        ByteArrayDataOutput output = ByteStreams.newDataOutput();
+        encodeValue(value, depth, output, path);
+        if (other != null)
+            encodeValue(other, depth, output, path);
+        return output.toByteArray();
+    }
+
+    private static void writeSorted(List<byte[]> items, ByteArrayDataOutput output) {
+        items.sort(UnsignedBytes.lexicographicalComparator());
+        output.writeInt(items.size());
+        items.forEach(item -> {
+            output.writeInt(item.length);
+            output.write(item);
+        });
+    }
+
+    private static void writeString(String value, ByteArrayDataOutput output) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static List<Method> getters(Class<?> type) {
+        List<Method> getters = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (!isGetter(method))
+                continue;
+
+            // Public methods declared on classes that aren't public can still only be called once made accessible.
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                try {
+                    method.setAccessible(true);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+            }
+
+            getters.add(method);
+        }
+
+        getters.sort(Comparator.comparing(Method::getName));
+        return getters;
+    }
+
+    private static boolean isGetter(Method method) {
+        if (Modifier.isStatic(method.getModifiers())
+            || method.isSynthetic()
+            || method.isBridge()
+            || (method.getParameterCount() != 0)
+            || (method.getDeclaringClass() == Object.class))
+            return false;
+
+        String name = method.getName();
+        if (name.startsWith("get") && (name.length() > 3))
+            return method.getReturnType() != void.class;
+        else if (name.startsWith("is") && (name.length() > 2))
+            return method.getReturnType() == boolean.class;
+        else
+            return false;
+    }
+
+}
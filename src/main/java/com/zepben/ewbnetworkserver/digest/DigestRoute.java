@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.vertxutils.routing.Respond;
+import com.zepben.vertxutils.routing.Route;
+import com.zepben.vertxutils.routing.RouteVersion;
+import com.zepben.vertxutils.routing.VersionableRoute;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.vertx.core.http.HttpMethod.GET;
+
+// Digests that need computing can take a while on a large network, so they are handled off the event loop.
+@EverythingIsNonnullByDefault
+public class DigestRoute {
+
+    static final String MRID_PARAM = "mRID";
+
+    private final NetworkDigests networkDigests;
+
+    @EverythingIsNonnullByDefault
+    public enum AvailableRoute implements VersionableRoute {
+        FEEDERS(RouteVersion.since(1)),
+        ZONE_SUBSTATIONS(RouteVersion.since(1)),
+        FEEDER(RouteVersion.since(1)),
+        ZONE_SUBSTATION(RouteVersion.since(1));
+
+        private final RouteVersion rv;
+
+        AvailableRoute(RouteVersion rv) {
+            this.rv = rv;
+        }
+
+        @Override
+        public RouteVersion routeVersion() {
+            return rv;
+        }
+    }
+
+    static Function<AvailableRoute, Route> routeFactory(NetworkDigests networkDigests) {
+        DigestRoute route = new DigestRoute(networkDigests);
+
+        return availableRoute -> {
+            switch (availableRoute) {
+                case FEEDERS:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/feeders")
+                        .addBlockingHandler(route::feeders)
+                        .build();
+                case ZONE_SUBSTATIONS:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/zones")
+                        .addBlockingHandler(route::zones)
+                        .build();
+                case FEEDER:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/feeder/:" + MRID_PARAM)
+                        .addBlockingHandler(route::feeder)
+                        .build();
+                case ZONE_SUBSTATION:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/zone/:" + MRID_PARAM)
+                        .addBlockingHandler(route::zone)
+                        .build();
+                default:
+                    throw new IllegalArgumentException("INTERNAL ERROR: Missing route factory method.");
+            }
+        };
+    }
+
+    void feeders(RoutingContext context) {
+        Respond.withJson(context, OK, new JsonObject().put("feeders", toJson(networkDigests.feeders())));
+    }
+
+    void zones(RoutingContext context) {
+        Respond.withJson(context, OK, new JsonObject().put("zones", toJson(networkDigests.zones())));
+    }
+
+    void feeder(RoutingContext context) {
+        String mRID = context.pathParam(MRID_PARAM);
+        String digest = networkDigests.feeder(mRID);
+        if (digest == null)
+            Respond.withJson(context, NOT_FOUND, new JsonObject().put("message", "Feeder '" + mRID + "' was not found."));
+        else
+            Respond.withJson(context, OK, new JsonObject().put("mRID", mRID).put("digest", digest));
+    }
+
+    void zone(RoutingContext context) {
+        String mRID = context.pathParam(MRID_PARAM);
+        String digest = networkDigests.zone(mRID);
+        if (digest == null)
+            Respond.withJson(context, NOT_FOUND, new JsonObject().put("message", "Zone substation '" + mRID + "' was not found."));
+        else
+            Respond.withJson(context, OK, new JsonObject().put("mRID", mRID).put("digest", digest));
+    }
+
+    private static JsonObject toJson(Map<String, String> digests) {
+        JsonObject json = new JsonObject();
+        digests.forEach(json::put);
+        return json;
+    }
+
+    DigestRoute(NetworkDigests networkDigests) {
+        this.networkDigests = networkDigests;
+    }
+
+}
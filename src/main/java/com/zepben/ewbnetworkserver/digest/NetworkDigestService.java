@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.grpc.JsonMethods;
+import io.grpc.*;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// The request is {"feeders": [...], "zones": [...]}, and the response is {"feeders": {mRID: digest}, "zones": {mRID: digest}} for
+// those that exist. A request with neither gets the digests of every feeder and zone substation.
+@EverythingIsNonnullByDefault
+public class NetworkDigestService implements BindableService {
+
+    public static final String SERVICE_NAME = "zepben.ewbnetworkserver.NetworkDigests";
+
+    static final MethodDescriptor<JsonObject, JsonObject> GET_DIGESTS = JsonMethods.unary(SERVICE_NAME, "GetDigests");
+
+    private final NetworkDigests networkDigests;
+
+    public NetworkDigestService(NetworkDigests networkDigests) {
+        this.networkDigests = networkDigests;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerServiceDefinition.builder(SERVICE_NAME)
+            .addMethod(GET_DIGESTS, ServerCalls.asyncUnaryCall(this::getDigests))
+            .build();
+    }
+
+    private void getDigests(JsonObject request, StreamObserver<JsonObject> responseObserver) {
+        List<String> feeders;
+        List<String> zones;
+        try {
+            feeders = mRIDs(request, "feeders");
+            zones = mRIDs(request, "zones");
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        JsonObject response = new JsonObject();
+        if ((feeders == null) && (zones == null)) {
+            response.put("feeders", toJson(networkDigests.feeders()));
+            response.put("zones", toJson(networkDigests.zones()));
+        } else {
+            response.put("feeders", toJson(feeders, networkDigests::feeder));
+            response.put("zones", toJson(zones, networkDigests::zone));
+        }
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Nullable
+    private static List<String> mRIDs(JsonObject request, String key) {
+        Object value = request.getValue(key);
+        if (value == null)
+            return null;
+
+        String error = key + " must be an array of strings.";
+        if (!(value instanceof JsonArray))
+            throw new IllegalArgumentException(error);
+
+        List<String> mRIDs = new ArrayList<>();
+        for (Object item : (JsonArray) value) {
+            if (!(item instanceof String))
+                throw new IllegalArgumentException(error);
+            mRIDs.add((String) item);
+        }
+        return mRIDs;
+    }
+
+    private static JsonObject toJson(Map<String, String> digests) {
+        JsonObject json = new JsonObject();
+        digests.forEach(json::put);
+        return json;
+    }
+
+    private static JsonObject toJson(@Nullable List<String> mRIDs, Function<String, String> digest) {
+        JsonObject json = new JsonObject();
+        if (mRIDs != null) {
+            mRIDs.forEach(mRID -> {
+                String value = digest.apply(mRID);
+                if (value != null)
+                    json.put(mRID, value);
+            });
+        }
+        return json;
+    }
+
+}
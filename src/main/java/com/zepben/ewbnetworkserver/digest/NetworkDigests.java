@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.*;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.NetworkChangeListener;
+import com.zepben.ewbnetworkserver.export.ContainerMembership;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// A digest of the content of each feeder and zone substation, so clients can check which containers have changed and only fetch those.
+// Each object is hashed from its CanonicalEncoder encoding, which covers all of its attributes, and the digest of a container is the
+// root of a Merkle tree over the hashes of its members in mRID order. A zone substation's tree has the digests of its feeders as
+// subtrees, rather than rehashing their equipment. Digests are computed once the patches have been applied, and a container touched
+// by a later change is recomputed the next time it is asked for.
+@EverythingIsNonnullByDefault
+public class NetworkDigests implements NetworkChangeListener {
+
+    // Leaves and nodes are hashed with different prefixes so a node can never be passed off as a leaf.
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+    private final NetworkService networkService;
+    private final ContainerMembership containerMembership;
+    private final CanonicalEncoder canonicalEncoder;
+    private final Map<String, HashCode> feederDigests = new ConcurrentHashMap<>();
+    private final Map<String, HashCode> zoneDigests = new ConcurrentHashMap<>();
+
+    public NetworkDigests(NetworkService networkService, ContainerMembership containerMembership, CanonicalEncoder canonicalEncoder) {
+        this.networkService = networkService;
+        this.containerMembership = containerMembership;
+        this.canonicalEncoder = canonicalEncoder;
+    }
+
+    public void build() {
+        feederDigests.clear();
+        zoneDigests.clear();
+        networkService.listOf(Substation.class).forEach(substation -> zone(substation.getMRID()));
+        networkService.listOf(Feeder.class).forEach(feeder -> feeder(feeder.getMRID()));
+    }
+
+    public int size() {
+        return feederDigests.size() + zoneDigests.size();
+    }
+
+    // The digest of the feeder as a hex string, or null if there is no such feeder.
+    @Nullable
+    public String feeder(String mRID) {
+        HashCode digest = feederDigest(mRID);
+        return digest == null ? null : digest.toString();
+    }
+
+    // The digest of the zone substation as a hex string, or null if there is no such zone substation.
+    @Nullable
+    public String zone(String mRID) {
+        HashCode digest = zoneDigest(mRID);
+        return digest == null ? null : digest.toString();
+    }
+
+    public Map<String, String> feeders() {
+        return all(Feeder.class, this::feeder);
+    }
+
+    public Map<String, String> zones() {
+        return all(Substation.class, this::zone);
+    }
+
+    @Override
+    public void onAdded(IdentifiedObject identifiedObject) {
+        invalidate(identifiedObject);
+    }
+
+    @Override
+    public void onRemoved(IdentifiedObject identifiedObject) {
+        invalidate(identifiedObject);
+    }
+
+    @Override
+    public void onReconnected(ConductingEquipment conductingEquipment) {
+        invalidate(conductingEquipment);
+    }
+
+    @Override
+    public synchronized void onFeederChanged(String feederMRID) {
+        Feeder feeder = networkService.get(Feeder.class, feederMRID);
+        if (feeder != null)
+            invalidate(feeder);
+        else
+            feederDigests.remove(feederMRID);
+    }
+
+    // Computing is synchronised with invalidation so a digest computed from the old content can't be stored after the change.
+    @Nullable
+    private HashCode feederDigest(String mRID) {
+        HashCode digest = feederDigests.get(mRID);
+        if (digest != null)
+            return digest;
+
+        synchronized (this) {
+            List<PowerSystemResource> members = containerMembership.feeder(mRID);
+            if (members == null)
+                return null;
+
+            return feederDigests.computeIfAbsent(mRID, key -> merkleRoot(leaves(members)));
+        }
+    }
+
+    @Nullable
+    private HashCode zoneDigest(String mRID) {
+        HashCode digest = zoneDigests.get(mRID);
+        if (digest != null)
+            return digest;
+
+        synchronized (this) {
+            Substation substation = networkService.get(Substation.class, mRID);
+            if (substation == null)
+                return null;
+
+            List<PowerSystemResource> objects = new ArrayList<>(substation.getEquipment());
+            objects.add(substation);
+
+            List<HashCode> hashes = leaves(objects);
+            substation.getFeeders()
+                .stream()
+                .sorted(Comparator.comparing(IdentifiedObject::getMRID))
+                .forEach(feeder -> hashes.add(Objects.requireNonNull(feederDigest(feeder.getMRID()))));
+
+            return zoneDigests.computeIfAbsent(mRID, key -> merkleRoot(hashes));
+        }
+    }
+
+    private synchronized void invalidate(IdentifiedObject identifiedObject) {
+        ContainerMembership.affectedContainers(identifiedObject).forEach(mRID -> {
+            feederDigests.remove(mRID);
+            zoneDigests.remove(mRID);
+        });
+    }
+
+    private List<HashCode> leaves(Collection<? extends PowerSystemResource> objects) {
+        List<HashCode> hashes = new ArrayList<>(objects.size());
+        objects.stream()
+            .sorted(Comparator.comparing(IdentifiedObject::getMRID))
+            .forEach(psr -> hashes.add(HASH_FUNCTION.newHasher()
+                .putByte(LEAF_PREFIX)
+                .putBytes(canonicalEncoder.encode(psr))
+                .hash()));
+        return hashes;
+    }
+
+    // Pairs of hashes are hashed together until there is only one, with the last hash of an odd level carried up unchanged.
+    static HashCode merkleRoot(List<HashCode> hashes) {
+        if (hashes.isEmpty())
+            return HASH_FUNCTION.newHasher().putByte(NODE_PREFIX).hash();
+
+        List<HashCode> level = hashes;
+        while (level.size() > 1) {
+            List<HashCode> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 < level.size()) {
+                    next.add(HASH_FUNCTION.newHasher()
+                        .putByte(NODE_PREFIX)
+                        .putBytes(level.get(i).asBytes())
+                        .putBytes(level.get(i + 1).asBytes())
+                        .hash());
+                } else
+                    next.add(level.get(i));
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    private Map<String, String> all(Class<? extends IdentifiedObject> type, Function<String, String> digest) {
+        Map<String, String> all = new TreeMap<>();
+        networkService.listOf(type).forEach(io -> {
+            String value = digest.apply(io.getMRID());
+            if (value != null)
+                all.put(io.getMRID(), value);
+        });
+        return all;
+    }
+
+}
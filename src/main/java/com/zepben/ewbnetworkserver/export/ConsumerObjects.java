@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.*;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Translates objects to protobuf with NetworkConsumerService itself, by calling its getIdentifiedObjects method in-process and keeping
+// the serialized responses, so the objects are exactly what a client fetching them one at a time would receive, and can be parsed with
+// the same generated classes. Objects the service can't find are left out, as they are when it is called remotely.
+@EverythingIsNonnullByDefault
+class ConsumerObjects {
+
+    static final String METHOD_NAME = "getIdentifiedObjects";
+    static final String MRIDS_FIELD = "mrids";
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final ServerMethodDefinition<?, ?> method;
+    private final RequestEncoder requestEncoder;
+
+    // Encodes the request for the objects with the mRIDs as the method's serialized request message.
+    @FunctionalInterface
+    interface RequestEncoder {
+
+        byte[] encode(MethodDescriptor<?, ?> method, Collection<String> mRIDs);
+
+    }
+
+    ConsumerObjects(BindableService consumerService) {
+        this(consumerService, ConsumerObjects::protobufRequest);
+    }
+
+    ConsumerObjects(BindableService consumerService, RequestEncoder requestEncoder) {
+        ServerServiceDefinition definition = consumerService.bindService();
+        method = definition.getMethods().stream()
+            .filter(method -> METHOD_NAME.equals(method.getMethodDescriptor().getBareMethodName()))
+            .findFirst()
+            .orElseThrow(() ->
+                new IllegalArgumentException(definition.getServiceDescriptor().getName() + " has no " + METHOD_NAME + " method."));
+        this.requestEncoder = requestEncoder;
+
+        // Checks the request can be built now, rather than failing the first export.
+        requestEncoder.encode(method.getMethodDescriptor(), new ArrayList<>());
+    }
+
+    List<byte[]> get(Collection<String> mRIDs) {
+        return call(method, mRIDs);
+    }
+
+    private <ReqT, RespT> List<byte[]> call(ServerMethodDefinition<ReqT, RespT> definition, Collection<String> mRIDs) {
+        MethodDescriptor<ReqT, RespT> descriptor = definition.getMethodDescriptor();
+        CollectingCall<ReqT, RespT> call = new CollectingCall<>(descriptor);
+
+        ServerCall.Listener<ReqT> listener = definition.getServerCallHandler().startCall(call, new Metadata());
+        listener.onReady();
+        listener.onMessage(descriptor.parseRequest(new ByteArrayInputStream(requestEncoder.encode(descriptor, mRIDs))));
+        listener.onHalfClose();
+
+        try {
+            List<byte[]> responses = call.result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            listener.onComplete();
+            return responses;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.onCancel();
+            throw Status.CANCELLED.withCause(e).asRuntimeException();
+        } catch (TimeoutException e) {
+            listener.onCancel();
+            throw Status.DEADLINE_EXCEEDED.withDescription(descriptor.getFullMethodName() + " did not respond.").asRuntimeException();
+        } catch (ExecutionException e) {
+            throw Status.fromThrowable(e.getCause()).asRuntimeException();
+        }
+    }
+
+    // The request classes of the consumer service are generated into the library that provides it, so the request is built from the
+    // prototype its marshaller is given.
+    static byte[] protobufRequest(MethodDescriptor<?, ?> method, Collection<String> mRIDs) {
+        MethodDescriptor.Marshaller<?> marshaller = method.getRequestMarshaller();
+        Object prototype = marshaller instanceof MethodDescriptor.PrototypeMarshaller
+            ? ((MethodDescriptor.PrototypeMarshaller<?>) marshaller).getMessagePrototype()
+            : null;
+        if (!(prototype instanceof Message))
+            throw new IllegalArgumentException(method.getFullMethodName() + " does not take a protobuf request.");
+
+        Message.Builder builder = ((Message) prototype).newBuilderForType();
+        Descriptors.FieldDescriptor field = builder.getDescriptorForType().findFieldByName(MRIDS_FIELD);
+        String messageName = builder.getDescriptorForType().getFullName();
+        if ((field == null) || !field.isRepeated() || (field.getJavaType() != Descriptors.FieldDescriptor.JavaType.STRING))
+            throw new IllegalArgumentException(messageName + " has no repeated string " + MRIDS_FIELD + " field.");
+
+        mRIDs.forEach(mRID -> builder.addRepeatedField(field, mRID));
+        return builder.build().toByteArray();
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class CollectingCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
+
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final List<byte[]> responses = new ArrayList<>();
+        private final CompletableFuture<List<byte[]>> result = new CompletableFuture<>();
+
+        CollectingCall(MethodDescriptor<ReqT, RespT> method) {
+            this.method = method;
+        }
+
+        @Override
+        public void request(int numMessages) {
+            // The single request is passed to the listener directly.
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public synchronized void sendMessage(RespT message) {
+            try {
+                responses.add(ByteStreams.toByteArray(method.streamResponse(message)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public synchronized void close(Status status, Metadata trailers) {
+            if (status.isOk())
+                result.complete(responses);
+            else
+                result.completeExceptionally(status.asRuntimeException(trailers));
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return result.isCompletedExceptionally();
+        }
+
+        @Nullable
+        @Override
+        public String getAuthority() {
+            return null;
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return method;
+        }
+
+    }
+
+}
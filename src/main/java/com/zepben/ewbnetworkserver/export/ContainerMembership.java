@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.*;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.NetworkChangeListener;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The objects in each feeder and zone substation, precomputed once the network has loaded so a container can be fetched without
+// walking the network. A container whose equipment is changed by a patch is recomputed the next time it is fetched.
+@EverythingIsNonnullByDefault
+public class ContainerMembership implements NetworkChangeListener {
+
+    private final NetworkService networkService;
+    private final Map<String, List<PowerSystemResource>> members = new ConcurrentHashMap<>();
+
+    public ContainerMembership(NetworkService networkService) {
+        this.networkService = networkService;
+    }
+
+    public void build() {
+        members.clear();
+        networkService.listOf(Feeder.class).forEach(feeder -> members.put(feeder.getMRID(), collect(feeder)));
+        networkService.listOf(Substation.class).forEach(substation -> members.put(substation.getMRID(), collect(substation)));
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    // The feeder followed by its equipment, or null if there is no such feeder.
+    @Nullable
+    public List<PowerSystemResource> feeder(String mRID) {
+        Feeder feeder = networkService.get(Feeder.class, mRID);
+        return feeder == null ? null : members.computeIfAbsent(mRID, key -> collect(feeder));
+    }
+
+    // The zone substation followed by its feeders and the equipment of both, or null if there is no such zone substation.
+    @Nullable
+    public List<PowerSystemResource> zone(String mRID) {
+        Substation substation = networkService.get(Substation.class, mRID);
+        return substation == null ? null : members.computeIfAbsent(mRID, key -> collect(substation));
+    }
+
+    @Override
+    public void onAdded(IdentifiedObject identifiedObject) {
+        invalidate(identifiedObject);
+    }
+
+    @Override
+    public void onRemoved(IdentifiedObject identifiedObject) {
+        invalidate(identifiedObject);
+    }
+
+    @Override
+    public void onFeederChanged(String feederMRID) {
+        Feeder feeder = networkService.get(Feeder.class, feederMRID);
+        if (feeder != null)
+            invalidate(feeder);
+        else
+            members.remove(feederMRID);
+    }
+
+    // The mRIDs of the containers whose members, or the content of their members, change with the object. This is the object itself
+    // if it is a container, the containers of equipment, and the zone substation of each feeder.
+    public static Set<String> affectedContainers(IdentifiedObject identifiedObject) {
+        Set<String> mRIDs = new LinkedHashSet<>();
+        addAffectedContainers(identifiedObject, mRIDs);
+        return mRIDs;
+    }
+
+    private static void addAffectedContainers(IdentifiedObject identifiedObject, Set<String> mRIDs) {
+        mRIDs.add(identifiedObject.getMRID());
+
+        if (identifiedObject instanceof Feeder) {
+            Substation substation = ((Feeder) identifiedObject).getNormalEnergizingSubstation();
+            if (substation != null)
+                mRIDs.add(substation.getMRID());
+        } else if (identifiedObject instanceof Equipment) {
+            ((Equipment) identifiedObject).getContainers().forEach(container -> addAffectedContainers(container, mRIDs));
+        }
+    }
+
+    private void invalidate(IdentifiedObject identifiedObject) {
+        affectedContainers(identifiedObject).forEach(members::remove);
+    }
+
+    private static List<PowerSystemResource> collect(Feeder feeder) {
+        List<PowerSystemResource> objects = new ArrayList<>(feeder.getEquipment().size() + 1);
+        objects.add(feeder);
+        objects.addAll(feeder.getEquipment());
+        return Collections.unmodifiableList(objects);
+    }
+
+    // Equipment at the boundary of the zone substation can also be contained in its feeders.
+    private static List<PowerSystemResource> collect(Substation substation) {
+        Set<PowerSystemResource> objects = new LinkedHashSet<>();
+        objects.add(substation);
+        objects.addAll(substation.getFeeders());
+        objects.addAll(substation.getEquipment());
+        substation.getFeeders().forEach(feeder -> objects.addAll(feeder.getEquipment()));
+        return Collections.unmodifiableList(new ArrayList<>(objects));
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.google.common.base.Enums;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.Equipment;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.core.Substation;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.vertxutils.routing.Respond;
+import com.zepben.vertxutils.routing.Route;
+import com.zepben.vertxutils.routing.RouteVersion;
+import com.zepben.vertxutils.routing.VersionableRoute;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
+import static io.vertx.core.http.HttpMethod.GET;
+
+@EverythingIsNonnullByDefault
+public class ExportRoute {
+
+    static final String FORMAT_PARAM = "format";
+    static final String MRID_PARAM = "mRID";
+
+    private final NetworkService networkService;
+    private final NetworkExportToJson networkExportToJson;
+
+    @EverythingIsNonnullByDefault
+    public enum AvailableRoute implements VersionableRoute {
+        NETWORK(RouteVersion.since(1)),
+        FEEDER(RouteVersion.since(1)),
+        ZONE_SUBSTATION(RouteVersion.since(1));
+
+        private final RouteVersion rv;
+
+        AvailableRoute(RouteVersion rv) {
+            this.rv = rv;
+        }
+
+        @Override
+        public RouteVersion routeVersion() {
+            return rv;
+        }
+    }
+
+    static Function<AvailableRoute, Route> routeFactory(NetworkService networkService, NetworkExportToJson networkExportToJson) {
+        ExportRoute route = new ExportRoute(networkService, networkExportToJson);
+
+        return availableRoute -> {
+            switch (availableRoute) {
+                case NETWORK:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/network")
+                        .addHandler(route::exportNetwork)
+                        .build();
+                case FEEDER:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/feeder/:" + MRID_PARAM)
+                        .addHandler(route::exportFeeder)
+                        .build();
+                case ZONE_SUBSTATION:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/zone/:" + MRID_PARAM)
+                        .addHandler(route::exportZoneSubstation)
+                        .build();
+                default:
+                    throw new IllegalArgumentException("INTERNAL ERROR: Missing route factory method.");
+            }
+        };
+    }
+
+    void exportNetwork(RoutingContext context) {
+        ExportFormat format = format(context);
+        if (format != null)
+            stream(context, format, networkService.listOf(Equipment.class).iterator());
+    }
+
+    void exportFeeder(RoutingContext context) {
+        ExportFormat format = format(context);
+        if (format == null)
+            return;
+
+        Feeder feeder = networkService.get(Feeder.class, context.pathParam(MRID_PARAM));
+        if (feeder == null)
+            Respond.withJson(context, NOT_FOUND, new JsonObject()
+                .put("message", "Feeder '" + context.pathParam(MRID_PARAM) + "' was not found."));
+        else
+            stream(context, format, feeder.getEquipment().iterator());
+    }
+
+    void exportZoneSubstation(RoutingContext context) {
+        ExportFormat format = format(context);
+        if (format == null)
+            return;
+
+        Substation substation = networkService.get(Substation.class, context.pathParam(MRID_PARAM));
+        if (substation == null) {
+            Respond.withJson(context, NOT_FOUND, new JsonObject()
+                .put("message", "Zone substation '" + context.pathParam(MRID_PARAM) + "' was not found."));
+            return;
+        }
+
+        // Equipment at the boundary of the zone substation can also be contained in its feeders.
+        Set<Equipment> equipment = new LinkedHashSet<>(substation.getEquipment());
+        substation.getFeeders().forEach(feeder -> equipment.addAll(feeder.getEquipment()));
+
+        stream(context, format, equipment.iterator());
+    }
+
+    @Nullable
+    private ExportFormat format(RoutingContext context) {
+        String formatParam = context.request().getParam(FORMAT_PARAM);
+        if (formatParam == null)
+            return ExportFormat.NDJSON;
+
+        ExportFormat format = Enums.getIfPresent(ExportFormat.class, formatParam.toUpperCase()).orNull();
+        if (format == null)
+            Respond.withJson(context, BAD_REQUEST, new JsonObject()
+                .put("message", "Unknown format '" + formatParam + "', expected ndjson or geojson."));
+
+        return format;
+    }
+
+    private void stream(RoutingContext context, ExportFormat format, Iterator<? extends PowerSystemResource> objects) {
+        new ExportStream(context.vertx(), context.response(), format, objects, networkExportToJson).start();
+    }
+
+    ExportRoute(NetworkService networkService, NetworkExportToJson networkExportToJson) {
+        this.networkService = networkService;
+        this.networkExportToJson = networkExportToJson;
+    }
+
+}
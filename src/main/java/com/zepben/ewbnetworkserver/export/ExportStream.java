@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.util.Iterator;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+
+// Encodes the objects a chunk at a time, waiting for the response write queue to drain when it is full and otherwise yielding
+// the event loop between chunks, so the memory used and the time the event loop is held do not grow with the size of the export.
+@EverythingIsNonnullByDefault
+class ExportStream {
+
+    static final int MAX_OBJECTS_PER_CHUNK = 500;
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private static final String FEATURE_COLLECTION_START = "{\"type\":\"FeatureCollection\",\"features\":[";
+    private static final String FEATURE_COLLECTION_END = "]}";
+
+    private final Vertx vertx;
+    private final HttpServerResponse response;
+    private final ExportFormat format;
+    private final Iterator<? extends PowerSystemResource> objects;
+    private final NetworkExportToJson networkExportToJson;
+
+    private boolean isFirst = true;
+    private boolean isWaitingForDrain = false;
+    private boolean isClosed = false;
+
+    ExportStream(Vertx vertx,
+                 HttpServerResponse response,
+                 ExportFormat format,
+                 Iterator<? extends PowerSystemResource> objects,
+                 NetworkExportToJson networkExportToJson) {
+        this.vertx = vertx;
+        this.response = response;
+        this.format = format;
+        this.objects = objects;
+        this.networkExportToJson = networkExportToJson;
+    }
+
+    void start() {
+        response
+            .setStatusCode(OK.code())
+            .setChunked(true)
+            .putHeader(HttpHeaders.CONTENT_TYPE, format.contentType())
+            .closeHandler(ignored -> isClosed = true)
+            .drainHandler(ignored -> {
+                if (isWaitingForDrain) {
+                    isWaitingForDrain = false;
+                    writeChunk();
+                }
+            });
+
+        writeChunk();
+    }
+
+    private void writeChunk() {
+        if (isClosed)
+            return;
+
+        Buffer chunk = Buffer.buffer(MAX_CHUNK_SIZE);
+        if (isFirst && (format == ExportFormat.GEOJSON))
+            chunk.appendString(FEATURE_COLLECTION_START);
+
+        int count = 0;
+        while (objects.hasNext() && (count < MAX_OBJECTS_PER_CHUNK) && (chunk.length() < MAX_CHUNK_SIZE)) {
+            append(chunk, objects.next());
+            ++count;
+        }
+
+        if (!objects.hasNext()) {
+            if (format == ExportFormat.GEOJSON)
+                chunk.appendString(FEATURE_COLLECTION_END);
+
+            response.end(chunk);
+            return;
+        }
+
+        response.write(chunk);
+        if (response.writeQueueFull())
+            isWaitingForDrain = true;
+        else
+            vertx.runOnContext(ignored -> writeChunk());
+    }
+
+    private void append(Buffer chunk, PowerSystemResource psr) {
+        if (format == ExportFormat.GEOJSON) {
+            if (!isFirst)
+                chunk.appendString(",");
+            chunk.appendString(networkExportToJson.toFeature(psr).encode());
+        } else
+            chunk.appendString(networkExportToJson.toJson(psr).encode()).appendString("\n");
+
+        isFirst = false;
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61968.metering.UsagePoint;
+import com.zepben.evolve.cim.iec61970.base.core.*;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Conductor;
+import com.zepben.evolve.cim.iec61970.base.wires.PowerTransformer;
+import com.zepben.ewbnetworkserver.grpc.JsonChunkStream;
+import com.zepben.ewbnetworkserver.grpc.JsonMethods;
+import io.grpc.*;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+// Fetches everything in a feeder or zone substation in one call, rather than walking the network with many small calls to
+// NetworkConsumerService. The request is {"mRID": "...", "maxChunkBytes": n}, and each response is {"objects": [...]}, where each object
+// is {"protobuf": "..."}, the base64 of the GetIdentifiedObjectsResponse NetworkConsumerService sends for it. The container's members are
+// followed by the objects they refer to, so the container can be rebuilt from the stream alone: terminals and their connectivity nodes,
+// locations, base voltages, transformer ends, wire info, impedances and usage points. Responses are gzip compressed for clients that
+// accept it.
+@EverythingIsNonnullByDefault
+public class NetworkExportService implements BindableService {
+
+    public static final String SERVICE_NAME = "zepben.ewbnetworkserver.NetworkExport";
+
+    static final int DEFAULT_MAX_CHUNK_BYTES = 1024 * 1024;
+    static final int MIN_MAX_CHUNK_BYTES = 1024;
+    // The largest message gRPC clients accept by default.
+    static final int MAX_MAX_CHUNK_BYTES = 4 * 1024 * 1024;
+    // The number of objects translated by each call to the consumer service.
+    static final int TRANSLATE_BATCH_SIZE = 500;
+
+    static final MethodDescriptor<JsonObject, JsonObject> STREAM_FEEDER = JsonMethods.serverStreaming(SERVICE_NAME, "StreamFeeder");
+    static final MethodDescriptor<JsonObject, JsonObject> STREAM_ZONE = JsonMethods.serverStreaming(SERVICE_NAME, "StreamZone");
+
+    private final ContainerMembership containerMembership;
+    private final BindableService networkConsumerService;
+    private final ConsumerObjects.RequestEncoder requestEncoder;
+
+    public NetworkExportService(ContainerMembership containerMembership, BindableService networkConsumerService) {
+        this(containerMembership, networkConsumerService, ConsumerObjects::protobufRequest);
+    }
+
+    NetworkExportService(ContainerMembership containerMembership,
+                         BindableService networkConsumerService,
+                         ConsumerObjects.RequestEncoder requestEncoder) {
+        this.containerMembership = containerMembership;
+        this.networkConsumerService = networkConsumerService;
+        this.requestEncoder = requestEncoder;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        ConsumerObjects consumerObjects = new ConsumerObjects(networkConsumerService, requestEncoder);
+        return ServerServiceDefinition.builder(SERVICE_NAME)
+            .addMethod(STREAM_FEEDER, ServerCalls.asyncServerStreamingCall((request, responseObserver) ->
+                stream(request, responseObserver, consumerObjects, "Feeder", containerMembership::feeder)))
+            .addMethod(STREAM_ZONE, ServerCalls.asyncServerStreamingCall((request, responseObserver) ->
+                stream(request, responseObserver, consumerObjects, "Zone substation", containerMembership::zone)))
+            .build();
+    }
+
+    // The members followed by the objects they refer to, each once.
+    static Set<String> objectsOf(List<PowerSystemResource> members) {
+        Set<String> mRIDs = new LinkedHashSet<>();
+        members.forEach(member -> mRIDs.add(member.getMRID()));
+        members.forEach(member -> addReferences(member, mRIDs));
+        return mRIDs;
+    }
+
+    private static void addReferences(PowerSystemResource psr, Set<String> mRIDs) {
+        add(psr.getLocation(), mRIDs);
+
+        if (psr instanceof Equipment) {
+            for (UsagePoint usagePoint : ((Equipment) psr).getUsagePoints()) {
+                add(usagePoint, mRIDs);
+                add(usagePoint.getUsagePointLocation(), mRIDs);
+            }
+        }
+
+        if (psr instanceof ConductingEquipment) {
+            ConductingEquipment conductingEquipment = (ConductingEquipment) psr;
+            add(conductingEquipment.getBaseVoltage(), mRIDs);
+            conductingEquipment.getTerminals().forEach(terminal -> add(terminal, mRIDs));
+        }
+
+        if (psr instanceof Conductor)
+            add(((Conductor) psr).getAssetInfo(), mRIDs);
+
+        if (psr instanceof AcLineSegment)
+            add(((AcLineSegment) psr).getPerLengthSequenceImpedance(), mRIDs);
+
+        if (psr instanceof PowerTransformer) {
+            ((PowerTransformer) psr).getEnds().forEach(end -> {
+                add(end, mRIDs);
+                add(end.getBaseVoltage(), mRIDs);
+            });
+        }
+
+        if (psr instanceof Feeder)
+            add(((Feeder) psr).getNormalHeadTerminal(), mRIDs);
+    }
+
+    private static void add(@Nullable IdentifiedObject identifiedObject, Set<String> mRIDs) {
+        if (identifiedObject == null)
+            return;
+
+        mRIDs.add(identifiedObject.getMRID());
+        if (identifiedObject instanceof Terminal)
+            add(((Terminal) identifiedObject).getConnectivityNode(), mRIDs);
+    }
+
+    private void stream(JsonObject request,
+                        StreamObserver<JsonObject> responseObserver,
+                        ConsumerObjects consumerObjects,
+                        String description,
+                        Function<String, List<PowerSystemResource>> members) {
+        Object mRID = request.getValue("mRID");
+        if (!(mRID instanceof String)) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("mRID must be a string.").asRuntimeException());
+            return;
+        }
+
+        Object maxChunkBytes = request.getValue("maxChunkBytes", DEFAULT_MAX_CHUNK_BYTES);
+        if (!(maxChunkBytes instanceof Integer) || ((Integer) maxChunkBytes < MIN_MAX_CHUNK_BYTES) || ((Integer) maxChunkBytes > MAX_MAX_CHUNK_BYTES)) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("maxChunkBytes must be between " + MIN_MAX_CHUNK_BYTES + " and " + MAX_MAX_CHUNK_BYTES + ".")
+                .asRuntimeException());
+            return;
+        }
+
+        List<PowerSystemResource> objects = members.apply((String) mRID);
+        if (objects == null) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(description + " '" + mRID + "' was not found.").asRuntimeException());
+            return;
+        }
+
+        // gRPC only compresses the responses if the client sent gzip in its grpc-accept-encoding header.
+        ServerCallStreamObserver<JsonObject> observer = (ServerCallStreamObserver<JsonObject>) responseObserver;
+        observer.setCompression("gzip");
+
+        JsonChunkStream.start(observer,
+            "objects",
+            new TranslatedObjects(consumerObjects, objectsOf(objects)),
+            Integer.MAX_VALUE,
+            (Integer) maxChunkBytes);
+    }
+
+    // Translates the objects a batch at a time as the stream takes them, so only a batch of translated objects is held at once.
+    @EverythingIsNonnullByDefault
+    private static class TranslatedObjects implements Iterator<JsonObject> {
+
+        private final ConsumerObjects consumerObjects;
+        private final Iterator<String> mRIDs;
+        private Iterator<byte[]> translated = Collections.emptyIterator();
+
+        TranslatedObjects(ConsumerObjects consumerObjects, Collection<String> mRIDs) {
+            this.consumerObjects = consumerObjects;
+            this.mRIDs = mRIDs.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!translated.hasNext() && mRIDs.hasNext()) {
+                List<String> batch = new ArrayList<>(TRANSLATE_BATCH_SIZE);
+                while ((batch.size() < TRANSLATE_BATCH_SIZE) && mRIDs.hasNext())
+                    batch.add(mRIDs.next());
+                translated = consumerObjects.get(batch).iterator();
+            }
+            return translated.hasNext();
+        }
+
+        @Override
+        public JsonObject next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return new JsonObject().put("protobuf", translated.next());
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
+import com.zepben.evolve.cim.iec61970.base.core.Equipment;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.ewbnetworkserver.geojson.GeoJsonType;
+import com.zepben.ewbnetworkserver.geojson.GeometryType;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+
+@EverythingIsNonnullByDefault
+public class NetworkExportToJson {
+
+    public JsonObject toJson(PowerSystemResource psr) {
+        JsonObject jsonObject = toProperties(psr);
+
+        Location location = psr.getLocation();
+        if (location != null)
+            jsonObject.put("location", toCoordinates(location.getPoints()));
+
+        return jsonObject;
+    }
+
+    public JsonObject toFeature(PowerSystemResource psr) {
+        return new JsonObject()
+            .put("type", GeoJsonType.Feature.name())
+            .put("id", psr.getMRID())
+            .put("geometry", toGeometry(psr.getLocation()))
+            .put("properties", toProperties(psr));
+    }
+
+    private JsonObject toProperties(PowerSystemResource psr) {
+        JsonObject jsonObject = new JsonObject()
+            .put("mRID", psr.getMRID())
+            .put("name", psr.getName())
+            .put("type", psr.getClass().getSimpleName());
+
+        if (psr instanceof Equipment) {
+            Equipment equipment = (Equipment) psr;
+            jsonObject
+                .put("normalFeeders", toMRIDs(equipment.getNormalFeeders()))
+                .put("currentFeeders", toMRIDs(equipment.getCurrentFeeders()));
+        }
+
+        if (psr instanceof ConductingEquipment)
+            jsonObject.put("baseVoltage", ((ConductingEquipment) psr).getBaseVoltageValue());
+
+        return jsonObject;
+    }
+
+    @Nullable
+    private JsonObject toGeometry(@Nullable Location location) {
+        if ((location == null) || location.getPoints().isEmpty())
+            return null;
+
+        List<PositionPoint> points = location.getPoints();
+        if (points.size() == 1) {
+            return new JsonObject()
+                .put("type", GeometryType.Point.name())
+                .put("coordinates", toCoordinate(points.get(0)));
+        } else {
+            return new JsonObject()
+                .put("type", GeometryType.LineString.name())
+                .put("coordinates", toCoordinates(points));
+        }
+    }
+
+    private JsonArray toMRIDs(Collection<Feeder> feeders) {
+        JsonArray jsonArray = new JsonArray();
+        feeders.stream().map(IdentifiedObject::getMRID).forEach(jsonArray::add);
+        return jsonArray;
+    }
+
+    private JsonArray toCoordinates(List<PositionPoint> points) {
+        JsonArray jsonArray = new JsonArray();
+        points.forEach(point -> jsonArray.add(toCoordinate(point)));
+        return jsonArray;
+    }
+
+    private JsonArray toCoordinate(PositionPoint point) {
+        return new JsonArray().add(point.getXPosition()).add(point.getYPosition());
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.grpc;
+
+import com.google.common.io.ByteStreams;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.*;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Serves repeated unary and server streaming requests to a service from the serialized responses in a GrpcResponseCache, without
+// calling the service or serializing its responses again. The wrapped methods exchange the serialized messages with the transport,
+// so a request that isn't cached is serialized once as it is sent, and recorded as it goes. Recording stops once the messages of a
+// call no longer fit in the share of the cache budget left for recordings.
+@EverythingIsNonnullByDefault
+public class CachedResponseService implements BindableService {
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES = new BytesMarshaller();
+
+    private final BindableService service;
+    private final GrpcResponseCache responseCache;
+
+    public CachedResponseService(BindableService service, GrpcResponseCache responseCache) {
+        this.service = service;
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        ServerServiceDefinition definition = service.bindService();
+        if (!responseCache.isEnabled())
+            return definition;
+
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        definition.getMethods().forEach(method -> methods.add(isCacheable(method.getMethodDescriptor()) ? wrap(method) : method));
+
+        ServiceDescriptor.Builder serviceDescriptor = ServiceDescriptor.newBuilder(definition.getServiceDescriptor().getName())
+            .setSchemaDescriptor(definition.getServiceDescriptor().getSchemaDescriptor());
+        methods.forEach(method -> serviceDescriptor.addMethod(method.getMethodDescriptor()));
+
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(serviceDescriptor.build());
+        methods.forEach(builder::addMethod);
+        return builder.build();
+    }
+
+    private boolean isCacheable(MethodDescriptor<?, ?> method) {
+        return (method.getType() == MethodDescriptor.MethodType.UNARY) || (method.getType() == MethodDescriptor.MethodType.SERVER_STREAMING);
+    }
+
+    private <ReqT, RespT> ServerMethodDefinition<byte[], byte[]> wrap(ServerMethodDefinition<ReqT, RespT> definition) {
+        MethodDescriptor<byte[], byte[]> method = definition.getMethodDescriptor().toBuilder(BYTES, BYTES).build();
+        return ServerMethodDefinition.create(method, (call, headers) -> {
+            call.request(1);
+            return new CachingListener<>(definition, call, headers);
+        });
+    }
+
+    private static byte[] toBytes(InputStream stream) {
+        try {
+            return ByteStreams.toByteArray(stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @EverythingIsNonnullByDefault
+    private class CachingListener<ReqT, RespT> extends ServerCall.Listener<byte[]> {
+
+        private final ServerMethodDefinition<ReqT, RespT> definition;
+        private final ServerCall<byte[], byte[]> call;
+        private final Metadata headers;
+        private final String methodName;
+
+        @Nullable private byte[] request = null;
+        @Nullable private Iterator<byte[]> cachedMessages = null;
+        @Nullable private RecordingCall<ReqT, RespT> recordingCall = null;
+        @Nullable private ServerCall.Listener<ReqT> delegate = null;
+
+        CachingListener(ServerMethodDefinition<ReqT, RespT> definition, ServerCall<byte[], byte[]> call, Metadata headers) {
+            this.definition = definition;
+            this.call = call;
+            this.headers = headers;
+            methodName = definition.getMethodDescriptor().getFullMethodName();
+        }
+
+        @Override
+        public void onMessage(byte[] message) {
+            // Only a single message is ever requested.
+            request = message;
+        }
+
+        @Override
+        public void onHalfClose() {
+            if (request == null) {
+                call.close(Status.INTERNAL.withDescription("Half-closed without a request"), new Metadata());
+                return;
+            }
+
+            List<byte[]> messages = responseCache.get(methodName, request);
+            if (messages != null) {
+                call.sendHeaders(new Metadata());
+                cachedMessages = messages.iterator();
+                sendCachedMessages();
+                return;
+            }
+
+            RecordingCall<ReqT, RespT> recording = new RecordingCall<>(definition.getMethodDescriptor(), call, request);
+            recordingCall = recording;
+
+            ServerCall.Listener<ReqT> listener = definition.getServerCallHandler().startCall(recording, headers);
+            delegate = listener;
+            listener.onMessage(definition.getMethodDescriptor().parseRequest(new ByteArrayInputStream(request)));
+            listener.onHalfClose();
+        }
+
+        @Override
+        public void onCancel() {
+            cachedMessages = null;
+            if (recordingCall != null)
+                recordingCall.stopRecording();
+            if (delegate != null)
+                delegate.onCancel();
+        }
+
+        @Override
+        public void onComplete() {
+            if (delegate != null)
+                delegate.onComplete();
+        }
+
+        @Override
+        public void onReady() {
+            if (cachedMessages != null)
+                sendCachedMessages();
+            else if (delegate != null)
+                delegate.onReady();
+        }
+
+        // Cached responses are sent as the client is ready for them, so a large response isn't buffered again for each client.
+        private void sendCachedMessages() {
+            Iterator<byte[]> messages = cachedMessages;
+            while ((messages != null) && messages.hasNext() && call.isReady())
+                call.sendMessage(messages.next());
+
+            if ((messages != null) && !messages.hasNext()) {
+                cachedMessages = null;
+                call.close(Status.OK, new Metadata());
+            }
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private class RecordingCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
+
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final ServerCall<byte[], byte[]> call;
+        private final byte[] request;
+        private final long generation = responseCache.generation();
+
+        @Nullable private List<byte[]> recorded = new ArrayList<>();
+        private long reservedBytes = 0;
+
+        RecordingCall(MethodDescriptor<ReqT, RespT> method, ServerCall<byte[], byte[]> call, byte[] request) {
+            this.method = method;
+            this.call = call;
+            this.request = request;
+        }
+
+        @Override
+        public void request(int numMessages) {
+            // The request has already been read to check the cache.
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+            call.sendHeaders(headers);
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            byte[] bytes = toBytes(method.streamResponse(message));
+            record(bytes);
+            call.sendMessage(bytes);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            synchronized (this) {
+                if (status.isOk() && (recorded != null))
+                    responseCache.put(method.getFullMethodName(), request, recorded, generation);
+                stopRecording();
+            }
+            call.close(status, trailers);
+        }
+
+        private synchronized void record(byte[] bytes) {
+            if (recorded == null)
+                return;
+
+            if ((request.length + reservedBytes + bytes.length <= responseCache.maxBytes()) && responseCache.reserve(bytes.length)) {
+                reservedBytes += bytes.length;
+                recorded.add(bytes);
+            } else
+                stopRecording();
+        }
+
+        // Once cached, the messages are counted by the cache itself, so the reservation is released either way.
+        private synchronized void stopRecording() {
+            recorded = null;
+            responseCache.release(reservedBytes);
+            reservedBytes = 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return call.isReady();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return call.isCancelled();
+        }
+
+        @Override
+        public void setMessageCompression(boolean enabled) {
+            call.setMessageCompression(enabled);
+        }
+
+        @Override
+        public void setCompression(String compressor) {
+            call.setCompression(compressor);
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return call.getAttributes();
+        }
+
+        @Nullable
+        @Override
+        public String getAuthority() {
+            return call.getAuthority();
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return method;
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class BytesMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            return toBytes(stream);
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.grpc;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.ewbnetworkserver.NetworkChangeListener;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The serialized responses to gRPC requests, keyed by method and serialized request. Any change to the network invalidates every
+// response, as a single object can appear in the responses to many requests.
+@EverythingIsNonnullByDefault
+public class GrpcResponseCache implements NetworkChangeListener {
+
+    private final long maxBytes;
+    private final Map<Key, CachedResponse> responses = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long numBytes = 0;
+    private long recordingBytes = 0;
+    private long generation = 0;
+
+    public GrpcResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    @Nullable
+    synchronized List<byte[]> get(String method, byte[] request) {
+        CachedResponse response = responses.get(new Key(method, request));
+        return response == null ? null : response.messages;
+    }
+
+    // Incremented every time the responses are invalidated, so a response built from the network before a change isn't cached after it.
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized boolean put(String method, byte[] request, List<byte[]> messages, long builtGeneration) {
+        CachedResponse response = new CachedResponse(messages, request.length);
+        if ((builtGeneration != generation) || (response.numBytes > maxBytes))
+            return false;
+
+        CachedResponse previous = responses.put(new Key(method, request), response);
+        if (previous != null)
+            numBytes -= previous.numBytes;
+        numBytes += response.numBytes;
+
+        Iterator<CachedResponse> leastRecentlyUsed = responses.values().iterator();
+        while (numBytes > maxBytes) {
+            numBytes -= leastRecentlyUsed.next().numBytes;
+            leastRecentlyUsed.remove();
+        }
+
+        return true;
+    }
+
+    // Responses that are still being recorded are charged against their own budget of the same size, so concurrent calls can't each
+    // hold a full budget of messages that might never be cached.
+    synchronized boolean reserve(long bytes) {
+        if (recordingBytes + bytes > maxBytes)
+            return false;
+
+        recordingBytes += bytes;
+        return true;
+    }
+
+    synchronized void release(long bytes) {
+        recordingBytes -= bytes;
+    }
+
+    synchronized void invalidate() {
+        ++generation;
+        responses.clear();
+        numBytes = 0;
+    }
+
+    synchronized int size() {
+        return responses.size();
+    }
+
+    synchronized long numBytes() {
+        return numBytes;
+    }
+
+    synchronized long recordingBytes() {
+        return recordingBytes;
+    }
+
+    @Override
+    public void onAdded(IdentifiedObject identifiedObject) {
+        invalidate();
+    }
+
+    @Override
+    public void onRemoved(IdentifiedObject identifiedObject) {
+        invalidate();
+    }
+
+    @Override
+    public void onReconnected(ConductingEquipment conductingEquipment) {
+        invalidate();
+    }
+
+    @Override
+    public void onFeederChanged(String feederMRID) {
+        invalidate();
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class Key {
+
+        private final String method;
+        private final byte[] request;
+        private final int hash;
+
+        Key(String method, byte[] request) {
+            this.method = method;
+            this.request = request;
+            hash = 31 * method.hashCode() + Arrays.hashCode(request);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if ((o == null) || (getClass() != o.getClass()))
+                return false;
+
+            Key key = (Key) o;
+            return method.equals(key.method) && Arrays.equals(request, key.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class CachedResponse {
+
+        private final List<byte[]> messages;
+        private final long numBytes;
+
+        CachedResponse(List<byte[]> messages, int requestBytes) {
+            this.messages = messages;
+            numBytes = requestBytes + messages.stream().mapToLong(message -> message.length).sum();
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.grpc;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+
+// Streams items to a client as {key: [item, ...]} messages of up to chunkSize items, only taking each chunk from the items once the
+// client is ready for it, so a lazily converted set of items is never held in memory as JSON. The stream is completed after the last chunk.
+@EverythingIsNonnullByDefault
+public class JsonChunkStream {
+
+    private final ServerCallStreamObserver<JsonObject> observer;
+    private final String key;
+    private final Iterator<JsonObject> items;
+    private final int chunkSize;
+    private final int maxChunkBytes;
+
+    @Nullable private JsonObject pending = null;
+    private int pendingBytes = 0;
+    private boolean finished = false;
+
+    public static void start(ServerCallStreamObserver<JsonObject> observer, String key, Iterator<JsonObject> items, int chunkSize) {
+        start(observer, key, items, chunkSize, Integer.MAX_VALUE);
+    }
+
+    // Chunks are also ended before they grow past maxChunkBytes of encoded items, unless a single item is larger than that.
+    public static void start(ServerCallStreamObserver<JsonObject> observer, String key, Iterator<JsonObject> items, int chunkSize, int maxChunkBytes) {
+        JsonChunkStream stream = new JsonChunkStream(observer, key, items, chunkSize, maxChunkBytes);
+        observer.setOnReadyHandler(stream::drain);
+        observer.setOnCancelHandler(stream::cancel);
+        stream.drain();
+    }
+
+    private JsonChunkStream(ServerCallStreamObserver<JsonObject> observer, String key, Iterator<JsonObject> items, int chunkSize, int maxChunkBytes) {
+        this.observer = observer;
+        this.key = key;
+        this.items = items;
+        this.chunkSize = chunkSize;
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    private synchronized void drain() {
+        while (!finished && observer.isReady()) {
+            if ((pending == null) && !items.hasNext()) {
+                finished = true;
+                observer.onCompleted();
+                return;
+            }
+
+            JsonArray chunk = new JsonArray();
+            long chunkBytes = 0;
+            while ((chunk.size() < chunkSize) && ((pending != null) || items.hasNext())) {
+                if (pending == null)
+                    take(items.next());
+
+                if (!chunk.isEmpty() && (chunkBytes + pendingBytes > maxChunkBytes))
+                    break;
+
+                chunk.add(pending);
+                chunkBytes += pendingBytes;
+                pending = null;
+            }
+
+            observer.onNext(new JsonObject().put(key, chunk));
+        }
+    }
+
+    // Items are only measured when the chunks are bounded by size, as it means encoding them an extra time.
+    private void take(JsonObject item) {
+        pending = item;
+        pendingBytes = maxChunkBytes == Integer.MAX_VALUE ? 0 : item.toBuffer().length();
+    }
+
+    private synchronized void cancel() {
+        finished = true;
+    }
+
+}
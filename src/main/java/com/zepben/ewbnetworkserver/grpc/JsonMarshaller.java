@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.grpc;
+
+import com.google.common.io.ByteStreams;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Marshals the messages of services without a protobuf definition as JSON objects. An empty message is an empty object.
+@EverythingIsNonnullByDefault
+public class JsonMarshaller implements MethodDescriptor.Marshaller<JsonObject> {
+
+    @Override
+    public InputStream stream(JsonObject value) {
+        return new ByteArrayInputStream(value.toBuffer().getBytes());
+    }
+
+    @Override
+    public JsonObject parse(InputStream stream) {
+        try {
+            byte[] bytes = ByteStreams.toByteArray(stream);
+            return bytes.length == 0 ? new JsonObject() : new JsonObject(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DecodeException e) {
+            throw Status.INVALID_ARGUMENT.withDescription("Invalid JSON: " + e.getMessage()).asRuntimeException();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.grpc;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.MethodDescriptor;
+import io.vertx.core.json.JsonObject;
+
+// The services the server adds alongside the evolve protobuf services have no protobuf definition of their own, so their methods
+// exchange JSON objects in the same form as the REST API. Clients can call them with a plain JSON marshaller rather than needing
+// generated stubs, and new fields can be added without changing a schema that every client compiles in.
+@EverythingIsNonnullByDefault
+public class JsonMethods {
+
+    private static final JsonMarshaller MARSHALLER = new JsonMarshaller();
+
+    public static MethodDescriptor<JsonObject, JsonObject> unary(String serviceName, String methodName) {
+        return method(MethodDescriptor.MethodType.UNARY, serviceName, methodName);
+    }
+
+    public static MethodDescriptor<JsonObject, JsonObject> serverStreaming(String serviceName, String methodName) {
+        return method(MethodDescriptor.MethodType.SERVER_STREAMING, serviceName, methodName);
+    }
+
+    private static MethodDescriptor<JsonObject, JsonObject> method(MethodDescriptor.MethodType type, String serviceName, String methodName) {
+        return MethodDescriptor.<JsonObject, JsonObject>newBuilder()
+            .setType(type)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName(serviceName, methodName))
+            .setRequestMarshaller(MARSHALLER)
+            .setResponseMarshaller(MARSHALLER)
+            .build();
+    }
+
+    private JsonMethods() {
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.lookup;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import com.zepben.idcorrelator.IdCorrelator;
+import com.zepben.vertxutils.routing.Respond;
+import com.zepben.vertxutils.routing.Route;
+import com.zepben.vertxutils.routing.RouteVersion;
+import com.zepben.vertxutils.routing.VersionableRoute;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.vertx.core.http.HttpMethod.POST;
+
+@EverythingIsNonnullByDefault
+public class LookupRoute {
+
+    static final String SYSTEM_TAG_PARAM = "systemTag";
+    static final String DEFAULT_SYSTEM_TAG = "EWB";
+    static final String IDS_FIELD = "ids";
+
+    static final int MAX_IDS = 10000;
+    static final long MAX_BODY_SIZE = 2 * 1024 * 1024;
+
+    private final NetworkService networkService;
+    private final IdCorrelator idCorrelator;
+    private final NetworkExportToJson networkExportToJson;
+
+    @EverythingIsNonnullByDefault
+    public enum AvailableRoute implements VersionableRoute {
+        ASSETS(RouteVersion.since(1));
+
+        private final RouteVersion rv;
+
+        AvailableRoute(RouteVersion rv) {
+            this.rv = rv;
+        }
+
+        @Override
+        public RouteVersion routeVersion() {
+            return rv;
+        }
+    }
+
+    static Function<AvailableRoute, Route> routeFactory(NetworkService networkService, IdCorrelator idCorrelator, NetworkExportToJson networkExportToJson) {
+        LookupRoute route = new LookupRoute(networkService, idCorrelator, networkExportToJson);
+
+        return availableRoute -> {
+            switch (availableRoute) {
+                case ASSETS:
+                    return Route.builder()
+                        .method(POST)
+                        .path("/assets")
+                        .addHandler(BodyHandler.create().setBodyLimit(MAX_BODY_SIZE))
+                        .addHandler(route::lookupAssets)
+                        .build();
+                default:
+                    throw new IllegalArgumentException("INTERNAL ERROR: Missing route factory method.");
+            }
+        };
+    }
+
+    void lookupAssets(RoutingContext context) {
+        List<String> ids = ids(context);
+        if (ids == null)
+            return;
+
+        String systemTag = context.request().getParam(SYSTEM_TAG_PARAM);
+        Function<String, List<PowerSystemResource>> resolver = ((systemTag == null) || systemTag.equalsIgnoreCase(DEFAULT_SYSTEM_TAG))
+            ? this::findByMRID
+            : id -> findBySystemId(systemTag, id);
+
+        new LookupStream(context.vertx(), context.response(), ids, resolver, networkExportToJson).start();
+    }
+
+    @Nullable
+    private List<String> ids(RoutingContext context) {
+        JsonArray idsArray;
+        try {
+            JsonObject body = context.getBodyAsJson();
+            idsArray = body == null ? null : body.getJsonArray(IDS_FIELD);
+        } catch (DecodeException | ClassCastException e) {
+            idsArray = null;
+        }
+
+        if (idsArray == null) {
+            Respond.withJson(context, BAD_REQUEST, new JsonObject()
+                .put("message", "Expected a JSON object with an '" + IDS_FIELD + "' array in the request body."));
+            return null;
+        }
+
+        if (idsArray.size() > MAX_IDS) {
+            Respond.withJson(context, BAD_REQUEST, new JsonObject()
+                .put("message", "Too many ids, a maximum of " + MAX_IDS + " can be looked up at once."));
+            return null;
+        }
+
+        List<String> ids = new ArrayList<>(idsArray.size());
+        for (Object id : idsArray) {
+            if (!(id instanceof String)) {
+                Respond.withJson(context, BAD_REQUEST, new JsonObject().put("message", "Invalid id '" + id + "', ids must be strings."));
+                return null;
+            }
+            ids.add((String) id);
+        }
+
+        return ids;
+    }
+
+    private List<PowerSystemResource> findByMRID(String mRID) {
+        PowerSystemResource psr = networkService.get(PowerSystemResource.class, mRID);
+        return psr == null ? Collections.emptyList() : Collections.singletonList(psr);
+    }
+
+    // A system ID can be correlated with more than one object, such as a line that was split into several conductors.
+    private List<PowerSystemResource> findBySystemId(String systemTag, String systemId) {
+        return idCorrelator.coreIds(systemTag, systemId)
+            .stream()
+            .sorted()
+            .map(mRID -> networkService.get(PowerSystemResource.class, mRID))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    LookupRoute(NetworkService networkService, IdCorrelator idCorrelator, NetworkExportToJson networkExportToJson) {
+        this.networkService = networkService;
+        this.idCorrelator = idCorrelator;
+        this.networkExportToJson = networkExportToJson;
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.lookup;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+
+// Resolves and encodes the ids a chunk at a time on worker threads, with several chunks in flight at once. Chunks are written in
+// the order of the ids as they become available, and no more are started while waiting for the response write queue to drain.
+@EverythingIsNonnullByDefault
+class LookupStream {
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    static final int IDS_PER_CHUNK = 250;
+    static final int MAX_CHUNKS_IN_FLIGHT = 4;
+
+    private static final String RESULTS_START = "{\"results\":[";
+    private static final String RESULTS_END = "]}";
+
+    private final Vertx vertx;
+    private final HttpServerResponse response;
+    private final List<String> ids;
+    private final Function<String, List<PowerSystemResource>> resolver;
+    private final NetworkExportToJson networkExportToJson;
+
+    private final int numChunks;
+    private final Map<Integer, Buffer> resolvedChunks = new HashMap<>();
+    private int nextChunkToResolve = 0;
+    private int nextChunkToWrite = 0;
+    private int chunksInFlight = 0;
+    private boolean isWaitingForDrain = false;
+    private boolean isClosed = false;
+
+    LookupStream(Vertx vertx,
+                 HttpServerResponse response,
+                 List<String> ids,
+                 Function<String, List<PowerSystemResource>> resolver,
+                 NetworkExportToJson networkExportToJson) {
+        this.vertx = vertx;
+        this.response = response;
+        this.ids = ids;
+        this.resolver = resolver;
+        this.networkExportToJson = networkExportToJson;
+
+        numChunks = (ids.size() + IDS_PER_CHUNK - 1) / IDS_PER_CHUNK;
+    }
+
+    void start() {
+        response
+            .setStatusCode(OK.code())
+            .putHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+
+        if (numChunks == 0) {
+            response.end(RESULTS_START + RESULTS_END);
+            return;
+        }
+
+        response
+            .setChunked(true)
+            .closeHandler(ignored -> isClosed = true)
+            .drainHandler(ignored -> {
+                if (isWaitingForDrain) {
+                    isWaitingForDrain = false;
+                    writeResolvedChunks();
+                    resolveChunks();
+                }
+            });
+
+        resolveChunks();
+    }
+
+    private void resolveChunks() {
+        while (!isClosed && !isWaitingForDrain && (chunksInFlight < MAX_CHUNKS_IN_FLIGHT) && (nextChunkToResolve < numChunks)) {
+            int chunk = nextChunkToResolve++;
+            ++chunksInFlight;
+
+            vertx.<Buffer>executeBlocking(promise -> promise.complete(encode(chunk)), false, result -> onResolved(chunk, result));
+        }
+    }
+
+    private void onResolved(int chunk, AsyncResult<Buffer> result) {
+        --chunksInFlight;
+        if (isClosed)
+            return;
+
+        if (result.failed()) {
+            // Part of the response has already been sent, so the best we can do is drop the connection.
+            logger.error("Failed to look up assets: {}", result.cause().getMessage(), result.cause());
+            isClosed = true;
+            response.close();
+            return;
+        }
+
+        resolvedChunks.put(chunk, result.result());
+        writeResolvedChunks();
+        resolveChunks();
+    }
+
+    private void writeResolvedChunks() {
+        Buffer buffer;
+        while (!isClosed && !isWaitingForDrain && ((buffer = resolvedChunks.remove(nextChunkToWrite)) != null)) {
+            ++nextChunkToWrite;
+            if (nextChunkToWrite == numChunks) {
+                response.end(buffer.appendString(RESULTS_END));
+                isClosed = true;
+                return;
+            }
+
+            response.write(buffer);
+            if (response.writeQueueFull())
+                isWaitingForDrain = true;
+        }
+    }
+
+    private Buffer encode(int chunk) {
+        int start = chunk * IDS_PER_CHUNK;
+        int end = Math.min(ids.size(), start + IDS_PER_CHUNK);
+
+        Buffer buffer = Buffer.buffer();
+        if (chunk == 0)
+            buffer.appendString(RESULTS_START);
+
+        for (int i = start; i < end; ++i) {
+            if (i > 0)
+                buffer.appendString(",");
+
+            List<PowerSystemResource> objects = resolver.apply(ids.get(i));
+            JsonArray jsonObjects = new JsonArray();
+            objects.forEach(psr -> jsonObjects.add(networkExportToJson.toJson(psr)));
+
+            buffer.appendString(new JsonObject()
+                .put("id", ids.get(i))
+                .put("found", !objects.isEmpty())
+                .put("objects", jsonObjects)
+                .encode());
+        }
+
+        return buffer;
+    }
+
+}
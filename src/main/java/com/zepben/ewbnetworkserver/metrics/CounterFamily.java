@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+@EverythingIsNonnullByDefault
+class CounterFamily extends MetricFamily<LongAdder> {
+
+    CounterFamily(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    void inc(String... labelValues) {
+        labels(labelValues).increment();
+    }
+
+    void inc(long amount, String... labelValues) {
+        labels(labelValues).add(amount);
+    }
+
+    @Override
+    String type() {
+        return "counter";
+    }
+
+    @Override
+    LongAdder newChild() {
+        return new LongAdder();
+    }
+
+    @Override
+    void collect(PrometheusTextWriter writer, List<String> labelValues, LongAdder child) {
+        writer.sample(name(), labelNames(), labelValues, child.sum());
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+@EverythingIsNonnullByDefault
+class GaugeFamily extends MetricFamily<GaugeFamily.Gauge> {
+
+    GaugeFamily(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    void set(double value, String... labelValues) {
+        labels(labelValues).set(value);
+    }
+
+    @Override
+    String type() {
+        return "gauge";
+    }
+
+    @Override
+    Gauge newChild() {
+        return new Gauge();
+    }
+
+    @Override
+    void collect(PrometheusTextWriter writer, List<String> labelValues, Gauge child) {
+        writer.sample(name(), labelNames(), labelValues, child.get());
+    }
+
+    @EverythingIsNonnullByDefault
+    static class Gauge {
+
+        private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(0));
+
+        void set(double value) {
+            bits.set(Double.doubleToRawLongBits(value));
+        }
+
+        void inc() {
+            add(1);
+        }
+
+        void dec() {
+            add(-1);
+        }
+
+        void add(double amount) {
+            long current;
+            do {
+                current = bits.get();
+            } while (!bits.compareAndSet(current, Double.doubleToRawLongBits(Double.longBitsToDouble(current) + amount)));
+        }
+
+        double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@EverythingIsNonnullByDefault
+class GrpcMetricsInterceptor implements ServerInterceptor {
+
+    static final int MAX_LOGGED_REQUEST_LENGTH = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    private final CounterFamily callsStarted;
+    private final HistogramFamily callDuration;
+    private final GaugeFamily inFlight;
+    private final long slowCallThresholdNanos;
+
+    // Calls taking at least slowCallThresholdNanos are logged with their request, zero to disable.
+    GrpcMetricsInterceptor(CounterFamily callsStarted, HistogramFamily callDuration, GaugeFamily inFlight, long slowCallThresholdNanos) {
+        this.callsStarted = callsStarted;
+        this.callDuration = callDuration;
+        this.inFlight = inFlight;
+        this.slowCallThresholdNanos = slowCallThresholdNanos;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        String method = call.getMethodDescriptor().getFullMethodName();
+        CallMetrics callMetrics = new CallMetrics(method);
+
+        ServerCall<ReqT, RespT> monitoringCall = new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                callMetrics.complete(status.getCode());
+                super.close(status, trailers);
+            }
+        };
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(next.startCall(monitoringCall, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                callMetrics.onRequest(message);
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                callMetrics.complete(cancelledCode());
+                super.onCancel();
+            }
+        };
+    }
+
+    // The call is cancelled rather than closed when its deadline passes, so check the deadline of its context.
+    private static Status.Code cancelledCode() {
+        Deadline deadline = Context.current().getDeadline();
+        return ((deadline != null) && deadline.isExpired()) ? Status.Code.DEADLINE_EXCEEDED : Status.Code.CANCELLED;
+    }
+
+    static String describe(@Nullable Object request, int numRequests) {
+        if (request == null)
+            return "no request";
+
+        String description;
+        if (request instanceof byte[])
+            description = "base64:" + Base64.getEncoder().encodeToString((byte[]) request);
+        else
+            description = request.toString().replaceAll("\\s+", " ").trim();
+
+        if (description.length() > MAX_LOGGED_REQUEST_LENGTH)
+            description = description.substring(0, MAX_LOGGED_REQUEST_LENGTH) + "...";
+
+        return numRequests > 1 ? description + " (+" + (numRequests - 1) + " more requests)" : description;
+    }
+
+    @EverythingIsNonnullByDefault
+    private class CallMetrics {
+
+        private final String method;
+        private final long start = System.nanoTime();
+        private final GaugeFamily.Gauge methodInFlight;
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+        private final AtomicInteger numRequests = new AtomicInteger(0);
+
+        @Nullable private volatile Object firstRequest = null;
+
+        CallMetrics(String method) {
+            this.method = method;
+            callsStarted.inc(method);
+            methodInFlight = inFlight.labels(method);
+            methodInFlight.inc();
+        }
+
+        void onRequest(Object request) {
+            // Requests are only kept to describe slow calls, and only the first is kept for streaming requests.
+            if ((slowCallThresholdNanos > 0) && (numRequests.getAndIncrement() == 0))
+                firstRequest = request;
+        }
+
+        void complete(Status.Code code) {
+            if (completed.compareAndSet(false, true)) {
+                long duration = System.nanoTime() - start;
+                methodInFlight.dec();
+                callDuration.labels(method, code.name()).observeNanos(duration);
+
+                if ((slowCallThresholdNanos > 0) && (duration >= slowCallThresholdNanos)) {
+                    logger.warn("Slow gRPC call to {} took {} ms [{}]: {}",
+                        method,
+                        TimeUnit.NANOSECONDS.toMillis(duration),
+                        code.name(),
+                        describe(firstRequest, numRequests.get()));
+                }
+                firstRequest = null;
+            }
+        }
+
+    }
+
+}
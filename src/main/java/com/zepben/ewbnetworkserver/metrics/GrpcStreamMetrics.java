@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.grpc.Metadata;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Records the number of messages and wire bytes sent and received on each gRPC stream. The sizes are only known to the transport,
+// so this is a stream tracer rather than part of the interceptor. Streams are only labelled with their method once the server has
+// found it in its registry and started the call, so a client can't add labels by sending made up method names.
+@EverythingIsNonnullByDefault
+class GrpcStreamMetrics extends ServerStreamTracer.Factory {
+
+    static final String SENT = "sent";
+    static final String RECEIVED = "received";
+    static final String UNKNOWN_METHOD = "unknown";
+
+    private final HistogramFamily streamMessages;
+    private final HistogramFamily streamBytes;
+
+    GrpcStreamMetrics(HistogramFamily streamMessages, HistogramFamily streamBytes) {
+        this.streamMessages = streamMessages;
+        this.streamBytes = streamBytes;
+    }
+
+    @Override
+    public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+        return new StreamTracer();
+    }
+
+    @EverythingIsNonnullByDefault
+    private class StreamTracer extends ServerStreamTracer {
+
+        private final LongAdder messagesSent = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private volatile String method = UNKNOWN_METHOD;
+
+        @Override
+        public void serverCallStarted(ServerCallInfo<?, ?> callInfo) {
+            method = callInfo.getMethodDescriptor().getFullMethodName();
+        }
+
+        @Override
+        public void outboundMessage(int seqNo) {
+            messagesSent.increment();
+        }
+
+        @Override
+        public void inboundMessage(int seqNo) {
+            messagesReceived.increment();
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+            bytesSent.add(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+            bytesReceived.add(bytes);
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+            if (!closed.compareAndSet(false, true))
+                return;
+
+            streamMessages.labels(method, SENT).observe(messagesSent.sum());
+            streamMessages.labels(method, RECEIVED).observe(messagesReceived.sum());
+            streamBytes.labels(method, SENT).observe(bytesSent.sum());
+            streamBytes.labels(method, RECEIVED).observe(bytesReceived.sum());
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@EverythingIsNonnullByDefault
+class HistogramFamily extends MetricFamily<HistogramFamily.Histogram> {
+
+    static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+    static final double[] COUNT_BUCKETS = {1, 10, 100, 1000, 10000, 100000, 1000000};
+    static final double[] BYTES_BUCKETS = {1024, 16384, 131072, 1048576, 8388608, 67108864, 536870912};
+
+    private final double[] buckets;
+    private final long scale;
+    private final long[] bucketBounds;
+
+    // Observations are in nanoseconds, and reported in seconds.
+    HistogramFamily(String name, String help, double[] buckets, String... labelNames) {
+        this(name, help, buckets, TimeUnit.SECONDS.toNanos(1), labelNames);
+    }
+
+    // Observations are divided by the scale when reported, so a scale of 1 reports them as they are observed.
+    HistogramFamily(String name, String help, double[] buckets, long scale, String... labelNames) {
+        super(name, help, labelNames);
+        this.buckets = buckets.clone();
+        this.scale = scale;
+
+        bucketBounds = new long[buckets.length];
+        for (int i = 0; i < buckets.length; ++i)
+            bucketBounds[i] = (long) (buckets[i] * scale);
+    }
+
+    @Override
+    String type() {
+        return "histogram";
+    }
+
+    @Override
+    Histogram newChild() {
+        return new Histogram();
+    }
+
+    @Override
+    void collect(PrometheusTextWriter writer, List<String> labelValues, Histogram child) {
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; ++i) {
+            cumulative += child.counts[i].sum();
+            writer.sample(name() + "_bucket", labelNames(), labelValues, "le", PrometheusTextWriter.format(buckets[i]), cumulative);
+        }
+        cumulative += child.counts[buckets.length].sum();
+
+        writer.sample(name() + "_bucket", labelNames(), labelValues, "le", "+Inf", cumulative);
+        writer.sample(name() + "_sum", labelNames(), labelValues, child.sum.sum() / (double) scale);
+        writer.sample(name() + "_count", labelNames(), labelValues, cumulative);
+    }
+
+    @EverythingIsNonnullByDefault
+    class Histogram {
+
+        private final LongAdder[] counts = new LongAdder[bucketBounds.length + 1];
+        private final LongAdder sum = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < counts.length; ++i)
+                counts[i] = new LongAdder();
+        }
+
+        void observeNanos(long nanos) {
+            observe(nanos);
+        }
+
+        void observe(long value) {
+            int bucket = 0;
+            while ((bucket < bucketBounds.length) && (value > bucketBounds[bucket]))
+                ++bucket;
+
+            counts[bucket].increment();
+            sum.add(value);
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder adder : counts)
+                count += adder.sum();
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@EverythingIsNonnullByDefault
+class JvmMetrics implements Collector {
+
+    private static final List<String> NO_LABELS = Collections.emptyList();
+    private static final List<String> GC_LABELS = Collections.singletonList("gc");
+
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private final Map<Long, Long> threadAllocations = new HashMap<>();
+    private long deadThreadAllocations = 0;
+
+    @Override
+    public void collect(PrometheusTextWriter writer) {
+        MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+        writer.header("jvm_memory_heap_used_bytes", "gauge", "Used heap memory.")
+            .sample("jvm_memory_heap_used_bytes", NO_LABELS, NO_LABELS, heap.getUsed());
+        writer.header("jvm_memory_heap_committed_bytes", "gauge", "Committed heap memory.")
+            .sample("jvm_memory_heap_committed_bytes", NO_LABELS, NO_LABELS, heap.getCommitted());
+        writer.header("jvm_memory_heap_max_bytes", "gauge", "Maximum heap memory, or -1 if undefined.")
+            .sample("jvm_memory_heap_max_bytes", NO_LABELS, NO_LABELS, heap.getMax());
+
+        writer.header("jvm_gc_collections_total", "counter", "Number of garbage collections.");
+        gcBeans.forEach(gc -> writer.sample("jvm_gc_collections_total", GC_LABELS, Collections.singletonList(gc.getName()), Math.max(0, gc.getCollectionCount())));
+
+        writer.header("jvm_gc_collection_seconds_total", "counter", "Accumulated time spent in garbage collection.");
+        gcBeans.forEach(gc -> writer.sample("jvm_gc_collection_seconds_total", GC_LABELS, Collections.singletonList(gc.getName()), Math.max(0, gc.getCollectionTime()) / 1000.0));
+
+        long allocated = allocatedBytes();
+        if (allocated >= 0) {
+            writer.header("jvm_allocated_bytes_total", "counter", "Approximate number of bytes allocated on the heap by all threads.")
+                .sample("jvm_allocated_bytes_total", NO_LABELS, NO_LABELS, allocated);
+        }
+    }
+
+    private synchronized long allocatedBytes() {
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+
+        long[] ids = allocationBean.getAllThreadIds();
+        long[] bytes = allocationBean.getThreadAllocatedBytes(ids);
+
+        // Per thread counts disappear when the thread dies, so remember the last value we saw to keep the total monotonic.
+        Map<Long, Long> live = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            if (bytes[i] >= 0) {
+                live.put(ids[i], bytes[i]);
+                total += bytes[i];
+            }
+        }
+
+        threadAllocations.forEach((id, lastBytes) -> {
+            if (!live.containsKey(id))
+                deadThreadAllocations += lastBytes;
+        });
+        threadAllocations.clear();
+        threadAllocations.putAll(live);
+
+        return deadThreadAllocations + total;
+    }
+
+}
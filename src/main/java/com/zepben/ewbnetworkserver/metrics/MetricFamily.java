@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+@EverythingIsNonnullByDefault
+abstract class MetricFamily<T> implements Collector {
+
+    private final String name;
+    private final String help;
+    private final List<String> labelNames;
+    private final Map<List<String>, T> children = new ConcurrentHashMap<>();
+    private final Function<List<String>, T> childFactory;
+
+    MetricFamily(String name, String help, String[] labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = Arrays.asList(labelNames.clone());
+        childFactory = labels -> newChild();
+    }
+
+    String name() {
+        return name;
+    }
+
+    List<String> labelNames() {
+        return labelNames;
+    }
+
+    T labels(String... labelValues) {
+        if (labelValues.length != labelNames.size())
+            throw new IllegalArgumentException(String.format("Metric '%s' expects %d label values, but %d were supplied.", name, labelNames.size(), labelValues.length));
+
+        List<String> key = Arrays.asList(labelValues);
+
+        // Avoid the locking in computeIfAbsent on the hot path once the child exists.
+        T child = children.get(key);
+        return child != null ? child : children.computeIfAbsent(key, childFactory);
+    }
+
+    void clear() {
+        children.clear();
+    }
+
+    @Override
+    public void collect(PrometheusTextWriter writer) {
+        writer.header(name, type(), help);
+        children.forEach((labelValues, child) -> collect(writer, labelValues, child));
+    }
+
+    abstract String type();
+
+    abstract T newChild();
+
+    abstract void collect(PrometheusTextWriter writer, List<String> labelValues, T child);
+
+}
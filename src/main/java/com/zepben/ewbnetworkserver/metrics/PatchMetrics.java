@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.patch.PatchLayer;
+import com.zepben.ewbnetworkserver.patch.PatchResult;
+
+@EverythingIsNonnullByDefault
+public class PatchMetrics implements Collector {
+
+    private final CounterFamily patches = new CounterFamily("ewb_patches_total", "Number of patches processed.");
+    private final CounterFamily features = new CounterFamily("ewb_patch_features_total", "Number of patch features processed.", "layer", "action");
+    private final CounterFamily errors = new CounterFamily("ewb_patch_errors_total", "Number of errors reported while processing patches.");
+    private final CounterFamily warnings = new CounterFamily("ewb_patch_warnings_total", "Number of warnings reported while processing patches.");
+
+    public void addFeature(PatchLayer layer) {
+        features.inc(layer.name(), "add");
+    }
+
+    public void removeFeature(PatchLayer layer) {
+        features.inc(layer.name(), "remove");
+    }
+
+    public void addResult(PatchResult result) {
+        patches.inc();
+        errors.inc(result.errors().size());
+        warnings.inc(result.warnings().size());
+    }
+
+    @Override
+    public void collect(PrometheusTextWriter writer) {
+        patches.collect(writer);
+        features.collect(writer);
+        errors.collect(writer);
+        warnings.collect(writer);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+@EverythingIsNonnullByDefault
+class PrometheusTextWriter {
+
+    private final StringBuilder builder = new StringBuilder(16 * 1024);
+
+    PrometheusTextWriter header(String name, String type, String help) {
+        builder.append("# HELP ").append(name).append(' ').append(escapeHelp(help)).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    PrometheusTextWriter sample(String name, List<String> labelNames, List<String> labelValues, double value) {
+        return sample(name, labelNames, labelValues, null, null, value);
+    }
+
+    PrometheusTextWriter sample(String name,
+                                List<String> labelNames,
+                                List<String> labelValues,
+                                @Nullable String extraLabelName,
+                                @Nullable String extraLabelValue,
+                                double value) {
+        builder.append(name);
+
+        if (!labelNames.isEmpty() || (extraLabelName != null)) {
+            builder.append('{');
+            for (int i = 0; i < labelNames.size(); ++i) {
+                if (i > 0)
+                    builder.append(',');
+                appendLabel(labelNames.get(i), labelValues.get(i));
+            }
+
+            if ((extraLabelName != null) && (extraLabelValue != null)) {
+                if (!labelNames.isEmpty())
+                    builder.append(',');
+                appendLabel(extraLabelName, extraLabelValue);
+            }
+            builder.append('}');
+        }
+
+        builder.append(' ').append(format(value)).append('\n');
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+    static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY)
+            return "+Inf";
+        else if (value == Double.NEGATIVE_INFINITY)
+            return "-Inf";
+        else if (Double.isNaN(value))
+            return "NaN";
+        else if ((value == Math.rint(value)) && (Math.abs(value) < 1e15))
+            return Long.toString((long) value);
+        else
+            return Double.toString(value);
+    }
+
+    private void appendLabel(String name, String value) {
+        builder.append(name).append("=\"");
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '\\')
+                builder.append("\\\\");
+            else if (c == '"')
+                builder.append("\\\"");
+            else if (c == '\n')
+                builder.append("\\n");
+            else
+                builder.append(c);
+        }
+        builder.append('"');
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+}
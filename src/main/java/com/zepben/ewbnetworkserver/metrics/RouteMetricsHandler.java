@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+
+@EverythingIsNonnullByDefault
+class RouteMetricsHandler implements Handler<RoutingContext> {
+
+    static final String UNMATCHED_ROUTE = "unmatched";
+
+    private final HistogramFamily requestDuration;
+    private final GaugeFamily.Gauge inFlight;
+
+    RouteMetricsHandler(HistogramFamily requestDuration, GaugeFamily inFlight) {
+        this.requestDuration = requestDuration;
+        this.inFlight = inFlight.labels();
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        long start = System.nanoTime();
+        Route metricsRoute = context.currentRoute();
+
+        inFlight.inc();
+        context.addBodyEndHandler(ignored -> {
+            inFlight.dec();
+
+            // The route is only known once a handler has ended the response, so label with the route pattern that ended it rather than
+            // the raw URI to keep the label cardinality bounded.
+            Route route = context.currentRoute();
+            String path = ((route == null) || (route == metricsRoute) || (route.getPath() == null)) ? UNMATCHED_ROUTE : route.getPath();
+
+            requestDuration
+                .labels(context.request().method().name(), path, Integer.toString(context.response().getStatusCode()))
+                .observeNanos(System.nanoTime() - start);
+        });
+
+        context.next();
+    }
+
+}
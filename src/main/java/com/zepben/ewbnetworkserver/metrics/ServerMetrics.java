@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.evolve.services.network.NetworkService;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerStreamTracer;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@EverythingIsNonnullByDefault
+public class ServerMetrics {
+
+    public static final String METRICS_PATH = "/metrics";
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HistogramFamily httpRequestDuration = new HistogramFamily("ewb_http_request_duration_seconds",
+        "Time taken to respond to REST requests.",
+        HistogramFamily.LATENCY_BUCKETS,
+        "method", "route", "status");
+    private final GaugeFamily httpRequestsInFlight = new GaugeFamily("ewb_http_requests_in_flight",
+        "Number of REST requests currently being handled.");
+    private final HistogramFamily grpcCallDuration = new HistogramFamily("ewb_grpc_call_duration_seconds",
+        "Time taken to complete gRPC calls.",
+        HistogramFamily.LATENCY_BUCKETS,
+        "method", "code");
+    private final GaugeFamily grpcCallsInFlight = new GaugeFamily("ewb_grpc_calls_in_flight",
+        "Number of gRPC calls currently being handled.",
+        "method");
+    private final CounterFamily grpcCallsStarted = new CounterFamily("ewb_grpc_calls_started_total",
+        "Number of gRPC calls started.",
+        "method");
+    private final HistogramFamily grpcStreamMessages = new HistogramFamily("ewb_grpc_stream_messages",
+        "Number of messages sent and received on each gRPC stream.",
+        HistogramFamily.COUNT_BUCKETS,
+        1,
+        "method", "direction");
+    private final HistogramFamily grpcStreamBytes = new HistogramFamily("ewb_grpc_stream_bytes",
+        "Number of wire bytes sent and received on each gRPC stream.",
+        HistogramFamily.BYTES_BUCKETS,
+        1,
+        "method", "direction");
+    private final GaugeFamily startupPhaseDuration = new GaugeFamily("ewb_startup_phase_duration_seconds",
+        "Time taken by each phase of the most recent network load.",
+        "phase");
+    private final GaugeFamily networkObjects = new GaugeFamily("ewb_network_objects",
+        "Number of objects in the network service by type.",
+        "type");
+    private final GaugeFamily idCorrelations = new GaugeFamily("ewb_id_correlations",
+        "Number of ID correlations by system tag.",
+        "system_tag");
+    private final GaugeFamily idCorrelationBytes = new GaugeFamily("ewb_id_correlation_bytes",
+        "Estimated heap used by the ID correlations.");
+
+    private final VertxMetrics vertxMetrics = new VertxMetrics();
+    private final JvmMetrics jvmMetrics = new JvmMetrics();
+    private final PatchMetrics patchMetrics = new PatchMetrics();
+
+    private final RouteMetricsHandler routeMetricsHandler = new RouteMetricsHandler(httpRequestDuration, httpRequestsInFlight);
+    private final GrpcMetricsInterceptor grpcMetricsInterceptor;
+    private final GrpcStreamMetrics grpcStreamMetrics = new GrpcStreamMetrics(grpcStreamMessages, grpcStreamBytes);
+
+    private final List<Collector> collectors = Arrays.asList(
+        httpRequestDuration,
+        httpRequestsInFlight,
+        grpcCallDuration,
+        grpcCallsInFlight,
+        grpcCallsStarted,
+        grpcStreamMessages,
+        grpcStreamBytes,
+        vertxMetrics,
+        jvmMetrics,
+        startupPhaseDuration,
+        networkObjects,
+        idCorrelations,
+        idCorrelationBytes,
+        patchMetrics);
+
+    public ServerMetrics() {
+        this(0);
+    }
+
+    // gRPC calls taking at least slowGrpcCallThresholdMs are logged with their request, zero to disable.
+    public ServerMetrics(long slowGrpcCallThresholdMs) {
+        grpcMetricsInterceptor = new GrpcMetricsInterceptor(grpcCallsStarted,
+            grpcCallDuration,
+            grpcCallsInFlight,
+            TimeUnit.MILLISECONDS.toNanos(slowGrpcCallThresholdMs));
+    }
+
+    public void start(Vertx vertx) {
+        vertxMetrics.start(vertx, 1000);
+    }
+
+    public Handler<RoutingContext> routeMetricsHandler() {
+        return routeMetricsHandler;
+    }
+
+    public Handler<RoutingContext> scrapeHandler() {
+        return context -> context.response()
+            .putHeader("Content-Type", CONTENT_TYPE)
+            .end(scrape());
+    }
+
+    public ServerInterceptor grpcMetricsInterceptor() {
+        return grpcMetricsInterceptor;
+    }
+
+    public ServerStreamTracer.Factory grpcStreamTracerFactory() {
+        return grpcStreamMetrics;
+    }
+
+    public PatchMetrics patchMetrics() {
+        return patchMetrics;
+    }
+
+    public void recordStartupPhase(String phase, long durationNanos) {
+        startupPhaseDuration.set(durationNanos / (double) TimeUnit.SECONDS.toNanos(1), phase);
+    }
+
+    public void updateNetworkObjectCounts(NetworkService networkService) {
+        Map<String, Long> counts = networkService.listOf(IdentifiedObject.class)
+            .stream()
+            .collect(Collectors.groupingBy(io -> io.getClass().getSimpleName(), Collectors.counting()));
+
+        networkObjects.clear();
+        counts.forEach((type, count) -> networkObjects.set(count, type));
+    }
+
+    public void updateIdCorrelations(Map<String, Integer> correlationsBySystemTag, long numBytes) {
+        idCorrelations.clear();
+        correlationsBySystemTag.forEach((systemTag, count) -> idCorrelations.set(count, systemTag));
+        idCorrelationBytes.set(numBytes);
+    }
+
+    public String scrape() {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        collectors.forEach(collector -> collector.collect(writer));
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.netty.util.concurrent.EventExecutor;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.VertxInternal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@EverythingIsNonnullByDefault
+class VertxMetrics implements Collector {
+
+    private final GaugeFamily eventLoopLag = new GaugeFamily("ewb_vertx_event_loop_lag_seconds",
+        "Time the most recent probe task waited in each event loop queue before it was run.",
+        "event_loop");
+    private final GaugeFamily workerQueueDepth = new GaugeFamily("ewb_vertx_worker_pool_queue_depth",
+        "Number of blocking tasks waiting for a worker thread.");
+    private final GaugeFamily workerActiveThreads = new GaugeFamily("ewb_vertx_worker_pool_active_threads",
+        "Number of worker threads currently running blocking tasks.");
+
+    private List<EventExecutor> eventLoops = Collections.emptyList();
+    private ThreadPoolExecutor workerPool = null;
+
+    void start(Vertx vertx, long probeIntervalMs) {
+        // These are vert.x internals, so only monitor what we can find rather than failing if the implementation changes.
+        if (!(vertx instanceof VertxInternal))
+            return;
+
+        VertxInternal vertxInternal = (VertxInternal) vertx;
+
+        List<EventExecutor> loops = new ArrayList<>();
+        vertxInternal.getEventLoopGroup().forEach(loops::add);
+        eventLoops = loops;
+
+        ExecutorService executor = vertxInternal.getWorkerPool();
+        if (executor instanceof ThreadPoolExecutor)
+            workerPool = (ThreadPoolExecutor) executor;
+
+        if (!eventLoops.isEmpty())
+            vertx.setPeriodic(probeIntervalMs, id -> probeEventLoops());
+    }
+
+    @Override
+    public void collect(PrometheusTextWriter writer) {
+        ThreadPoolExecutor pool = workerPool;
+        if (pool != null) {
+            workerQueueDepth.set(pool.getQueue().size());
+            workerActiveThreads.set(pool.getActiveCount());
+        }
+
+        eventLoopLag.collect(writer);
+        workerQueueDepth.collect(writer);
+        workerActiveThreads.collect(writer);
+    }
+
+    private void probeEventLoops() {
+        for (int i = 0; i < eventLoops.size(); ++i) {
+            GaugeFamily.Gauge lag = eventLoopLag.labels(Integer.toString(i));
+            long submitted = System.nanoTime();
+            eventLoops.get(i).execute(() -> lag.set((System.nanoTime() - submitted) / (double) TimeUnit.SECONDS.toNanos(1)));
+        }
+    }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.vertxutils.routing.Respond;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+
+// Networks for other dates, loaded on demand from the EWB data root and served under /dates/yyyy-MM-dd or to requests with an
+// EWB-Date header. Each requested date is resolved to the date of the data that will be loaded for it, so requests for dates that
+// share data share a network. The most recently used networks are kept loaded, with the least recently used unloaded once the
+// limit is reached. Resolving a date searches the EWB data root, so it is done on the worker pool with requests answered as
+// loading until it is done, and dates without any data are remembered for a while rather than searched for on every request.
+@EverythingIsNonnullByDefault
+public class HistoricDates {
+
+    public static final String DATES_PATH = "/dates";
+    public static final String DATE_HEADER = "EWB-Date";
+    static final int RETRY_AFTER_SECONDS = 30;
+    static final long UNRESOLVED_TTL_MS = 60000;
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    private final Supplier<Vertx> vertx;
+    private final int maxDates;
+    private final DateResolver dateResolver;
+    private final DateModelFactory modelFactory;
+    private final Map<LocalDate, HistoricModel> models = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<LocalDate, DateRoute> routes = new HashMap<>();
+    private final Set<LocalDate> resolving = new HashSet<>();
+    private final Map<LocalDate, Long> unresolvedUntil = new HashMap<>();
+    private final AtomicInteger queuedLoads = new AtomicInteger();
+    @Nullable private WorkerExecutor loader = null;
+
+    @FunctionalInterface
+    public interface DateResolver {
+
+        // Returns the date of the data that should be loaded for the requested date, or null if there is none.
+        @Nullable
+        LocalDate resolve(LocalDate date);
+
+    }
+
+    @FunctionalInterface
+    public interface DateModelFactory {
+
+        NetworkModels.Model create(LocalDate date);
+
+    }
+
+    public HistoricDates(Supplier<Vertx> vertx, int maxDates, DateResolver dateResolver, DateModelFactory modelFactory) {
+        this.vertx = vertx;
+        this.maxDates = maxDates;
+        this.dateResolver = dateResolver;
+        this.modelFactory = modelFactory;
+    }
+
+    public boolean isEnabled() {
+        return maxDates > 0;
+    }
+
+    // The dates of the data currently held, from the least to the most recently used.
+    public synchronized List<LocalDate> dates() {
+        return new ArrayList<>(models.keySet());
+    }
+
+    public void mount(Router router) {
+        router.route().handler(this::rerouteByHeader);
+        router.route(DATES_PATH + "/*").handler(this::handle);
+    }
+
+    // Calls the handler with the network for the date once it has loaded. Until then, responds the same way as requests routed to the date.
+    public void withModel(RoutingContext context, LocalDate date, Consumer<NetworkModels.Model> handler) {
+        routeFor(date).withModel(context, handler);
+    }
+
+    private void rerouteByHeader(RoutingContext context) {
+        String date = context.request().getHeader(DATE_HEADER);
+        if ((date == null) || date.isEmpty() || context.normalisedPath().startsWith(DATES_PATH + "/"))
+            context.next();
+        else
+            context.reroute(DATES_PATH + "/" + date + context.request().uri());
+    }
+
+    private void handle(RoutingContext context) {
+        String path = context.normalisedPath().substring(DATES_PATH.length() + 1);
+        int end = path.indexOf('/');
+        String dateString = end < 0 ? path : path.substring(0, end);
+
+        LocalDate date;
+        try {
+            date = LocalDate.parse(dateString);
+        } catch (DateTimeParseException e) {
+            Respond.withJson(context, BAD_REQUEST, new JsonObject()
+                .put("message", "Invalid date '" + dateString + "', expected yyyy-MM-dd."));
+            return;
+        }
+
+        routeFor(date).handle(context);
+    }
+
+    // Requests for a date that isn't held start resolving it, and are answered as loading until its network has loaded. Requests
+    // that arrive while it is resolving or loading share the same resolution and load.
+    private synchronized DateRoute routeFor(LocalDate date) {
+        DateRoute route = routes.get(date);
+        if (route != null) {
+            // Marks the network as the most recently used.
+            models.get(route.historicModel.date);
+            return route;
+        }
+
+        Long until = unresolvedUntil.get(date);
+        if ((until != null) && (System.nanoTime() - until < 0))
+            return new DateRoute(date, new HistoricModel(date, true));
+
+        if (resolving.add(date))
+            resolve(date);
+        return new DateRoute(date, new HistoricModel(date, false));
+    }
+
+    private void resolve(LocalDate date) {
+        vertx.get().<LocalDate>executeBlocking(promise -> promise.complete(dateResolver.resolve(date)), false, result -> {
+            if (result.failed())
+                logger.error("Failed to find the data for {}: {}", date, result.cause().getMessage(), result.cause());
+            onResolved(date, result.succeeded() ? result.result() : null);
+        });
+    }
+
+    private synchronized void onResolved(LocalDate date, @Nullable LocalDate dataDate) {
+        resolving.remove(date);
+
+        long now = System.nanoTime();
+        unresolvedUntil.values().removeIf(until -> now - until >= 0);
+        if (dataDate == null) {
+            unresolvedUntil.put(date, now + TimeUnit.MILLISECONDS.toNanos(UNRESOLVED_TTL_MS));
+            return;
+        }
+
+        HistoricModel historicModel = models.get(dataDate);
+        if (historicModel == null) {
+            // Anything queued beyond the limit would be unloaded before it could start, so the date is left to be resolved again
+            // by a later request instead.
+            if (queuedLoads.get() >= maxDates)
+                return;
+
+            historicModel = new HistoricModel(dataDate, false);
+            models.put(dataDate, historicModel);
+            unloadLeastRecentlyUsed();
+            queueLoad(historicModel);
+        }
+
+        routes.put(date, new DateRoute(date, historicModel));
+    }
+
+    private void unloadLeastRecentlyUsed() {
+        Iterator<HistoricModel> iterator = models.values().iterator();
+        while (models.size() > maxDates) {
+            HistoricModel unloaded = iterator.next();
+            logger.info("Unloading the network for {}.", unloaded.date);
+
+            unloaded.isUnloaded = true;
+            iterator.remove();
+            routes.values().removeIf(route -> route.historicModel == unloaded);
+        }
+    }
+
+    private void queueLoad(HistoricModel historicModel) {
+        queuedLoads.incrementAndGet();
+        loader().executeBlocking(promise -> {
+            queuedLoads.decrementAndGet();
+            historicModel.load();
+            promise.complete();
+        }, true, ignored -> {
+        });
+    }
+
+    // Dates are loaded one at a time to bound the memory used while loading.
+    private WorkerExecutor loader() {
+        if (loader == null)
+            loader = vertx.get().createSharedWorkerExecutor("historic-date-loader", 1);
+        return loader;
+    }
+
+    private final class HistoricModel {
+
+        private final LocalDate date;
+
+        @Nullable private volatile NetworkModels.Model model = null;
+        private volatile boolean failed;
+        private volatile boolean isUnloaded = false;
+
+        private HistoricModel(LocalDate date, boolean failed) {
+            this.date = date;
+            this.failed = failed;
+        }
+
+        private void load() {
+            if (isUnloaded) {
+                logger.info("Skipped loading the network for {}, which was unloaded before it started.", date);
+                return;
+            }
+
+            logger.info("Loading the network for {}...", date);
+
+            try {
+                long start = System.nanoTime();
+                NetworkModels.Model candidate = modelFactory.create(date);
+                if (candidate.load()) {
+                    model = candidate;
+                    logger.info("Network for {} loaded in {} ms.", date, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return;
+                }
+
+                logger.error("Failed to load the network for {}.", date);
+            } catch (Exception e) {
+                logger.error("Failed to load the network for {}: {}", date, e.getMessage(), e);
+            }
+
+            failed = true;
+        }
+
+        private void withModel(RoutingContext context, Consumer<NetworkModels.Model> handler) {
+            NetworkModels.Model current = model;
+            if (current != null)
+                handler.accept(current);
+            else if (failed)
+                Respond.withJson(context, NOT_FOUND, new JsonObject().put("message", "Unable to load the network for " + date + "."));
+            else {
+                context.response().putHeader(HttpHeaders.RETRY_AFTER, Integer.toString(RETRY_AFTER_SECONDS));
+                Respond.withJson(context, SERVICE_UNAVAILABLE, new JsonObject().put("message", "The network for " + date + " is loading."));
+            }
+        }
+
+        private NetworkModels.Model loadedModel() {
+            NetworkModels.Model current = model;
+            if (current == null)
+                throw new IllegalStateException("INTERNAL ERROR: The network for " + date + " is not loaded.");
+            return current;
+        }
+
+    }
+
+    // Routes requests made under a date to the network for the date of its data.
+    private final class DateRoute {
+
+        private final HistoricModel historicModel;
+        private final Router router = Router.router(vertx.get());
+
+        private DateRoute(LocalDate date, HistoricModel historicModel) {
+            this.historicModel = historicModel;
+
+            router.route("/" + date + "/*")
+                .handler(context -> historicModel.loadedModel().router().handleContext(context))
+                .failureHandler(context -> historicModel.loadedModel().router().handleFailure(context));
+        }
+
+        private void handle(RoutingContext context) {
+            withModel(context, loaded -> router.handleContext(context));
+        }
+
+        private void withModel(RoutingContext context, Consumer<NetworkModels.Model> handler) {
+            historicModel.withModel(context, handler);
+        }
+
+    }
+
+}
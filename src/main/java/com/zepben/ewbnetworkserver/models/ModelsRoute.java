@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.vertxutils.routing.Respond;
+import com.zepben.vertxutils.routing.Route;
+import com.zepben.vertxutils.routing.RouteVersion;
+import com.zepben.vertxutils.routing.VersionableRoute;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.function.Function;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static io.vertx.core.http.HttpMethod.GET;
+import static io.vertx.core.http.HttpMethod.POST;
+
+@EverythingIsNonnullByDefault
+public class ModelsRoute {
+
+    static final String NAME_PARAM = "name";
+
+    private final NetworkModels networkModels;
+
+    @EverythingIsNonnullByDefault
+    public enum AvailableRoute implements VersionableRoute {
+        STATUS(RouteVersion.since(1)),
+        RELOAD(RouteVersion.since(1));
+
+        private final RouteVersion rv;
+
+        AvailableRoute(RouteVersion rv) {
+            this.rv = rv;
+        }
+
+        @Override
+        public RouteVersion routeVersion() {
+            return rv;
+        }
+    }
+
+    static Function<AvailableRoute, Route> routeFactory(NetworkModels networkModels) {
+        ModelsRoute route = new ModelsRoute(networkModels);
+
+        return availableRoute -> {
+            switch (availableRoute) {
+                case STATUS:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/status")
+                        .addHandler(route::status)
+                        .build();
+                case RELOAD:
+                    return Route.builder()
+                        .method(POST)
+                        .path("/:" + NAME_PARAM + "/reload")
+                        .addHandler(route::reload)
+                        .build();
+                default:
+                    throw new IllegalArgumentException("INTERNAL ERROR: Missing route factory method.");
+            }
+        };
+    }
+
+    void status(RoutingContext context) {
+        JsonArray models = new JsonArray();
+        networkModels.toJson().forEach(models::add);
+
+        Respond.withJson(context, OK, new JsonObject().put("models", models));
+    }
+
+    void reload(RoutingContext context) {
+        String name = context.pathParam(NAME_PARAM);
+        switch (networkModels.reload(context.vertx(), name)) {
+            case STARTED:
+                Respond.withJson(context, ACCEPTED, new JsonObject().put("name", name).put("status", NetworkModels.Status.LOADING.name()));
+                break;
+            case ALREADY_LOADING:
+                Respond.withJson(context, CONFLICT, new JsonObject().put("message", "Model '" + name + "' is already loading."));
+                break;
+            case UNKNOWN_MODEL:
+            default:
+                Respond.withJson(context, NOT_FOUND, new JsonObject().put("message", "Model '" + name + "' was not found."));
+                break;
+        }
+    }
+
+    ModelsRoute(NetworkModels networkModels) {
+        this.networkModels = networkModels;
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.diff.NetworkSnapshot;
+import com.zepben.vertxutils.routing.Respond;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.SERVICE_UNAVAILABLE;
+
+// Network models hosted alongside the main model, each served under its own path prefix. Requests can also select a model with
+// the model header rather than the prefix. Each model is loaded, patched and reloaded independently on the worker pool, and a
+// reloaded model only replaces the one being served once it has loaded successfully.
+@EverythingIsNonnullByDefault
+public class NetworkModels {
+
+    public static final String MODELS_PATH = "/models";
+    public static final String MODEL_HEADER = "EWB-Model";
+    public static final String MODEL_PLACEHOLDER = "{model}";
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    private final Map<String, HostedModel> models = new LinkedHashMap<>();
+    private final ModelFactory modelFactory;
+
+    public interface Model {
+
+        boolean load();
+
+        Router router();
+
+        // The content of the network before any patches were applied, for comparing with other dates.
+        NetworkSnapshot snapshot();
+
+    }
+
+    @FunctionalInterface
+    public interface ModelFactory {
+
+        Model create(String name);
+
+    }
+
+    public enum Status {
+        PENDING,
+        LOADING,
+        LOADED,
+        FAILED
+    }
+
+    public enum ReloadResult {
+        STARTED,
+        UNKNOWN_MODEL,
+        ALREADY_LOADING
+    }
+
+    public NetworkModels(Collection<String> names, ModelFactory modelFactory) {
+        this.modelFactory = modelFactory;
+        names.forEach(name -> models.put(name, new HostedModel(name)));
+    }
+
+    public boolean isEmpty() {
+        return models.isEmpty();
+    }
+
+    public List<String> names() {
+        return new ArrayList<>(models.keySet());
+    }
+
+    public static String pathOf(String name) {
+        return MODELS_PATH + "/" + name;
+    }
+
+    // The main model has no name, so the placeholder is removed from its patch API rather than being requested literally.
+    public static String patchApiFor(String patchApi, @Nullable String name) {
+        return patchApi.replace(MODEL_PLACEHOLDER, name == null ? "" : name);
+    }
+
+    // Registers a route for each model that delegates to the router of the model currently being served. The router can't be
+    // mounted directly as it is replaced on reload.
+    public void mount(Router router) {
+        router.route().handler(this::rerouteByHeader);
+
+        models.values().forEach(hostedModel -> router.route(pathOf(hostedModel.name) + "/*")
+            .handler(hostedModel::handle)
+            .failureHandler(hostedModel::handleFailure));
+    }
+
+    // Models are loaded one at a time to bound the memory used while loading.
+    public void loadAll(Vertx vertx) {
+        List<HostedModel> toLoad = new ArrayList<>();
+        models.values().forEach(hostedModel -> {
+            if (hostedModel.tryStartLoading())
+                toLoad.add(hostedModel);
+        });
+
+        vertx.executeBlocking(promise -> {
+            toLoad.forEach(HostedModel::load);
+            promise.complete();
+        }, false, ignored -> {
+        });
+    }
+
+    public ReloadResult reload(Vertx vertx, String name) {
+        HostedModel hostedModel = models.get(name);
+        if (hostedModel == null)
+            return ReloadResult.UNKNOWN_MODEL;
+
+        if (!hostedModel.tryStartLoading())
+            return ReloadResult.ALREADY_LOADING;
+
+        vertx.executeBlocking(promise -> promise.complete(hostedModel.load()), false, ignored -> {
+        });
+        return ReloadResult.STARTED;
+    }
+
+    public boolean contains(String name) {
+        return models.containsKey(name);
+    }
+
+    public List<JsonObject> toJson() {
+        List<JsonObject> json = new ArrayList<>();
+        models.values().forEach(hostedModel -> json.add(hostedModel.toJson()));
+        return json;
+    }
+
+    private void rerouteByHeader(RoutingContext context) {
+        String name = context.request().getHeader(MODEL_HEADER);
+        if ((name == null) || name.isEmpty() || context.normalisedPath().startsWith(MODELS_PATH + "/"))
+            context.next();
+        else
+            context.reroute(pathOf(name) + context.request().uri());
+    }
+
+    private final class HostedModel {
+
+        private final String name;
+        private final AtomicBoolean loading = new AtomicBoolean(false);
+
+        @Nullable private volatile Model model = null;
+        private volatile Status status = Status.PENDING;
+        @Nullable private volatile Instant loadedAt = null;
+        private volatile long loadTimeMs = 0;
+
+        private HostedModel(String name) {
+            this.name = name;
+        }
+
+        // The status is updated as soon as the load is requested so it is reported before the load is picked up by a worker.
+        private boolean tryStartLoading() {
+            if (!loading.compareAndSet(false, true))
+                return false;
+
+            status = Status.LOADING;
+            return true;
+        }
+
+        private boolean load() {
+            logger.info("Loading model '{}'...", name);
+
+            boolean loaded = false;
+            try {
+                long start = System.nanoTime();
+                Model candidate = modelFactory.create(name);
+                if (candidate.load()) {
+                    model = candidate;
+                    loadTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    loadedAt = Instant.now();
+                    loaded = true;
+                    logger.info("Model '{}' loaded in {} ms.", name, loadTimeMs);
+                } else
+                    logger.error("Failed to load model '{}'.", name);
+            } catch (Exception e) {
+                logger.error("Failed to load model '{}': {}", name, e.getMessage(), e);
+            }
+
+            status = loaded ? Status.LOADED : Status.FAILED;
+            loading.set(false);
+
+            return loaded;
+        }
+
+        private void handle(RoutingContext context) {
+            Model current = model;
+            if (current != null)
+                current.router().handleContext(context);
+            else
+                Respond.withJson(context, SERVICE_UNAVAILABLE, new JsonObject()
+                    .put("message", "Model '" + name + "' is " + status.name().toLowerCase() + "."));
+        }
+
+        private void handleFailure(RoutingContext context) {
+            Model current = model;
+            if (current != null)
+                current.router().handleFailure(context);
+            else
+                context.next();
+        }
+
+        private JsonObject toJson() {
+            Instant at = loadedAt;
+            return new JsonObject()
+                .put("name", name)
+                .put("path", pathOf(name))
+                .put("status", status.name())
+                .put("serving", model != null)
+                .put("loadedAt", at == null ? null : at.toString())
+                .put("loadTimeMs", loadTimeMs);
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.BaseVoltage;
+import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
+import com.zepben.evolve.cim.iec61970.base.wires.PowerTransformerEnd;
+import com.zepben.evolve.services.network.NetworkService;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Reference objects shared between the models hosted in the server. Each model loads its own copy of objects such as base voltages
+// from its database, so once loaded they are swapped for the first equivalent copy loaded by any model.
+@EverythingIsNonnullByDefault
+public class ReferenceData {
+
+    private final boolean isShared;
+    private final Map<String, BaseVoltage> baseVoltages = new ConcurrentHashMap<>();
+
+    public ReferenceData(boolean isShared) {
+        this.isShared = isShared;
+    }
+
+    public boolean isShared() {
+        return isShared;
+    }
+
+    public int numBaseVoltages() {
+        return baseVoltages.size();
+    }
+
+    // Returns the number of objects in the network that were replaced by a shared copy.
+    public int intern(NetworkService networkService) {
+        Map<BaseVoltage, BaseVoltage> replacements = new IdentityHashMap<>();
+        for (BaseVoltage baseVoltage : networkService.listOf(BaseVoltage.class)) {
+            BaseVoltage shared = baseVoltages.computeIfAbsent(baseVoltage.getMRID() + ":" + baseVoltage.getNominalVoltage(), key -> baseVoltage);
+            if (shared != baseVoltage)
+                replacements.put(baseVoltage, shared);
+        }
+
+        if (replacements.isEmpty())
+            return 0;
+
+        for (ConductingEquipment conductingEquipment : networkService.listOf(ConductingEquipment.class)) {
+            BaseVoltage baseVoltage = conductingEquipment.getBaseVoltage();
+            if ((baseVoltage != null) && replacements.containsKey(baseVoltage))
+                conductingEquipment.setBaseVoltage(replacements.get(baseVoltage));
+        }
+
+        for (PowerTransformerEnd end : networkService.listOf(PowerTransformerEnd.class)) {
+            BaseVoltage baseVoltage = end.getBaseVoltage();
+            if ((baseVoltage != null) && replacements.containsKey(baseVoltage))
+                end.setBaseVoltage(replacements.get(baseVoltage));
+        }
+
+        replacements.forEach((baseVoltage, shared) -> {
+            networkService.remove(baseVoltage);
+            networkService.add(shared);
+        });
+
+        return replacements.size();
+    }
+
+}
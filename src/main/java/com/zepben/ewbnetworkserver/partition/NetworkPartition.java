@@ -0,0 +1,269 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.partition;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.metering.UsagePoint;
+import com.zepben.evolve.cim.iec61970.base.core.*;
+import com.zepben.evolve.cim.iec61970.base.wires.EnergySource;
+import com.zepben.evolve.services.diagram.DiagramService;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.evolve.services.network.tracing.ConnectivityResult;
+import com.zepben.ewbnetworkserver.Services;
+import com.zepben.ewbnetworkserver.geojson.GeoJson;
+import com.zepben.ewbnetworkserver.geojson.GeoJsonGeometry;
+import com.zepben.ewbnetworkserver.geojson.GeometryType;
+import com.zepben.ewbnetworkserver.patch.Patch;
+import com.zepben.ewbnetworkserver.patch.PatchFeature;
+import com.zepben.ewbnetworkserver.tiles.LngLatBounds;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+import static com.zepben.ewbnetworkserver.patch.PatchProperties.CONNECTED_ASSETS;
+import static com.zepben.ewbnetworkserver.patch.PatchProperties.CONNECTED_ASSET_ID;
+
+// Restricts a server to the equipment of a set of feeders and zone substations. The database reader can only load the whole
+// model, so everything outside the partition is pruned once it has loaded. The path from each selected feeder head back to
+// an energy source is kept so the partition can still be traced and energised.
+@EverythingIsNonnullByDefault
+public class NetworkPartition {
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    private final Set<String> feederMRIDs;
+    private final Set<String> zoneMRIDs;
+
+    @Nullable private volatile LngLatBounds bounds = null;
+
+    public NetworkPartition(Collection<String> feederMRIDs, Collection<String> zoneMRIDs) {
+        this.feederMRIDs = new LinkedHashSet<>(feederMRIDs);
+        this.zoneMRIDs = new LinkedHashSet<>(zoneMRIDs);
+    }
+
+    public boolean isEnabled() {
+        return !feederMRIDs.isEmpty() || !zoneMRIDs.isEmpty();
+    }
+
+    @Nullable
+    public LngLatBounds bounds() {
+        return bounds;
+    }
+
+    // Returns the number of equipment removed from the network.
+    public int prune(Services services) {
+        if (!isEnabled())
+            return 0;
+
+        NetworkService networkService = services.networkService();
+        Set<Feeder> feeders = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Equipment> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        zoneMRIDs.forEach(mRID -> {
+            Substation zone = find(networkService, Substation.class, mRID, "zone");
+            if (zone != null) {
+                feeders.addAll(zone.getFeeders());
+                kept.addAll(zone.getEquipment());
+            }
+        });
+
+        feederMRIDs.forEach(mRID -> {
+            Feeder feeder = find(networkService, Feeder.class, mRID, "feeder");
+            if (feeder != null)
+                feeders.add(feeder);
+        });
+
+        feeders.forEach(feeder -> {
+            kept.addAll(feeder.getEquipment());
+            kept.addAll(feeder.getCurrentEquipment());
+            addPathToSource(feeder, kept);
+        });
+
+        LngLatBounds keptBounds = null;
+        for (Equipment equipment : kept) {
+            LngLatBounds equipmentBounds = LngLatBounds.of(equipment);
+            if (equipmentBounds != null)
+                keptBounds = equipmentBounds.union(keptBounds);
+        }
+
+        int removed = 0;
+        for (Equipment equipment : new ArrayList<>(networkService.listOf(Equipment.class))) {
+            if (!kept.contains(equipment)) {
+                remove(services, equipment);
+                ++removed;
+            }
+        }
+
+        for (Feeder feeder : new ArrayList<>(networkService.listOf(Feeder.class))) {
+            if (!feeders.contains(feeder))
+                removeFeeder(networkService, feeder);
+        }
+
+        bounds = keptBounds;
+        logger.info("Network partitioned [{} feeders, {} equipment kept, {} removed].", feeders.size(), kept.size(), removed);
+
+        return removed;
+    }
+
+    // Patches are cheap to check against the partition, so those that only touch other regions are skipped rather than
+    // failing against equipment that has been pruned. A patch is included if it references equipment in the network, or if
+    // any of its geometry falls within the bounds of the partition.
+    public boolean includes(Patch patch, NetworkService networkService) {
+        if (!isEnabled())
+            return true;
+
+        List<PatchFeature> features = new ArrayList<>(patch.addFeatures());
+        features.addAll(patch.removeFeatures());
+
+        for (PatchFeature feature : features) {
+            if (references(feature.geoJson(), networkService) || isWithinBounds(feature.geoJson().geometry()))
+                return true;
+        }
+
+        return false;
+    }
+
+    @Nullable
+    private <T extends IdentifiedObject> T find(NetworkService networkService, Class<T> type, String mRID, String description) {
+        T found = networkService.get(type, mRID);
+        if (found == null)
+            logger.warn("Unable to partition the network by {} '{}', it was not found.", description, mRID);
+
+        return found;
+    }
+
+    // Breadth first search from the feeder head through equipment that isn't part of any feeder, keeping the shortest path
+    // to the first energy source found.
+    private void addPathToSource(Feeder feeder, Set<Equipment> kept) {
+        Terminal headTerminal = feeder.getNormalHeadTerminal();
+        ConductingEquipment head = headTerminal == null ? null : headTerminal.getConductingEquipment();
+        if (head == null)
+            return;
+
+        Map<ConductingEquipment, ConductingEquipment> parents = new IdentityHashMap<>();
+        Deque<ConductingEquipment> queue = new ArrayDeque<>();
+        parents.put(head, head);
+        queue.add(head);
+
+        while (!queue.isEmpty()) {
+            ConductingEquipment current = queue.poll();
+            if (current instanceof EnergySource) {
+                for (ConductingEquipment step = current; step != head; step = parents.get(step))
+                    kept.add(step);
+                return;
+            }
+
+            for (Terminal terminal : current.getTerminals()) {
+                for (ConnectivityResult connectivityResult : NetworkService.connectedTerminals(terminal)) {
+                    ConductingEquipment next = connectivityResult.getTo();
+                    if ((next != null) && !parents.containsKey(next) && next.getNormalFeeders().isEmpty()) {
+                        parents.put(next, current);
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+
+        logger.warn("Unable to find a source upstream of feeder '{}'.", feeder.getMRID());
+    }
+
+    private void remove(Services services, Equipment equipment) {
+        NetworkService networkService = services.networkService();
+        DiagramService diagramService = services.diagramService();
+
+        diagramService.getDiagramObjects(equipment.getMRID()).forEach(diagramService::remove);
+
+        if (equipment instanceof ConductingEquipment) {
+            ((ConductingEquipment) equipment).getTerminals().forEach(terminal -> {
+                networkService.disconnect(terminal);
+                networkService.remove(terminal);
+            });
+        }
+
+        equipment.getContainers().forEach(container -> container.removeEquipment(equipment));
+        equipment.getCurrentFeeders().forEach(feeder -> feeder.removeCurrentEquipment(equipment));
+        equipment.getOperationalRestrictions().forEach(operationalRestriction -> operationalRestriction.removeEquipment(equipment));
+
+        for (UsagePoint usagePoint : equipment.getUsagePoints()) {
+            usagePoint.removeEquipment(equipment);
+            if (usagePoint.numEquipment() == 0)
+                networkService.tryRemove(usagePoint);
+        }
+
+        networkService.tryRemove(equipment);
+
+        Location location = equipment.getLocation();
+        if (location != null)
+            networkService.remove(location);
+    }
+
+    // Any equipment left in a removed feeder is on the boundary of the partition, so is only unlinked from it.
+    private void removeFeeder(NetworkService networkService, Feeder feeder) {
+        new ArrayList<>(feeder.getEquipment()).forEach(equipment -> equipment.removeContainer(feeder));
+        new ArrayList<>(feeder.getCurrentEquipment()).forEach(equipment -> equipment.removeCurrentFeeder(feeder));
+
+        Substation substation = feeder.getNormalEnergizingSubstation();
+        if (substation != null)
+            substation.removeFeeder(feeder);
+
+        networkService.tryRemove(feeder);
+    }
+
+    private boolean references(GeoJson geoJson, NetworkService networkService) {
+        if (networkService.contains(geoJson.gisId()))
+            return true;
+
+        Object connectedAssets = geoJson.properties().getValue(CONNECTED_ASSETS);
+        if (!(connectedAssets instanceof JsonArray))
+            return false;
+
+        for (Object connectedAsset : (JsonArray) connectedAssets) {
+            Object id = connectedAsset instanceof JsonObject ? ((JsonObject) connectedAsset).getValue(CONNECTED_ASSET_ID) : null;
+            if ((id instanceof String) && networkService.contains((String) id))
+                return true;
+        }
+
+        return false;
+    }
+
+    // Geometry that can't be read is included so the patch processor can report the problem.
+    private boolean isWithinBounds(GeoJsonGeometry geometry) {
+        LngLatBounds partitionBounds = bounds;
+        if (partitionBounds == null)
+            return false;
+
+        LngLatBounds featureBounds;
+        try {
+            if (geometry.geometryType() == GeometryType.Point)
+                featureBounds = LngLatBounds.of(Collections.singletonList(geometry.coordinate()));
+            else
+                featureBounds = LngLatBounds.of(geometry.coordinates());
+        } catch (Exception e) {
+            return true;
+        }
+
+        return (featureBounds != null) && partitionBounds.intersects(featureBounds);
+    }
+
+}
@@ -76,10 +76,12 @@ class Patch {
 
     private void includeAdd(PatchFeature feature) {
         addFeatures.add(feature);
+        result.addMRID(feature.geoJson().gisId());
     }
 
     private void includeRemove(PatchFeature feature) {
         removeFeatures.add(feature);
+        result.addMRID(feature.geoJson().gisId());
     }
 
     private Patch(int id) throws IllegalArgumentException {
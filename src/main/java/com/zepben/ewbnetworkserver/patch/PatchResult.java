@@ -36,6 +36,9 @@ class PatchResult {
     private final Set<String> affectedCurrentFeeders = new HashSet<>();
     private final Set<String> affectedCurrentFeedersView = Collections.unmodifiableSet(affectedCurrentFeeders);
 
+    private final Set<String> mRIDs = new HashSet<>();
+    private final Set<String> mRIDsView = Collections.unmodifiableSet(mRIDs);
+
     private final List<String> errors = new ArrayList<>();
     private final List<String> warnings = new ArrayList<>();
 
@@ -58,6 +61,11 @@ class PatchResult {
         return affectedCurrentFeedersView;
     }
 
+    // The mRIDs of the features added or removed by the patch.
+    public Set<String> mRIDs() {
+        return mRIDsView;
+    }
+
     public List<String> errors() {
         return errorsView;
     }
@@ -72,6 +80,11 @@ class PatchResult {
         return this;
     }
 
+    public PatchResult addMRID(String mRID) {
+        mRIDs.add(mRID);
+        return this;
+    }
+
     @FormatMethod
     public PatchResult addError(String error, Object... args) {
         errors.add(String.format(error, args));
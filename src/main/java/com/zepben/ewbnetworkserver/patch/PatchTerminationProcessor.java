@@ -79,6 +79,11 @@ public class PatchTerminationProcessor {
         return terminations.containsKey(id);
     }
 
+    @Nullable
+    public PatchTermination termination(String id) {
+        return terminations.get(id);
+    }
+
     public void connect(GeoJson geoJson, Map<String, PhaseCode> assetPhases, PatchResult patchResult) throws JsonUtils.ParsingException {
         List<String> connectedIds = extractConnectedAssetIds(geoJson);
         if (connectedIds.size() < 2) {
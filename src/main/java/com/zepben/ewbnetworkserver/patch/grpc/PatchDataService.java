@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.patch.grpc;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.Equipment;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.grpc.JsonChunkStream;
+import com.zepben.ewbnetworkserver.grpc.JsonMethods;
+import com.zepben.ewbnetworkserver.patch.LoadManipulations;
+import com.zepben.ewbnetworkserver.patch.PatchResult;
+import com.zepben.ewbnetworkserver.patch.PatchResults;
+import com.zepben.ewbnetworkserver.patch.routes.LoadManipulationsToJson;
+import com.zepben.ewbnetworkserver.patch.routes.PatchResultToJson;
+import io.grpc.*;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// A request can narrow what is returned with any of {"mRIDs": [...], "feeders": [...], "patchIds": [...]}, and each response holds
+// up to "chunkSize" entries in the same form as the REST API and status file.
+@EverythingIsNonnullByDefault
+public class PatchDataService implements BindableService {
+
+    public static final String SERVICE_NAME = "zepben.ewbnetworkserver.PatchData";
+
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+    static final int MAX_CHUNK_SIZE = 10000;
+
+    static final MethodDescriptor<JsonObject, JsonObject> STREAM_LOAD_MANIPULATIONS = JsonMethods.serverStreaming(SERVICE_NAME, "StreamLoadManipulations");
+    static final MethodDescriptor<JsonObject, JsonObject> STREAM_PATCH_RESULTS = JsonMethods.serverStreaming(SERVICE_NAME, "StreamPatchResults");
+
+    private final LoadManipulations loadManipulations;
+    private final LoadManipulationsToJson loadManipulationsToJson;
+    private final PatchResults patchResults;
+    private final PatchResultToJson patchResultToJson;
+    private final NetworkService networkService;
+
+    public PatchDataService(LoadManipulations loadManipulations,
+                            LoadManipulationsToJson loadManipulationsToJson,
+                            PatchResults patchResults,
+                            PatchResultToJson patchResultToJson,
+                            NetworkService networkService) {
+        this.loadManipulations = loadManipulations;
+        this.loadManipulationsToJson = loadManipulationsToJson;
+        this.patchResults = patchResults;
+        this.patchResultToJson = patchResultToJson;
+        this.networkService = networkService;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        return ServerServiceDefinition.builder(SERVICE_NAME)
+            .addMethod(STREAM_LOAD_MANIPULATIONS, ServerCalls.asyncServerStreamingCall(this::streamLoadManipulations))
+            .addMethod(STREAM_PATCH_RESULTS, ServerCalls.asyncServerStreamingCall(this::streamPatchResults))
+            .build();
+    }
+
+    private void streamLoadManipulations(JsonObject request, StreamObserver<JsonObject> responseObserver) {
+        stream(request, responseObserver, "loadManipulations", filter -> {
+            // A patch id selects the manipulations of the features in that patch, which are totalled with those of any other patches.
+            Set<String> patchMRIDs = filter.patchIds == null ? null : matchingResults(filter)
+                .flatMap(result -> result.mRIDs().stream())
+                .collect(Collectors.toSet());
+
+            return new TreeMap<>(loadManipulations.byMRID()).entrySet().stream()
+                .filter(entry -> (filter.mRIDs == null) || filter.mRIDs.contains(entry.getKey()))
+                .filter(entry -> (patchMRIDs == null) || patchMRIDs.contains(entry.getKey()))
+                .filter(entry -> (filter.feeders == null) || isOnFeeder(entry.getKey(), filter.feeders))
+                .map(entry -> loadManipulationsToJson.convert(entry.getKey(), entry.getValue()))
+                .iterator();
+        });
+    }
+
+    private void streamPatchResults(JsonObject request, StreamObserver<JsonObject> responseObserver) {
+        stream(request, responseObserver, "results", filter -> matchingResults(filter)
+            .filter(result -> (filter.mRIDs == null) || intersects(result.mRIDs(), filter.mRIDs))
+            .filter(result -> (filter.feeders == null)
+                || intersects(result.affectedNormalFeeders(), filter.feeders)
+                || intersects(result.affectedCurrentFeeders(), filter.feeders))
+            .map(patchResultToJson::convert)
+            .iterator());
+    }
+
+    private void stream(JsonObject request,
+                        StreamObserver<JsonObject> responseObserver,
+                        String key,
+                        Function<Filter, Iterator<JsonObject>> items) {
+        Filter filter;
+        try {
+            filter = new Filter(request);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        Object chunkSize = request.getValue("chunkSize", DEFAULT_CHUNK_SIZE);
+        if (!(chunkSize instanceof Integer) || ((Integer) chunkSize < 1) || ((Integer) chunkSize > MAX_CHUNK_SIZE)) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("chunkSize must be between 1 and " + MAX_CHUNK_SIZE + ".")
+                .asRuntimeException());
+            return;
+        }
+
+        JsonChunkStream.start((ServerCallStreamObserver<JsonObject>) responseObserver, key, items.apply(filter), (Integer) chunkSize);
+    }
+
+    private Stream<PatchResult> matchingResults(Filter filter) {
+        return patchResults.all().stream()
+            .filter(result -> (filter.patchIds == null) || filter.patchIds.contains(result.patchId()));
+    }
+
+    private boolean isOnFeeder(String mRID, Set<String> feeders) {
+        Equipment equipment = networkService.get(Equipment.class, mRID);
+        if (equipment == null)
+            return false;
+
+        return Stream.concat(equipment.getNormalFeeders().stream(), equipment.getCurrentFeeders().stream())
+            .map(Feeder::getMRID)
+            .anyMatch(feeders::contains);
+    }
+
+    private static boolean intersects(Set<String> values, Set<String> wanted) {
+        return values.stream().anyMatch(wanted::contains);
+    }
+
+    // Each filter that is specified narrows the entries returned, with an entry matching a filter if it matches any of its values.
+    @EverythingIsNonnullByDefault
+    private static class Filter {
+
+        @Nullable final Set<String> mRIDs;
+        @Nullable final Set<String> feeders;
+        @Nullable final Set<Integer> patchIds;
+
+        Filter(JsonObject request) {
+            mRIDs = values(request, "mRIDs", String.class);
+            feeders = values(request, "feeders", String.class);
+            patchIds = values(request, "patchIds", Integer.class);
+        }
+
+        @Nullable
+        private static <T> Set<T> values(JsonObject request, String key, Class<T> type) {
+            Object value = request.getValue(key);
+            if (value == null)
+                return null;
+
+            String error = key + " must be an array of " + (type == Integer.class ? "integers." : "strings.");
+            if (!(value instanceof JsonArray))
+                throw new IllegalArgumentException(error);
+
+            Set<T> values = new HashSet<>();
+            for (Object item : (JsonArray) value) {
+                if (!type.isInstance(item))
+                    throw new IllegalArgumentException(error);
+                values.add(type.cast(item));
+            }
+            return values;
+        }
+
+    }
+
+}
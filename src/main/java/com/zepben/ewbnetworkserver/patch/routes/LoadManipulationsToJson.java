@@ -32,14 +32,16 @@ public class LoadManipulationsToJson {
         return new JsonObject()
             .put("loadManipulations", loadManipulations.byMRID().entrySet()
                 .stream()
-                .map(entry -> new JsonObject()
-                    .put("mRID", entry.getKey())
-                    .put("values", new JsonArray()
-                        .add(entry.getValue())
-                    )
-
-                )
+                .map(entry -> convert(entry.getKey(), entry.getValue()))
                 .collect(toJsonArray()));
     }
 
+    public JsonObject convert(String mRID, double value) {
+        return new JsonObject()
+            .put("mRID", mRID)
+            .put("values", new JsonArray()
+                .add(value)
+            );
+    }
+
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.google.common.base.Enums;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.commandlinearguments.CmdArgsBase;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+@EverythingIsNonnullByDefault
+class ReplayCmdArgs extends CmdArgsBase {
+
+    @Nullable private String file = null;
+    @Nullable private URI url = null;
+    @Nullable private ReplayFormat format = null;
+    @Nullable private Integer speed = null;
+    @Nullable private Integer concurrency = null;
+    @Nullable private Integer routeDepth = null;
+    @Nullable private Integer timeout = null;
+
+    String file() {
+        return ensureOptionInitialised(file);
+    }
+
+    URI url() {
+        return ensureOptionInitialised(url);
+    }
+
+    ReplayFormat format() {
+        return ensureOptionInitialised(format);
+    }
+
+    int speed() {
+        return ensureOptionInitialised(speed);
+    }
+
+    int concurrency() {
+        return ensureOptionInitialised(concurrency);
+    }
+
+    int routeDepth() {
+        return ensureOptionInitialised(routeDepth);
+    }
+
+    int timeout() {
+        return ensureOptionInitialised(timeout);
+    }
+
+    @Override
+    protected void addCustomOptions(Options options) {
+        options.addOption(Option
+            .builder("f")
+            .longOpt("file")
+            .hasArg()
+            .argName("FILE")
+            .desc("the route debugging capture or access log to replay. Files ending in .gz will be decompressed.")
+            .build());
+
+        options.addOption(Option
+            .builder("u")
+            .longOpt("url")
+            .hasArg()
+            .argName("BASE_URL")
+            .desc("the base URL of the server to replay the requests against, e.g. http://localhost:8080.")
+            .build());
+
+        options.addOption(Option
+            .builder("fmt")
+            .longOpt("format")
+            .hasArg()
+            .argName("FORMAT")
+            .desc("the format of the file {CAPTURE|ACCESS_LOG}. Access logs replay the request lines without bodies. (DEFAULT: CAPTURE).")
+            .build());
+
+        options.addOption(Option
+            .builder("s")
+            .longOpt("speed")
+            .hasArg()
+            .argName("PERCENT")
+            .desc("the replay speed as a percentage of the original request rate. Zero sends requests as fast as the concurrency " +
+                "allows. (DEFAULT: 100).")
+            .build());
+
+        options.addOption(Option
+            .builder("n")
+            .longOpt("concurrency")
+            .hasArg()
+            .argName("NUM_REQUESTS")
+            .desc("the maximum number of requests in flight at once. (DEFAULT: 8).")
+            .build());
+
+        options.addOption(Option
+            .builder("rd")
+            .longOpt("route-depth")
+            .hasArg()
+            .argName("NUM_SEGMENTS")
+            .desc("the number of path segments used to group requests into routes when reporting, with the rest of the path " +
+                "ignored. Zero reports each path separately. (DEFAULT: 0).")
+            .build());
+
+        options.addOption(Option
+            .builder("t")
+            .longOpt("timeout")
+            .hasArg()
+            .argName("SECONDS")
+            .desc("the timeout (in seconds) for each request. (DEFAULT: 60).")
+            .build());
+    }
+
+    @Override
+    protected void extractCustomOptions() throws ParseException {
+        file = getRequiredStringArg("file");
+
+        String urlArg = getRequiredStringArg("url");
+        try {
+            url = new URI(urlArg);
+        } catch (URISyntaxException e) {
+            url = null;
+        }
+        if ((url == null) || (url.getHost() == null) || !("http".equals(url.getScheme()) || "https".equals(url.getScheme())))
+            throw new ParseException("Invalid URL '" + urlArg + "', expected http(s)://host[:port][/path].");
+
+        String formatArg = getOptionalStringArg("format").orElse(ReplayFormat.CAPTURE.name());
+        format = Enums.getIfPresent(ReplayFormat.class, formatArg).orNull();
+        if (format == null)
+            throw new ParseException("Unknown FORMAT value '" + formatArg + "', expected CAPTURE or ACCESS_LOG.");
+
+        speed = getOptionalIntArg("speed", 0).orElse(100);
+        concurrency = getOptionalIntArg("concurrency", 1).orElse(8);
+        routeDepth = getOptionalIntArg("route-depth", 0).orElse(0);
+        timeout = getOptionalIntArg("timeout", 1).orElse(60);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.google.common.base.Enums;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// Reads the request bodies saved by route debugging, or the request lines from an access log such as the one written by the
+// vert.x LoggerHandler or a proxy using the common/combined log format.
+@EverythingIsNonnullByDefault
+class ReplayFileReader {
+
+    private static final Pattern CAPTURE_HEADER = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2}T[0-9:.]+) ([A-Z]+) (\\S+)$");
+    private static final Pattern CAPTURE_DROPPED = Pattern.compile("^\\S+ Dropped \\d+ request bodies");
+    private static final Pattern ACCESS_LOG_ENTRY = Pattern.compile("\\[([^]]+)] \"([A-Z]+) (\\S+)[^\"]*\"");
+    private static final List<DateTimeFormatter> ACCESS_LOG_DATE_FORMATS = Arrays.asList(
+        DateTimeFormatter.RFC_1123_DATE_TIME,
+        DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH));
+
+    static List<ReplayRequest> read(Path path, ReplayFormat format) throws IOException {
+        InputStream inputStream = Files.newInputStream(path);
+        if (path.toString().endsWith(".gz"))
+            inputStream = new GZIPInputStream(inputStream);
+
+        if (format == ReplayFormat.CAPTURE) {
+            try (InputStream captureStream = new BufferedInputStream(inputStream)) {
+                return readCapture(captureStream);
+            }
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8))) {
+            return readAccessLog(reader);
+        }
+    }
+
+    // Captures are read as raw lines, terminators included, so the bodies are replayed byte for byte.
+    static List<ReplayRequest> readCapture(InputStream inputStream) throws IOException {
+        List<ReplayRequest> requests = new ArrayList<>();
+
+        Matcher header = null;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] line;
+        while ((line = readLine(inputStream)) != null) {
+            String text = new String(line, 0, withoutTerminator(line, line.length), UTF_8);
+            Matcher matcher = CAPTURE_HEADER.matcher(text);
+            if (matcher.matches() || CAPTURE_DROPPED.matcher(text).find()) {
+                addCaptured(requests, header, body.toByteArray());
+                header = matcher.matches() ? matcher : null;
+                body.reset();
+            } else if (header != null)
+                body.write(line);
+        }
+        addCaptured(requests, header, body.toByteArray());
+
+        return requests;
+    }
+
+    static List<ReplayRequest> readAccessLog(BufferedReader reader) throws IOException {
+        List<ReplayRequest> requests = new ArrayList<>();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Matcher matcher = ACCESS_LOG_ENTRY.matcher(line);
+            if (!matcher.find())
+                continue;
+
+            Instant timestamp = parseAccessLogDate(matcher.group(1));
+            HttpMethod method = Enums.getIfPresent(HttpMethod.class, matcher.group(2)).orNull();
+            if ((timestamp != null) && (method != null))
+                requests.add(new ReplayRequest(timestamp, method, matcher.group(3), null));
+        }
+
+        return requests;
+    }
+
+    private static void addCaptured(List<ReplayRequest> requests, @Nullable Matcher header, byte[] body) {
+        if (header == null)
+            return;
+
+        HttpMethod method = Enums.getIfPresent(HttpMethod.class, header.group(2)).orNull();
+        if (method == null)
+            return;
+
+        // Each body is followed by two line separators, which are not part of it.
+        int bodyLength = withoutTerminator(body, withoutTerminator(body, body.length));
+
+        Instant timestamp = LocalDateTime.parse(header.group(1)).atZone(ZoneId.systemDefault()).toInstant();
+        requests.add(new ReplayRequest(timestamp,
+            method,
+            header.group(3),
+            bodyLength == 0 ? null : Buffer.buffer().appendBytes(body, 0, bodyLength)));
+    }
+
+    @Nullable
+    private static byte[] readLine(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next;
+        while ((next = inputStream.read()) != -1) {
+            line.write(next);
+            if (next == '\n')
+                break;
+        }
+        return line.size() == 0 ? null : line.toByteArray();
+    }
+
+    // Returns the length of the bytes before `end` without the line terminator (if any) they finish with.
+    private static int withoutTerminator(byte[] bytes, int end) {
+        if ((end > 0) && (bytes[end - 1] == '\n')) {
+            --end;
+            if ((end > 0) && (bytes[end - 1] == '\r'))
+                --end;
+        }
+        return end;
+    }
+
+    @Nullable
+    private static Instant parseAccessLogDate(String date) {
+        for (DateTimeFormatter formatter : ACCESS_LOG_DATE_FORMATS) {
+            try {
+                return ZonedDateTime.parse(date, formatter).toInstant();
+            } catch (DateTimeParseException e) {
+                // Try the next format.
+            }
+        }
+        return null;
+    }
+
+}
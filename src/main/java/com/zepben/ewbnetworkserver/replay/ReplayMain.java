@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.ProgramStatus;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.RequestOptions;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@EverythingIsNonnullByDefault
+public class ReplayMain {
+
+    private static Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    public static void main(String[] args) {
+        System.exit(run(args).value());
+    }
+
+    static ProgramStatus run(String[] args) {
+        // Tell vert.x we are using SLF4J for logging.
+        System.setProperty("vertx.logger-delegate-factory-class-name", "io.vertx.core.logging.SLF4JLogDelegateFactory");
+
+        ReplayCmdArgs cmdArgs = new ReplayCmdArgs();
+        try {
+            cmdArgs.parse(args);
+        } catch (ParseException e) {
+            return showHelpAndExit(cmdArgs.options(), e.getMessage());
+        }
+
+        if (cmdArgs.isHelpRequested())
+            return showHelpAndExit(cmdArgs.options(), null);
+
+        List<ReplayRequest> requests;
+        try {
+            requests = ReplayFileReader.read(Paths.get(cmdArgs.file()), cmdArgs.format());
+        } catch (IOException e) {
+            logger.error("Failed to read '{}': {}", cmdArgs.file(), e.getMessage());
+            return ProgramStatus.FAILED_TO_START;
+        }
+
+        logger.info("Replaying {} requests from '{}' against {}...", requests.size(), cmdArgs.file(), cmdArgs.url());
+
+        Vertx vertx = Vertx.vertx();
+        try {
+            ReplayStats stats = replay(vertx, cmdArgs, requests);
+            logger.info("Replayed {} requests in {} seconds with {} errors.", stats.count(), String.format("%.1f", stats.elapsedSeconds()), stats.errors());
+            stats.report().forEach(logger::info);
+            return ProgramStatus.OK;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ProgramStatus.FAILED_TO_START;
+        } catch (ExecutionException e) {
+            logger.error("Failed to replay requests: {}", e.getMessage(), e);
+            return ProgramStatus.FAILED_TO_START;
+        } finally {
+            vertx.close();
+        }
+    }
+
+    static ReplayStats replay(Vertx vertx, ReplayCmdArgs cmdArgs, List<ReplayRequest> requests) throws InterruptedException, ExecutionException {
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+            .setKeepAlive(true)
+            .setMaxPoolSize(cmdArgs.concurrency()));
+
+        Replayer replayer = new Replayer(vertx,
+            client,
+            target(cmdArgs.url()),
+            cmdArgs.speed(),
+            cmdArgs.concurrency(),
+            TimeUnit.SECONDS.toMillis(cmdArgs.timeout()),
+            new ReplayStats(cmdArgs.routeDepth()));
+
+        CompletableFuture<ReplayStats> result = new CompletableFuture<>();
+        replayer.replay(requests).setHandler(event -> {
+            if (event.succeeded())
+                result.complete(event.result());
+            else
+                result.completeExceptionally(event.cause());
+        });
+
+        try {
+            return result.get();
+        } finally {
+            client.close();
+        }
+    }
+
+    static RequestOptions target(URI url) {
+        boolean ssl = "https".equals(url.getScheme());
+        String path = url.getRawPath() == null ? "" : url.getRawPath();
+        if (path.endsWith("/"))
+            path = path.substring(0, path.length() - 1);
+
+        return new RequestOptions()
+            .setHost(url.getHost())
+            .setPort(url.getPort() > 0 ? url.getPort() : (ssl ? 443 : 80))
+            .setSsl(ssl)
+            .setURI(path);
+    }
+
+    private static ProgramStatus showHelpAndExit(Options options, @Nullable String error) {
+        String header = "\nEWB Network Server Replay:\nReplays captured requests against an EWB Network Server and reports the throughput and latency of each route.\n\n";
+        if (error != null)
+            header = "\n" + error + "\n" + header;
+
+        String footer = "\nCopyright Zeppelin Bend Pty Ltd 2018.\n";
+
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("ewb-network-server-replay", header, options, footer, true);
+
+        return (error != null) ? ProgramStatus.INVALID_COMMAND_LINE : ProgramStatus.SHOW_HELP;
+    }
+
+}
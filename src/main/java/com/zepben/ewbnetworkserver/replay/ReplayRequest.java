@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+
+import javax.annotation.Nullable;
+import java.time.Instant;
+
+@EverythingIsNonnullByDefault
+class ReplayRequest {
+
+    private final Instant timestamp;
+    private final HttpMethod method;
+    private final String uri;
+    @Nullable private final Buffer body;
+
+    ReplayRequest(Instant timestamp, HttpMethod method, String uri, @Nullable Buffer body) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.uri = uri;
+        this.body = body;
+    }
+
+    Instant timestamp() {
+        return timestamp;
+    }
+
+    HttpMethod method() {
+        return method;
+    }
+
+    String uri() {
+        return uri;
+    }
+
+    @Nullable
+    Buffer body() {
+        return body;
+    }
+
+}
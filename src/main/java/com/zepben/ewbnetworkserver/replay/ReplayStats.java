@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+@EverythingIsNonnullByDefault
+class ReplayStats {
+
+    static final String ALL_ROUTES = "ALL";
+
+    private final int routeDepth;
+    private final Map<String, RouteStats> routes = new TreeMap<>();
+    private final RouteStats total = new RouteStats();
+    private long startNanos = 0;
+    private long finishNanos = 0;
+
+    // Paths are truncated to routeDepth segments, with the remainder replaced by a wildcard, so requests for different
+    // objects on the same route are reported together. Zero reports every path separately.
+    ReplayStats(int routeDepth) {
+        this.routeDepth = routeDepth;
+    }
+
+    void start(long nanos) {
+        startNanos = nanos;
+    }
+
+    void finish(long nanos) {
+        finishNanos = nanos;
+    }
+
+    // A status code of zero indicates the request failed without a response.
+    void record(HttpMethod method, String uri, int statusCode, long latencyNanos) {
+        routes.computeIfAbsent(route(method, uri), key -> new RouteStats()).record(statusCode, latencyNanos);
+        total.record(statusCode, latencyNanos);
+    }
+
+    String route(HttpMethod method, String uri) {
+        int queryIndex = uri.indexOf('?');
+        String path = queryIndex >= 0 ? uri.substring(0, queryIndex) : uri;
+
+        if (routeDepth > 0) {
+            String[] segments = path.split("/", -1);
+            // The leading slash produces an empty first segment.
+            if (segments.length > routeDepth + 1)
+                path = String.join("/", Arrays.copyOf(segments, routeDepth + 1)) + "/*";
+        }
+
+        return method + " " + path;
+    }
+
+    long count() {
+        return total.count;
+    }
+
+    long errors() {
+        return total.errors;
+    }
+
+    double elapsedSeconds() {
+        return (finishNanos - startNanos) / 1e9;
+    }
+
+    List<String> report() {
+        int width = routes.keySet().stream().mapToInt(String::length).max().orElse(0);
+        width = Math.max(width, ALL_ROUTES.length());
+
+        String format = "%-" + width + "s %8s %8s %10s %10s %10s %10s";
+        double elapsedSeconds = elapsedSeconds();
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(format, "ROUTE", "COUNT", "ERRORS", "REQ/SEC", "P50 (ms)", "P95 (ms)", "P99 (ms)"));
+        routes.forEach((route, stats) -> lines.add(stats.format(format, route, elapsedSeconds)));
+        lines.add(total.format(format, ALL_ROUTES, elapsedSeconds));
+
+        return lines;
+    }
+
+    double percentileMillis(String route, double percentile) {
+        RouteStats stats = ALL_ROUTES.equals(route) ? total : routes.get(route);
+        return stats == null ? 0 : stats.percentileMillis(percentile);
+    }
+
+    private static class RouteStats {
+
+        private long count = 0;
+        private long errors = 0;
+        private long[] latencies = new long[16];
+        private boolean sorted = true;
+
+        void record(int statusCode, long latencyNanos) {
+            if ((statusCode < 200) || (statusCode >= 400))
+                ++errors;
+
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            latencies[(int) count++] = latencyNanos;
+            sorted = false;
+        }
+
+        // Nearest rank percentile.
+        double percentileMillis(double percentile) {
+            if (count == 0)
+                return 0;
+
+            if (!sorted) {
+                Arrays.sort(latencies, 0, (int) count);
+                sorted = true;
+            }
+
+            int rank = (int) Math.ceil(percentile / 100.0 * count);
+            return latencies[Math.max(rank, 1) - 1] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        String format(String format, String route, double elapsedSeconds) {
+            return String.format(format,
+                route,
+                count,
+                errors,
+                String.format("%.1f", elapsedSeconds > 0 ? count / elapsedSeconds : 0),
+                String.format("%.2f", percentileMillis(50)),
+                String.format("%.2f", percentileMillis(95)),
+                String.format("%.2f", percentileMillis(99)));
+        }
+
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.RequestOptions;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Sends the requests in order, holding each one until it is due based on its original offset from the first request (scaled
+// by speedPercent, or immediately if zero) and there are fewer than concurrency requests outstanding. All state is only
+// touched from the vert.x context the replay was started on.
+@EverythingIsNonnullByDefault
+class Replayer {
+
+    private final Vertx vertx;
+    private final HttpClient client;
+    private final RequestOptions target;
+    private final int speedPercent;
+    private final int concurrency;
+    private final long timeoutMs;
+    private final ReplayStats stats;
+
+    private final Promise<ReplayStats> promise = Promise.promise();
+    private List<ReplayRequest> requests = Collections.emptyList();
+    private Instant firstTimestamp = Instant.EPOCH;
+    private long startNanos = 0;
+    private int next = 0;
+    private int inFlight = 0;
+    private boolean timerPending = false;
+
+    Replayer(Vertx vertx, HttpClient client, RequestOptions target, int speedPercent, int concurrency, long timeoutMs, ReplayStats stats) {
+        this.vertx = vertx;
+        this.client = client;
+        this.target = target;
+        this.speedPercent = speedPercent;
+        this.concurrency = concurrency;
+        this.timeoutMs = timeoutMs;
+        this.stats = stats;
+    }
+
+    Future<ReplayStats> replay(List<ReplayRequest> requests) {
+        vertx.runOnContext(ignored -> {
+            this.requests = requests;
+            firstTimestamp = requests.isEmpty() ? Instant.EPOCH : requests.get(0).timestamp();
+            startNanos = System.nanoTime();
+            stats.start(startNanos);
+            dispatch();
+        });
+
+        return promise.future();
+    }
+
+    private void dispatch() {
+        long now = System.nanoTime();
+        while ((next < requests.size()) && (inFlight < concurrency)) {
+            long delayNanos = dueNanos(requests.get(next)) - now;
+            if (delayNanos > 0) {
+                if (!timerPending) {
+                    timerPending = true;
+                    vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(delayNanos)), id -> {
+                        timerPending = false;
+                        dispatch();
+                    });
+                }
+                return;
+            }
+
+            send(requests.get(next++));
+        }
+
+        if ((next == requests.size()) && (inFlight == 0) && !promise.future().isComplete()) {
+            stats.finish(System.nanoTime());
+            promise.complete(stats);
+        }
+    }
+
+    private long dueNanos(ReplayRequest request) {
+        if (speedPercent == 0)
+            return startNanos;
+
+        long offsetNanos = Math.max(0, Duration.between(firstTimestamp, request.timestamp()).toNanos());
+        return startNanos + offsetNanos / speedPercent * 100;
+    }
+
+    private void send(ReplayRequest request) {
+        ++inFlight;
+        long sentNanos = System.nanoTime();
+        boolean[] completed = {false};
+
+        HttpClientRequest clientRequest = client.request(request.method(), new RequestOptions(target).setURI(target.getURI() + request.uri()));
+        clientRequest
+            .setTimeout(timeoutMs)
+            .exceptionHandler(e -> onComplete(request, 0, sentNanos, completed))
+            .handler(response -> response
+                .handler(ignored -> {
+                })
+                .exceptionHandler(e -> onComplete(request, 0, sentNanos, completed))
+                .endHandler(ignored -> onComplete(request, response.statusCode(), sentNanos, completed)));
+
+        Buffer body = request.body();
+        if (body != null)
+            clientRequest.end(body);
+        else
+            clientRequest.end();
+    }
+
+    private void onComplete(ReplayRequest request, int statusCode, long sentNanos, boolean[] completed) {
+        if (completed[0])
+            return;
+
+        completed[0] = true;
+        stats.record(request.method(), request.uri(), statusCode, System.nanoTime() - sentNanos);
+        --inFlight;
+        dispatch();
+    }
+
+}
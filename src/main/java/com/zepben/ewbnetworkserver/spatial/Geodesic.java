@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+
+import java.util.List;
+
+// Great circle distances in metres on a sphere of the mean earth radius, using the haversine formula. Searches compare the
+// haversine of the central angle from an Origin instead of metres, as it orders the same and avoids the inverse trigonometry.
+@EverythingIsNonnullByDefault
+final class Geodesic {
+
+    static final double EARTH_RADIUS = 6371008.8;
+
+    private static final double RAD = Math.PI / 180;
+
+    static double distance(double lng1, double lat1, double lng2, double lat2) {
+        return toMetres(new Origin(lng1, lat1).haverSin(lng2, lat2));
+    }
+
+    static double distance(double lng, double lat, List<PositionPoint> points) {
+        return toMetres(new Origin(lng, lat).haverSin(points));
+    }
+
+    static double boundsDistance(double lng, double lat, double minLng, double minLat, double maxLng, double maxLat) {
+        return toMetres(new Origin(lng, lat).boundsHaverSin(minLng, minLat, maxLng, maxLat));
+    }
+
+    static double toMetres(double haverSin) {
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(1, haverSin)));
+    }
+
+    static double toHaverSin(double metres) {
+        return metres >= Math.PI * EARTH_RADIUS ? 1 : haverSin(metres / EARTH_RADIUS);
+    }
+
+    private static double haverSin(double theta) {
+        double s = Math.sin(theta / 2);
+        return s * s;
+    }
+
+    @EverythingIsNonnullByDefault
+    static final class Origin {
+
+        private final double lng;
+        private final double lat;
+        private final double cosLat;
+
+        Origin(double lng, double lat) {
+            this.lng = lng;
+            this.lat = lat;
+            cosLat = Math.cos(lat * RAD);
+        }
+
+        double haverSin(double toLng, double toLat) {
+            return haverSinDistance(Geodesic.haverSin((toLng - lng) * RAD), toLat);
+        }
+
+        // To the nearest point of a location. Each segment is treated as straight in an equirectangular projection about the
+        // origin to find its closest point, which is then measured along the great circle. The closest point always lies within
+        // the bounds of the location, so this is never less than boundsHaverSin.
+        double haverSin(List<PositionPoint> points) {
+            double best = Double.POSITIVE_INFINITY;
+
+            PositionPoint previous = null;
+            for (PositionPoint point : points) {
+                if (previous == null) {
+                    best = haverSin(point.getXPosition(), point.getYPosition());
+                } else {
+                    double x1 = (previous.getXPosition() - lng) * cosLat;
+                    double y1 = previous.getYPosition() - lat;
+                    double dx = (point.getXPosition() - lng) * cosLat - x1;
+                    double dy = point.getYPosition() - lat - y1;
+
+                    double lengthSquared = dx * dx + dy * dy;
+                    double t = lengthSquared > 0 ? Math.max(0, Math.min(1, -(x1 * dx + y1 * dy) / lengthSquared)) : 0;
+
+                    best = Math.min(best, haverSin(previous.getXPosition() + t * (point.getXPosition() - previous.getXPosition()),
+                        previous.getYPosition() + t * (point.getYPosition() - previous.getYPosition())));
+                }
+                previous = point;
+            }
+
+            return best;
+        }
+
+        // A lower bound for anything within the bounds. When the origin is east or west of the bounds, the nearest point on the
+        // closest meridian edge can be at a higher latitude than either corner, as great circles bulge towards the poles.
+        double boundsHaverSin(double minLng, double minLat, double maxLng, double maxLat) {
+            if ((lng >= minLng) && (lng <= maxLng)) {
+                if (lat < minLat)
+                    return Geodesic.haverSin((minLat - lat) * RAD);
+                if (lat > maxLat)
+                    return Geodesic.haverSin((lat - maxLat) * RAD);
+                return 0;
+            }
+
+            double haverSinDLng = Math.min(Geodesic.haverSin((minLng - lng) * RAD), Geodesic.haverSin((maxLng - lng) * RAD));
+
+            double extremumLat = vertexLat(haverSinDLng);
+            if ((extremumLat > minLat) && (extremumLat < maxLat))
+                return haverSinDistance(haverSinDLng, extremumLat);
+
+            return Math.min(haverSinDistance(haverSinDLng, minLat), haverSinDistance(haverSinDLng, maxLat));
+        }
+
+        private double vertexLat(double haverSinDLng) {
+            double cosDLng = 1 - 2 * haverSinDLng;
+            if (cosDLng <= 0)
+                return lat > 0 ? 90 : -90;
+            return Math.atan(Math.tan(lat * RAD) / cosDLng) / RAD;
+        }
+
+        private double haverSinDistance(double haverSinDLng, double toLat) {
+            return cosLat * Math.cos(toLat * RAD) * haverSinDLng + Geodesic.haverSin((lat - toLat) * RAD);
+        }
+
+    }
+
+    private Geodesic() {
+    }
+
+}
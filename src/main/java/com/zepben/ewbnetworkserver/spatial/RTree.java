@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.tiles.LngLatBounds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// An immutable R-tree bulk loaded with Sort-Tile-Recursive packing. Each level is stored as flat arrays of bounds and
+// child ranges, with the items in the bottom level and the root as the only node in the top level.
+@EverythingIsNonnullByDefault
+final class RTree<T> {
+
+    static final int NODE_SIZE = 16;
+
+    private final Object[] items;
+    private final List<double[]> levelBounds = new ArrayList<>();
+    private final List<int[]> levelStarts = new ArrayList<>();
+    private final List<int[]> levelEnds = new ArrayList<>();
+
+    RTree(List<T> items, Function<T, LngLatBounds> boundsOf) {
+        int count = items.size();
+        Object[] levelItems = items.toArray();
+        double[] bounds = new double[count * 4];
+        for (int i = 0; i < count; ++i) {
+            LngLatBounds itemBounds = boundsOf.apply(items.get(i));
+            bounds[i * 4] = itemBounds.minLng();
+            bounds[i * 4 + 1] = itemBounds.minLat();
+            bounds[i * 4 + 2] = itemBounds.maxLng();
+            bounds[i * 4 + 3] = itemBounds.maxLat();
+        }
+
+        int[] starts = new int[0];
+        int[] ends = new int[0];
+        while (count > 0) {
+            int[] order = sortTileOrder(bounds, count);
+            bounds = permuteBounds(bounds, order);
+            if (levelBounds.isEmpty()) {
+                levelItems = permute(levelItems, order);
+            } else {
+                starts = permute(starts, order);
+                ends = permute(ends, order);
+            }
+
+            levelBounds.add(bounds);
+            levelStarts.add(starts);
+            levelEnds.add(ends);
+
+            if (count == 1)
+                break;
+
+            int parentCount = (count + NODE_SIZE - 1) / NODE_SIZE;
+            double[] parentBounds = new double[parentCount * 4];
+            starts = new int[parentCount];
+            ends = new int[parentCount];
+            for (int parent = 0; parent < parentCount; ++parent) {
+                starts[parent] = parent * NODE_SIZE;
+                ends[parent] = Math.min(count, starts[parent] + NODE_SIZE);
+
+                parentBounds[parent * 4] = Double.POSITIVE_INFINITY;
+                parentBounds[parent * 4 + 1] = Double.POSITIVE_INFINITY;
+                parentBounds[parent * 4 + 2] = Double.NEGATIVE_INFINITY;
+                parentBounds[parent * 4 + 3] = Double.NEGATIVE_INFINITY;
+                for (int child = starts[parent]; child < ends[parent]; ++child) {
+                    parentBounds[parent * 4] = Math.min(parentBounds[parent * 4], bounds[child * 4]);
+                    parentBounds[parent * 4 + 1] = Math.min(parentBounds[parent * 4 + 1], bounds[child * 4 + 1]);
+                    parentBounds[parent * 4 + 2] = Math.max(parentBounds[parent * 4 + 2], bounds[child * 4 + 2]);
+                    parentBounds[parent * 4 + 3] = Math.max(parentBounds[parent * 4 + 3], bounds[child * 4 + 3]);
+                }
+            }
+
+            bounds = parentBounds;
+            count = parentCount;
+        }
+
+        this.items = levelItems;
+    }
+
+    int size() {
+        return items.length;
+    }
+
+    int height() {
+        return levelBounds.size();
+    }
+
+    // Visits each item whose bounds intersect the query until the visitor returns false. Returns false if the search was stopped.
+    boolean search(LngLatBounds query, Predicate<T> visitor) {
+        return levelBounds.isEmpty() || search(levelBounds.size() - 1, 0, query, visitor);
+    }
+
+    // Visits items in order of increasing distance until the visitor returns false, or the next item is further than maxDistance.
+    // The bounds distance must never be more than the item distance of anything within the bounds.
+    @SuppressWarnings("unchecked")
+    void nearest(BoundsDistance boundsDistance, ToDoubleFunction<T> itemDistance, double maxDistance, NearestVisitor<T> visitor) {
+        if (levelBounds.isEmpty())
+            return;
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(0, levelBounds.size() - 1, 0, false));
+
+        Candidate candidate;
+        while (((candidate = queue.poll()) != null) && (candidate.distance <= maxDistance)) {
+            if (candidate.isExact) {
+                if (!visitor.visit((T) items[candidate.index], candidate.distance))
+                    return;
+            } else if (candidate.level == 0) {
+                queue.add(new Candidate(itemDistance.applyAsDouble((T) items[candidate.index]), 0, candidate.index, true));
+            } else {
+                double[] bounds = levelBounds.get(candidate.level - 1);
+                int end = levelEnds.get(candidate.level)[candidate.index];
+                for (int child = levelStarts.get(candidate.level)[candidate.index]; child < end; ++child) {
+                    double distance = boundsDistance.distance(bounds[child * 4], bounds[child * 4 + 1], bounds[child * 4 + 2], bounds[child * 4 + 3]);
+                    if (distance <= maxDistance)
+                        queue.add(new Candidate(distance, candidate.level - 1, child, false));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<T, LngLatBounds> consumer) {
+        double[] bounds = levelBounds.isEmpty() ? new double[0] : levelBounds.get(0);
+        for (int i = 0; i < items.length; ++i)
+            consumer.accept((T) items[i], new LngLatBounds(bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean search(int level, int index, LngLatBounds query, Predicate<T> visitor) {
+        double[] bounds = levelBounds.get(level);
+        if ((bounds[index * 4] > query.maxLng())
+            || (bounds[index * 4 + 1] > query.maxLat())
+            || (bounds[index * 4 + 2] < query.minLng())
+            || (bounds[index * 4 + 3] < query.minLat()))
+            return true;
+
+        if (level == 0)
+            return visitor.test((T) items[index]);
+
+        int end = levelEnds.get(level)[index];
+        for (int child = levelStarts.get(level)[index]; child < end; ++child) {
+            if (!search(level - 1, child, query, visitor))
+                return false;
+        }
+
+        return true;
+    }
+
+    // Sorts the entries into vertical slices by their centre longitude, then each slice by centre latitude, so that each
+    // consecutive run of NODE_SIZE entries is a compact tile.
+    private static int[] sortTileOrder(double[] bounds, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; ++i)
+            order[i] = i;
+
+        Arrays.sort(order, Comparator.comparingDouble(i -> bounds[i * 4] + bounds[i * 4 + 2]));
+
+        int numNodes = (count + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = (int) Math.ceil(Math.sqrt(numNodes)) * NODE_SIZE;
+        for (int start = 0; start < count; start += sliceSize)
+            Arrays.sort(order, start, Math.min(count, start + sliceSize), Comparator.comparingDouble(i -> bounds[i * 4 + 1] + bounds[i * 4 + 3]));
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; ++i)
+            result[i] = order[i];
+
+        return result;
+    }
+
+    @FunctionalInterface
+    interface BoundsDistance {
+
+        double distance(double minLng, double minLat, double maxLng, double maxLat);
+
+    }
+
+    @FunctionalInterface
+    interface NearestVisitor<T> {
+
+        boolean visit(T item, double distance);
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class Candidate implements Comparable<Candidate> {
+
+        private final double distance;
+        private final int level;
+        private final int index;
+        private final boolean isExact;
+
+        private Candidate(double distance, int level, int index, boolean isExact) {
+            this.distance = distance;
+            this.level = level;
+            this.index = index;
+            this.isExact = isExact;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(distance, other.distance);
+        }
+
+    }
+
+    private static double[] permuteBounds(double[] bounds, int[] order) {
+        double[] result = new double[bounds.length];
+        for (int i = 0; i < order.length; ++i)
+            System.arraycopy(bounds, order[i] * 4, result, i * 4, 4);
+        return result;
+    }
+
+    private static Object[] permute(Object[] values, int[] order) {
+        Object[] result = new Object[order.length];
+        for (int i = 0; i < order.length; ++i)
+            result[i] = values[order[i]];
+        return result;
+    }
+
+    private static int[] permute(int[] values, int[] order) {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; ++i)
+            result[i] = values[order[i]];
+        return result;
+    }
+
+}
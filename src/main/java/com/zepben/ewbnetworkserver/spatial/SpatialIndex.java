@@ -0,0 +1,292 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.NetworkChangeListener;
+import com.zepben.ewbnetworkserver.tiles.LngLatBounds;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Objects added or removed after the tree is packed are kept in a small overlay that is searched alongside it, with the
+// tree repacked once the overlay grows too large. Queries read an immutable snapshot, so they never block on updates.
+// Changes made by a run of patches are collected and published as a single snapshot when the run finishes.
+@EverythingIsNonnullByDefault
+public class SpatialIndex implements NetworkChangeListener {
+
+    static final int MAX_OVERLAY_SIZE = 1024;
+
+    private volatile Snapshot snapshot = new Snapshot(pack(Collections.emptyList()), Collections.emptyMap(), Collections.emptySet(), 0);
+    @Nullable private Overlay pending;
+
+    public synchronized void build(NetworkService networkService) {
+        List<Entry> entries = new ArrayList<>();
+        for (PowerSystemResource psr : networkService.listOf(PowerSystemResource.class)) {
+            LngLatBounds bounds = LngLatBounds.of(psr);
+            if (bounds != null)
+                entries.add(new Entry(psr, bounds));
+        }
+
+        snapshot = new Snapshot(pack(entries), Collections.emptyMap(), Collections.emptySet(), entries.size());
+        pending = null;
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    // Returns up to limit objects whose location bounds intersect the query bounds and that match the filter.
+    public List<PowerSystemResource> query(LngLatBounds bounds, Predicate<PowerSystemResource> filter, int limit) {
+        Snapshot current = snapshot;
+        List<PowerSystemResource> results = new ArrayList<>();
+        if (limit <= 0)
+            return results;
+
+        boolean complete = current.tree.search(bounds, entry -> {
+            if (!current.isReplaced(entry.psr) && filter.test(entry.psr))
+                results.add(entry.psr);
+            return results.size() < limit;
+        });
+
+        if (complete) {
+            for (Entry entry : current.added.values()) {
+                if (results.size() >= limit)
+                    break;
+                if (entry.bounds.intersects(bounds) && filter.test(entry.psr))
+                    results.add(entry.psr);
+            }
+        }
+
+        return results;
+    }
+
+    // Returns up to k objects that match the filter in order of their great circle distance from the point, ignoring anything
+    // further than maxDistance metres.
+    public List<Neighbour> nearest(double lng, double lat, Predicate<PowerSystemResource> filter, int k, double maxDistance) {
+        Snapshot current = snapshot;
+        List<Neighbour> results = new ArrayList<>();
+        if (k <= 0)
+            return results;
+
+        Geodesic.Origin origin = new Geodesic.Origin(lng, lat);
+        double maxHaverSin = Geodesic.toHaverSin(maxDistance);
+
+        current.tree.nearest(origin::boundsHaverSin,
+            entry -> origin.haverSin(entry.points()),
+            maxHaverSin,
+            (entry, haverSin) -> {
+                if (!current.isReplaced(entry.psr) && filter.test(entry.psr))
+                    results.add(new Neighbour(entry.psr, haverSin));
+                return results.size() < k;
+            });
+
+        if (!current.added.isEmpty()) {
+            for (Entry entry : current.added.values()) {
+                if (filter.test(entry.psr)) {
+                    double haverSin = origin.haverSin(entry.points());
+                    if (haverSin <= maxHaverSin)
+                        results.add(new Neighbour(entry.psr, haverSin));
+                }
+            }
+
+            results.sort(Comparator.comparingDouble(neighbour -> neighbour.distance));
+            if (results.size() > k)
+                results.subList(k, results.size()).clear();
+        }
+
+        // The neighbours hold the haversine of their distance until they have been ordered.
+        results.replaceAll(neighbour -> new Neighbour(neighbour.psr, Geodesic.toMetres(neighbour.distance)));
+        return results;
+    }
+
+    @Override
+    public synchronized void onPatchesStarted() {
+        if (pending == null)
+            pending = new Overlay(snapshot);
+    }
+
+    @Override
+    public synchronized void onPatchesFinished() {
+        if (pending != null) {
+            publish(pending);
+            pending = null;
+        }
+    }
+
+    @Override
+    public synchronized void onAdded(IdentifiedObject identifiedObject) {
+        if (!(identifiedObject instanceof PowerSystemResource))
+            return;
+
+        Overlay overlay = pending != null ? pending : new Overlay(snapshot);
+        String mRID = identifiedObject.getMRID();
+        LngLatBounds bounds = LngLatBounds.of(identifiedObject);
+        if (bounds != null) {
+            // An object in the tree with the same mRID will have been removed first, as mRIDs are unique in the network.
+            if (overlay.added.put(mRID, new Entry((PowerSystemResource) identifiedObject, bounds)) == null)
+                ++overlay.size;
+        } else if (overlay.added.remove(mRID) != null)
+            --overlay.size;
+
+        if (pending == null)
+            publish(overlay);
+    }
+
+    @Override
+    public synchronized void onRemoved(IdentifiedObject identifiedObject) {
+        if (!(identifiedObject instanceof PowerSystemResource))
+            return;
+
+        Overlay overlay = pending != null ? pending : new Overlay(snapshot);
+        String mRID = identifiedObject.getMRID();
+        boolean wasAdded = overlay.added.remove(mRID) != null;
+        boolean wasHidden = !overlay.removed.add(mRID);
+        if (wasAdded || (!wasHidden && isInTree(overlay.tree, identifiedObject)))
+            --overlay.size;
+
+        if (pending == null)
+            publish(overlay);
+    }
+
+    private void publish(Overlay overlay) {
+        if (overlay.added.size() + overlay.removed.size() <= MAX_OVERLAY_SIZE) {
+            snapshot = new Snapshot(overlay.tree, overlay.added, overlay.removed, overlay.size);
+            return;
+        }
+
+        Snapshot replaced = new Snapshot(overlay.tree, overlay.added, overlay.removed, overlay.size);
+        List<Entry> entries = new ArrayList<>(overlay.size);
+        overlay.tree.forEach((entry, bounds) -> {
+            if (!replaced.isReplaced(entry.psr))
+                entries.add(entry);
+        });
+        entries.addAll(overlay.added.values());
+
+        snapshot = new Snapshot(pack(entries), Collections.emptyMap(), Collections.emptySet(), entries.size());
+    }
+
+    // Objects are packed with their location when they are indexed, so they can be found by searching for it again.
+    private static boolean isInTree(RTree<Entry> tree, IdentifiedObject identifiedObject) {
+        LngLatBounds bounds = LngLatBounds.of(identifiedObject);
+        return (bounds != null) && !tree.search(bounds, entry -> !entry.psr.getMRID().equals(identifiedObject.getMRID()));
+    }
+
+    private static RTree<Entry> pack(List<Entry> entries) {
+        return new RTree<>(entries, entry -> entry.bounds);
+    }
+
+    @EverythingIsNonnullByDefault
+    public static final class Neighbour {
+
+        private final PowerSystemResource psr;
+        private final double distance;
+
+        Neighbour(PowerSystemResource psr, double distance) {
+            this.psr = psr;
+            this.distance = distance;
+        }
+
+        public PowerSystemResource psr() {
+            return psr;
+        }
+
+        public double distance() {
+            return distance;
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class Entry {
+
+        private final PowerSystemResource psr;
+        private final LngLatBounds bounds;
+        private final Location location;
+
+        // Entries are only created for objects with a location, which is held onto so removed objects can still be measured
+        // by queries that started before they were removed.
+        private Entry(PowerSystemResource psr, LngLatBounds bounds) {
+            this.psr = psr;
+            this.bounds = bounds;
+            this.location = Objects.requireNonNull(psr.getLocation());
+        }
+
+        private List<PositionPoint> points() {
+            return location.getPoints();
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class Snapshot {
+
+        private final RTree<Entry> tree;
+        private final Map<String, Entry> added;
+        private final Set<String> removed;
+        private final int size;
+
+        private Snapshot(RTree<Entry> tree, Map<String, Entry> added, Set<String> removed, int size) {
+            this.tree = tree;
+            this.added = added;
+            this.removed = removed;
+            this.size = size;
+        }
+
+        // Objects in the tree are hidden once they have been removed, or replaced by an object added with the same mRID.
+        private boolean isReplaced(PowerSystemResource psr) {
+            return removed.contains(psr.getMRID()) || added.containsKey(psr.getMRID());
+        }
+
+    }
+
+    // A copy of the overlay of a snapshot that changes are made to before it is published. The copy is bounded by the
+    // repack size, and is only taken once for a run of patches.
+    @EverythingIsNonnullByDefault
+    private static class Overlay {
+
+        private final RTree<Entry> tree;
+        private final Map<String, Entry> added;
+        private final Set<String> removed;
+        private int size;
+
+        private Overlay(Snapshot snapshot) {
+            this.tree = snapshot.tree;
+            this.added = new HashMap<>(snapshot.added);
+            this.removed = new HashSet<>(snapshot.removed);
+            this.size = snapshot.size;
+        }
+
+    }
+
+}
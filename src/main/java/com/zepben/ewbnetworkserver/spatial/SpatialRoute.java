@@ -0,0 +1,283 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import com.zepben.ewbnetworkserver.geojson.GeoJsonType;
+import com.zepben.ewbnetworkserver.tiles.LngLatBounds;
+import com.zepben.vertxutils.routing.Respond;
+import com.zepben.vertxutils.routing.Route;
+import com.zepben.vertxutils.routing.RouteVersion;
+import com.zepben.vertxutils.routing.VersionableRoute;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.vertx.core.http.HttpMethod.GET;
+
+@EverythingIsNonnullByDefault
+public class SpatialRoute {
+
+    static final String BBOX_PARAM = "bbox";
+    static final String TYPE_PARAM = "type";
+    static final String VOLTAGE_PARAM = "voltage";
+    static final String LIMIT_PARAM = "limit";
+    static final String LNG_PARAM = "lng";
+    static final String LAT_PARAM = "lat";
+    static final String K_PARAM = "k";
+    static final String MAX_DISTANCE_PARAM = "maxDistance";
+
+    static final int DEFAULT_LIMIT = 1000;
+    static final int MAX_LIMIT = 10000;
+    static final int DEFAULT_K = 10;
+    static final int MAX_K = 1000;
+
+    private final SpatialIndex spatialIndex;
+    private final NetworkExportToJson networkExportToJson;
+    private final Map<Class<?>, Set<String>> typeNames = new ConcurrentHashMap<>();
+
+    @EverythingIsNonnullByDefault
+    public enum AvailableRoute implements VersionableRoute {
+        BBOX(RouteVersion.since(1)),
+        NEAREST(RouteVersion.since(1));
+
+        private final RouteVersion rv;
+
+        AvailableRoute(RouteVersion rv) {
+            this.rv = rv;
+        }
+
+        @Override
+        public RouteVersion routeVersion() {
+            return rv;
+        }
+    }
+
+    static Function<AvailableRoute, Route> routeFactory(SpatialIndex spatialIndex, NetworkExportToJson networkExportToJson) {
+        SpatialRoute route = new SpatialRoute(spatialIndex, networkExportToJson);
+
+        return availableRoute -> {
+            switch (availableRoute) {
+                case BBOX:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/bbox")
+                        .addHandler(route::queryBoundingBox)
+                        .build();
+                case NEAREST:
+                    return Route.builder()
+                        .method(GET)
+                        .path("/nearest")
+                        .addHandler(route::queryNearest)
+                        .build();
+                default:
+                    throw new IllegalArgumentException("INTERNAL ERROR: Missing route factory method.");
+            }
+        };
+    }
+
+    void queryBoundingBox(RoutingContext context) {
+        LngLatBounds bounds;
+        Predicate<PowerSystemResource> filter;
+        int limit;
+        try {
+            bounds = bounds(context.request().getParam(BBOX_PARAM));
+            filter = typeFilter(context.request().getParam(TYPE_PARAM)).and(voltageFilter(context.request().getParam(VOLTAGE_PARAM)));
+            limit = count(LIMIT_PARAM, context.request().getParam(LIMIT_PARAM), DEFAULT_LIMIT, MAX_LIMIT);
+        } catch (IllegalArgumentException e) {
+            Respond.withJson(context, BAD_REQUEST, new JsonObject().put("message", e.getMessage()));
+            return;
+        }
+
+        // Ask for one more than the limit so we can tell the caller when there were more results.
+        List<PowerSystemResource> results = spatialIndex.query(bounds, filter, limit + 1);
+        boolean truncated = results.size() > limit;
+
+        JsonArray features = new JsonArray();
+        results.stream().limit(limit).map(networkExportToJson::toFeature).forEach(features::add);
+
+        Respond.withJson(context, OK, new JsonObject()
+            .put("type", GeoJsonType.FeatureCollection.name())
+            .put("truncated", truncated)
+            .put("features", features));
+    }
+
+    void queryNearest(RoutingContext context) {
+        double lng;
+        double lat;
+        Predicate<PowerSystemResource> filter;
+        int k;
+        double maxDistance;
+        try {
+            lng = coordinate(LNG_PARAM, context.request().getParam(LNG_PARAM), 180);
+            lat = coordinate(LAT_PARAM, context.request().getParam(LAT_PARAM), 90);
+            filter = typeFilter(context.request().getParam(TYPE_PARAM)).and(voltageFilter(context.request().getParam(VOLTAGE_PARAM)));
+            k = count(K_PARAM, context.request().getParam(K_PARAM), DEFAULT_K, MAX_K);
+            maxDistance = maxDistance(context.request().getParam(MAX_DISTANCE_PARAM));
+        } catch (IllegalArgumentException e) {
+            Respond.withJson(context, BAD_REQUEST, new JsonObject().put("message", e.getMessage()));
+            return;
+        }
+
+        JsonArray features = new JsonArray();
+        for (SpatialIndex.Neighbour neighbour : spatialIndex.nearest(lng, lat, filter, k, maxDistance)) {
+            JsonObject feature = networkExportToJson.toFeature(neighbour.psr());
+            feature.getJsonObject("properties").put("distance", neighbour.distance());
+            features.add(feature);
+        }
+
+        Respond.withJson(context, OK, new JsonObject()
+            .put("type", GeoJsonType.FeatureCollection.name())
+            .put("features", features));
+    }
+
+    private double coordinate(String name, @Nullable String param, double max) {
+        if (param == null)
+            throw new IllegalArgumentException("Missing required parameter '" + name + "'.");
+
+        try {
+            double value = Double.parseDouble(param);
+            if ((value >= -max) && (value <= max))
+                return value;
+        } catch (NumberFormatException e) {
+            // Fall through to the error below.
+        }
+
+        throw new IllegalArgumentException("Invalid " + name + " '" + param + "', expected a number between -" + (int) max + " and " + (int) max + ".");
+    }
+
+    private double maxDistance(@Nullable String maxDistanceParam) {
+        if (maxDistanceParam == null)
+            return Double.POSITIVE_INFINITY;
+
+        try {
+            double maxDistance = Double.parseDouble(maxDistanceParam);
+            if (maxDistance >= 0)
+                return maxDistance;
+        } catch (NumberFormatException e) {
+            // Fall through to the error below.
+        }
+
+        throw new IllegalArgumentException("Invalid " + MAX_DISTANCE_PARAM + " '" + maxDistanceParam + "', expected a distance in metres.");
+    }
+
+    private LngLatBounds bounds(@Nullable String bboxParam) {
+        if (bboxParam == null)
+            throw new IllegalArgumentException("Missing required parameter '" + BBOX_PARAM + "', expected minLng,minLat,maxLng,maxLat.");
+
+        String[] parts = bboxParam.split(",");
+        if (parts.length != 4)
+            throw new IllegalArgumentException("Invalid " + BBOX_PARAM + " '" + bboxParam + "', expected minLng,minLat,maxLng,maxLat.");
+
+        double[] values = new double[4];
+        for (int i = 0; i < 4; ++i) {
+            try {
+                values[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                values[i] = Double.NaN;
+            }
+
+            if (!Double.isFinite(values[i]))
+                throw new IllegalArgumentException("Invalid " + BBOX_PARAM + " '" + bboxParam + "', expected minLng,minLat,maxLng,maxLat.");
+        }
+
+        if ((values[0] > values[2]) || (values[1] > values[3]))
+            throw new IllegalArgumentException("Invalid " + BBOX_PARAM + " '" + bboxParam + "', the minimum cannot be greater than the maximum.");
+
+        return new LngLatBounds(values[0], values[1], values[2], values[3]);
+    }
+
+    private Predicate<PowerSystemResource> typeFilter(@Nullable String typeParam) {
+        if ((typeParam == null) || typeParam.isEmpty())
+            return psr -> true;
+
+        Set<String> types = new HashSet<>();
+        for (String type : typeParam.split(","))
+            types.add(type.trim());
+
+        return psr -> {
+            for (String typeName : typeNames(psr.getClass())) {
+                if (types.contains(typeName))
+                    return true;
+            }
+            return false;
+        };
+    }
+
+    private Predicate<PowerSystemResource> voltageFilter(@Nullable String voltageParam) {
+        if ((voltageParam == null) || voltageParam.isEmpty())
+            return psr -> true;
+
+        Set<Integer> voltages = new HashSet<>();
+        for (String voltage : voltageParam.split(",")) {
+            try {
+                voltages.add(Integer.parseInt(voltage.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + VOLTAGE_PARAM + " '" + voltage + "', expected a whole number of volts.");
+            }
+        }
+
+        return psr -> (psr instanceof ConductingEquipment) && voltages.contains(((ConductingEquipment) psr).getBaseVoltageValue());
+    }
+
+    private int count(String name, @Nullable String param, int defaultValue, int max) {
+        if (param == null)
+            return defaultValue;
+
+        try {
+            int count = Integer.parseInt(param);
+            if ((count >= 1) && (count <= max))
+                return count;
+        } catch (NumberFormatException e) {
+            // Fall through to the error below.
+        }
+
+        throw new IllegalArgumentException("Invalid " + name + " '" + param + "', expected a number between 1 and " + max + ".");
+    }
+
+    // The simple names of the class and all of its super classes, so a type filter can match on a more general type such as Switch.
+    private Set<String> typeNames(Class<?> clazz) {
+        return typeNames.computeIfAbsent(clazz, key -> {
+            Set<String> names = new HashSet<>();
+            for (Class<?> c = key; c != null; c = c.getSuperclass())
+                names.add(c.getSimpleName());
+            return names;
+        });
+    }
+
+    SpatialRoute(SpatialIndex spatialIndex, NetworkExportToJson networkExportToJson) {
+        this.spatialIndex = spatialIndex;
+        this.networkExportToJson = networkExportToJson;
+    }
+
+}
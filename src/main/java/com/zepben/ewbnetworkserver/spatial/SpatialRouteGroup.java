@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.google.common.collect.ImmutableList;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import com.zepben.vertxutils.routing.Route;
+import com.zepben.vertxutils.routing.RouteGroup;
+
+import static com.zepben.vertxutils.routing.RouteVersionUtils.forVersion;
+
+@EverythingIsNonnullByDefault
+public class SpatialRouteGroup {
+
+    static final String SPATIAL_PATH = "/spatial";
+    static final String SPATIAL_API_V1_PATH = SPATIAL_PATH + "/api/v1";
+
+    public static RouteGroup api(SpatialIndex spatialIndex, NetworkExportToJson networkExportToJson) {
+        return RouteGroup.create(SPATIAL_API_V1_PATH,
+            ImmutableList.<Route>builder()
+                .addAll(forVersion(SpatialRoute.AvailableRoute.values(), 1, SpatialRoute.routeFactory(spatialIndex, networkExportToJson)))
+                .build());
+    }
+
+    private SpatialRouteGroup() {
+    }
+
+}
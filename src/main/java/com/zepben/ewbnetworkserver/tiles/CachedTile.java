@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.google.common.io.ByteStreams;
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@EverythingIsNonnullByDefault
+final class CachedTile {
+
+    private final byte[] gzipped;
+    private final int numFeatures;
+    private final boolean isGzippedPayload;
+
+    private CachedTile(byte[] gzipped, int numFeatures, boolean isGzippedPayload) {
+        this.gzipped = gzipped;
+        this.numFeatures = numFeatures;
+        this.isGzippedPayload = isGzippedPayload;
+    }
+
+    // isGzippedPayload should be set when the renderer compressed the tile itself rather than using a content encoding, in
+    // which case clients expect the compressed bytes regardless of what encodings they accept.
+    static CachedTile of(byte[] tile, int numFeatures, boolean isGzippedPayload) {
+        return new CachedTile(gzip(tile), numFeatures, isGzippedPayload);
+    }
+
+    static boolean isGzipped(byte[] bytes) {
+        return (bytes.length >= 2) && (bytes[0] == (byte) 0x1f) && (bytes[1] == (byte) 0x8b);
+    }
+
+    static byte[] gunzip(byte[] bytes) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return ByteStreams.toByteArray(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    byte[] gzipped() {
+        return gzipped;
+    }
+
+    byte[] uncompressed() {
+        return gunzip(gzipped);
+    }
+
+    int numFeatures() {
+        return numFeatures;
+    }
+
+    boolean isGzippedPayload() {
+        return isGzippedPayload;
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+
+@EverythingIsNonnullByDefault
+public final class LngLatBounds {
+
+    private final double minLng;
+    private final double minLat;
+    private final double maxLng;
+    private final double maxLat;
+
+    public LngLatBounds(double minLng, double minLat, double maxLng, double maxLat) {
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.maxLng = maxLng;
+        this.maxLat = maxLat;
+    }
+
+    @Nullable
+    public static LngLatBounds of(IdentifiedObject identifiedObject) {
+        if (!(identifiedObject instanceof PowerSystemResource))
+            return null;
+
+        Location location = ((PowerSystemResource) identifiedObject).getLocation();
+        if (location == null)
+            return null;
+
+        return of(location.getPoints());
+    }
+
+    @Nullable
+    public static LngLatBounds of(@Nullable List<PositionPoint> points) {
+        if ((points == null) || points.isEmpty())
+            return null;
+
+        double minLng = Double.POSITIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (PositionPoint point : points) {
+            minLng = Math.min(minLng, point.getXPosition());
+            minLat = Math.min(minLat, point.getYPosition());
+            maxLng = Math.max(maxLng, point.getXPosition());
+            maxLat = Math.max(maxLat, point.getYPosition());
+        }
+
+        return new LngLatBounds(minLng, minLat, maxLng, maxLat);
+    }
+
+    public double minLng() {
+        return minLng;
+    }
+
+    public double minLat() {
+        return minLat;
+    }
+
+    public double maxLng() {
+        return maxLng;
+    }
+
+    public double maxLat() {
+        return maxLat;
+    }
+
+    public LngLatBounds union(@Nullable LngLatBounds other) {
+        if (other == null)
+            return this;
+
+        return new LngLatBounds(Math.min(minLng, other.minLng),
+            Math.min(minLat, other.minLat),
+            Math.max(maxLng, other.maxLng),
+            Math.max(maxLat, other.maxLat));
+    }
+
+    public boolean intersects(LngLatBounds other) {
+        return (minLng <= other.maxLng) && (other.minLng <= maxLng) && (minLat <= other.maxLat) && (other.minLat <= maxLat);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if ((o == null) || (getClass() != o.getClass()))
+            return false;
+
+        LngLatBounds that = (LngLatBounds) o;
+        return (Double.compare(that.minLng, minLng) == 0)
+            && (Double.compare(that.minLat, minLat) == 0)
+            && (Double.compare(that.maxLng, maxLng) == 0)
+            && (Double.compare(that.maxLat, maxLat) == 0);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minLng, minLat, maxLng, maxLat);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + minLng + ", " + minLat + ", " + maxLng + ", " + maxLat + "]";
+    }
+
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//
+// Just enough of the Mapbox vector tile encoding (https://github.com/mapbox/vector-tile-spec) to read a rendered tile,
+// rework its geometry and write it back out again. Attribute values are passed through untouched.
+//
+@EverythingIsNonnullByDefault
+final class MvtTile {
+
+    static final int POINT = 1;
+    static final int LINESTRING = 2;
+    static final int POLYGON = 3;
+
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED32 = 5;
+
+    private final List<Layer> layers;
+
+    MvtTile(List<Layer> layers) {
+        this.layers = layers;
+    }
+
+    static MvtTile decode(byte[] bytes) {
+        List<Layer> layers = new ArrayList<>();
+        Reader reader = new Reader(bytes, 0, bytes.length);
+        while (reader.hasMore()) {
+            int tag = reader.varint32();
+            if (tag == ((3 << 3) | LENGTH_DELIMITED))
+                layers.add(decodeLayer(reader.embedded()));
+            else
+                reader.skip(tag);
+        }
+        return new MvtTile(layers);
+    }
+
+    List<Layer> layers() {
+        return layers;
+    }
+
+    int numFeatures() {
+        return layers.stream().mapToInt(layer -> layer.features().size()).sum();
+    }
+
+    byte[] encode() {
+        Writer writer = new Writer();
+        layers.forEach(layer -> writer.bytes(3, encodeLayer(layer)));
+        return writer.toByteArray();
+    }
+
+    private static Layer decodeLayer(Reader reader) {
+        int version = 1;
+        String name = "";
+        int extent = 4096;
+        List<Feature> features = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+
+        while (reader.hasMore()) {
+            int tag = reader.varint32();
+            switch (tag) {
+                case (15 << 3) | VARINT:
+                    version = reader.varint32();
+                    break;
+                case (1 << 3) | LENGTH_DELIMITED:
+                    name = reader.string();
+                    break;
+                case (2 << 3) | LENGTH_DELIMITED:
+                    features.add(decodeFeature(reader.embedded()));
+                    break;
+                case (3 << 3) | LENGTH_DELIMITED:
+                    keys.add(reader.string());
+                    break;
+                case (4 << 3) | LENGTH_DELIMITED:
+                    values.add(reader.bytes());
+                    break;
+                case (5 << 3) | VARINT:
+                    extent = reader.varint32();
+                    break;
+                default:
+                    reader.skip(tag);
+            }
+        }
+
+        return new Layer(version, name, extent, features, keys, values);
+    }
+
+    private static Feature decodeFeature(Reader reader) {
+        Long id = null;
+        int[] tags = new int[0];
+        int type = 0;
+        int[] geometry = new int[0];
+
+        while (reader.hasMore()) {
+            int tag = reader.varint32();
+            switch (tag) {
+                case (1 << 3) | VARINT:
+                    id = reader.varint64();
+                    break;
+                case (2 << 3) | LENGTH_DELIMITED:
+                    tags = reader.packed();
+                    break;
+                case (3 << 3) | VARINT:
+                    type = reader.varint32();
+                    break;
+                case (4 << 3) | LENGTH_DELIMITED:
+                    geometry = reader.packed();
+                    break;
+                default:
+                    reader.skip(tag);
+            }
+        }
+
+        return new Feature(id, tags, type, geometry);
+    }
+
+    private static byte[] encodeLayer(Layer layer) {
+        Writer writer = new Writer();
+        writer.bytes(1, layer.name().getBytes(StandardCharsets.UTF_8));
+        layer.features().forEach(feature -> writer.bytes(2, encodeFeature(feature)));
+        layer.keys().forEach(key -> writer.bytes(3, key.getBytes(StandardCharsets.UTF_8)));
+        layer.values().forEach(value -> writer.bytes(4, value));
+        writer.varint(5, layer.extent());
+        writer.varint(15, layer.version());
+        return writer.toByteArray();
+    }
+
+    private static byte[] encodeFeature(Feature feature) {
+        Writer writer = new Writer();
+        Long id = feature.id();
+        if (id != null)
+            writer.varint(1, id);
+        if (feature.tags().length > 0)
+            writer.packed(2, feature.tags());
+        writer.varint(3, feature.type());
+        writer.packed(4, feature.geometry());
+        return writer.toByteArray();
+    }
+
+    @EverythingIsNonnullByDefault
+    static final class Layer {
+
+        private final int version;
+        private final String name;
+        private final int extent;
+        private final List<Feature> features;
+        private final List<String> keys;
+        private final List<byte[]> values;
+
+        Layer(int version, String name, int extent, List<Feature> features, List<String> keys, List<byte[]> values) {
+            this.version = version;
+            this.name = name;
+            this.extent = extent;
+            this.features = features;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        int version() {
+            return version;
+        }
+
+        String name() {
+            return name;
+        }
+
+        int extent() {
+            return extent;
+        }
+
+        List<Feature> features() {
+            return features;
+        }
+
+        List<String> keys() {
+            return keys;
+        }
+
+        List<byte[]> values() {
+            return values;
+        }
+
+        Layer withFeatures(List<Feature> features) {
+            return new Layer(version, name, extent, features, keys, values);
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    static final class Feature {
+
+        @Nullable private final Long id;
+        private final int[] tags;
+        private final int type;
+        private final int[] geometry;
+
+        Feature(@Nullable Long id, int[] tags, int type, int[] geometry) {
+            this.id = id;
+            this.tags = tags;
+            this.type = type;
+            this.geometry = geometry;
+        }
+
+        @Nullable
+        Long id() {
+            return id;
+        }
+
+        int[] tags() {
+            return tags;
+        }
+
+        int type() {
+            return type;
+        }
+
+        int[] geometry() {
+            return geometry;
+        }
+
+        Feature withGeometry(int[] geometry) {
+            return new Feature(id, tags, type, geometry);
+        }
+
+        @Override
+        public String toString() {
+            return "Feature{id=" + id + ", tags=" + Arrays.toString(tags) + ", type=" + type + ", geometry=" + Arrays.toString(geometry) + "}";
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+
+        Reader(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.position = start;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return position < end;
+        }
+
+        int varint32() {
+            return (int) varint64();
+        }
+
+        long varint64() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = next();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IllegalArgumentException("Invalid vector tile, malformed varint.");
+        }
+
+        Reader embedded() {
+            int length = length();
+            Reader reader = new Reader(bytes, position, position + length);
+            position += length;
+            return reader;
+        }
+
+        byte[] bytes() {
+            int length = length();
+            byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return value;
+        }
+
+        String string() {
+            return new String(bytes(), StandardCharsets.UTF_8);
+        }
+
+        int[] packed() {
+            Reader reader = embedded();
+            int[] values = new int[reader.end - reader.position];
+            int count = 0;
+            while (reader.hasMore())
+                values[count++] = reader.varint32();
+            return Arrays.copyOf(values, count);
+        }
+
+        void skip(int tag) {
+            switch (tag & 7) {
+                case VARINT:
+                    varint64();
+                    break;
+                case FIXED64:
+                    advance(8);
+                    break;
+                case LENGTH_DELIMITED:
+                    advance(length());
+                    break;
+                case FIXED32:
+                    advance(4);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid vector tile, unsupported wire type " + (tag & 7) + ".");
+            }
+        }
+
+        private int length() {
+            int length = varint32();
+            if ((length < 0) || (length > end - position))
+                throw new IllegalArgumentException("Invalid vector tile, truncated field.");
+            return length;
+        }
+
+        private void advance(int count) {
+            if (count > end - position)
+                throw new IllegalArgumentException("Invalid vector tile, truncated field.");
+            position += count;
+        }
+
+        private byte next() {
+            if (position >= end)
+                throw new IllegalArgumentException("Invalid vector tile, truncated field.");
+            return bytes[position++];
+        }
+
+    }
+
+    @EverythingIsNonnullByDefault
+    private static final class Writer {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void varint(int field, long value) {
+            rawVarint((field << 3) | VARINT);
+            rawVarint(value);
+        }
+
+        void bytes(int field, byte[] value) {
+            rawVarint((field << 3) | LENGTH_DELIMITED);
+            rawVarint(value.length);
+            out.write(value, 0, value.length);
+        }
+
+        void packed(int field, int[] values) {
+            Writer writer = new Writer();
+            for (int value : values)
+                writer.rawVarint(value & 0xffffffffL);
+            bytes(field, writer.toByteArray());
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void rawVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.ewbnetworkserver.NetworkChangeListener;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@EverythingIsNonnullByDefault
+public class TileCache implements NetworkChangeListener {
+
+    private final long maxBytes;
+    private final Map<TileKey, CachedTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long numBytes = 0;
+    private long generation = 0;
+
+    public TileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    @Nullable
+    synchronized CachedTile get(TileKey key) {
+        return tiles.get(key);
+    }
+
+    // Incremented every time tiles are invalidated, so a tile rendered from the network before a change isn't cached after it.
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized boolean put(TileKey key, CachedTile tile, long renderedGeneration) {
+        if ((renderedGeneration != generation) || (tile.gzipped().length > maxBytes))
+            return false;
+
+        CachedTile previous = tiles.put(key, tile);
+        if (previous != null)
+            numBytes -= previous.gzipped().length;
+        numBytes += tile.gzipped().length;
+
+        Iterator<CachedTile> leastRecentlyUsed = tiles.values().iterator();
+        while (numBytes > maxBytes) {
+            numBytes -= leastRecentlyUsed.next().gzipped().length;
+            leastRecentlyUsed.remove();
+        }
+
+        return true;
+    }
+
+    synchronized int invalidate(LngLatBounds bounds) {
+        ++generation;
+
+        int numInvalidated = 0;
+        Iterator<Map.Entry<TileKey, CachedTile>> entries = tiles.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<TileKey, CachedTile> entry = entries.next();
+            if (entry.getKey().intersects(bounds)) {
+                numBytes -= entry.getValue().gzipped().length;
+                entries.remove();
+                ++numInvalidated;
+            }
+        }
+        return numInvalidated;
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    synchronized long numBytes() {
+        return numBytes;
+    }
+
+    @Override
+    public void onAdded(IdentifiedObject identifiedObject) {
+        invalidate(identifiedObject);
+    }
+
+    @Override
+    public void onRemoved(IdentifiedObject identifiedObject) {
+        invalidate(identifiedObject);
+    }
+
+    private void invalidate(IdentifiedObject identifiedObject) {
+        LngLatBounds bounds = LngLatBounds.of(identifiedObject);
+        if (bounds != null)
+            invalidate(bounds);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+//
+// Serves the tiles of the network graphics vector tile route from the cache, rendering and caching any missing tiles.
+// Anything the cache can't serve falls through to the network graphics route itself.
+//
+@EverythingIsNonnullByDefault
+public class TileCacheHandler implements Handler<RoutingContext> {
+
+    public static final String PATH = "/ewb/network/graphics/api/v1/mvt/geo-view";
+    public static final String ROUTE_PATH = PATH + "/:z/:x/:y";
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+    private static final String CONTENT_TYPE = "application/vnd.mapbox-vector-tile";
+
+    private final TileCache cache;
+    private final TileRenderer renderer;
+
+    public TileCacheHandler(TileCache cache, TileRenderer renderer) {
+        this.cache = cache;
+        this.renderer = renderer;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        HttpServerRequest request = context.request();
+        TileKey key = parseKey(context);
+        if ((key == null) || TileRenderer.BYPASS.equals(request.getHeader(TileRenderer.CACHE_HEADER)) || (request.query() != null)) {
+            context.next();
+            return;
+        }
+
+        CachedTile tile = cache.get(key);
+        if (tile != null) {
+            respond(context, tile, "HIT");
+            return;
+        }
+
+        renderer.render(key, result -> {
+            if (result.succeeded())
+                respond(context, result.result(), "MISS");
+            else {
+                logger.warn("Failed to cache tile {}, falling back to the uncached route: {}", key, result.cause().getMessage());
+                context.next();
+            }
+        });
+    }
+
+    @Nullable
+    private TileKey parseKey(RoutingContext context) {
+        try {
+            int z = Integer.parseInt(context.pathParam("z"));
+            int x = Integer.parseInt(context.pathParam("x"));
+            int y = Integer.parseInt(context.pathParam("y"));
+            return TileKey.isValid(z, x, y) ? new TileKey(z, x, y) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void respond(RoutingContext context, CachedTile tile, String cacheStatus) {
+        HttpServerResponse response = context.response();
+        if (response.closed())
+            return;
+
+        response
+            .putHeader(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE)
+            .putHeader(TileRenderer.CACHE_HEADER, cacheStatus);
+
+        if (tile.isGzippedPayload())
+            response.end(Buffer.buffer(tile.gzipped()));
+        else if (acceptsGzip(context.request())) {
+            response
+                .putHeader(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP)
+                .end(Buffer.buffer(tile.gzipped()));
+        } else
+            response.end(Buffer.buffer(tile.uncompressed()));
+    }
+
+    private boolean acceptsGzip(HttpServerRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaderNames.ACCEPT_ENCODING);
+        return (acceptEncoding != null) && acceptEncoding.toLowerCase().contains(HttpHeaderValues.GZIP);
+    }
+
+}
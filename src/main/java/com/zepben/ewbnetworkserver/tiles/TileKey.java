@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+@EverythingIsNonnullByDefault
+public final class TileKey {
+
+    public static final int MAX_ZOOM = 24;
+
+    // Renderers draw features slightly beyond the edge of each tile so they join up seamlessly, so a change near the edge
+    // of a neighbouring tile can still alter a tile. This is the fraction of a tile allowed for that overlap.
+    private static final double BUFFER = 1.0 / 16;
+    private static final double MAX_LAT = 85.0511287798066;
+
+    private final int z;
+    private final int x;
+    private final int y;
+
+    public TileKey(int z, int x, int y) {
+        this.z = z;
+        this.x = x;
+        this.y = y;
+    }
+
+    static boolean isValid(int z, int x, int y) {
+        if ((z < 0) || (z > MAX_ZOOM))
+            return false;
+
+        int numTiles = 1 << z;
+        return (x >= 0) && (x < numTiles) && (y >= 0) && (y < numTiles);
+    }
+
+    static List<TileKey> covering(LngLatBounds bounds, int z) {
+        int numTiles = 1 << z;
+        int minX = clamp((int) Math.floor(tileX(bounds.minLng(), z) - BUFFER), numTiles);
+        int maxX = clamp((int) Math.floor(tileX(bounds.maxLng(), z) + BUFFER), numTiles);
+        int minY = clamp((int) Math.floor(tileY(bounds.maxLat(), z) - BUFFER), numTiles);
+        int maxY = clamp((int) Math.floor(tileY(bounds.minLat(), z) + BUFFER), numTiles);
+
+        List<TileKey> keys = new ArrayList<>();
+        for (int x = minX; x <= maxX; ++x) {
+            for (int y = minY; y <= maxY; ++y)
+                keys.add(new TileKey(z, x, y));
+        }
+        return keys;
+    }
+
+    public int z() {
+        return z;
+    }
+
+    public int x() {
+        return x;
+    }
+
+    public int y() {
+        return y;
+    }
+
+    List<TileKey> children() {
+        List<TileKey> children = new ArrayList<>(4);
+        for (int dx = 0; dx < 2; ++dx) {
+            for (int dy = 0; dy < 2; ++dy)
+                children.add(new TileKey(z + 1, (x * 2) + dx, (y * 2) + dy));
+        }
+        return children;
+    }
+
+    boolean intersects(LngLatBounds bounds) {
+        return (tileX(bounds.maxLng(), z) + BUFFER >= x)
+            && (tileX(bounds.minLng(), z) - BUFFER < x + 1)
+            && (tileY(bounds.minLat(), z) + BUFFER >= y)
+            && (tileY(bounds.maxLat(), z) - BUFFER < y + 1);
+    }
+
+    private static double tileX(double lng, int z) {
+        return (lng + 180) / 360 * (1 << z);
+    }
+
+    private static double tileY(double lat, int z) {
+        double latRad = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        return (1 - Math.log(Math.tan(latRad) + (1 / Math.cos(latRad))) / Math.PI) / 2 * (1 << z);
+    }
+
+    private static int clamp(int value, int numTiles) {
+        return Math.max(0, Math.min(numTiles - 1, value));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if ((o == null) || (getClass() != o.getClass()))
+            return false;
+
+        TileKey tileKey = (TileKey) o;
+        return (z == tileKey.z) && (x == tileKey.x) && (y == tileKey.y);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(z, x, y);
+    }
+
+    @Override
+    public String toString() {
+        return z + "/" + x + "/" + y;
+    }
+
+}
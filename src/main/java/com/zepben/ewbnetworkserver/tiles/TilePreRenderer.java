@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.services.network.NetworkService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+
+//
+// Renders the upper zoom levels of the network into the cache a level at a time, with a number of tiles rendered in
+// parallel. Only the children of tiles that have something in them are rendered at the next level down, so sparse
+// networks don't render large areas of empty tiles.
+//
+@EverythingIsNonnullByDefault
+public class TilePreRenderer {
+
+    private static final Logger logger = LoggerFactory.getLogger("ewb-network-server");
+
+    private final TileRenderer renderer;
+    private final int maxZoom;
+    private final int concurrency;
+
+    private final Queue<TileKey> queue = new ArrayDeque<>();
+    private final List<TileKey> nextLevel = new ArrayList<>();
+
+    @Nullable private LngLatBounds extent = null;
+    private int zoom = 0;
+    private int numInFlight = 0;
+    private int numRendered = 0;
+    private int numFailed = 0;
+    private long startNanos = 0;
+    private Runnable onComplete = () -> {
+    };
+
+    public TilePreRenderer(TileRenderer renderer, int maxZoom, int concurrency) {
+        this.renderer = renderer;
+        this.maxZoom = maxZoom;
+        this.concurrency = concurrency;
+    }
+
+    @Nullable
+    public static LngLatBounds networkExtent(NetworkService networkService) {
+        LngLatBounds extent = null;
+        for (PowerSystemResource powerSystemResource : networkService.listOf(PowerSystemResource.class)) {
+            LngLatBounds bounds = LngLatBounds.of(powerSystemResource);
+            if (bounds != null)
+                extent = (extent == null) ? bounds : extent.union(bounds);
+        }
+        return extent;
+    }
+
+    public void start(@Nullable LngLatBounds extent) {
+        start(extent, () -> {
+        });
+    }
+
+    void start(@Nullable LngLatBounds extent, Runnable onComplete) {
+        if (extent == null) {
+            logger.info("No located assets in the network, skipping tile pre-rendering.");
+            onComplete.run();
+            return;
+        }
+
+        logger.info("Pre-rendering map tiles to zoom {}...", maxZoom);
+
+        List<TileKey> firstLevel = TileKey.covering(extent, 0);
+        synchronized (this) {
+            this.extent = extent;
+            this.onComplete = onComplete;
+            startNanos = System.nanoTime();
+            queue.addAll(firstLevel);
+        }
+
+        renderNext();
+    }
+
+    synchronized int numRendered() {
+        return numRendered;
+    }
+
+    synchronized int numFailed() {
+        return numFailed;
+    }
+
+    private void renderNext() {
+        List<TileKey> toRender = new ArrayList<>();
+        boolean isComplete;
+        synchronized (this) {
+            if (queue.isEmpty() && (numInFlight == 0) && (zoom < maxZoom) && !nextLevel.isEmpty()) {
+                ++zoom;
+                queue.addAll(nextLevel);
+                nextLevel.clear();
+            }
+
+            while ((numInFlight < concurrency) && !queue.isEmpty()) {
+                toRender.add(queue.remove());
+                ++numInFlight;
+            }
+
+            isComplete = numInFlight == 0;
+        }
+
+        if (isComplete) {
+            logger.info("Pre-rendered {} map tiles ({} failed) in {} seconds.", numRendered(), numFailed(), (System.nanoTime() - startNanos) / 1_000_000_000.0);
+            onComplete.run();
+        } else
+            toRender.forEach(this::render);
+    }
+
+    private void render(TileKey key) {
+        renderer.render(key, result -> {
+            synchronized (this) {
+                --numInFlight;
+                if (result.succeeded()) {
+                    ++numRendered;
+                    if (result.result().numFeatures() > 0)
+                        key.children().stream().filter(child -> child.intersects(Objects.requireNonNull(extent))).forEach(nextLevel::add);
+                } else
+                    ++numFailed;
+            }
+
+            renderNext();
+        });
+    }
+
+}
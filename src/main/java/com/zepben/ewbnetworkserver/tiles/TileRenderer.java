@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// Renders tiles by requesting them from the network graphics routes, with the cache bypassed, so the cached tiles are
+// always drawn the same way as the routes themselves would draw them. Requests for a tile that is already being rendered
+// wait on the same render, and each is completed on the context it was requested from.
+//
+@EverythingIsNonnullByDefault
+public class TileRenderer {
+
+    public static final String CACHE_HEADER = "X-Tile-Cache";
+    public static final String BYPASS = "bypass";
+
+    private final Vertx vertx;
+    private final HttpClient client;
+    private final RequestOptions target;
+    private final long timeoutMs;
+    private final TileCache cache;
+    private final TileSimplifier simplifier;
+
+    private final Map<TileKey, List<Waiter>> rendering = new HashMap<>();
+
+    public TileRenderer(Vertx vertx, HttpClient client, RequestOptions target, long timeoutMs, TileCache cache, int fullDetailZoom) {
+        this.vertx = vertx;
+        this.client = client;
+        this.target = target;
+        this.timeoutMs = timeoutMs;
+        this.cache = cache;
+        this.simplifier = new TileSimplifier(fullDetailZoom);
+    }
+
+    void render(TileKey key, Handler<AsyncResult<CachedTile>> handler) {
+        Waiter waiter = new Waiter(vertx.getOrCreateContext(), handler);
+        List<Waiter> waiting;
+        synchronized (rendering) {
+            List<Waiter> existing = rendering.get(key);
+            if (existing != null) {
+                existing.add(waiter);
+                return;
+            }
+
+            waiting = new ArrayList<>();
+            waiting.add(waiter);
+            rendering.put(key, waiting);
+        }
+
+        long generation = cache.generation();
+        HttpClientRequest request = client.request(HttpMethod.GET, new RequestOptions(target).setURI(target.getURI() + "/" + key))
+            .putHeader(CACHE_HEADER, BYPASS)
+            .putHeader(HttpHeaderNames.ACCEPT_ENCODING, HttpHeaderValues.IDENTITY)
+            .setTimeout(timeoutMs);
+
+        // Once the headers have arrived, failures such as the connection dropping part way through the body are reported to the
+        // response rather than the request.
+        request.handler(response -> response
+            .exceptionHandler(e -> complete(key, waiting, Future.failedFuture(e)))
+            .bodyHandler(body -> onResponse(key, generation, response, body, waiting)));
+        request.exceptionHandler(e -> complete(key, waiting, Future.failedFuture(e)));
+        request.end();
+    }
+
+    private void onResponse(TileKey key,
+                            long generation,
+                            HttpClientResponse response,
+                            Buffer body,
+                            List<Waiter> waiting) {
+        if (response.statusCode() != 200) {
+            complete(key, waiting, Future.failedFuture(String.format("Failed to render tile %s: %d %s", key, response.statusCode(), response.statusMessage())));
+            return;
+        }
+
+        boolean isGzippedPayload = !HttpHeaderValues.GZIP.toString().equalsIgnoreCase(response.getHeader(HttpHeaderNames.CONTENT_ENCODING));
+        vertx.<CachedTile>executeBlocking(
+            promise -> promise.complete(process(key, body.getBytes(), isGzippedPayload)),
+            false,
+            result -> {
+                if (result.succeeded())
+                    cache.put(key, result.result(), generation);
+                complete(key, waiting, result);
+            });
+    }
+
+    private CachedTile process(TileKey key, byte[] body, boolean isGzippedPayload) {
+        boolean isGzipped = CachedTile.isGzipped(body);
+        MvtTile tile = simplifier.simplify(MvtTile.decode(isGzipped ? CachedTile.gunzip(body) : body), key.z());
+        return CachedTile.of(tile.encode(), tile.numFeatures(), isGzipped && isGzippedPayload);
+    }
+
+    private void complete(TileKey key, List<Waiter> waiting, AsyncResult<CachedTile> result) {
+        synchronized (rendering) {
+            if (!rendering.remove(key, waiting))
+                return;
+        }
+
+        waiting.forEach(waiter -> waiter.context.runOnContext(ignored -> waiter.handler.handle(result)));
+    }
+
+    @EverythingIsNonnullByDefault
+    private static class Waiter {
+
+        private final Context context;
+        private final Handler<AsyncResult<CachedTile>> handler;
+
+        private Waiter(Context context, Handler<AsyncResult<CachedTile>> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+
+    }
+
+}
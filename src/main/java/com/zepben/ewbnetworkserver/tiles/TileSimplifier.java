@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+@EverythingIsNonnullByDefault
+class TileSimplifier {
+
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int CLOSE_PATH = 7;
+
+    private static final double TILE_PIXELS = 256;
+    private static final double TOLERANCE_PIXELS = 0.5;
+    private static final int MAX_THINNING_PIXELS = 8;
+
+    private final int fullDetailZoom;
+
+    TileSimplifier(int fullDetailZoom) {
+        this.fullDetailZoom = fullDetailZoom;
+    }
+
+    //
+    // Tiles below the full detail zoom have their line and polygon vertices simplified to within half a pixel, and
+    // point features thinned to one per grid cell. The grid grows by a pixel for each zoom level below the full detail
+    // zoom, so the further out you zoom the sparser the points become.
+    //
+    MvtTile simplify(MvtTile tile, int z) {
+        if (z >= fullDetailZoom)
+            return tile;
+
+        int zoomsOut = fullDetailZoom - z;
+        List<MvtTile.Layer> layers = new ArrayList<>();
+        for (MvtTile.Layer layer : tile.layers()) {
+            double pixel = layer.extent() / TILE_PIXELS;
+            double tolerance = pixel * TOLERANCE_PIXELS;
+            int cellSize = (int) Math.max(1, pixel * Math.min(MAX_THINNING_PIXELS, zoomsOut));
+
+            Set<Long> occupiedCells = new HashSet<>();
+            List<MvtTile.Feature> features = new ArrayList<>();
+            for (MvtTile.Feature feature : layer.features()) {
+                MvtTile.Feature simplified = simplify(feature, tolerance, cellSize, occupiedCells);
+                if (simplified != null)
+                    features.add(simplified);
+            }
+
+            layers.add(layer.withFeatures(features));
+        }
+
+        return new MvtTile(layers);
+    }
+
+    @Nullable
+    private MvtTile.Feature simplify(MvtTile.Feature feature, double tolerance, int cellSize, Set<Long> occupiedCells) {
+        switch (feature.type()) {
+            case MvtTile.POINT:
+                return thin(feature, cellSize, occupiedCells);
+            case MvtTile.LINESTRING:
+                return simplifyLines(feature, tolerance);
+            case MvtTile.POLYGON:
+                return simplifyPolygons(feature, tolerance);
+            default:
+                return feature;
+        }
+    }
+
+    @Nullable
+    private MvtTile.Feature thin(MvtTile.Feature feature, int cellSize, Set<Long> occupiedCells) {
+        List<int[]> parts = decode(feature.geometry());
+        if ((parts.size() != 1) || (parts.get(0).length != 2))
+            return feature;
+
+        long cellX = Math.floorDiv(parts.get(0)[0], cellSize);
+        long cellY = Math.floorDiv(parts.get(0)[1], cellSize);
+        return occupiedCells.add((cellX << 32) ^ (cellY & 0xffffffffL)) ? feature : null;
+    }
+
+    private MvtTile.Feature simplifyLines(MvtTile.Feature feature, double tolerance) {
+        List<int[]> lines = new ArrayList<>();
+        decode(feature.geometry()).forEach(line -> lines.add(simplify(line, tolerance)));
+        return feature.withGeometry(encode(lines, false));
+    }
+
+    @Nullable
+    private MvtTile.Feature simplifyPolygons(MvtTile.Feature feature, double tolerance) {
+        List<int[]> rings = new ArrayList<>();
+        boolean skipInteriorRings = false;
+        for (int[] ring : decode(feature.geometry())) {
+            boolean isExterior = signedArea(ring) > 0;
+            if (!isExterior && skipInteriorRings)
+                continue;
+
+            int[] closed = Arrays.copyOf(ring, ring.length + 2);
+            closed[ring.length] = ring[0];
+            closed[ring.length + 1] = ring[1];
+            int[] simplified = simplify(closed, tolerance);
+            simplified = Arrays.copyOf(simplified, simplified.length - 2);
+
+            boolean keep = (simplified.length >= 6) && (signedArea(simplified) != 0);
+            if (isExterior)
+                skipInteriorRings = !keep;
+            if (keep)
+                rings.add(simplified);
+        }
+
+        return rings.isEmpty() ? null : feature.withGeometry(encode(rings, true));
+    }
+
+    // Douglas-Peucker over a flattened array of x/y pairs, always keeping both end points.
+    private int[] simplify(int[] points, double tolerance) {
+        int numPoints = points.length / 2;
+        if (numPoints <= 2)
+            return points;
+
+        boolean[] keep = new boolean[numPoints];
+        keep[0] = true;
+        keep[numPoints - 1] = true;
+
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, numPoints - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int first = range[0];
+            int last = range[1];
+
+            double maxDistance = -1;
+            int furthest = -1;
+            for (int i = first + 1; i < last; ++i) {
+                double distance = distanceToSegment(points, i, first, last);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    furthest = i;
+                }
+            }
+
+            if ((furthest != -1) && (maxDistance > tolerance)) {
+                keep[furthest] = true;
+                ranges.push(new int[]{first, furthest});
+                ranges.push(new int[]{furthest, last});
+            }
+        }
+
+        int[] simplified = new int[points.length];
+        int count = 0;
+        for (int i = 0; i < numPoints; ++i) {
+            if (keep[i]) {
+                simplified[count++] = points[i * 2];
+                simplified[count++] = points[(i * 2) + 1];
+            }
+        }
+        return Arrays.copyOf(simplified, count);
+    }
+
+    private double distanceToSegment(int[] points, int point, int start, int end) {
+        double px = points[point * 2];
+        double py = points[(point * 2) + 1];
+        double ax = points[start * 2];
+        double ay = points[(start * 2) + 1];
+        double bx = points[end * 2];
+        double by = points[(end * 2) + 1];
+
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = (dx * dx) + (dy * dy);
+        if (lengthSquared == 0)
+            return Math.hypot(px - ax, py - ay);
+
+        double t = Math.max(0, Math.min(1, (((px - ax) * dx) + ((py - ay) * dy)) / lengthSquared));
+        return Math.hypot(px - (ax + (t * dx)), py - (ay + (t * dy)));
+    }
+
+    private long signedArea(int[] ring) {
+        long area = 0;
+        int numPoints = ring.length / 2;
+        for (int i = 0; i < numPoints; ++i) {
+            int j = (i + 1) % numPoints;
+            area += ((long) ring[i * 2] * ring[(j * 2) + 1]) - ((long) ring[j * 2] * ring[(i * 2) + 1]);
+        }
+        return area;
+    }
+
+    // Decodes the geometry commands into the absolute x/y pairs of each part, without repeating the start of closed rings.
+    private List<int[]> decode(int[] geometry) {
+        List<int[]> parts = new ArrayList<>();
+        int[] part = null;
+        int length = 0;
+        int x = 0;
+        int y = 0;
+
+        int index = 0;
+        while (index < geometry.length) {
+            int command = geometry[index] & 7;
+            int count = geometry[index] >>> 3;
+            ++index;
+
+            if (command == CLOSE_PATH)
+                continue;
+
+            for (int i = 0; (i < count) && (index + 1 < geometry.length); ++i) {
+                x += zigZagDecode(geometry[index++]);
+                y += zigZagDecode(geometry[index++]);
+
+                if ((command == MOVE_TO) || (part == null)) {
+                    if (part != null)
+                        parts.add(Arrays.copyOf(part, length));
+                    part = new int[16];
+                    length = 0;
+                } else if (length == part.length)
+                    part = Arrays.copyOf(part, length * 2);
+
+                part[length++] = x;
+                part[length++] = y;
+            }
+        }
+
+        if (part != null)
+            parts.add(Arrays.copyOf(part, length));
+
+        return parts;
+    }
+
+    private int[] encode(List<int[]> parts, boolean closed) {
+        int size = 0;
+        for (int[] part : parts)
+            size += part.length + 3;
+
+        int[] geometry = new int[size];
+        int index = 0;
+        int x = 0;
+        int y = 0;
+        for (int[] part : parts) {
+            int numPoints = part.length / 2;
+            for (int i = 0; i < numPoints; ++i) {
+                if (i == 0)
+                    geometry[index++] = command(MOVE_TO, 1);
+                else if (i == 1)
+                    geometry[index++] = command(LINE_TO, numPoints - 1);
+
+                geometry[index++] = zigZagEncode(part[i * 2] - x);
+                geometry[index++] = zigZagEncode(part[(i * 2) + 1] - y);
+                x = part[i * 2];
+                y = part[(i * 2) + 1];
+            }
+
+            if (closed)
+                geometry[index++] = command(CLOSE_PATH, 1);
+        }
+
+        return Arrays.copyOf(geometry, index);
+    }
+
+    private static int command(int id, int count) {
+        return (id & 7) | (count << 3);
+    }
+
+    private static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
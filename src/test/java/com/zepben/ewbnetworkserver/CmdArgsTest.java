@@ -18,6 +18,7 @@
 
 package com.zepben.ewbnetworkserver;
 
+import com.zepben.ewbnetworkserver.tiles.TileConfig;
 import com.zepben.testutils.exception.ExpectException;
 import com.zepben.testutils.junit.SystemLogExtension;
 import io.grpc.netty.shaded.io.netty.handler.ssl.ClientAuth;
@@ -29,10 +30,13 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 
 import static com.zepben.collectionutils.CollectionUtils.arrayOf;
+import static com.zepben.ewbnetworkserver.data.CmdArgsTestData.batchArgs;
 import static com.zepben.ewbnetworkserver.data.CmdArgsTestData.minimumArgs;
 import static com.zepben.ewbnetworkserver.data.CmdArgsTestData.validArgs;
 import static com.zepben.testutils.exception.ExpectException.expect;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 
 public class CmdArgsTest {
@@ -50,37 +54,114 @@ public class CmdArgsTest {
         assertThat(cmdArgs.ewbDataRoot(), equalTo("ewb/root"));
         assertThat(cmdArgs.currentDate(), equalTo(LocalDate.of(2018, 12, 3)));
         assertThat(cmdArgs.daysToSearch(), equalTo(100));
-        assertThat(cmdArgs.patchApi(), equalTo("https://pathserver:8080/api?toekn=asfasfsaf"));
+        assertThat(cmdArgs.historicDates(), equalTo(3));
+        assertThat(cmdArgs.databaseConnections(), equalTo(4));
+        assertThat(cmdArgs.feeders(), contains("feeder1", "feeder2"));
+        assertThat(cmdArgs.zones(), contains("zone1"));
+        assertThat(cmdArgs.models().keySet(), contains("north", "south"));
+        assertThat(cmdArgs.models().get("north"), equalTo("models/north"));
+        assertThat(cmdArgs.patchApi(), equalTo("https://pathserver:8080/api/{model}?toekn=asfasfsaf"));
         assertThat(cmdArgs.timeout(), equalTo(120));
         assertThat(cmdArgs.patchAuthHeader(), equalTo("type auth"));
         assertThat(cmdArgs.s3Bucket(), equalTo("bucket name"));
         assertThat(cmdArgs.output(), equalTo("output.json"));
+        assertThat(cmdArgs.patchedModel(), equalTo("patched.sqlite"));
         assertThat(cmdArgs.cors(), equalTo(".*"));
         assertThat(cmdArgs.routeDebugFile(), equalTo("debug/file.ext"));
+        assertThat(cmdArgs.routeDebugFilters(), contains("^/ewb/network/", "/patch"));
+        assertThat(cmdArgs.routeDebugSampleEvery(), equalTo(10));
+        assertThat(cmdArgs.routeDebugBufferSize(), equalTo(500));
+        assertThat(cmdArgs.routeDebugMaxFileSize(), equalTo(20));
+        assertThat(cmdArgs.routeDebugMaxFiles(), equalTo(3));
         assertThat(cmdArgs.grpcPort(), equalTo(8081));
         assertThat(cmdArgs.grpcCertPath(), equalTo("tls.crt"));
         assertThat(cmdArgs.grpcKeyPath(), equalTo("tls.key"));
         assertThat(cmdArgs.grpcClientAuth(), equalTo(ClientAuth.REQUIRE));
         assertThat(cmdArgs.grpcTrustPath(), equalTo("trust.ca"));
+        assertThat(cmdArgs.grpcExecutorThreads(), equalTo(16));
+        assertThat(cmdArgs.grpcVirtualThreads(), equalTo(false));
+        assertThat(cmdArgs.grpcBossThreads(), equalTo(1));
+        assertThat(cmdArgs.grpcWorkerThreads(), equalTo(8));
+        assertThat(cmdArgs.grpcMaxMessageSize(), equalTo(67108864));
+        assertThat(cmdArgs.grpcFlowControlWindow(), equalTo(8388608));
+        assertThat(cmdArgs.grpcKeepAliveTime(), equalTo(60L));
+        assertThat(cmdArgs.grpcKeepAliveTimeout(), equalTo(10L));
+        assertThat(cmdArgs.grpcMaxConcurrentCalls(), equalTo(32));
+        assertThat(cmdArgs.grpcChangeFeedSize(), equalTo(5000));
+        assertThat(cmdArgs.grpcResponseCacheSize(), equalTo(64));
+        assertThat(cmdArgs.grpcSlowCallThreshold(), equalTo(500));
+        assertThat(cmdArgs.httpCertPath(), equalTo("http.crt"));
+        assertThat(cmdArgs.httpKeyPath(), equalTo("http.key"));
+        assertThat(cmdArgs.http2MaxConcurrentStreams(), equalTo(50));
+        assertThat(cmdArgs.http2InitialWindowSize(), equalTo(1048576));
+        assertThat(cmdArgs.http2ConnectionWindowSize(), equalTo(4194304));
+        assertThat(cmdArgs.tileCacheSize(), equalTo(64));
+        assertThat(cmdArgs.tilePreRenderZoom(), equalTo(8));
+        assertThat(cmdArgs.tileFullDetailZoom(), equalTo(14));
+        assertThat(cmdArgs.tileRenderConcurrency(), equalTo(2));
     }
 
     @Test
     public void defaultOptions() throws Exception {
         cmdArgs.parse(minimumArgs());
 
+        assertThat(cmdArgs.runMode(), equalTo(RunMode.SERVER));
         assertThat(cmdArgs.currentDate(), equalTo(LocalDate.now(ZoneId.systemDefault())));
         assertThat(cmdArgs.daysToSearch(), equalTo(0));
+        assertThat(cmdArgs.historicDates(), equalTo(0));
+        assertThat(cmdArgs.databaseConnections(), equalTo(1));
+        assertThat(cmdArgs.feeders(), empty());
+        assertThat(cmdArgs.zones(), empty());
+        assertThat(cmdArgs.models().isEmpty(), equalTo(true));
         assertThat(cmdArgs.patchApi(), equalTo(""));
         assertThat(cmdArgs.timeout(), equalTo(60));
         assertThat(cmdArgs.patchAuthHeader(), equalTo(""));
         assertThat(cmdArgs.s3Bucket(), equalTo(""));
         assertThat(cmdArgs.output(), equalTo("ewb-network-server-status.json"));
+        assertThat(cmdArgs.patchedModel(), equalTo(""));
         assertThat(cmdArgs.cors(), equalTo(""));
         assertThat(cmdArgs.routeDebugFile(), equalTo(""));
+        assertThat(cmdArgs.routeDebugFilters(), empty());
+        assertThat(cmdArgs.routeDebugSampleEvery(), equalTo(1));
+        assertThat(cmdArgs.routeDebugBufferSize(), equalTo(10000));
+        assertThat(cmdArgs.routeDebugMaxFileSize(), equalTo(100));
+        assertThat(cmdArgs.routeDebugMaxFiles(), equalTo(5));
         assertThat(cmdArgs.grpcCertPath(), equalTo(""));
         assertThat(cmdArgs.grpcKeyPath(), equalTo(""));
         assertThat(cmdArgs.grpcClientAuth(), equalTo(ClientAuth.NONE));
         assertThat(cmdArgs.grpcTrustPath(), equalTo(""));
+        assertThat(cmdArgs.grpcExecutorThreads(), equalTo(0));
+        assertThat(cmdArgs.grpcVirtualThreads(), equalTo(false));
+        assertThat(cmdArgs.grpcBossThreads(), equalTo(0));
+        assertThat(cmdArgs.grpcWorkerThreads(), equalTo(0));
+        assertThat(cmdArgs.grpcMaxMessageSize(), equalTo(4194304));
+        assertThat(cmdArgs.grpcFlowControlWindow(), equalTo(0));
+        assertThat(cmdArgs.grpcKeepAliveTime(), equalTo(7200L));
+        assertThat(cmdArgs.grpcKeepAliveTimeout(), equalTo(20L));
+        assertThat(cmdArgs.grpcMaxConcurrentCalls(), equalTo(0));
+        assertThat(cmdArgs.grpcChangeFeedSize(), equalTo(100000));
+        assertThat(cmdArgs.grpcResponseCacheSize(), equalTo(0));
+        assertThat(cmdArgs.grpcSlowCallThreshold(), equalTo(0));
+        assertThat(cmdArgs.httpCertPath(), equalTo(""));
+        assertThat(cmdArgs.httpKeyPath(), equalTo(""));
+        assertThat(cmdArgs.http2MaxConcurrentStreams(), equalTo(100));
+        assertThat(cmdArgs.http2InitialWindowSize(), equalTo(65535));
+        assertThat(cmdArgs.http2ConnectionWindowSize(), equalTo(65535));
+        assertThat(cmdArgs.tileCacheSize(), equalTo(0));
+        assertThat(cmdArgs.tilePreRenderZoom(), equalTo(TileConfig.NO_PRE_RENDER));
+        assertThat(cmdArgs.tileFullDetailZoom(), equalTo(16));
+        assertThat(cmdArgs.tileRenderConcurrency(), equalTo(4));
+    }
+
+    @Test
+    public void batchMode() throws Exception {
+        cmdArgs.parse(batchArgs());
+
+        assertThat(cmdArgs.runMode(), equalTo(RunMode.BATCH));
+        assertThat(cmdArgs.port(), equalTo(0));
+        assertThat(cmdArgs.grpcPort(), equalTo(0));
+        assertThat(cmdArgs.ewbDataRoot(), equalTo("ewb/root"));
+        assertThat(cmdArgs.patchedModel(), equalTo("patched.sqlite"));
     }
 
     @Test
@@ -100,31 +181,121 @@ public class CmdArgsTest {
         validateOption("-p", "0", "Integer 0 for argument port is out of range. Expected value in range 1..65535.");
         validateOption("-p", "65536", "Integer 65536 for argument port is out of range. Expected value in range 1..65535.");
         validateOption("-p", "abc", "Invalid integer 'abc' for argument port.");
+        validateOption("-rm", "abc", "Unknown MODE value 'abc', expected SERVER or BATCH.");
         validateOption("-c", "abc", "Invalid date 'abc' for argument current-date.");
         validateOption("-d", "abc", "Invalid integer 'abc' for argument days-to-search.");
+        validateOption("-dc", "abc", "Invalid integer 'abc' for argument database-connections.");
+        validateOption("-hd", "abc", "Invalid integer 'abc' for argument historic-dates.");
         validateOption("-gp", "0", "Integer 0 for argument grpc-port is out of range. Expected value in range 1..65535.");
         validateOption("-gp", "65536", "Integer 65536 for argument grpc-port is out of range. Expected value in range 1..65535.");
         validateOption("-gp", "abc", "Invalid integer 'abc' for argument grpc-port.");
         validateOption("-gp", "80", "grpc-port cannot be the same number as port.");
+        validateOption("-ge", "abc", "Invalid integer 'abc' for argument grpc-executor.");
+        validateOption("-gbt", "abc", "Invalid integer 'abc' for argument grpc-boss-threads.");
+        validateOption("-gwt", "abc", "Invalid integer 'abc' for argument grpc-worker-threads.");
+        validateOption("-gms", "abc", "Invalid integer 'abc' for argument grpc-max-message-size.");
+        validateOption("-gfw", "abc", "Invalid integer 'abc' for argument grpc-flow-control-window.");
+        validateOption("-gmc", "abc", "Invalid integer 'abc' for argument grpc-max-concurrent-calls.");
+        validateOption("-gcf", "abc", "Invalid integer 'abc' for argument grpc-change-feed-size.");
+        validateOption("-grc", "abc", "Invalid integer 'abc' for argument grpc-response-cache-size.");
+        validateOption("-gsc", "abc", "Invalid integer 'abc' for argument grpc-slow-call-threshold.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-gk", "abc", "10", "-p", "80", "-e", "path", "-gp", "81")))
+            .toThrow(ParseException.class)
+            .withMessage("Invalid number of seconds 'abc' for argument grpc-keepalive.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-gk", "60", "0", "-p", "80", "-e", "path", "-gp", "81")))
+            .toThrow(ParseException.class)
+            .withMessage("Invalid number of seconds '0' for argument grpc-keepalive.");
+        validateOption("-dbgf", "[abc", "Invalid regular expression '[abc' for argument debug-route-filter.");
+        validateOption("-dbgs", "abc", "Invalid integer 'abc' for argument debug-sample-every.");
+        validateOption("-dbgb", "abc", "Invalid integer 'abc' for argument debug-buffer-size.");
+        validateOption("-dbgm", "abc", "Invalid integer 'abc' for argument debug-max-file-size.");
+        validateOption("-dbgn", "abc", "Invalid integer 'abc' for argument debug-max-files.");
+        validateOption("-h2s", "abc", "Invalid integer 'abc' for argument http2-max-concurrent-streams.");
+        validateOption("-h2w", "abc", "Invalid integer 'abc' for argument http2-initial-window-size.");
+        validateOption("-h2cw", "abc", "Invalid integer 'abc' for argument http2-connection-window-size.");
+        validateOption("-tc", "abc", "Invalid integer 'abc' for argument tile-cache-size.");
+        validateOption("-tz", "abc", "Invalid integer 'abc' for argument tile-pre-render-zoom.");
+        validateOption("-tz", "25", "tile-pre-render-zoom cannot be greater than 24.");
+        validateOption("-tf", "abc", "Invalid integer 'abc' for argument tile-full-detail-zoom.");
+        validateOption("-tn", "abc", "Invalid integer 'abc' for argument tile-render-concurrency.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-m", "north/2", "path", "-p", "80", "-e", "path", "-gp", "81")))
+            .toThrow(ParseException.class)
+            .withMessage("Invalid model name 'north/2' for argument model, expected letters, digits, '-' or '_'.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-m", "north", "path", "-m", "north", "other", "-p", "80", "-e", "path", "-gp", "81")))
+            .toThrow(ParseException.class)
+            .withMessage("Duplicate model name 'north' for argument model.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-m", "north", "path", "-pa", "https://patches/api", "-p", "80", "-e", "path", "-gp", "81")))
+            .toThrow(ParseException.class)
+            .withMessage("patch-api must contain {model} when model is used.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-rm", "BATCH")))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: ewb-data-root.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-rm", "BATCH", "-e", "path", "-m", "north", "path")))
+            .toThrow(ParseException.class)
+            .withMessage("model and historic-dates cannot be used in BATCH mode.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-rm", "BATCH", "-e", "path", "-hd", "2")))
+            .toThrow(ParseException.class)
+            .withMessage("model and historic-dates cannot be used in BATCH mode.");
     }
 
     @Test
     public void mustParseBeforeUse() {
+        validateIllegalOptionUsage(cmdArgs::runMode);
         validateIllegalOptionUsage(cmdArgs::port);
         validateIllegalOptionUsage(cmdArgs::ewbDataRoot);
         validateIllegalOptionUsage(cmdArgs::currentDate);
         validateIllegalOptionUsage(cmdArgs::daysToSearch);
+        validateIllegalOptionUsage(cmdArgs::historicDates);
+        validateIllegalOptionUsage(cmdArgs::databaseConnections);
+        validateIllegalOptionUsage(cmdArgs::feeders);
+        validateIllegalOptionUsage(cmdArgs::zones);
+        validateIllegalOptionUsage(cmdArgs::models);
         validateIllegalOptionUsage(cmdArgs::patchApi);
         validateIllegalOptionUsage(cmdArgs::patchAuthHeader);
         validateIllegalOptionUsage(cmdArgs::s3Bucket);
         validateIllegalOptionUsage(cmdArgs::output);
+        validateIllegalOptionUsage(cmdArgs::patchedModel);
         validateIllegalOptionUsage(cmdArgs::cors);
         validateIllegalOptionUsage(cmdArgs::routeDebugFile);
+        validateIllegalOptionUsage(cmdArgs::routeDebugFilters);
+        validateIllegalOptionUsage(cmdArgs::routeDebugSampleEvery);
+        validateIllegalOptionUsage(cmdArgs::routeDebugBufferSize);
+        validateIllegalOptionUsage(cmdArgs::routeDebugMaxFileSize);
+        validateIllegalOptionUsage(cmdArgs::routeDebugMaxFiles);
         validateIllegalOptionUsage(cmdArgs::grpcPort);
         validateIllegalOptionUsage(cmdArgs::grpcCertPath);
         validateIllegalOptionUsage(cmdArgs::grpcKeyPath);
         validateIllegalOptionUsage(cmdArgs::grpcClientAuth);
         validateIllegalOptionUsage(cmdArgs::grpcTrustPath);
+        validateIllegalOptionUsage(cmdArgs::grpcExecutorThreads);
+        validateIllegalOptionUsage(cmdArgs::grpcVirtualThreads);
+        validateIllegalOptionUsage(cmdArgs::grpcBossThreads);
+        validateIllegalOptionUsage(cmdArgs::grpcWorkerThreads);
+        validateIllegalOptionUsage(cmdArgs::grpcMaxMessageSize);
+        validateIllegalOptionUsage(cmdArgs::grpcFlowControlWindow);
+        validateIllegalOptionUsage(cmdArgs::grpcKeepAliveTime);
+        validateIllegalOptionUsage(cmdArgs::grpcKeepAliveTimeout);
+        validateIllegalOptionUsage(cmdArgs::grpcMaxConcurrentCalls);
+        validateIllegalOptionUsage(cmdArgs::grpcChangeFeedSize);
+        validateIllegalOptionUsage(cmdArgs::grpcResponseCacheSize);
+        validateIllegalOptionUsage(cmdArgs::grpcSlowCallThreshold);
+        validateIllegalOptionUsage(cmdArgs::httpCertPath);
+        validateIllegalOptionUsage(cmdArgs::httpKeyPath);
+        validateIllegalOptionUsage(cmdArgs::http2MaxConcurrentStreams);
+        validateIllegalOptionUsage(cmdArgs::http2InitialWindowSize);
+        validateIllegalOptionUsage(cmdArgs::http2ConnectionWindowSize);
+        validateIllegalOptionUsage(cmdArgs::tileCacheSize);
+        validateIllegalOptionUsage(cmdArgs::tilePreRenderZoom);
+        validateIllegalOptionUsage(cmdArgs::tileFullDetailZoom);
+        validateIllegalOptionUsage(cmdArgs::tileRenderConcurrency);
     }
 
     private void validateOption(String option, String value, String expectedMessage) {
@@ -30,8 +30,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.Collections;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.Mockito.*;
 
@@ -49,15 +52,32 @@ public class EwbNetworkServerDependenciesTest {
         EwbNetworkServerDependencies dependencies = createDependencies("");
 
         assertThat(dependencies.onShutdown(), notNullValue());
+        assertThat(dependencies.http2Config(), notNullValue());
         assertThat(dependencies.ewbDataFilePaths(), notNullValue());
         assertThat(dependencies.ewbDataFilePathsHelper(), notNullValue());
         assertThat(dependencies.currentDate(), notNullValue());
         assertThat(dependencies.daysToSearch(), notNullValue());
         assertThat(dependencies.networkDatabaseProvider(), notNullValue());
+        assertThat(dependencies.parallelNetworkDatabaseProvider(), notNullValue());
         assertThat(dependencies.idCorrelatorReaderProvider(), notNullValue());
         assertThat(dependencies.cors(), notNullValue());
+        assertThat(dependencies.networkPartition(), notNullValue());
+        assertThat(dependencies.networkModels().isEmpty(), equalTo(true));
+        assertThat(dependencies.historicDates().isEnabled(), equalTo(false));
+        assertThat(dependencies.referenceData().isShared(), equalTo(false));
+        assertThat(dependencies.tileCache(), notNullValue());
+        assertThat(dependencies.tileConfig(), notNullValue());
+        assertThat(dependencies.spatialIndex(), notNullValue());
+        assertThat(dependencies.containerMembership(), notNullValue());
+        assertThat(dependencies.networkDigests(), notNullValue());
+        assertThat(dependencies.networkChangeFeed(), notNullValue());
+        assertThat(dependencies.patchResults().all().isEmpty(), equalTo(true));
+        assertThat(dependencies.patchResultToJson(), notNullValue());
+        assertThat(dependencies.correlationsCacheFile(), notNullValue());
+        assertThat(dependencies.patchedModelWriter().isEnabled(), equalTo(false));
 
         assertThat(dependencies.networkDatabaseProvider().apply(Paths.get("./")), notNullValue());
+        assertThat(dependencies.parallelNetworkDatabaseProvider().apply(Paths.get("./")), notNullValue());
         assertThat(dependencies.idCorrelatorReaderProvider().apply(Paths.get("./")), notNullValue());
 
         JsonObject jsonObject = new JsonObject();
@@ -78,16 +98,85 @@ public class EwbNetworkServerDependenciesTest {
         verify(s3, times(1)).putObject(cmdArgs.s3Bucket(), cmdArgs.output(), jsonObject.toString());
     }
 
+    @Test
+    public void hostsModels() {
+        cmdArgs = createCmdArgs("");
+        doReturn(Collections.singletonMap("north", "/data/north")).when(cmdArgs).models();
+
+        EwbNetworkServerDependencies dependencies = new EwbNetworkServerDependencies(cmdArgs, s -> {
+        }, callbacks::saveFile, deps -> s3);
+
+        assertThat(dependencies.networkModels().names(), contains("north"));
+        assertThat(dependencies.referenceData().isShared(), equalTo(true));
+    }
+
+    @Test
+    public void loadsHistoricDates() {
+        cmdArgs = createCmdArgs("");
+        doReturn(2).when(cmdArgs).historicDates();
+
+        EwbNetworkServerDependencies dependencies = new EwbNetworkServerDependencies(cmdArgs, s -> {
+        }, callbacks::saveFile, deps -> s3);
+
+        assertThat(dependencies.historicDates().isEnabled(), equalTo(true));
+        assertThat(dependencies.referenceData().isShared(), equalTo(true));
+    }
+
+    @Test
+    public void writesPatchedModels() {
+        cmdArgs = createCmdArgs("value");
+        doReturn("/out/patched.sqlite").when(cmdArgs).patchedModel();
+
+        EwbNetworkServerDependencies dependencies = new EwbNetworkServerDependencies(cmdArgs, s -> {
+        }, callbacks::saveFile, deps -> s3);
+
+        assertThat(dependencies.patchedModelWriter().isEnabled(), equalTo(true));
+        assertThat(dependencies.patchedModelWriter().databaseFile(), equalTo("/out/patched.sqlite"));
+    }
+
+    @Test
+    public void batchesLeaveOutServing() {
+        cmdArgs = createCmdArgs("");
+        doReturn(RunMode.BATCH).when(cmdArgs).runMode();
+        doReturn(256).when(cmdArgs).tileCacheSize();
+        doReturn("/out/patched.sqlite").when(cmdArgs).patchedModel();
+
+        EwbNetworkServerDependencies dependencies = new EwbNetworkServerDependencies(cmdArgs, s -> {
+        }, callbacks::saveFile, deps -> s3);
+
+        assertThat(dependencies.tileCache().isEnabled(), equalTo(false));
+        assertThat(dependencies.patchedModelWriter().isEnabled(), equalTo(true));
+    }
+
+    @Test
+    public void hostedModelsWriteAlongsideTheOutput() {
+        assertThat(EwbNetworkServerDependencies.outputFor("status.json", null), equalTo("status.json"));
+        assertThat(EwbNetworkServerDependencies.outputFor("status.json", "north"), equalTo("north-status.json"));
+        assertThat(EwbNetworkServerDependencies.outputFor("/out/status.json", "north"), equalTo("/out/north-status.json"));
+        assertThat(EwbNetworkServerDependencies.outputFor("C:\\out\\status.json", "north"), equalTo("C:\\out\\north-status.json"));
+    }
+
     private EwbNetworkServerDependencies createDependencies(String s3Bucket) {
-        cmdArgs = mock(CmdArgs.class,
+        cmdArgs = createCmdArgs(s3Bucket);
+
+        return new EwbNetworkServerDependencies(cmdArgs, s -> {
+        }, callbacks::saveFile, deps -> s3);
+    }
+
+    private CmdArgs createCmdArgs(String s3Bucket) {
+        CmdArgs cmdArgs = mock(CmdArgs.class,
             DefaultAnswer
                 .of(String.class, "")
                 .and(LocalDate.class, LocalDate.now(ZoneId.systemDefault()))
-                .and(ClientAuth.class, ClientAuth.NONE));
+                .and(ClientAuth.class, ClientAuth.NONE)
+                .and(RunMode.class, RunMode.SERVER));
         doReturn(s3Bucket).when(cmdArgs).s3Bucket();
-
-        return new EwbNetworkServerDependencies(cmdArgs, s -> {
-        }, callbacks::saveFile, deps -> s3);
+        doReturn(1).when(cmdArgs).routeDebugSampleEvery();
+        doReturn(10).when(cmdArgs).routeDebugBufferSize();
+        doReturn(GrpcConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE).when(cmdArgs).grpcMaxMessageSize();
+        doReturn(GrpcConfig.DEFAULT_KEEPALIVE_TIME).when(cmdArgs).grpcKeepAliveTime();
+        doReturn(GrpcConfig.DEFAULT_KEEPALIVE_TIMEOUT).when(cmdArgs).grpcKeepAliveTimeout();
+        return cmdArgs;
     }
 
     private static class Callbacks {
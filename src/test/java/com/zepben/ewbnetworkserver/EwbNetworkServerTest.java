@@ -21,7 +21,22 @@ package com.zepben.ewbnetworkserver;
 import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
 import com.zepben.evolve.database.sqlite.DatabaseReader;
 import com.zepben.ewb.filepaths.EwbDataFilePaths;
+import com.zepben.ewbnetworkserver.changes.NetworkChangeFeed;
+import com.zepben.ewbnetworkserver.correlations.CompactIdCorrelator;
+import com.zepben.ewbnetworkserver.correlations.CorrelationsCacheFile;
+import com.zepben.ewbnetworkserver.database.NetworkDatabaseWriter;
+import com.zepben.ewbnetworkserver.database.ParallelDatabaseReader;
+import com.zepben.ewbnetworkserver.digest.NetworkDigests;
+import com.zepben.ewbnetworkserver.export.ContainerMembership;
+import com.zepben.ewbnetworkserver.metrics.ServerMetrics;
+import com.zepben.ewbnetworkserver.models.HistoricDates;
+import com.zepben.ewbnetworkserver.models.NetworkModels;
+import com.zepben.ewbnetworkserver.models.ReferenceData;
+import com.zepben.ewbnetworkserver.partition.NetworkPartition;
 import com.zepben.ewbnetworkserver.patch.PatchResult;
+import com.zepben.ewbnetworkserver.spatial.SpatialIndex;
+import com.zepben.ewbnetworkserver.tiles.TileCache;
+import com.zepben.ewbnetworkserver.tiles.TileCacheHandler;
 import com.zepben.idcorrelator.io.FailedCorrelationInfo;
 import com.zepben.idcorrelator.io.IdCorrelatorReadException;
 import com.zepben.idcorrelator.io.IdCorrelatorReader;
@@ -31,6 +46,7 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.JsonObject;
@@ -38,6 +54,7 @@ import io.vertx.ext.web.Router;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import javax.annotation.Nullable;
@@ -66,9 +83,22 @@ public class EwbNetworkServerTest {
 
     private final int NUM_EXPECTED_NETWORK_ROUTES = 27;
     private final int NUM_EXPECTED_PATCH_ROUTES = 1;
-    private final int NUM_EXPECTED_ROUTES = NUM_EXPECTED_NETWORK_ROUTES + NUM_EXPECTED_PATCH_ROUTES;
+    private final int NUM_EXPECTED_EXPORT_ROUTES = 3;
+    private final int NUM_EXPECTED_DIGEST_ROUTES = 4;
+    private final int NUM_EXPECTED_DIFF_ROUTES = 1;
+    private final int NUM_EXPECTED_SPATIAL_ROUTES = 2;
+    private final int NUM_EXPECTED_LOOKUP_ROUTES = 1;
+    private final int NUM_EXPECTED_ROUTES = NUM_EXPECTED_NETWORK_ROUTES
+        + NUM_EXPECTED_PATCH_ROUTES
+        + NUM_EXPECTED_EXPORT_ROUTES
+        + NUM_EXPECTED_DIGEST_ROUTES
+        + NUM_EXPECTED_DIFF_ROUTES
+        + NUM_EXPECTED_SPATIAL_ROUTES
+        + NUM_EXPECTED_LOOKUP_ROUTES;
     private final int NUM_CORS_ROUTES = 1;
     private final int NUM_DEBUG_ROUTES = 3;
+    private final int NUM_METRICS_ROUTES = 1;
+    private final int NUM_MODELS_ROUTES = 2;
 
     private final MockEwbNetworkServerDependencies dependencies = MockEwbNetworkServerDependencies.create();
     private final Vertx vertx = dependencies.vertx();
@@ -81,8 +111,22 @@ public class EwbNetworkServerTest {
     private final RouteDebug routeDebug = dependencies.routeDebug();
     private final PatchProcessor patchProcessor = dependencies.patchProcessor();
     private final EwbNetworkServer.ResultsWriter resultsWriter = dependencies.resultsWriter();
+    private final ServerMetrics serverMetrics = dependencies.serverMetrics();
+    private final TileCache tileCache = dependencies.tileCache();
+    private final SpatialIndex spatialIndex = dependencies.spatialIndex();
+    private final ContainerMembership containerMembership = dependencies.containerMembership();
+    private final NetworkDigests networkDigests = dependencies.networkDigests();
+    private final NetworkDatabaseWriter patchedModelWriter = dependencies.patchedModelWriter();
+    private final CompactIdCorrelator idCorrelator = dependencies.idCorrelator();
+    private final CorrelationsCacheFile correlationsCacheFile = dependencies.correlationsCacheFile();
+    private final NetworkPartition networkPartition = dependencies.networkPartition();
+    private final NetworkModels networkModels = dependencies.networkModels();
+    private final HistoricDates historicDates = dependencies.historicDates();
+    private final ReferenceData referenceData = dependencies.referenceData();
+    private final NetworkChangeFeed networkChangeFeed = dependencies.networkChangeFeed();
 
     private final DatabaseReader databaseReader = dependencies.databaseReader();
+    private final ParallelDatabaseReader parallelDatabaseReader = dependencies.parallelDatabaseReader();
     private final IdCorrelatorReader idCorrelatorReader = dependencies.idCorrelatorReader();
 
     private final LocalDate validDate = dependencies.currentDate().minusDays(2);
@@ -104,9 +148,33 @@ public class EwbNetworkServerTest {
         validateProcessCalls(1, 1, 1, 1, NUM_EXPECTED_ROUTES);
         validatePatchResults();
 
+        verify(serverMetrics, times(1)).updateNetworkObjectCounts(dependencies.services().networkService());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("load_network"), anyLong());
+        verify(serverMetrics, never()).recordStartupPhase(eq("partition_network"), anyLong());
+        verify(serverMetrics, never()).recordStartupPhase(eq("snapshot_network"), anyLong());
+        verify(serverMetrics, never()).recordStartupPhase(eq("write_patched_model"), anyLong());
+        verify(patchedModelWriter, never()).save(any());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("build_spatial_index"), anyLong());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("build_container_membership"), anyLong());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("apply_patches"), anyLong());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("build_network_digests"), anyLong());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("load_id_correlations"), anyLong());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("create_routes"), anyLong());
+        verify(serverMetrics, times(1)).updateIdCorrelations(anyMap(), anyLong());
+        verify(networkPartition, never()).prune(any());
+        verify(referenceData, never()).intern(any());
+        verify(networkModels, never()).mount(any());
+        verify(historicDates, never()).mount(any());
+        verify(correlationsCacheFile, times(1)).read(idCorrelatorPath, idCorrelator);
+        verify(correlationsCacheFile, times(1)).write(idCorrelatorPath, idCorrelator);
+
         validateLog("Network loaded [");
+        validateLog("Spatial index built [");
+        validateLog("Container membership built [");
         validateLog("Patches applied.");
+        validateLog("Network digests built [");
         validateLog("ID correlations loaded.");
+        validateLog("ID correlations compacted [");
         validateLog("Route handlers initialised.");
     }
 
@@ -131,6 +199,7 @@ public class EwbNetworkServerTest {
         verify(httpServer, times(1)).requestHandler(any());
         verify(httpServer, times(1)).exceptionHandler(any());
         verify(httpServer, times(1)).listen(any());
+        verify(networkModels, times(1)).loadAll(vertx);
 
         validateLog("HTTP server started");
     }
@@ -151,6 +220,7 @@ public class EwbNetworkServerTest {
 
         verify(httpServer, times(1)).close(any());
 
+        verify(routeDebug, times(1)).stop();
         verify(onShutdown, times(1)).accept(ProgramStatus.OK);
     }
 
@@ -163,8 +233,9 @@ public class EwbNetworkServerTest {
 
         assertThat(ewbNetworkServer.load(), equalTo(true));
 
-        verify(router, times(NUM_DEBUG_ROUTES + NUM_CORS_ROUTES)).route();
+        verify(router, times(NUM_METRICS_ROUTES + NUM_DEBUG_ROUTES + NUM_CORS_ROUTES)).route();
         verify(router, times(NUM_EXPECTED_ROUTES)).route(anyString());
+        verify(routeDebug, times(1)).start();
 
         doReturn(false).when(routeDebug).isDebugging();
         dependencies.cors(".*");
@@ -173,7 +244,7 @@ public class EwbNetworkServerTest {
         clearInvocations(router);
         assertThat(ewbNetworkServer.load(), equalTo(true));
 
-        verify(router, times(NUM_CORS_ROUTES)).route();
+        verify(router, times(NUM_METRICS_ROUTES + NUM_CORS_ROUTES)).route();
         verify(router, times(NUM_EXPECTED_ROUTES)).route(anyString());
 
         doReturn(true).when(routeDebug).isDebugging();
@@ -183,10 +254,22 @@ public class EwbNetworkServerTest {
         clearInvocations(router);
         assertThat(ewbNetworkServer.load(), equalTo(true));
 
-        verify(router, times(NUM_DEBUG_ROUTES)).route();
+        verify(router, times(NUM_METRICS_ROUTES + NUM_DEBUG_ROUTES)).route();
         verify(router, times(NUM_EXPECTED_ROUTES)).route(anyString());
     }
 
+    @Test
+    public void tileCacheCanBeDisabled() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(false).when(tileCache).isEnabled();
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        verify(router, never()).get(TileCacheHandler.ROUTE_PATH);
+        verify(vertx, never()).createHttpClient(any(HttpClientOptions.class));
+    }
+
     @Test
     public void handlesMissingData() throws Exception {
         configureData(null, true, true, true, true);
@@ -209,6 +292,7 @@ public class EwbNetworkServerTest {
         assertThat(ewbNetworkServer.load(), equalTo(false));
 
         validateProcessCalls(1, 0, 0, 0, 0);
+        verify(networkChangeFeed, never()).onReloaded();
         validateLog("Failed to load network model.");
     }
 
@@ -245,6 +329,84 @@ public class EwbNetworkServerTest {
         validateLog("Failed to save patch results: test message");
     }
 
+    @Test
+    public void writesPatchedModels() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(patchedModelWriter).isEnabled();
+        doReturn("patched.sqlite").when(patchedModelWriter).databaseFile();
+        doReturn(true).when(patchedModelWriter).save(any());
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        InOrder inOrder = inOrder(patchProcessor, patchedModelWriter);
+        inOrder.verify(patchProcessor, times(1)).applyPatches();
+        inOrder.verify(patchedModelWriter, times(1)).save(dependencies.services());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("write_patched_model"), anyLong());
+
+        validateLog("Writing patched network model to 'patched.sqlite'...");
+        validateLog("Patched network model written.");
+    }
+
+    @Test
+    public void handlesPatchedModelWriteFailures() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(patchedModelWriter).isEnabled();
+        doReturn(false).when(patchedModelWriter).save(any());
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(false));
+
+        validateProcessCalls(1, 1, 1, 0, 0);
+        validateLog("Failed to write patched network model.");
+    }
+
+    @Test
+    public void runsBatches() throws Exception {
+        addPatchResults();
+
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(patchedModelWriter).isEnabled();
+        doReturn(true).when(patchedModelWriter).save(any());
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.runBatch(), equalTo(true));
+
+        InOrder inOrder = inOrder(databaseReader, patchProcessor, resultsWriter, patchedModelWriter);
+        inOrder.verify(databaseReader, times(1)).load(any(), any(), any(), any());
+        inOrder.verify(patchProcessor, times(1)).applyPatches();
+        inOrder.verify(resultsWriter, times(1)).save(any());
+        inOrder.verify(patchedModelWriter, times(1)).save(dependencies.services());
+        validatePatchResults();
+
+        verify(spatialIndex, never()).build(any());
+        verify(containerMembership, never()).build();
+        verify(networkDigests, never()).build();
+        verify(idCorrelatorReaderProvider, never()).apply(any());
+        verify(correlationsCacheFile, never()).read(any(), any());
+        verify(serverMetrics, never()).recordStartupPhase(eq("create_routes"), anyLong());
+        verify(vertx, never()).createHttpServer(any(HttpServerOptions.class));
+        verify(router, never()).route();
+        verify(onShutdown, never()).accept(any());
+    }
+
+    @Test
+    public void handlesBatchFailures() throws Exception {
+        configureData(validDate, true, false, true, true);
+        doReturn(true).when(patchedModelWriter).isEnabled();
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.runBatch(), equalTo(false));
+
+        verify(resultsWriter, never()).save(any());
+        verify(patchedModelWriter, never()).save(any());
+        validateLog("Failed to apply patches.");
+
+        configureData(null, true, true, true, true);
+        assertThat(createServer().runBatch(), equalTo(false));
+        validateLog("Failed to find network model and id correlations file within");
+    }
+
     @Test
     public void handlesIdCorrelatorLoadFailures() throws Exception {
         configureData(validDate, true, true, true, false);
@@ -256,6 +418,119 @@ public class EwbNetworkServerTest {
         validateLog("Failed to load idCorrelator caches");
     }
 
+    @Test
+    public void loadsNetworkOverParallelConnections() throws Exception {
+        dependencies.databaseConnections(4);
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(parallelDatabaseReader).load(any(), any(), any(), any());
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        Services services = dependencies.services();
+        verify(parallelDatabaseReader, times(1)).load(services.metadataCollection, services.networkService(), services.diagramService(), services.customerService());
+        verify(databaseReader, never()).load(any(), any(), any(), any());
+
+        validateLog("over 4 connections...");
+        validateLog("Network loaded [");
+    }
+
+    @Test
+    public void partitionsNetworkBeforeIndexingAndPatching() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(networkPartition).isEnabled();
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        InOrder inOrder = inOrder(networkPartition, spatialIndex, containerMembership, patchProcessor, networkDigests);
+        inOrder.verify(networkPartition, times(1)).prune(dependencies.services());
+        inOrder.verify(spatialIndex, times(1)).build(dependencies.services().networkService());
+        inOrder.verify(containerMembership, times(1)).build();
+        inOrder.verify(patchProcessor, times(1)).applyPatches();
+        inOrder.verify(networkDigests, times(1)).build();
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("partition_network"), anyLong());
+
+        validateLog("Partitioning network...");
+    }
+
+    @Test
+    public void publishesReloadBeforePatchChanges() throws Exception {
+        configureData(validDate, true, true, true, true);
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        InOrder inOrder = inOrder(networkChangeFeed, patchProcessor);
+        inOrder.verify(networkChangeFeed, times(1)).onReloaded();
+        inOrder.verify(patchProcessor, times(1)).applyPatches();
+    }
+
+    @Test
+    public void sharesReferenceDataBeforeIndexing() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(referenceData).isShared();
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        InOrder inOrder = inOrder(referenceData, spatialIndex);
+        inOrder.verify(referenceData, times(1)).intern(dependencies.services().networkService());
+        inOrder.verify(spatialIndex, times(1)).build(dependencies.services().networkService());
+        verify(serverMetrics, times(1)).recordStartupPhase(eq("share_reference_data"), anyLong());
+
+        validateLog("Reference data shared [");
+    }
+
+    @Test
+    public void mountsHostedModels() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(false).when(networkModels).isEmpty();
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+        assertThat(ewbNetworkServer.router(), sameInstance(router));
+
+        verify(networkModels, times(1)).mount(router);
+        verify(router, times(NUM_EXPECTED_ROUTES + NUM_MODELS_ROUTES)).route(anyString());
+    }
+
+    @Test
+    public void mountsHistoricDates() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(historicDates).isEnabled();
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        verify(historicDates, times(1)).mount(router);
+        verify(router, times(NUM_EXPECTED_ROUTES)).route(anyString());
+
+        // The snapshot is taken before the patches so it can be compared with historic dates, which have no patches.
+        InOrder inOrder = inOrder(serverMetrics);
+        inOrder.verify(serverMetrics, times(1)).recordStartupPhase(eq("snapshot_network"), anyLong());
+        inOrder.verify(serverMetrics, times(1)).recordStartupPhase(eq("apply_patches"), anyLong());
+        validateLog("Network snapshot taken [");
+        assertThat(ewbNetworkServer.snapshot().date(), equalTo(validDate));
+    }
+
+    @Test
+    public void loadsIdCorrelationsFromCache() throws Exception {
+        configureData(validDate, true, true, true, true);
+        doReturn(true).when(correlationsCacheFile).read(idCorrelatorPath, idCorrelator);
+        EwbNetworkServer ewbNetworkServer = createServer();
+
+        assertThat(ewbNetworkServer.load(), equalTo(true));
+
+        verify(idCorrelatorReaderProvider, never()).apply(any());
+        verify(idCorrelator, never()).seal();
+        verify(correlationsCacheFile, never()).write(any(), any());
+        verify(serverMetrics, times(1)).updateIdCorrelations(anyMap(), anyLong());
+        verify(router, times(NUM_EXPECTED_ROUTES)).route(anyString());
+
+        validateLog("ID correlations mapped from '");
+    }
+
     @Test
     public void handlesExceptionsLoadingIdCorrelatorData() throws Exception {
         configureData(validDate, true, true, true, true);
@@ -362,15 +637,22 @@ public class EwbNetworkServerTest {
         verify(networkDatabaseProvider, times(expectedLoadCalls)).apply(networkDatabasePath);
         verify(databaseReader, times(expectedLoadCalls)).load(any(), any(), any(), any());
 
+        verify(spatialIndex, times(expectedPatchesCalls)).build(dependencies.services().networkService());
+        verify(containerMembership, times(expectedPatchesCalls)).build();
         verify(patchProcessor, times(expectedPatchesCalls)).applyPatches();
 
         verify(resultsWriter, times(expectedReportCalls)).save(any());
 
+        verify(networkDigests, times(expectedIdCorrelatorCalls)).build();
+
         verify(ewbDataFilePaths, times(expectedIdCorrelatorCalls)).correlations(validDate);
         verify(idCorrelatorReaderProvider, times(expectedIdCorrelatorCalls)).apply(idCorrelatorPath);
         verify(idCorrelatorReader, times(expectedIdCorrelatorCalls)).read(any());
+        verify(idCorrelator, times(expectedPathRouterCalls > 0 ? 1 : 0)).seal();
 
-        verify(router, never()).route();
+        verify(router, times(expectedPathRouterCalls > 0 ? NUM_METRICS_ROUTES : 0)).route();
+        verify(router, times(expectedPathRouterCalls > 0 ? 1 : 0)).get(ServerMetrics.METRICS_PATH);
+        verify(router, times(expectedPathRouterCalls > 0 ? 1 : 0)).get(TileCacheHandler.ROUTE_PATH);
         verify(router, times(expectedPathRouterCalls)).route(anyString());
 
         verify(onShutdown, never()).accept(any());
@@ -403,6 +685,7 @@ public class EwbNetworkServerTest {
         List<JsonObject> results = extractRequiredObjectList(resultsObject, "results");
 
         assertThat(results.size(), equalTo(4));
+        assertThat(dependencies.patchResults().all().size(), equalTo(4));
 
         validateResult(results.get(0), Arrays.asList("f1", "f2"), Arrays.asList("f1", "f4"), Arrays.asList("error1", "error2"));
         validateResult(results.get(1), Collections.singletonList("f3"), Collections.singletonList("f5"), Collections.emptyList());
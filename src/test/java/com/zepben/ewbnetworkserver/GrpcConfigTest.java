@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class GrpcConfigTest {
+
+    @Test
+    public void keepsTheDefaultExecutor() throws Exception {
+        GrpcConfig grpcConfig = GrpcConfig.defaults();
+
+        assertThat(grpcConfig.createExecutor(), nullValue());
+        startAndStop(grpcConfig);
+    }
+
+    @Test
+    public void boundsTheExecutor() throws Exception {
+        GrpcConfig grpcConfig = new GrpcConfig(4, false, 0, 0, 1024, 0, 60, 10, 8);
+
+        ExecutorService executor = (ExecutorService) grpcConfig.createExecutor();
+        assertThat(executor, instanceOf(ThreadPoolExecutor.class));
+        assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize(), equalTo(4));
+        executor.shutdown();
+
+        startAndStop(grpcConfig);
+    }
+
+    @Test
+    public void usesItsOwnEventLoops() throws Exception {
+        startAndStop(new GrpcConfig(0, false, 1, 2, GrpcConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE, 1048576, 60, 10, 0));
+        startAndStop(new GrpcConfig(0, false, 0, 2, GrpcConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE, 0, 60, 10, 0));
+    }
+
+    @Test
+    public void supportsVirtualThreadsOnNewerJavaVersions() throws Exception {
+        GrpcConfig grpcConfig = new GrpcConfig(0, true, 0, 0, GrpcConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE, 0, 60, 10, 0);
+
+        if (GrpcConfig.supportsVirtualThreads()) {
+            assertThat(grpcConfig.createExecutor(), notNullValue());
+            startAndStop(grpcConfig);
+        } else {
+            expect(grpcConfig::createExecutor)
+                .toThrow(IllegalStateException.class)
+                .withMessage("Virtual threads require Java 21 or later.");
+        }
+    }
+
+    private void startAndStop(GrpcConfig grpcConfig) throws Exception {
+        Server server = grpcConfig.applyTo(NettyServerBuilder.forPort(0)).build().start();
+        assertThat(server.getPort(), greaterThan(0));
+
+        server.shutdown();
+        assertThat(server.awaitTermination(5, TimeUnit.SECONDS), equalTo(true));
+    }
+
+}
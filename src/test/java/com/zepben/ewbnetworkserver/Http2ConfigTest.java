@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver;
+
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class Http2ConfigTest {
+
+    @Test
+    public void configuresCleartextHttp2() {
+        Http2Config http2Config = new Http2Config("", "", 50, 1048576, 4194304);
+        HttpServerOptions options = http2Config.applyTo(new HttpServerOptions());
+
+        assertThat(http2Config.isTls(), equalTo(false));
+        assertThat(options.isSsl(), equalTo(false));
+        assertThat(options.isUseAlpn(), equalTo(false));
+        assertThat(options.getPemKeyCertOptions(), nullValue());
+        assertThat(options.getInitialSettings().getMaxConcurrentStreams(), equalTo(50L));
+        assertThat(options.getInitialSettings().getInitialWindowSize(), equalTo(1048576));
+        assertThat(options.getHttp2ConnectionWindowSize(), equalTo(4194304));
+    }
+
+    @Test
+    public void negotiatesHttp2OverTls() {
+        Http2Config http2Config = new Http2Config("http.crt", "http.key", 100, 65535, 65535);
+        HttpServerOptions options = http2Config.applyTo(new HttpServerOptions());
+
+        assertThat(http2Config.isTls(), equalTo(true));
+        assertThat(options.isSsl(), equalTo(true));
+        assertThat(options.isUseAlpn(), equalTo(true));
+        assertThat(options.getAlpnVersions(), contains(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1));
+        assertThat(options.getPemKeyCertOptions().getCertPath(), equalTo("http.crt"));
+        assertThat(options.getPemKeyCertOptions().getKeyPath(), equalTo("http.key"));
+        assertThat(options.getInitialSettings().getMaxConcurrentStreams(), equalTo(100L));
+    }
+
+}
@@ -30,6 +30,7 @@ import java.util.function.Consumer;
 
 import static com.zepben.collectionutils.CollectionUtils.arrayOf;
 import static com.zepben.ewbnetworkserver.ProgramStatus.FAILED_TO_START;
+import static com.zepben.ewbnetworkserver.data.CmdArgsTestData.batchArgs;
 import static com.zepben.ewbnetworkserver.data.CmdArgsTestData.minimumArgs;
 import static com.zepben.ewbnetworkserver.data.CmdArgsTestData.validArgs;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -80,6 +81,32 @@ public class MainTest {
         verify(onFailure, never()).accept(any());
     }
 
+    @Test
+    public void runsBatches() {
+        doReturn(true).when(ewbNetworkServer).runBatch();
+
+        assertThat(run(batchArgs()), equalTo(ProgramStatus.OK));
+
+        verify(dependencies, times(1)).ewbNetworkServerVerticle();
+        verify(ewbNetworkServer, times(1)).runBatch();
+        verify(ewbNetworkServer, never()).load();
+        verify(ewbNetworkServer, never()).startHttpServer();
+        verify(ewbNetworkServer, never()).startGrpcServer();
+        verify(onFailure, never()).accept(any());
+    }
+
+    @Test
+    public void handlesFailuresInBatches() {
+        doReturn(false).when(ewbNetworkServer).runBatch();
+
+        assertThat(run(batchArgs()), equalTo(FAILED_TO_START));
+
+        verify(ewbNetworkServer, times(1)).runBatch();
+        verify(ewbNetworkServer, never()).startHttpServer();
+        verify(ewbNetworkServer, never()).startGrpcServer();
+        verify(onFailure, never()).accept(any());
+    }
+
     public ProgramStatus run(String[] cmdArgs) {
         return Main.run(cmdArgs, args -> dependencies, () -> {
         });
@@ -21,10 +21,26 @@ package com.zepben.ewbnetworkserver;
 import com.zepben.annotations.EverythingIsNonnullByDefault;
 import com.zepben.evolve.database.sqlite.DatabaseReader;
 import com.zepben.ewb.filepaths.EwbDataFilePaths;
+import com.zepben.ewbnetworkserver.changes.NetworkChangeFeed;
+import com.zepben.ewbnetworkserver.correlations.CompactIdCorrelator;
+import com.zepben.ewbnetworkserver.correlations.CorrelationsCacheFile;
+import com.zepben.ewbnetworkserver.database.NetworkDatabaseWriter;
+import com.zepben.ewbnetworkserver.database.ParallelDatabaseReader;
+import com.zepben.ewbnetworkserver.digest.NetworkDigests;
+import com.zepben.ewbnetworkserver.export.ContainerMembership;
+import com.zepben.ewbnetworkserver.metrics.ServerMetrics;
+import com.zepben.ewbnetworkserver.models.HistoricDates;
+import com.zepben.ewbnetworkserver.models.NetworkModels;
+import com.zepben.ewbnetworkserver.models.ReferenceData;
+import com.zepben.ewbnetworkserver.partition.NetworkPartition;
 import com.zepben.ewbnetworkserver.patch.LoadManipulations;
 import com.zepben.ewbnetworkserver.patch.PatchResult;
+import com.zepben.ewbnetworkserver.patch.PatchResults;
 import com.zepben.ewbnetworkserver.patch.routes.LoadManipulationsToJson;
-import com.zepben.idcorrelator.IdCorrelator;
+import com.zepben.ewbnetworkserver.patch.routes.PatchResultToJson;
+import com.zepben.ewbnetworkserver.spatial.SpatialIndex;
+import com.zepben.ewbnetworkserver.tiles.TileCache;
+import com.zepben.ewbnetworkserver.tiles.TileConfig;
 import com.zepben.idcorrelator.io.IdCorrelatorReader;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
@@ -57,26 +73,45 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
     private Router router;
 
     private final DatabaseReader databaseReader = mock(DatabaseReader.class);
+    private final ParallelDatabaseReader parallelDatabaseReader = mock(ParallelDatabaseReader.class);
     private final IdCorrelatorReader idCorrelatorReader = mock(IdCorrelatorReader.class);
-    private final List<PatchResult> patchResults = new ArrayList<>();
+    private final List<PatchResult> appliedPatchResults = new ArrayList<>();
 
     private final Consumer<ProgramStatus> onShutdown = mock(Consumer.class);
     private final int port = 80;
+    private final Http2Config http2Config = new Http2Config("", "", 100, 65535, 65535);
     private final EwbGrpcServer ewbGrpcServer = mock(EwbGrpcServer.class);
     private final EwbDataFilePaths ewbDataFilePaths = mock(EwbDataFilePaths.class);
     private final EwbDataFilePathsHelper ewbDataFilePathsHelper = mock(EwbDataFilePathsHelper.class);
     private final LocalDate currentDate = LocalDate.now(ZoneId.systemDefault());
     private final int daysToSearch = 0;
+    private int databaseConnections = 1;
     private final Function<Path, DatabaseReader> networkDatabaseProvider = mock(Function.class);
+    private final Function<Path, ParallelDatabaseReader> parallelNetworkDatabaseProvider = mock(Function.class);
     private final Function<Path, IdCorrelatorReader> idCorrelatorReaderProvider = mock(Function.class);
     private String cors = "";
+    private final NetworkPartition networkPartition = mock(NetworkPartition.class);
+    private final NetworkModels networkModels = mock(NetworkModels.class);
+    private final HistoricDates historicDates = mock(HistoricDates.class);
+    private final ReferenceData referenceData = mock(ReferenceData.class);
     private final Services services = spy(new Services());
     private final LoadManipulations loadManipulations = spy(new LoadManipulations());
     private final LoadManipulationsToJson loadManipulationsToJson = spy(new LoadManipulationsToJson());
-    private final IdCorrelator idCorrelator = mock(IdCorrelator.class);
+    private final PatchResults patchResults = spy(new PatchResults());
+    private final PatchResultToJson patchResultToJson = spy(new PatchResultToJson());
+    private final CompactIdCorrelator idCorrelator = mock(CompactIdCorrelator.class);
+    private final CorrelationsCacheFile correlationsCacheFile = mock(CorrelationsCacheFile.class);
     private final PatchProcessor patchProcessor = mock(PatchProcessor.class);
     private final RouteDebug routeDebug = mock(RouteDebug.class);
     private final EwbNetworkServer.ResultsWriter resultsWriter = mock(EwbNetworkServer.ResultsWriter.class);
+    private final NetworkDatabaseWriter patchedModelWriter = mock(NetworkDatabaseWriter.class);
+    private final ServerMetrics serverMetrics = mock(ServerMetrics.class);
+    private final TileCache tileCache = spy(new TileCache(1024 * 1024));
+    private final TileConfig tileConfig = new TileConfig(16, 10, 4);
+    private final SpatialIndex spatialIndex = mock(SpatialIndex.class);
+    private final ContainerMembership containerMembership = mock(ContainerMembership.class);
+    private final NetworkDigests networkDigests = mock(NetworkDigests.class);
+    private final NetworkChangeFeed networkChangeFeed = mock(NetworkChangeFeed.class);
 
     static MockEwbNetworkServerDependencies create() {
         return spy(new MockEwbNetworkServerDependencies());
@@ -102,6 +137,11 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
         return port;
     }
 
+    @Override
+    public Http2Config http2Config() {
+        return http2Config;
+    }
+
     @Override
     public EwbGrpcServer ewbGrpcServer() {
         return ewbGrpcServer;
@@ -127,11 +167,21 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
         return daysToSearch;
     }
 
+    @Override
+    public int databaseConnections() {
+        return databaseConnections;
+    }
+
     @Override
     public Function<Path, DatabaseReader> networkDatabaseProvider() {
         return networkDatabaseProvider;
     }
 
+    @Override
+    public Function<Path, ParallelDatabaseReader> parallelNetworkDatabaseProvider() {
+        return parallelNetworkDatabaseProvider;
+    }
+
     @Override
     public Function<Path, IdCorrelatorReader> idCorrelatorReaderProvider() {
         return idCorrelatorReaderProvider;
@@ -142,6 +192,26 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
         return cors;
     }
 
+    @Override
+    public NetworkPartition networkPartition() {
+        return networkPartition;
+    }
+
+    @Override
+    public NetworkModels networkModels() {
+        return networkModels;
+    }
+
+    @Override
+    public HistoricDates historicDates() {
+        return historicDates;
+    }
+
+    @Override
+    public ReferenceData referenceData() {
+        return referenceData;
+    }
+
     @Override
     public Services services() {
         return services;
@@ -158,10 +228,25 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
     }
 
     @Override
-    public IdCorrelator idCorrelator() {
+    public PatchResults patchResults() {
+        return patchResults;
+    }
+
+    @Override
+    public PatchResultToJson patchResultToJson() {
+        return patchResultToJson;
+    }
+
+    @Override
+    public CompactIdCorrelator idCorrelator() {
         return idCorrelator;
     }
 
+    @Override
+    public CorrelationsCacheFile correlationsCacheFile() {
+        return correlationsCacheFile;
+    }
+
     @Override
     public PatchProcessor patchProcessor() {
         return patchProcessor;
@@ -177,16 +262,60 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
         return resultsWriter;
     }
 
+    @Override
+    public NetworkDatabaseWriter patchedModelWriter() {
+        return patchedModelWriter;
+    }
+
+    @Override
+    public ServerMetrics serverMetrics() {
+        return serverMetrics;
+    }
+
+    @Override
+    public TileCache tileCache() {
+        return tileCache;
+    }
+
+    @Override
+    public TileConfig tileConfig() {
+        return tileConfig;
+    }
+
+    @Override
+    public SpatialIndex spatialIndex() {
+        return spatialIndex;
+    }
+
+    @Override
+    public ContainerMembership containerMembership() {
+        return containerMembership;
+    }
+
+    @Override
+    public NetworkDigests networkDigests() {
+        return networkDigests;
+    }
+
+    @Override
+    public NetworkChangeFeed networkChangeFeed() {
+        return networkChangeFeed;
+    }
+
     DatabaseReader databaseReader() {
         return databaseReader;
     }
 
+    ParallelDatabaseReader parallelDatabaseReader() {
+        return parallelDatabaseReader;
+    }
+
     IdCorrelatorReader idCorrelatorReader() {
         return idCorrelatorReader;
     }
 
     void addPatchResult(PatchResult patchResult) {
-        patchResults.add(patchResult);
+        appliedPatchResults.add(patchResult);
     }
 
     MockEwbNetworkServerDependencies cors(String cors) {
@@ -194,8 +323,14 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
         return this;
     }
 
+    MockEwbNetworkServerDependencies databaseConnections(int databaseConnections) {
+        this.databaseConnections = databaseConnections;
+        return this;
+    }
+
     MockEwbNetworkServerDependencies setValidDatabasePath(Path validPath) {
         doReturn(databaseReader).when(networkDatabaseProvider).apply(validPath);
+        doReturn(parallelDatabaseReader).when(parallelNetworkDatabaseProvider).apply(validPath);
         return this;
     }
 
@@ -207,7 +342,8 @@ class MockEwbNetworkServerDependencies implements EwbNetworkServer.Dependencies
     private MockEwbNetworkServerDependencies() {
         MockitoAnnotations.initMocks(this);
 
-        doReturn(patchResults).when(patchProcessor).applyPatches();
+        doReturn(appliedPatchResults).when(patchProcessor).applyPatches();
+        doReturn(true).when(networkModels).isEmpty();
     }
 
 }
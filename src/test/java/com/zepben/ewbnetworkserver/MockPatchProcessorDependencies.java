@@ -21,12 +21,17 @@ package com.zepben.ewbnetworkserver;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.request.GetRequest;
 import com.zepben.annotations.EverythingIsNonnullByDefault;
+import com.zepben.ewbnetworkserver.metrics.PatchMetrics;
+import com.zepben.ewbnetworkserver.partition.NetworkPartition;
 import com.zepben.ewbnetworkserver.patch.FeederProcessor;
 import com.zepben.ewbnetworkserver.patch.LoadManipulations;
 import com.zepben.ewbnetworkserver.patch.PatchFeatureCreators;
 import com.zepben.ewbnetworkserver.patch.PatchTerminationProcessor;
 import io.netty.handler.codec.http.HttpResponseStatus;
 
+import java.util.Collections;
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -42,6 +47,9 @@ class MockPatchProcessorDependencies implements PatchProcessor.Dependencies {
     private final HttpResponse<String> response = mock(HttpResponse.class);
 
     private final HttpClient httpClient = spy(new HttpClient(requestProvider));
+    private final PatchMetrics patchMetrics = spy(new PatchMetrics());
+    private final NetworkChangeListener networkChangeListener = mock(NetworkChangeListener.class);
+    private final NetworkPartition networkPartition = spy(new NetworkPartition(Collections.emptyList(), Collections.emptyList()));
     private String api = "api endpoint";
     private String authHeader = "";
 
@@ -106,6 +114,25 @@ class MockPatchProcessorDependencies implements PatchProcessor.Dependencies {
         this.authHeader = authHeader;
     }
 
+    @Override
+    public PatchMetrics patchMetrics() {
+        return patchMetrics;
+    }
+
+    @Override
+    public List<NetworkChangeListener> networkChangeListeners() {
+        return Collections.singletonList(networkChangeListener);
+    }
+
+    NetworkChangeListener networkChangeListener() {
+        return networkChangeListener;
+    }
+
+    @Override
+    public NetworkPartition networkPartition() {
+        return networkPartition;
+    }
+
     HttpResponse<String> response() {
         return response;
     }
@@ -20,23 +20,94 @@ package com.zepben.ewbnetworkserver;
 
 import com.zepben.annotations.EverythingIsNonnullByDefault;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import static org.mockito.Mockito.mock;
 
 @EverythingIsNonnullByDefault
 @SuppressWarnings("FieldCanBeLocal")
 public class MockRouteDebugDependencies implements RouteDebug.Dependencies {
 
-    private final String routeDebugFile = "body-debug.json";
+    private String routeDebugFile = "body-debug.json";
+    private final List<Pattern> routeFilters = new ArrayList<>();
+    private int sampleEvery = 1;
+    private int bufferSize = 10;
+    private long maxFileSize = 1024 * 1024;
+    private int maxFiles = 2;
     private final RouteDebug.FileWriter fileWriter = mock(RouteDebug.FileWriter.class);
+    private final RouteDebug.FileMover fileMover = mock(RouteDebug.FileMover.class);
+    private final RouteDebug.FileSizer fileSizer = mock(RouteDebug.FileSizer.class);
 
     @Override
     public String routeDebugFile() {
         return routeDebugFile;
     }
 
+    @Override
+    public List<Pattern> routeFilters() {
+        return routeFilters;
+    }
+
+    @Override
+    public int sampleEvery() {
+        return sampleEvery;
+    }
+
+    @Override
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public long maxFileSize() {
+        return maxFileSize;
+    }
+
+    @Override
+    public int maxFiles() {
+        return maxFiles;
+    }
+
     @Override
     public RouteDebug.FileWriter fileWriter() {
         return fileWriter;
     }
 
+    @Override
+    public RouteDebug.FileMover fileMover() {
+        return fileMover;
+    }
+
+    @Override
+    public RouteDebug.FileSizer fileSizer() {
+        return fileSizer;
+    }
+
+    MockRouteDebugDependencies routeDebugFile(String routeDebugFile) {
+        this.routeDebugFile = routeDebugFile;
+        return this;
+    }
+
+    MockRouteDebugDependencies addRouteFilter(String routeFilter) {
+        routeFilters.add(Pattern.compile(routeFilter));
+        return this;
+    }
+
+    MockRouteDebugDependencies sampleEvery(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+        return this;
+    }
+
+    MockRouteDebugDependencies bufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    MockRouteDebugDependencies maxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+
 }
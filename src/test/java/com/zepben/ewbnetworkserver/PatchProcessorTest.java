@@ -38,6 +38,7 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.InOrder;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -77,6 +78,9 @@ public class PatchProcessorTest {
         assertThat(patchResults.stream().flatMap(pr -> pr.errors().stream()).collect(Collectors.toList()), empty());
 
         validatePatchedNetwork(dependencies.services(), LargeNetworkTestData.patchedNetwork());
+
+        verify(dependencies.patchMetrics(), times(4)).addResult(any());
+        verify(dependencies.patchMetrics(), atLeastOnce()).addFeature(any());
     }
 
     @Test
@@ -123,6 +127,18 @@ public class PatchProcessorTest {
         verify(dependencies.httpClient(), never()).get(any(), any(), any(), any(), any());
     }
 
+    @Test
+    public void skipsPatchesOutsideTheNetworkPartition() {
+        PatchProcessor patchProcessor = createPatchProcessor(LargeNetworkTestData.networkToPatch(),
+            LargeNetworkTestData.allOperationsPatch(),
+            () -> doReturn(false).when(dependencies.networkPartition()).includes(any(), any()));
+
+        assertThat(patchProcessor.applyPatches(), empty());
+
+        verify(dependencies.networkPartition(), times(4)).includes(any(), eq(dependencies.services().networkService()));
+        verify(dependencies.patchMetrics(), never()).addResult(any());
+    }
+
     @Test
     public void usesDefaultValuesForOptionalPatchProperties() {
         PatchProcessor patchProcessor = createPatchProcessor(LargeNetworkTestData.networkToPatch(), NoOptionalValuesPatch.patch());
@@ -290,6 +306,37 @@ public class PatchProcessorTest {
         validatePatchedNetwork(dependencies.services(), CutConductorNetwork.patched());
     }
 
+    @Test
+    void notifiesNetworkChangeListeners() {
+        PatchProcessor patchProcessor = createPatchProcessor(CutConductorNetwork.toPatch(), CutConductorNetwork.patch());
+        AcLineSegment original = dependencies.services().networkService().get(AcLineSegment.class, "20000001");
+
+        patchProcessor.applyPatches();
+
+        InOrder inOrder = inOrder(dependencies.networkChangeListener());
+        inOrder.verify(dependencies.networkChangeListener()).onPatchesStarted();
+        inOrder.verify(dependencies.networkChangeListener()).onRemoved(original);
+        inOrder.verify(dependencies.networkChangeListener()).onAdded(dependencies.services().networkService().get(AcLineSegment.class, "20000001-1"));
+        inOrder.verify(dependencies.networkChangeListener()).onAdded(dependencies.services().networkService().get(AcLineSegment.class, "20000001-2"));
+        inOrder.verify(dependencies.networkChangeListener()).onPatchesFinished();
+    }
+
+    @Test
+    void notifiesNetworkChangeListenersOfReconnectionsAndFeeders() {
+        PatchProcessor patchProcessor = createPatchProcessor(LargeNetworkTestData.networkToPatch(), LargeNetworkTestData.allOperationsPatch());
+        ConductingEquipment terminated = dependencies.services().networkService().get(ConductingEquipment.class, "10000004");
+
+        patchProcessor.applyPatches();
+
+        verify(dependencies.networkChangeListener(), times(2)).onReconnected(terminated);
+        verify(dependencies.networkChangeListener()).onFeederChanged("f001");
+
+        doReturn(LargeNetworkTestData.removeTerminationsPatch()).when(dependencies.response()).getBody();
+        patchProcessor.applyPatches();
+
+        verify(dependencies.networkChangeListener(), times(4)).onReconnected(terminated);
+    }
+
     @Test
     void raisesWarningIfCantConnectTermination() {
         PatchProcessor patchProcessor = createPatchProcessor(ExtraTerminationNetwork.toPatch(), ExtraTerminationNetwork.patch());
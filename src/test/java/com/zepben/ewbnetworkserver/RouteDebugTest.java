@@ -18,18 +18,27 @@
 
 package com.zepben.ewbnetworkserver;
 
+import com.google.common.io.ByteStreams;
 import com.zepben.testutils.junit.SystemLogExtension;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.Mockito.*;
 
 public class RouteDebugTest {
@@ -38,40 +47,180 @@ public class RouteDebugTest {
     public SystemLogExtension systemOutRule = SystemLogExtension.SYSTEM_OUT.captureLog().muteOnSuccess();
 
     private final MockRouteDebugDependencies dependencies = new MockRouteDebugDependencies();
-    private final RouteDebug routeDebug = new RouteDebug(dependencies);
 
-    private final String debugFile = dependencies.routeDebugFile();
     private final RouteDebug.FileWriter fileWriter = dependencies.fileWriter();
-    private final RoutingContext context = mock(RoutingContext.class, RETURNS_DEEP_STUBS);
+    private final RouteDebug.FileMover fileMover = dependencies.fileMover();
+    private final RouteDebug.FileSizer fileSizer = dependencies.fileSizer();
+    private final RoutingContext context = mock(RoutingContext.class);
+    private final HttpServerRequest request = mock(HttpServerRequest.class);
+
+    @BeforeEach
+    public void beforeEach() {
+        doReturn(request).when(context).request();
+    }
 
     @Test
     public void savesRequestBody() throws IOException {
+        RouteDebug routeDebug = new RouteDebug(dependencies);
         assertThat(routeDebug.isDebugging(), equalTo(true));
 
         doReturn(null).when(context).getBody();
 
         routeDebug.saveRequestBody(context);
-        verify(fileWriter, never()).write(any(), any(), any());
+        routeDebug.flush();
+        verify(fileWriter, never()).write(any(), any(), any(), any());
 
         doReturn(Buffer.buffer("")).when(context).getBody();
 
         routeDebug.saveRequestBody(context);
-        verify(fileWriter, never()).write(any(), any(), any());
+        routeDebug.flush();
+        verify(fileWriter, never()).write(any(), any(), any(), any());
 
         doReturn(Buffer.buffer("test body")).when(context).getBody();
 
         routeDebug.saveRequestBody(context);
-        verify(fileWriter, times(1)).write(eq(Paths.get(debugFile)), any(), any());
+        verify(fileWriter, never()).write(any(), any(), any(), any());
+        verify(context, times(3)).next();
+
+        routeDebug.flush();
+        assertThat(writtenData(false), containsString("test body"));
+    }
+
+    @Test
+    public void writesInBatches() throws IOException {
+        RouteDebug routeDebug = new RouteDebug(dependencies);
+        saveBody(routeDebug, "/a", "body 1");
+        saveBody(routeDebug, "/b", "body 2");
+        saveBody(routeDebug, "/c", "body 3");
+
+        routeDebug.flush();
+        String data = writtenData(false);
+
+        assertThat(data, containsString("POST /a"));
+        assertThat(data, containsString("body 1"));
+        assertThat(data, containsString("body 2"));
+        assertThat(data, containsString("body 3"));
+    }
+
+    @Test
+    public void dropsWhenBufferIsFull() throws IOException {
+        RouteDebug routeDebug = new RouteDebug(dependencies.bufferSize(2));
+        saveBody(routeDebug, "/a", "body 1");
+        saveBody(routeDebug, "/b", "body 2");
+        saveBody(routeDebug, "/c", "body 3");
+
+        verify(context, times(3)).next();
+
+        routeDebug.flush();
+        String data = writtenData(false);
+
+        assertThat(data, containsString("Dropped 1 request bodies as the route debug buffer was full."));
+        assertThat(data, containsString("body 2"));
+        assertThat(data, not(containsString("body 3")));
+    }
+
+    @Test
+    public void filtersAndSamplesRoutes() throws IOException {
+        RouteDebug routeDebug = new RouteDebug(dependencies.addRouteFilter("^/ewb/network/").sampleEvery(2));
+        saveBody(routeDebug, "/ewb/network/api/v1/a", "body 1");
+        saveBody(routeDebug, "/other", "body 2");
+        saveBody(routeDebug, "/ewb/network/api/v1/b", "body 3");
+        saveBody(routeDebug, "/ewb/network/api/v1/c", "body 4");
+
+        routeDebug.flush();
+        String data = writtenData(false);
+
+        assertThat(data, containsString("body 1"));
+        assertThat(data, not(containsString("body 2")));
+        assertThat(data, not(containsString("body 3")));
+        assertThat(data, containsString("body 4"));
+    }
+
+    @Test
+    public void rotatesFiles() throws IOException {
+        RouteDebug routeDebug = new RouteDebug(dependencies.maxFileSize(10));
+        saveBody(routeDebug, "/a", "body 1");
+        routeDebug.flush();
+
+        verify(fileMover, never()).move(any(), any());
+
+        saveBody(routeDebug, "/b", "body 2");
+        routeDebug.flush();
+
+        verify(fileMover, times(1)).move(Paths.get("body-debug.json.1"), Paths.get("body-debug.json.2"));
+        verify(fileMover, times(1)).move(Paths.get("body-debug.json"), Paths.get("body-debug.json.1"));
+        verify(fileWriter, times(2)).write(eq(Paths.get("body-debug.json")), any(), any(), any());
+    }
+
+    @Test
+    public void rotatesExistingFiles() throws IOException {
+        doReturn(8L).when(fileSizer).size(Paths.get("body-debug.json"));
+
+        RouteDebug routeDebug = new RouteDebug(dependencies.maxFileSize(10));
+        routeDebug.start();
+        saveBody(routeDebug, "/a", "body 1");
+        routeDebug.stop();
+
+        verify(fileMover, times(1)).move(Paths.get("body-debug.json"), Paths.get("body-debug.json.1"));
+        assertThat(writtenData(false), containsString("body 1"));
+    }
+
+    @Test
+    public void compressesGzipFiles() throws IOException {
+        RouteDebug routeDebug = new RouteDebug(dependencies.routeDebugFile("body-debug.json.gz").maxFileSize(10));
+        saveBody(routeDebug, "/a", "body 1");
+        routeDebug.flush();
+
+        assertThat(writtenData(true), containsString("body 1"));
+
+        saveBody(routeDebug, "/b", "body 2");
+        routeDebug.flush();
+
+        verify(fileMover, times(1)).move(Paths.get("body-debug.json.gz"), Paths.get("body-debug.json.1.gz"));
+    }
+
+    @Test
+    public void flushesOnStop() throws IOException {
+        RouteDebug routeDebug = new RouteDebug(dependencies);
+        routeDebug.start();
+        saveBody(routeDebug, "/a", "body 1");
+        routeDebug.stop();
+
+        assertThat(writtenData(false), containsString("body 1"));
     }
 
     @Test
     public void handlesWriteExceptions() throws Exception {
-        doThrow(IOException.class).when(fileWriter).write(any(), any(), any());
+        RouteDebug routeDebug = new RouteDebug(dependencies);
+        doThrow(IOException.class).when(fileWriter).write(any(), any(), any(), any());
         doReturn(Buffer.buffer("test body")).when(context).getBody();
 
         routeDebug.saveRequestBody(context);
+        routeDebug.flush();
 
         assertThat(systemOutRule.getLog(), containsString("Failed to save route body to debug file."));
     }
 
+    private void saveBody(RouteDebug routeDebug, String path, String body) {
+        doReturn(HttpMethod.POST).when(request).method();
+        doReturn(path).when(request).path();
+        doReturn(path).when(request).uri();
+        doReturn(Buffer.buffer(body)).when(context).getBody();
+
+        routeDebug.saveRequestBody(context);
+    }
+
+    private String writtenData(boolean compressed) throws IOException {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(fileWriter, atLeastOnce()).write(any(), captor.capture(), any(), any());
+
+        byte[] bytes = captor.getValue();
+        if (compressed) {
+            try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                bytes = ByteStreams.toByteArray(inputStream);
+            }
+        }
+        return new String(bytes, UTF_8);
+    }
+
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver;
+
+import com.zepben.annotations.EverythingIsNonnullByDefault;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+// Serves a handler, usually a router, on a local port so routes can be tested over HTTP, and sends requests to it.
+@EverythingIsNonnullByDefault
+public class TestHttpServer {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final HttpClient client;
+    private final int port;
+
+    public static TestHttpServer start(Vertx vertx, Handler<HttpServerRequest> handler) throws Exception {
+        CompletableFuture<HttpServer> started = new CompletableFuture<>();
+        vertx.createHttpServer().requestHandler(handler).listen(0, "localhost", event -> {
+            if (event.succeeded())
+                started.complete(event.result());
+            else
+                started.completeExceptionally(event.cause());
+        });
+
+        return new TestHttpServer(vertx.createHttpClient(), started.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).actualPort());
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public Response get(String uri) throws Exception {
+        return request(HttpMethod.GET, uri, Collections.emptyMap(), null);
+    }
+
+    public Response get(String uri, Map<String, String> headers) throws Exception {
+        return request(HttpMethod.GET, uri, headers, null);
+    }
+
+    public Response request(HttpMethod method, String uri) throws Exception {
+        return request(method, uri, Collections.emptyMap(), null);
+    }
+
+    public Response request(HttpMethod method, String uri, Map<String, String> headers, @Nullable String body) throws Exception {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        HttpClientRequest request = client.request(method, new RequestOptions().setHost("localhost").setPort(port).setURI(uri))
+            .handler(clientResponse -> clientResponse
+                .exceptionHandler(response::completeExceptionally)
+                .bodyHandler(buffer -> response.complete(new Response(clientResponse.statusCode(), clientResponse.headers(), buffer))))
+            .exceptionHandler(response::completeExceptionally);
+        headers.forEach(request::putHeader);
+
+        if (body != null)
+            request.end(Buffer.buffer(body));
+        else
+            request.end();
+
+        return response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private TestHttpServer(HttpClient client, int port) {
+        this.client = client;
+        this.port = port;
+    }
+
+    @EverythingIsNonnullByDefault
+    public static class Response {
+
+        private final int statusCode;
+        private final MultiMap headers;
+        private final Buffer body;
+
+        private Response(int statusCode, MultiMap headers, Buffer body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int statusCode() {
+            return statusCode;
+        }
+
+        @Nullable
+        public String header(String name) {
+            return headers.get(name);
+        }
+
+        public byte[] body() {
+            return body.getBytes();
+        }
+
+        public String text(int expectedStatus) {
+            assertThat(statusCode, equalTo(expectedStatus));
+            return body.toString();
+        }
+
+        public JsonObject json(int expectedStatus) {
+            assertThat(statusCode, equalTo(expectedStatus));
+            return body.toJsonObject();
+        }
+
+    }
+
+}
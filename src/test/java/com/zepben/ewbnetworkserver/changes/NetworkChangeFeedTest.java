@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.changes;
+
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class NetworkChangeFeedTest {
+
+    private final NetworkChangeFeed feed = new NetworkChangeFeed(3, 100);
+    private final List<NetworkChange> received = new ArrayList<>();
+
+    @Test
+    public void publishesChangesInSequence() {
+        feed.onReloaded();
+        feed.onAdded(new AcLineSegment("line"));
+        feed.onRemoved(new Breaker("breaker"));
+
+        feed.subscribe(100, received::add);
+
+        assertThat(feed.sequence(), equalTo(103L));
+        assertThat(received.stream().map(NetworkChange::sequence).collect(Collectors.toList()), contains(101L, 102L, 103L));
+        assertThat(received.stream().map(NetworkChange::type).collect(Collectors.toList()),
+            contains(NetworkChange.Type.RELOADED, NetworkChange.Type.ADDED, NetworkChange.Type.REMOVED));
+        assertThat(received.get(1).mRID(), equalTo("line"));
+        assertThat(received.get(1).objectType(), equalTo("AcLineSegment"));
+        assertThat(received.get(0).toJson().encode(), equalTo("{\"sequence\":101,\"type\":\"RELOADED\"}"));
+        assertThat(received.get(2).toJson().encode(), equalTo("{\"sequence\":103,\"type\":\"REMOVED\",\"mRID\":\"breaker\",\"objectType\":\"Breaker\"}"));
+    }
+
+    @Test
+    public void resumesAfterASequence() {
+        feed.onReconnected(new Breaker("breaker"));
+        feed.onFeederChanged("feeder");
+
+        feed.subscribe(101, received::add);
+        assertThat(received, hasSize(1));
+        assertThat(received.get(0).type(), equalTo(NetworkChange.Type.FEEDER_CHANGED));
+        assertThat(received.get(0).mRID(), equalTo("feeder"));
+        assertThat(received.get(0).objectType(), equalTo("Feeder"));
+
+        received.clear();
+        feed.subscribe(102, received::add);
+        assertThat(received, empty());
+    }
+
+    @Test
+    public void resynchronisesIfChangesAreNoLongerKept() {
+        for (int i = 0; i < 5; ++i)
+            feed.onAdded(new AcLineSegment("line" + i));
+
+        assertThat(feed.size(), equalTo(3));
+
+        feed.subscribe(102, received::add);
+        assertThat(received.stream().map(NetworkChange::sequence).collect(Collectors.toList()), contains(103L, 104L, 105L));
+
+        validateResync(101);
+        validateResync(0);
+        validateResync(106);
+    }
+
+    @Test
+    public void passesOnNewChangesUntilUnsubscribed() {
+        Runnable unsubscribe = feed.subscribe(100, received::add);
+
+        feed.onAdded(new AcLineSegment("line1"));
+        unsubscribe.run();
+        feed.onAdded(new AcLineSegment("line2"));
+
+        assertThat(received.stream().map(NetworkChange::mRID).collect(Collectors.toList()), contains("line1"));
+    }
+
+    @Test
+    public void sequencesStartAfterThoseOfAPreviousServer() {
+        long before = System.currentTimeMillis() * 1000;
+        assertThat(new NetworkChangeFeed(1).sequence(), greaterThanOrEqualTo(before));
+    }
+
+    private void validateResync(long fromSequence) {
+        received.clear();
+        feed.subscribe(fromSequence, received::add);
+
+        assertThat(received, hasSize(1));
+        assertThat(received.get(0).type(), equalTo(NetworkChange.Type.RESYNC));
+        assertThat(received.get(0).sequence(), equalTo(feed.sequence()));
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.changes;
+
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class NetworkChangeServiceTest {
+
+    private final NetworkChangeFeed feed = new NetworkChangeFeed(10, 100);
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    public void before() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(new NetworkChangeService(feed, 3)).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @AfterEach
+    public void after() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void streamsChangesAfterTheRequestedSequence() {
+        feed.onAdded(new AcLineSegment("line1"));
+        feed.onRemoved(new AcLineSegment("line1"));
+
+        Iterator<JsonObject> changes = streamChanges(new JsonObject().put("fromSequence", 101));
+
+        assertThat(changes.next().encode(), equalTo("{\"sequence\":102,\"type\":\"REMOVED\",\"mRID\":\"line1\",\"objectType\":\"AcLineSegment\"}"));
+
+        feed.onFeederChanged("feeder");
+        assertThat(changes.next().encode(), equalTo("{\"sequence\":103,\"type\":\"FEEDER_CHANGED\",\"mRID\":\"feeder\",\"objectType\":\"Feeder\"}"));
+    }
+
+    @Test
+    public void tellsNewClientsToResynchronise() {
+        feed.onAdded(new AcLineSegment("line1"));
+
+        Iterator<JsonObject> changes = streamChanges(new JsonObject());
+
+        assertThat(changes.next().encode(), equalTo("{\"sequence\":101,\"type\":\"RESYNC\"}"));
+    }
+
+    @Test
+    public void rejectsInvalidSequences() {
+        Iterator<JsonObject> changes = streamChanges(new JsonObject().put("fromSequence", "abc"));
+
+        expect(changes::next).toThrow(StatusRuntimeException.class).withMessage("INVALID_ARGUMENT: fromSequence must be a number.");
+    }
+
+    @Test
+    public void closesStreamsThatFallTooFarBehind() {
+        Iterator<JsonObject> changes = streamChanges(new JsonObject().put("fromSequence", 100));
+        for (int i = 0; i < 10; ++i)
+            feed.onAdded(new AcLineSegment("line" + i));
+
+        expect(() -> {
+            while (changes.hasNext())
+                changes.next();
+        }).toThrow(StatusRuntimeException.class)
+            .withMessage("RESOURCE_EXHAUSTED: Too far behind the change feed, resume from the last change received.");
+    }
+
+    private Iterator<JsonObject> streamChanges(JsonObject request) {
+        return ClientCalls.blockingServerStreamingCall(channel, NetworkChangeService.STREAM_CHANGES, CallOptions.DEFAULT, request);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CompactIdCorrelatorTest {
+
+    private final CompactIdCorrelator idCorrelator = new CompactIdCorrelator();
+
+    @Test
+    public void looksUpBothDirections() {
+        idCorrelator.addCorrelation("core1", "GIS", "gis1");
+        idCorrelator.addCorrelation("core2", "GIS", "gis1");
+        idCorrelator.addCorrelation("core2", "GIS", "gis2");
+        idCorrelator.seal();
+
+        assertThat(idCorrelator.coreIds("GIS", "gis1"), containsInAnyOrder("core1", "core2"));
+        assertThat(idCorrelator.coreIds("GIS", "gis2"), contains("core2"));
+        assertThat(idCorrelator.systemIds("GIS", "core1"), contains("gis1"));
+        assertThat(idCorrelator.systemIds("GIS", "core2"), containsInAnyOrder("gis1", "gis2"));
+
+        assertThat(idCorrelator.coreIds("GIS", "core1"), empty());
+        assertThat(idCorrelator.coreIds("GIS", "unknown"), empty());
+        assertThat(idCorrelator.coreIds("SCADA", "gis1"), empty());
+    }
+
+    @Test
+    public void keepsSystemTagsSeparate() {
+        idCorrelator.addCorrelation("core1", "GIS", "id1");
+        idCorrelator.addCorrelation("core2", "SCADA", "id1");
+        idCorrelator.addCorrelation("core1", "SCADA", "scada1");
+        idCorrelator.seal();
+
+        assertThat(idCorrelator.systemTags(), equalTo(new HashSet<>(Arrays.asList("GIS", "SCADA"))));
+        assertThat(idCorrelator.coreIds("GIS", "id1"), contains("core1"));
+        assertThat(idCorrelator.coreIds("SCADA", "id1"), contains("core2"));
+        assertThat(idCorrelator.systemIds("GIS", "core1"), contains("id1"));
+        assertThat(idCorrelator.systemIds("SCADA", "core1"), contains("scada1"));
+
+        // Each id is only stored once, no matter how many correlations use it.
+        assertThat(idCorrelator.numIds(), equalTo(4));
+    }
+
+    @Test
+    public void ignoresDuplicates() {
+        idCorrelator.addCorrelation("core1", "GIS", "gis1");
+        idCorrelator.addCorrelation("core1", "GIS", "gis1");
+        idCorrelator.addCorrelation("core1", "GIS", "gis2");
+        idCorrelator.seal();
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("GIS", 2);
+
+        assertThat(idCorrelator.numCorrelations(), equalTo(expected));
+        assertThat(idCorrelator.systemIds("GIS", "core1"), containsInAnyOrder("gis1", "gis2"));
+    }
+
+    @Test
+    public void isImmutableOnceSealed() {
+        assertThat(idCorrelator.addCorrelation("core1", "GIS", "gis1"), equalTo(true));
+        assertThat(idCorrelator.isSealed(), equalTo(false));
+
+        idCorrelator.seal();
+        assertThat(idCorrelator.isSealed(), equalTo(true));
+        assertThat(idCorrelator.addCorrelation("core2", "GIS", "gis2"), equalTo(false));
+
+        // Sealing again has no effect.
+        idCorrelator.seal();
+        assertThat(idCorrelator.coreIds("GIS", "gis1"), contains("core1"));
+        assertThat(idCorrelator.coreIds("GIS", "gis2"), empty());
+    }
+
+    @Test
+    public void isEmptyUntilSealed() {
+        idCorrelator.addCorrelation("core1", "GIS", "gis1");
+
+        assertThat(idCorrelator.systemTags(), empty());
+        assertThat(idCorrelator.coreIds("GIS", "gis1"), empty());
+        assertThat(idCorrelator.numCorrelations(), equalTo(Collections.emptyMap()));
+    }
+
+    @Test
+    public void handlesManyCorrelations() {
+        for (int i = 0; i < 10000; ++i)
+            idCorrelator.addCorrelation("core" + i, "GIS", "gis" + (i / 2));
+        idCorrelator.seal();
+
+        assertThat(idCorrelator.numIds(), equalTo(15000));
+        assertThat(idCorrelator.coreIds("GIS", "gis1234"), containsInAnyOrder("core2468", "core2469"));
+        assertThat(idCorrelator.systemIds("GIS", "core9999"), contains("gis4999"));
+        assertThat(idCorrelator.numBytes(), greaterThan(0L));
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CorrelationsCacheFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final CorrelationsCacheFile correlationsCacheFile = new CorrelationsCacheFile();
+
+    @Test
+    public void isWrittenNextToTheCorrelationsFile() {
+        assertThat(correlationsCacheFile.path(tempDir.resolve("2020-01-01-id-correlations.json")),
+            equalTo(tempDir.resolve("2020-01-01-id-correlations.json" + CorrelationsCacheFile.SUFFIX)));
+    }
+
+    @Test
+    public void roundTrips() throws Exception {
+        Path correlationsFile = correlationsFile();
+        CompactIdCorrelator original = new CompactIdCorrelator();
+        original.addCorrelation("core1", "GIS", "gis1");
+        original.addCorrelation("core2", "GIS", "gis1");
+        original.addCorrelation("core1", "SCADA", "\u6771");
+        original.addCorrelation("core3", "ABC", "a");
+        original.seal();
+
+        assertThat(correlationsCacheFile.write(correlationsFile, original), equalTo(true));
+
+        CompactIdCorrelator loaded = new CompactIdCorrelator();
+        assertThat(correlationsCacheFile.read(correlationsFile, loaded), equalTo(true));
+
+        assertThat(loaded.isSealed(), equalTo(true));
+        assertThat(loaded.numCorrelations(), equalTo(original.numCorrelations()));
+        assertThat(loaded.numIds(), equalTo(original.numIds()));
+        assertThat(loaded.coreIds("GIS", "gis1"), containsInAnyOrder("core1", "core2"));
+        assertThat(loaded.coreIds("SCADA", "\u6771"), contains("core1"));
+        assertThat(loaded.systemIds("ABC", "core3"), contains("a"));
+        assertThat(loaded.systemIds("GIS", "core3"), empty());
+    }
+
+    @Test
+    public void roundTripsEmptyCorrelations() throws Exception {
+        Path correlationsFile = correlationsFile();
+        CompactIdCorrelator original = new CompactIdCorrelator();
+        original.seal();
+
+        assertThat(correlationsCacheFile.write(correlationsFile, original), equalTo(true));
+
+        CompactIdCorrelator loaded = new CompactIdCorrelator();
+        assertThat(correlationsCacheFile.read(correlationsFile, loaded), equalTo(true));
+        assertThat(loaded.systemTags(), empty());
+    }
+
+    @Test
+    public void ignoresMissingCaches() throws Exception {
+        CompactIdCorrelator idCorrelator = new CompactIdCorrelator();
+
+        assertThat(correlationsCacheFile.read(correlationsFile(), idCorrelator), equalTo(false));
+        assertThat(idCorrelator.isSealed(), equalTo(false));
+    }
+
+    @Test
+    public void ignoresStaleCaches() throws Exception {
+        Path correlationsFile = correlationsFile();
+        CompactIdCorrelator original = new CompactIdCorrelator();
+        original.addCorrelation("core1", "GIS", "gis1");
+        original.seal();
+        correlationsCacheFile.write(correlationsFile, original);
+
+        Files.setLastModifiedTime(correlationsFile, FileTime.fromMillis(Files.getLastModifiedTime(correlationsFile).toMillis() + 60000));
+
+        CompactIdCorrelator idCorrelator = new CompactIdCorrelator();
+        assertThat(correlationsCacheFile.read(correlationsFile, idCorrelator), equalTo(false));
+        assertThat(idCorrelator.isSealed(), equalTo(false));
+    }
+
+    @Test
+    public void ignoresCorruptCaches() throws Exception {
+        Path correlationsFile = correlationsFile();
+        CompactIdCorrelator original = new CompactIdCorrelator();
+        original.addCorrelation("core1", "GIS", "gis1");
+        original.seal();
+        correlationsCacheFile.write(correlationsFile, original);
+
+        Path cacheFile = correlationsCacheFile.path(correlationsFile);
+        byte[] bytes = Files.readAllBytes(cacheFile);
+
+        Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThat(correlationsCacheFile.read(correlationsFile, new CompactIdCorrelator()), equalTo(false));
+
+        Files.write(cacheFile, "not a cache".getBytes(StandardCharsets.UTF_8));
+        assertThat(correlationsCacheFile.read(correlationsFile, new CompactIdCorrelator()), equalTo(false));
+    }
+
+    @Test
+    public void reportsWriteFailures() {
+        CompactIdCorrelator idCorrelator = new CompactIdCorrelator();
+        idCorrelator.seal();
+
+        assertThat(correlationsCacheFile.write(tempDir.resolve("missing").resolve("correlations.json"), idCorrelator), equalTo(false));
+    }
+
+    private Path correlationsFile() throws Exception {
+        Path path = tempDir.resolve("id-correlations.json");
+        Files.write(path, "[]".getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+}
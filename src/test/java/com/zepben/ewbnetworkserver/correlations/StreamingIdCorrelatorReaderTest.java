@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import com.zepben.idcorrelator.io.FailedCorrelationInfo;
+import com.zepben.idcorrelator.io.IdCorrelatorReadException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StreamingIdCorrelatorReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final CompactIdCorrelator idCorrelator = new CompactIdCorrelator();
+
+    @Test
+    public void readsCorrelationRecords() throws Exception {
+        Path path = write("{\"correlations\": [" +
+            "{\"coreId\": \"core1\", \"systemTag\": \"GIS\", \"systemId\": \"gis1\"}," +
+            "{\"systemId\": \"scada1\", \"other\": [1, 2, {\"x\": null}], \"systemTag\": \"SCADA\", \"coreId\": \"core1\"}" +
+            "]}");
+
+        assertThat(new StreamingIdCorrelatorReader(path).read(idCorrelator), empty());
+        idCorrelator.seal();
+
+        assertThat(idCorrelator.systemIds("GIS", "core1"), contains("gis1"));
+        assertThat(idCorrelator.systemIds("SCADA", "core1"), contains("scada1"));
+    }
+
+    @Test
+    public void usesTheEnclosingFieldAsTheSystemTag() throws Exception {
+        Path path = write("{\"GIS\": [{\"coreId\": \"core1\", \"systemId\": \"gis1\"}], \"SCADA\": {\"coreId\": \"core2\", \"systemId\": \"scada1\"}}");
+
+        new StreamingIdCorrelatorReader(path).read(idCorrelator);
+        idCorrelator.seal();
+
+        assertThat(idCorrelator.coreIds("GIS", "gis1"), contains("core1"));
+        assertThat(idCorrelator.coreIds("SCADA", "scada1"), contains("core2"));
+    }
+
+    @Test
+    public void reportsIncompleteRecords() throws Exception {
+        Path path = write("[{\"coreId\": \"core1\", \"systemId\": \"gis1\"}, {\"coreId\": \"core2\", \"systemTag\": \"GIS\", \"systemId\": 5}, {\"other\": 1}]");
+
+        List<FailedCorrelationInfo> failures = new ArrayList<>(new StreamingIdCorrelatorReader(path).read(idCorrelator));
+        idCorrelator.seal();
+
+        assertThat(idCorrelator.systemTags(), empty());
+        assertThat(failures.size(), equalTo(2));
+        assertThat(failures.get(0).coreId(), equalTo("core1"));
+        assertThat(failures.get(0).systemTag(), equalTo(""));
+        assertThat(failures.get(1).coreId(), equalTo("core2"));
+        assertThat(failures.get(1).systemId(), equalTo(""));
+        assertThat(failures.get(1).details(), containsString("expected string coreId, systemId and systemTag"));
+    }
+
+    @Test
+    public void reportsInvalidFiles() throws Exception {
+        assertThrows(IdCorrelatorReadException.class, () -> new StreamingIdCorrelatorReader(write("[{\"coreId\": ")).read(idCorrelator));
+        assertThrows(IdCorrelatorReadException.class, () -> new StreamingIdCorrelatorReader(write("")).read(idCorrelator));
+        assertThrows(IdCorrelatorReadException.class, () -> new StreamingIdCorrelatorReader(tempDir.resolve("missing.json")).read(idCorrelator));
+    }
+
+    @Test
+    public void reportsCorrelationsThatCantBeAdded() throws Exception {
+        idCorrelator.seal();
+
+        Path path = write("[{\"coreId\": \"core1\", \"systemTag\": \"GIS\", \"systemId\": \"gis1\"}]");
+        IdCorrelatorReadException e = assertThrows(IdCorrelatorReadException.class, () -> new StreamingIdCorrelatorReader(path).read(idCorrelator));
+
+        assertThat(e.getMessage(), containsString("coreId: core1"));
+    }
+
+    private Path write(String json) throws Exception {
+        Path path = Files.createTempFile(tempDir, "correlations", ".json");
+        Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.correlations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void findsStringsInSortedOrder() {
+        StringDictionary dictionary = new StringDictionary(Arrays.asList("c", "a", "bb", "b"));
+
+        assertThat(dictionary.size(), equalTo(4));
+        assertThat(dictionary.get(0), equalTo("a"));
+        assertThat(dictionary.get(1), equalTo("b"));
+        assertThat(dictionary.get(2), equalTo("bb"));
+        assertThat(dictionary.get(3), equalTo("c"));
+
+        assertThat(dictionary.indexOf("a"), equalTo(0));
+        assertThat(dictionary.indexOf("bb"), equalTo(2));
+        assertThat(dictionary.indexOf("c"), equalTo(3));
+        assertThat(dictionary.indexOf("ba"), equalTo(-1));
+        assertThat(dictionary.indexOf(""), equalTo(-1));
+        assertThat(dictionary.indexOf("d"), equalTo(-1));
+    }
+
+    @Test
+    public void ordersByCodePoint() {
+        StringDictionary dictionary = new StringDictionary(Arrays.asList("\u00e9", "z", "\u6771", "A"));
+
+        assertThat(dictionary.get(0), equalTo("A"));
+        assertThat(dictionary.get(1), equalTo("z"));
+        assertThat(dictionary.get(2), equalTo("\u00e9"));
+        assertThat(dictionary.get(3), equalTo("\u6771"));
+        assertThat(dictionary.indexOf("\u6771"), equalTo(3));
+    }
+
+    @Test
+    public void canBeEmpty() {
+        StringDictionary dictionary = new StringDictionary(Collections.emptyList());
+
+        assertThat(dictionary.size(), equalTo(0));
+        assertThat(dictionary.indexOf("a"), equalTo(-1));
+    }
+
+}
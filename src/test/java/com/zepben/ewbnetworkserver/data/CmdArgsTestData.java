@@ -30,16 +30,46 @@ public class CmdArgsTestData {
             "-e", "ewb/root",
             "-c", "2018-12-03",
             "-d", "100",
-            "-pa", "https://pathserver:8080/api?toekn=asfasfsaf",
+            "-hd", "3",
+            "-dc", "4",
+            "-f", "feeder1", "feeder2",
+            "-z", "zone1",
+            "-m", "north", "models/north",
+            "-m", "south", "models/south",
+            "-pa", "https://pathserver:8080/api/{model}?toekn=asfasfsaf",
             "-t", "120",
             "-auth", "type auth",
             "-s3", "bucket name",
             "-o", "output.json",
+            "-pm", "patched.sqlite",
             "-cors", ".*",
             "-debug", "debug/file.ext",
+            "-dbgf", "^/ewb/network/", "/patch",
+            "-dbgs", "10",
+            "-dbgb", "500",
+            "-dbgm", "20",
+            "-dbgn", "3",
             "-gp", "8081",
             "-gt", "tls.crt", "tls.key",
-            "-ga", "REQUIRE", "trust.ca");
+            "-ga", "REQUIRE", "trust.ca",
+            "-ge", "16",
+            "-gbt", "1",
+            "-gwt", "8",
+            "-gms", "67108864",
+            "-gfw", "8388608",
+            "-gk", "60", "10",
+            "-gmc", "32",
+            "-gcf", "5000",
+            "-grc", "64",
+            "-gsc", "500",
+            "-ht", "http.crt", "http.key",
+            "-h2s", "50",
+            "-h2w", "1048576",
+            "-h2cw", "4194304",
+            "-tc", "64",
+            "-tz", "8",
+            "-tf", "14",
+            "-tn", "2");
     }
 
     public static String[] minimumArgs() {
@@ -48,4 +78,10 @@ public class CmdArgsTestData {
             "-gp", "8081");
     }
 
+    public static String[] batchArgs() {
+        return arrayOf("-rm", "BATCH",
+            "-e", "ewb/root",
+            "-pm", "patched.sqlite");
+    }
+
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.database;
+
+import com.zepben.ewbnetworkserver.Services;
+import com.zepben.testutils.junit.SystemLogExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NetworkDatabaseWriterTest {
+
+    @RegisterExtension
+    public SystemLogExtension systemOutRule = SystemLogExtension.SYSTEM_OUT.captureLog().muteOnSuccess();
+
+    @TempDir
+    Path tempDir;
+
+    private final Services services = new Services();
+
+    @Test
+    public void batchesInsertsInASingleTransaction() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("batched.sqlite");
+        try (Connection connection = BatchingConnection.wrap(DriverManager.getConnection(url), 10)) {
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE items (id INTEGER)");
+            }
+
+            PreparedStatement insert = connection.prepareStatement("INSERT INTO items VALUES (?)");
+            for (int i = 0; i < 15; ++i) {
+                insert.setInt(1, i);
+                assertThat(insert.executeUpdate(), equalTo(1));
+                assertThat(count(connection), equalTo(i < 9 ? 0 : 10));
+            }
+
+            try (Connection other = DriverManager.getConnection(url)) {
+                assertThat(tableExists(other), equalTo(false));
+            }
+
+            connection.commit();
+            assertThat(count(connection), equalTo(15));
+        }
+
+        try (Connection other = DriverManager.getConnection(url)) {
+            assertThat(count(other), equalTo(15));
+        }
+    }
+
+    @Test
+    public void logsTheRowThatFailsInABatch() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("failing.sqlite");
+        try (Connection connection = BatchingConnection.wrap(DriverManager.getConnection(url), 10)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE items (id INTEGER UNIQUE)");
+            }
+
+            PreparedStatement insert = connection.prepareStatement("INSERT INTO items VALUES (?)");
+            for (int i = 0; i < 15; ++i) {
+                insert.setInt(1, i == 12 ? 0 : i);
+                assertThat(insert.executeUpdate(), equalTo(1));
+            }
+
+            assertThrows(SQLException.class, connection::commit);
+            assertThat(systemOutRule.getLog(), containsString("Failed to write rows 11 to 15 of items in a batch of 5"));
+        }
+    }
+
+    @Test
+    public void replacesTheDatabaseOnceItIsWritten() throws Exception {
+        Path databaseFile = tempDir.resolve("patched.sqlite");
+        Files.write(databaseFile, "old".getBytes());
+
+        NetworkDatabaseWriter writer = new NetworkDatabaseWriter(databaseFile.toString(), (file, saved) -> {
+            assertThat(file, equalTo(tempDir.resolve("patched.sqlite.tmp")));
+            assertThat(saved, equalTo(services));
+            Files.write(file, "new".getBytes());
+            return true;
+        });
+
+        assertThat(writer.isEnabled(), equalTo(true));
+        assertThat(writer.save(services), equalTo(true));
+        assertThat(new String(Files.readAllBytes(databaseFile)), equalTo("new"));
+        assertThat(Files.exists(tempDir.resolve("patched.sqlite.tmp")), equalTo(false));
+    }
+
+    @Test
+    public void keepsTheExistingDatabaseOnFailure() throws Exception {
+        Path databaseFile = tempDir.resolve("patched.sqlite");
+        Files.write(databaseFile, "old".getBytes());
+
+        NetworkDatabaseWriter failing = new NetworkDatabaseWriter(databaseFile.toString(), (file, saved) -> {
+            Files.write(file, "partial".getBytes());
+            return false;
+        });
+        assertThat(failing.save(services), equalTo(false));
+        assertThat(systemOutRule.getLog(), containsString("Failed to write the network database '" + databaseFile + "'."));
+
+        NetworkDatabaseWriter throwing = new NetworkDatabaseWriter(databaseFile.toString(), (file, saved) -> {
+            Files.write(file, "partial".getBytes());
+            throw new SQLException("test message");
+        });
+        assertThat(throwing.save(services), equalTo(false));
+        assertThat(systemOutRule.getLog(), containsString("Failed to write the network database '" + databaseFile + "': test message"));
+
+        assertThat(new String(Files.readAllBytes(databaseFile)), equalTo("old"));
+        assertThat(Files.exists(tempDir.resolve("patched.sqlite.tmp")), equalTo(false));
+    }
+
+    @Test
+    public void canBeDisabled() {
+        assertThat(new NetworkDatabaseWriter("").isEnabled(), equalTo(false));
+    }
+
+    private int count(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM items")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private boolean tableExists(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name = 'items'")) {
+            resultSet.next();
+            return resultSet.getInt(1) > 0;
+        }
+    }
+
+}
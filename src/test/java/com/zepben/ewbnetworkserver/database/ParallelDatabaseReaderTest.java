@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.database;
+
+import com.zepben.evolve.database.sqlite.tables.TableVersion;
+import com.zepben.ewbnetworkserver.database.ParallelDatabaseReader.TableGroup;
+import com.zepben.ewbnetworkserver.database.ParallelDatabaseReader.TableReader;
+import com.zepben.testutils.junit.SystemLogExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ParallelDatabaseReaderTest {
+
+    @RegisterExtension
+    public SystemLogExtension systemOutRule = SystemLogExtension.SYSTEM_OUT.captureLog().muteOnSuccess();
+
+    @TempDir
+    Path tempDir;
+
+    private Path databaseFile;
+
+    @BeforeEach
+    public void before() throws Exception {
+        databaseFile = tempDir.resolve("network-model.sqlite");
+        createDatabase(new TableVersion().getSUPPORTED_VERSION());
+    }
+
+    @Test
+    public void readsTableGroupsInParallel() {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Set<Connection> connections = ConcurrentHashMap.newKeySet();
+        AtomicBoolean postLoaded = new AtomicBoolean();
+
+        TableReader reader = connection -> {
+            threads.add(Thread.currentThread().getName());
+            connections.add(connection);
+
+            // Both groups have to be read at the same time to get past the barrier.
+            barrier.await(5, TimeUnit.SECONDS);
+            return countRows(connection, "a") == 2;
+        };
+
+        List<TableGroup> tableGroups = Arrays.asList(new TableGroup("first", reader), new TableGroup("second", reader));
+        boolean status = new ParallelDatabaseReader(databaseFile, 2).load(tableGroups, () -> {
+            assertThat(threads, hasSize(2));
+            postLoaded.set(true);
+        });
+
+        assertThat(status, equalTo(true));
+        assertThat(postLoaded.get(), equalTo(true));
+        assertThat(connections, hasSize(2));
+    }
+
+    @Test
+    public void usesReadOnlyConnections() {
+        AtomicBoolean writeFailed = new AtomicBoolean();
+
+        new ParallelDatabaseReader(databaseFile, 1).load(Collections.singletonList(new TableGroup("write", connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("INSERT INTO a VALUES (3)");
+            } catch (SQLException e) {
+                writeFailed.set(true);
+            }
+            return true;
+        })), () -> {
+        });
+
+        assertThat(writeFailed.get(), equalTo(true));
+    }
+
+    @Test
+    public void handlesTableGroupFailures() {
+        AtomicBoolean postLoaded = new AtomicBoolean();
+        AtomicBoolean otherRead = new AtomicBoolean();
+
+        List<TableGroup> tableGroups = Arrays.asList(
+            new TableGroup("failing", connection -> false),
+            new TableGroup("other", connection -> {
+                otherRead.set(true);
+                return true;
+            }));
+
+        assertThat(new ParallelDatabaseReader(databaseFile, 1).load(tableGroups, () -> postLoaded.set(true)), equalTo(false));
+        assertThat(otherRead.get(), equalTo(true));
+        assertThat(postLoaded.get(), equalTo(false));
+        assertThat(systemOutRule.getLog(), containsString("Failed to read the failing tables."));
+    }
+
+    @Test
+    public void handlesTableGroupExceptions() {
+        AtomicBoolean postLoaded = new AtomicBoolean();
+
+        List<TableGroup> tableGroups = Collections.singletonList(new TableGroup("throwing", connection -> countRows(connection, "missing") > 0));
+
+        assertThat(new ParallelDatabaseReader(databaseFile, 2).load(tableGroups, () -> postLoaded.set(true)), equalTo(false));
+        assertThat(postLoaded.get(), equalTo(false));
+        assertThat(systemOutRule.getLog(), containsString("Exception caught while reading the network database"));
+    }
+
+    @Test
+    public void checksTheDatabaseVersion() throws Exception {
+        createDatabase(new TableVersion().getSUPPORTED_VERSION() - 1);
+        AtomicBoolean read = new AtomicBoolean();
+
+        List<TableGroup> tableGroups = Collections.singletonList(new TableGroup("tables", connection -> {
+            read.set(true);
+            return true;
+        }));
+
+        assertThat(new ParallelDatabaseReader(databaseFile, 2).load(tableGroups, () -> {
+        }), equalTo(false));
+        assertThat(read.get(), equalTo(false));
+        assertThat(systemOutRule.getLog(), containsString("Unsupported network database version"));
+    }
+
+    private void createDatabase(int version) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS version");
+            statement.executeUpdate("DROP TABLE IF EXISTS a");
+            statement.executeUpdate("CREATE TABLE version (version INTEGER)");
+            statement.executeUpdate("INSERT INTO version VALUES (" + version + ")");
+            statement.executeUpdate("CREATE TABLE a (x INTEGER)");
+            statement.executeUpdate("INSERT INTO a VALUES (1), (2)");
+        }
+    }
+
+    private static int countRows(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+}
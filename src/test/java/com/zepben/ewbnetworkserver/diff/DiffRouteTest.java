@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.diff;
+
+import com.zepben.ewbnetworkserver.models.HistoricDates;
+import com.zepben.ewbnetworkserver.models.NetworkModels;
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class DiffRouteTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final HistoricDates historicDates = mock(HistoricDates.class);
+    private final NetworkModels.Model yesterdayModel = mock(NetworkModels.Model.class);
+    private final LocalDate yesterday = LocalDate.of(2020, 1, 1);
+    private final NetworkSnapshot todaySnapshot = new NetworkSnapshot(LocalDate.of(2020, 1, 2),
+        Collections.singletonMap("Breaker", Collections.singletonMap("breaker1", 1L)));
+
+    private TestHttpServer server;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void beforeEach() throws Exception {
+        doReturn(true).when(historicDates).isEnabled();
+        doReturn(new NetworkSnapshot(yesterday, Collections.emptyMap())).when(yesterdayModel).snapshot();
+        doAnswer(invocation -> {
+            ((Consumer<NetworkModels.Model>) invocation.getArgument(2)).accept(yesterdayModel);
+            return null;
+        }).when(historicDates).withModel(any(), eq(yesterday), any());
+
+        DiffRoute diffRoute = new DiffRoute(historicDates, () -> todaySnapshot);
+        Router router = Router.router(vertx);
+        router.get("/dates/:date").blockingHandler(diffRoute::diffDate);
+
+        server = TestHttpServer.start(vertx, router);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void comparesDates() throws Exception {
+        JsonObject changeSet = server.get("/dates/2020-01-01").json(200);
+
+        assertThat(changeSet.getString("from"), equalTo("2020-01-01"));
+        assertThat(changeSet.getString("to"), equalTo("2020-01-02"));
+        assertThat(changeSet.getInteger("added"), equalTo(1));
+        assertThat(changeSet.getJsonObject("types").getJsonObject("Breaker").getJsonArray("added").getString(0), equalTo("breaker1"));
+    }
+
+    @Test
+    public void validatesRequests() throws Exception {
+        assertThat(server.get("/dates/yesterday").json(400).getString("message"),
+            equalTo("Invalid date 'yesterday', expected yyyy-MM-dd."));
+
+        doReturn(false).when(historicDates).isEnabled();
+        assertThat(server.get("/dates/2020-01-01").json(404).getString("message"), equalTo("Historic dates are not enabled."));
+    }
+
+}
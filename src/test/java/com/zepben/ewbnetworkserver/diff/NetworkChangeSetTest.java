@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.diff;
+
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.digest.CanonicalEncoder;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class NetworkChangeSetTest {
+
+    private final LocalDate yesterday = LocalDate.of(2020, 1, 1);
+    private final LocalDate today = LocalDate.of(2020, 1, 2);
+
+    @Test
+    public void snapshotsEachObjectByType() {
+        NetworkService networkService = new NetworkService();
+        networkService.add(new AcLineSegment("line1"));
+        networkService.add(new AcLineSegment("line2"));
+        networkService.add(new Breaker("breaker1"));
+
+        NetworkSnapshot snapshot = NetworkSnapshot.of(today, networkService, new CanonicalEncoder());
+
+        assertThat(snapshot.date(), equalTo(today));
+        assertThat(snapshot.size(), equalTo(3));
+        assertThat(snapshot.hashes("AcLineSegment").keySet(), equalTo(new HashSet<>(Arrays.asList("line1", "line2"))));
+        assertThat(snapshot.hashes("Breaker").size(), equalTo(1));
+        assertThat(snapshot.hashes("Feeder").size(), equalTo(0));
+
+        NetworkSnapshot again = NetworkSnapshot.of(today, networkService, new CanonicalEncoder());
+        assertThat(again.hashes("AcLineSegment"), equalTo(snapshot.hashes("AcLineSegment")));
+    }
+
+    @Test
+    public void findsAddedRemovedAndModifiedObjects() {
+        Map<String, Map<String, Long>> before = new HashMap<>();
+        before.put("AcLineSegment", hashes("line1", 1L, "line2", 2L, "line3", 3L));
+        before.put("Breaker", hashes("breaker1", 4L));
+
+        Map<String, Map<String, Long>> after = new HashMap<>();
+        after.put("AcLineSegment", hashes("line1", 1L, "line2", 5L, "line4", 6L));
+        after.put("Feeder", hashes("feeder1", 7L));
+
+        NetworkChangeSet changeSet = NetworkChangeSet.between(new NetworkSnapshot(yesterday, before), new NetworkSnapshot(today, after));
+
+        assertThat(changeSet.toJson(), equalTo(new JsonObject()
+            .put("from", "2020-01-01")
+            .put("to", "2020-01-02")
+            .put("added", 2)
+            .put("removed", 2)
+            .put("modified", 1)
+            .put("types", new JsonObject()
+                .put("AcLineSegment", changes(new JsonArray().add("line4"), new JsonArray().add("line3"), new JsonArray().add("line2")))
+                .put("Breaker", changes(new JsonArray(), new JsonArray().add("breaker1"), new JsonArray()))
+                .put("Feeder", changes(new JsonArray().add("feeder1"), new JsonArray(), new JsonArray())))));
+    }
+
+    @Test
+    public void unchangedNetworksHaveNoChanges() {
+        NetworkService networkService = new NetworkService();
+        Feeder feeder = new Feeder("feeder1");
+        networkService.add(feeder);
+
+        NetworkChangeSet changeSet = NetworkChangeSet.between(NetworkSnapshot.of(yesterday, networkService, new CanonicalEncoder()),
+            NetworkSnapshot.of(today, networkService, new CanonicalEncoder()));
+
+        assertThat(changeSet.isEmpty(), equalTo(true));
+        assertThat(changeSet.toJson().getJsonObject("types"), equalTo(new JsonObject()));
+        assertThat(NetworkChangeSet.between(new NetworkSnapshot(yesterday, Collections.emptyMap()),
+            new NetworkSnapshot(today, Collections.emptyMap())).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void attributeChangesModifyObjects() {
+        NetworkService networkService = new NetworkService();
+        RatedLine line = new RatedLine("line1");
+        networkService.add(line);
+        networkService.add(new RatedLine("line2"));
+
+        NetworkSnapshot before = NetworkSnapshot.of(yesterday, networkService, new CanonicalEncoder());
+        line.rating = 630;
+        NetworkChangeSet changeSet = NetworkChangeSet.between(before, NetworkSnapshot.of(today, networkService, new CanonicalEncoder()));
+
+        assertThat(changeSet.toJson().getInteger("modified"), equalTo(1));
+        assertThat(changeSet.toJson().getJsonObject("types"), equalTo(new JsonObject()
+            .put("RatedLine", changes(new JsonArray(), new JsonArray(), new JsonArray().add("line1")))));
+    }
+
+    private Map<String, Long> hashes(Object... mRIDsAndHashes) {
+        Map<String, Long> hashes = new HashMap<>();
+        for (int i = 0; i < mRIDsAndHashes.length; i += 2)
+            hashes.put((String) mRIDsAndHashes[i], (Long) mRIDsAndHashes[i + 1]);
+        return hashes;
+    }
+
+    private JsonObject changes(JsonArray added, JsonArray removed, JsonArray modified) {
+        return new JsonObject().put("added", added).put("removed", removed).put("modified", modified);
+    }
+
+    private static class RatedLine extends AcLineSegment {
+
+        private double rating = 400;
+
+        RatedLine(String mRID) {
+            super(mRID);
+        }
+
+        public double getRating() {
+            return rating;
+        }
+
+    }
+
+}
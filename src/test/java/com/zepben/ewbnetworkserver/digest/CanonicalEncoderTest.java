@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.BaseVoltage;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.PhaseCode;
+import com.zepben.evolve.cim.iec61970.base.core.Terminal;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class CanonicalEncoderTest {
+
+    private final CanonicalEncoder canonicalEncoder = new CanonicalEncoder();
+
+    @Test
+    public void encodesTheSameContentTheSameWay() {
+        assertThat(canonicalEncoder.encode(new TestBreaker("b")), equalTo(canonicalEncoder.encode(new TestBreaker("b"))));
+        assertThat(canonicalEncoder.encode(new TestBreaker("b")), not(equalTo(canonicalEncoder.encode(new TestBreaker("c")))));
+    }
+
+    @Test
+    public void encodesEveryAttribute() {
+        TestBreaker breaker = new TestBreaker("b");
+        byte[] closed = canonicalEncoder.encode(breaker);
+
+        breaker.open = true;
+        byte[] open = canonicalEncoder.encode(breaker);
+        assertThat(open, not(equalTo(closed)));
+
+        breaker.rating = 630;
+        assertThat(canonicalEncoder.encode(breaker), not(equalTo(open)));
+    }
+
+    @Test
+    public void encodesOwnedObjectsInFull() {
+        TestBreaker breaker = new TestBreaker("b");
+        TestTerminal terminal = new TestTerminal("t");
+        terminal.setConductingEquipment(breaker);
+        breaker.addTerminal(terminal);
+
+        Location location = new Location("l");
+        location.addPoint(new PositionPoint(144.9, -37.8));
+        breaker.setLocation(location);
+
+        BaseVoltage baseVoltage = new BaseVoltage("bv");
+        baseVoltage.setNominalVoltage(11000);
+        breaker.setBaseVoltage(baseVoltage);
+
+        byte[] original = canonicalEncoder.encode(breaker);
+
+        terminal.phases = PhaseCode.AB;
+        byte[] rephased = canonicalEncoder.encode(breaker);
+        assertThat(rephased, not(equalTo(original)));
+
+        location.clearPoints().addPoint(new PositionPoint(144.9, -37.7));
+        byte[] moved = canonicalEncoder.encode(breaker);
+        assertThat(moved, not(equalTo(rephased)));
+
+        baseVoltage.setNominalVoltage(22000);
+        assertThat(canonicalEncoder.encode(breaker), not(equalTo(moved)));
+    }
+
+    @Test
+    public void encodesOtherEquipmentByMRID() {
+        Feeder feeder = new Feeder("f");
+        TestBreaker breaker = new TestBreaker("b");
+        feeder.addEquipment(breaker);
+        byte[] original = canonicalEncoder.encode(feeder);
+
+        breaker.open = true;
+        assertThat(canonicalEncoder.encode(feeder), equalTo(original));
+    }
+
+    @Test
+    public void ignoresTheOrderIdentifiedObjectsWereAddedIn() {
+        Feeder feeder1 = new Feeder("f1");
+        Feeder feeder2 = new Feeder("f2");
+
+        TestBreaker breaker1 = new TestBreaker("b");
+        breaker1.addContainer(feeder1);
+        breaker1.addContainer(feeder2);
+
+        TestBreaker breaker2 = new TestBreaker("b");
+        breaker2.addContainer(feeder2);
+        breaker2.addContainer(feeder1);
+
+        assertThat(canonicalEncoder.encode(breaker1), equalTo(canonicalEncoder.encode(breaker2)));
+    }
+
+    // Attributes are overridden so they can be changed however the network objects store them.
+    private static class TestBreaker extends Breaker {
+
+        private boolean open = false;
+        private double rating = 400;
+
+        TestBreaker(String mRID) {
+            super(mRID);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        public double getRating() {
+            return rating;
+        }
+
+    }
+
+    private static class TestTerminal extends Terminal {
+
+        private PhaseCode phases = PhaseCode.ABC;
+
+        TestTerminal(String mRID) {
+            super(mRID);
+        }
+
+        @Override
+        public PhaseCode getPhases() {
+            return phases;
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class DigestRouteTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final NetworkDigests networkDigests = mock(NetworkDigests.class);
+
+    private TestHttpServer server;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        doReturn(Collections.singletonMap("f1", "aa")).when(networkDigests).feeders();
+        doReturn(Collections.singletonMap("zone", "bb")).when(networkDigests).zones();
+        doReturn("aa").when(networkDigests).feeder("f1");
+        doReturn("bb").when(networkDigests).zone("zone");
+
+        DigestRoute digestRoute = new DigestRoute(networkDigests);
+        Router router = Router.router(vertx);
+        router.get("/feeders").blockingHandler(digestRoute::feeders);
+        router.get("/zones").blockingHandler(digestRoute::zones);
+        router.get("/feeder/:mRID").blockingHandler(digestRoute::feeder);
+        router.get("/zone/:mRID").blockingHandler(digestRoute::zone);
+
+        server = TestHttpServer.start(vertx, router);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void reportsAllDigests() throws Exception {
+        assertThat(server.get("/feeders").json(200), equalTo(new JsonObject().put("feeders", new JsonObject().put("f1", "aa"))));
+        assertThat(server.get("/zones").json(200), equalTo(new JsonObject().put("zones", new JsonObject().put("zone", "bb"))));
+    }
+
+    @Test
+    public void reportsContainerDigests() throws Exception {
+        assertThat(server.get("/feeder/f1").json(200), equalTo(new JsonObject().put("mRID", "f1").put("digest", "aa")));
+        assertThat(server.get("/zone/zone").json(200), equalTo(new JsonObject().put("mRID", "zone").put("digest", "bb")));
+        assertThat(server.get("/feeder/f2").json(404).getString("message"), equalTo("Feeder 'f2' was not found."));
+        assertThat(server.get("/zone/f1").json(404).getString("message"), equalTo("Zone substation 'f1' was not found."));
+    }
+
+}
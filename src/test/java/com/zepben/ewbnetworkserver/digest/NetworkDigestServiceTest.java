@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.*;
+
+public class NetworkDigestServiceTest {
+
+    private final NetworkDigests networkDigests = mock(NetworkDigests.class);
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    public void before() throws Exception {
+        doReturn(Collections.singletonMap("f1", "aa")).when(networkDigests).feeders();
+        doReturn(Collections.singletonMap("zone", "bb")).when(networkDigests).zones();
+        doReturn("aa").when(networkDigests).feeder("f1");
+        doReturn("bb").when(networkDigests).zone("zone");
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+            .directExecutor()
+            .addService(new NetworkDigestService(networkDigests))
+            .build()
+            .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @AfterEach
+    public void after() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void getsAllDigests() {
+        assertThat(getDigests(new JsonObject()), equalTo(new JsonObject()
+            .put("feeders", new JsonObject().put("f1", "aa"))
+            .put("zones", new JsonObject().put("zone", "bb"))));
+    }
+
+    @Test
+    public void getsRequestedDigests() {
+        JsonObject request = new JsonObject().put("feeders", new JsonArray().add("f1").add("unknown"));
+
+        assertThat(getDigests(request), equalTo(new JsonObject()
+            .put("feeders", new JsonObject().put("f1", "aa"))
+            .put("zones", new JsonObject())));
+        verify(networkDigests, never()).zones();
+    }
+
+    @Test
+    public void rejectsInvalidRequests() {
+        expect(() -> getDigests(new JsonObject().put("zones", "zone")))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("INVALID_ARGUMENT: zones must be an array of strings.");
+    }
+
+    private JsonObject getDigests(JsonObject request) {
+        return ClientCalls.blockingUnaryCall(channel, NetworkDigestService.GET_DIGESTS, CallOptions.DEFAULT, request);
+    }
+
+}
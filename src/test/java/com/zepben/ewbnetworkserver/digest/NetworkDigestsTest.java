@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.digest;
+
+import com.google.common.hash.HashCode;
+import com.zepben.evolve.cim.iec61970.base.core.EquipmentContainer;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.Substation;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.export.ContainerMembership;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class NetworkDigestsTest {
+
+    private final NetworkService networkService = new NetworkService();
+    private final ContainerMembership containerMembership = new ContainerMembership(networkService);
+    private final NetworkDigests networkDigests = new NetworkDigests(networkService, containerMembership, new CanonicalEncoder());
+
+    private final Substation zone = new Substation("zone");
+    private final Feeder feeder1 = new Feeder("f1");
+    private final Feeder feeder2 = new Feeder("f2");
+    private final AcLineSegment line1 = new AcLineSegment("line1");
+    private final AcLineSegment line2 = new AcLineSegment("line2");
+
+    @BeforeEach
+    public void before() {
+        zone.addFeeder(feeder1);
+        zone.addFeeder(feeder2);
+        feeder1.setNormalEnergizingSubstation(zone);
+        feeder2.setNormalEnergizingSubstation(zone);
+        addToContainer(line1, feeder1);
+        addToContainer(line2, feeder2);
+
+        networkService.add(zone);
+        networkService.add(feeder1);
+        networkService.add(feeder2);
+        networkService.add(line1);
+        networkService.add(line2);
+
+        containerMembership.build();
+    }
+
+    @Test
+    public void computesDigestsForEachContainer() {
+        networkDigests.build();
+
+        assertThat(networkDigests.size(), equalTo(3));
+        assertThat(networkDigests.feeders().keySet(), contains("f1", "f2"));
+        assertThat(networkDigests.zones().keySet(), contains("zone"));
+        assertThat(networkDigests.feeder("f1"), matchesPattern("[0-9a-f]{64}"));
+        assertThat(networkDigests.feeder("f1"), not(equalTo(networkDigests.feeder("f2"))));
+        assertThat(networkDigests.feeder("zone"), nullValue());
+        assertThat(networkDigests.zone("f1"), nullValue());
+        assertThat(networkDigests.feeder("unknown"), nullValue());
+    }
+
+    @Test
+    public void digestsOnlyDependOnContent() {
+        networkDigests.build();
+        String feeder1Digest = networkDigests.feeder("f1");
+
+        AcLineSegment line3 = new AcLineSegment("line3");
+        addToContainer(line3, feeder1);
+        networkService.add(line3);
+        networkDigests.onAdded(line3);
+        containerMembership.onAdded(line3);
+        assertThat(networkDigests.feeder("f1"), not(equalTo(feeder1Digest)));
+
+        networkDigests.onRemoved(line3);
+        containerMembership.onRemoved(line3);
+        feeder1.removeEquipment(line3);
+        networkService.remove(line3);
+        assertThat(networkDigests.feeder("f1"), equalTo(feeder1Digest));
+    }
+
+    @Test
+    public void digestsCoverEveryAttribute() {
+        RatedLine line3 = new RatedLine("line3");
+        addToContainer(line3, feeder1);
+        networkService.add(line3);
+        containerMembership.onAdded(line3);
+
+        networkDigests.build();
+        String feeder1Digest = networkDigests.feeder("f1");
+        String feeder2Digest = networkDigests.feeder("f2");
+
+        line3.rating = 630;
+        networkDigests.build();
+
+        assertThat(networkDigests.feeder("f1"), not(equalTo(feeder1Digest)));
+        assertThat(networkDigests.feeder("f2"), equalTo(feeder2Digest));
+    }
+
+    @Test
+    public void recomputesOnlyTheContainersChangedByPatches() {
+        networkDigests.build();
+        String feeder1Digest = networkDigests.feeder("f1");
+        String feeder2Digest = networkDigests.feeder("f2");
+        String zoneDigest = networkDigests.zone("zone");
+
+        AcLineSegment line3 = new AcLineSegment("line3");
+        addToContainer(line3, feeder1);
+        networkService.add(line3);
+        containerMembership.onAdded(line3);
+        networkDigests.onAdded(line3);
+
+        assertThat(networkDigests.size(), equalTo(1));
+        assertThat(networkDigests.feeder("f1"), not(equalTo(feeder1Digest)));
+        assertThat(networkDigests.feeder("f2"), equalTo(feeder2Digest));
+        assertThat(networkDigests.zone("zone"), not(equalTo(zoneDigest)));
+
+        networkDigests.onReconnected(line2);
+        assertThat(networkDigests.size(), equalTo(1));
+    }
+
+    @Test
+    public void merkleRootPairsHashesAndCarriesOddOnesUp() {
+        HashCode a = HashCode.fromInt(1);
+        HashCode b = HashCode.fromInt(2);
+        HashCode c = HashCode.fromInt(3);
+
+        assertThat(NetworkDigests.merkleRoot(Collections.singletonList(a)), equalTo(a));
+        assertThat(NetworkDigests.merkleRoot(Arrays.asList(a, b, c)),
+            equalTo(NetworkDigests.merkleRoot(Arrays.asList(NetworkDigests.merkleRoot(Arrays.asList(a, b)), c))));
+        assertThat(NetworkDigests.merkleRoot(Arrays.asList(a, b)), not(equalTo(NetworkDigests.merkleRoot(Arrays.asList(b, a)))));
+        assertThat(NetworkDigests.merkleRoot(Collections.emptyList()), notNullValue());
+    }
+
+    private void addToContainer(AcLineSegment line, EquipmentContainer container) {
+        line.addContainer(container);
+        container.addEquipment(line);
+    }
+
+    private static class RatedLine extends AcLineSegment {
+
+        private double rating = 400;
+
+        RatedLine(String mRID) {
+            super(mRID);
+        }
+
+        public double getRating() {
+            return rating;
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.ewbnetworkserver.grpc.JsonMethods;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCalls;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+public class ConsumerObjectsTest {
+
+    private static final String SERVICE_NAME = "test.NetworkConsumer";
+    private static final MethodDescriptor<JsonObject, JsonObject> METHOD =
+        JsonMethods.serverStreaming(SERVICE_NAME, ConsumerObjects.METHOD_NAME);
+
+    @Test
+    public void keepsTheSerializedResponses() {
+        ConsumerObjects consumerObjects = new ConsumerObjects(service((request, responseObserver) -> {
+            request.getJsonArray(ConsumerObjects.MRIDS_FIELD).stream()
+                .filter(mRID -> !"missing".equals(mRID))
+                .forEach(mRID -> responseObserver.onNext(new JsonObject().put("mRID", mRID)));
+            responseObserver.onCompleted();
+        }), this::encodeRequest);
+
+        assertThat(mRIDs(consumerObjects.get(Arrays.asList("a", "missing", "b"))), contains("a", "b"));
+    }
+
+    @Test
+    public void waitsForServicesThatRespondLater() {
+        ConsumerObjects consumerObjects = new ConsumerObjects(service((request, responseObserver) -> new Thread(() -> {
+            responseObserver.onNext(new JsonObject().put("mRID", "a"));
+            responseObserver.onCompleted();
+        }).start()), this::encodeRequest);
+
+        assertThat(mRIDs(consumerObjects.get(Collections.singletonList("a"))), contains("a"));
+    }
+
+    @Test
+    public void passesOnServiceErrors() {
+        ConsumerObjects consumerObjects = new ConsumerObjects(service((request, responseObserver) ->
+            responseObserver.onError(Status.UNAVAILABLE.withDescription("not loaded").asRuntimeException())), this::encodeRequest);
+
+        expect(() -> consumerObjects.get(Collections.singletonList("a")))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("UNAVAILABLE: not loaded");
+    }
+
+    @Test
+    public void rejectsServicesItCannotCall() {
+        BindableService withoutMethod = () -> ServerServiceDefinition.builder(SERVICE_NAME).build();
+        expect(() -> new ConsumerObjects(withoutMethod, this::encodeRequest))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("test.NetworkConsumer has no getIdentifiedObjects method.");
+
+        BindableService withJsonRequests = service((request, responseObserver) -> responseObserver.onCompleted());
+        expect(() -> new ConsumerObjects(withJsonRequests))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("test.NetworkConsumer/getIdentifiedObjects does not take a protobuf request.");
+    }
+
+    private BindableService service(ServerCalls.ServerStreamingMethod<JsonObject, JsonObject> method) {
+        return () -> ServerServiceDefinition.builder(SERVICE_NAME).addMethod(METHOD, ServerCalls.asyncServerStreamingCall(method)).build();
+    }
+
+    private byte[] encodeRequest(MethodDescriptor<?, ?> method, Collection<String> mRIDs) {
+        return new JsonObject().put(ConsumerObjects.MRIDS_FIELD, new JsonArray(new ArrayList<>(mRIDs))).toBuffer().getBytes();
+    }
+
+    private List<String> mRIDs(List<byte[]> responses) {
+        return responses.stream().map(response -> Buffer.buffer(response).toJsonObject().getString("mRID")).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.evolve.cim.iec61970.base.core.EquipmentContainer;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.core.Substation;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.services.network.NetworkService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ContainerMembershipTest {
+
+    private final NetworkService networkService = new NetworkService();
+    private final ContainerMembership containerMembership = new ContainerMembership(networkService);
+
+    private final Substation zone = new Substation("zone");
+    private final Feeder feeder1 = new Feeder("f1");
+    private final Feeder feeder2 = new Feeder("f2");
+    private final AcLineSegment line1 = new AcLineSegment("line1");
+    private final AcLineSegment line2 = new AcLineSegment("line2");
+
+    @BeforeEach
+    public void before() {
+        zone.addFeeder(feeder1);
+        zone.addFeeder(feeder2);
+        feeder1.setNormalEnergizingSubstation(zone);
+        feeder2.setNormalEnergizingSubstation(zone);
+        addToContainer(line1, feeder1);
+        addToContainer(line2, feeder2);
+        addToContainer(line2, zone);
+
+        networkService.add(zone);
+        networkService.add(feeder1);
+        networkService.add(feeder2);
+        networkService.add(line1);
+        networkService.add(line2);
+    }
+
+    @Test
+    public void precomputesTheMembersOfEachContainer() {
+        containerMembership.build();
+
+        assertThat(containerMembership.size(), equalTo(3));
+        assertThat(mRIDs(containerMembership.feeder("f1")), contains("f1", "line1"));
+        assertThat(mRIDs(containerMembership.zone("zone")), contains("zone", "f1", "f2", "line2", "line1"));
+        assertThat(containerMembership.feeder("zone"), nullValue());
+        assertThat(containerMembership.zone("f1"), nullValue());
+        assertThat(containerMembership.feeder("unknown"), nullValue());
+    }
+
+    @Test
+    public void recomputesContainersChangedByPatches() {
+        containerMembership.build();
+        List<PowerSystemResource> originalFeeder2 = containerMembership.feeder("f2");
+
+        AcLineSegment line3 = new AcLineSegment("line3");
+        addToContainer(line3, feeder1);
+        networkService.add(line3);
+        containerMembership.onAdded(line3);
+
+        assertThat(containerMembership.size(), equalTo(1));
+        assertThat(mRIDs(containerMembership.feeder("f1")), contains("f1", "line1", "line3"));
+        assertThat(mRIDs(containerMembership.zone("zone")), hasItem("line3"));
+        assertThat(containerMembership.feeder("f2"), sameInstance(originalFeeder2));
+
+        containerMembership.onFeederChanged("f2");
+        assertThat(containerMembership.feeder("f2"), not(sameInstance(originalFeeder2)));
+    }
+
+    private void addToContainer(AcLineSegment line, EquipmentContainer container) {
+        line.addContainer(container);
+        container.addEquipment(line);
+    }
+
+    private List<String> mRIDs(List<PowerSystemResource> objects) {
+        return objects.stream().map(PowerSystemResource::getMRID).collect(Collectors.toList());
+    }
+
+}
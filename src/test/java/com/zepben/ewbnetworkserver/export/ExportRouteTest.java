@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.evolve.cim.iec61970.base.core.Equipment;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.Substation;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import com.zepben.evolve.services.network.NetworkService;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.*;
+
+public class ExportRouteTest {
+
+    private final NetworkService networkService = mock(NetworkService.class);
+    private final ExportRoute exportRoute = new ExportRoute(networkService, new NetworkExportToJson());
+
+    private final RoutingContext context = mock(RoutingContext.class);
+    private final HttpServerRequest request = mock(HttpServerRequest.class);
+    private final HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+
+    private final Junction j1 = createJunction("j1");
+    private final Junction j2 = createJunction("j2");
+    private final Junction j3 = createJunction("j3");
+
+    @BeforeEach
+    public void beforeEach() {
+        doReturn(mock(Vertx.class)).when(context).vertx();
+        doReturn(request).when(context).request();
+        doReturn(response).when(context).response();
+    }
+
+    @Test
+    public void exportsNetwork() {
+        doReturn(Arrays.asList(j1, j2)).when(networkService).listOf(Equipment.class);
+
+        exportRoute.exportNetwork(context);
+
+        assertThat(endedWith(), equalTo(ndjson("j1", "j2")));
+    }
+
+    @Test
+    public void exportsFeeders() {
+        Feeder feeder = mock(Feeder.class);
+        doReturn(Arrays.asList(j1, j2)).when(feeder).getEquipment();
+        doReturn(feeder).when(networkService).get(Feeder.class, "f1");
+        doReturn("f1").when(context).pathParam(ExportRoute.MRID_PARAM);
+
+        exportRoute.exportFeeder(context);
+
+        assertThat(endedWith(), equalTo(ndjson("j1", "j2")));
+    }
+
+    @Test
+    public void exportsZoneSubstations() {
+        Feeder feeder = mock(Feeder.class);
+        doReturn(Arrays.asList(j1, j2)).when(feeder).getEquipment();
+
+        Substation substation = mock(Substation.class);
+        doReturn(Arrays.asList(j3, j1)).when(substation).getEquipment();
+        doReturn(Collections.singletonList(feeder)).when(substation).getFeeders();
+        doReturn(substation).when(networkService).get(Substation.class, "zone");
+        doReturn("zone").when(context).pathParam(ExportRoute.MRID_PARAM);
+
+        exportRoute.exportZoneSubstation(context);
+
+        assertThat(endedWith(), equalTo(ndjson("j3", "j1", "j2")));
+    }
+
+    @Test
+    public void exportsGeoJson() {
+        doReturn(Collections.singletonList(j1)).when(networkService).listOf(Equipment.class);
+        doReturn("GeoJSON").when(request).getParam(ExportRoute.FORMAT_PARAM);
+
+        exportRoute.exportNetwork(context);
+
+        assertThat(endedWith(), containsString("\"type\":\"FeatureCollection\""));
+    }
+
+    @Test
+    public void handlesMissingObjects() {
+        doReturn("unknown").when(context).pathParam(ExportRoute.MRID_PARAM);
+
+        exportRoute.exportFeeder(context);
+        verify(response, times(1)).setStatusCode(404);
+        verify(response, times(1)).end(contains("Feeder 'unknown' was not found."));
+
+        exportRoute.exportZoneSubstation(context);
+        verify(response, times(2)).setStatusCode(404);
+        verify(response, times(1)).end(contains("Zone substation 'unknown' was not found."));
+    }
+
+    @Test
+    public void handlesUnknownFormats() {
+        doReturn("csv").when(request).getParam(ExportRoute.FORMAT_PARAM);
+
+        exportRoute.exportNetwork(context);
+
+        verify(response, times(1)).setStatusCode(400);
+        verify(response, times(1)).end(contains("Unknown format 'csv', expected ndjson or geojson."));
+        verify(networkService, never()).listOf(any());
+    }
+
+    private Junction createJunction(String mRID) {
+        Junction junction = mock(Junction.class);
+        doReturn(mRID).when(junction).getMRID();
+        return junction;
+    }
+
+    private String endedWith() {
+        ArgumentCaptor<Buffer> captor = ArgumentCaptor.forClass(Buffer.class);
+        verify(response).end(captor.capture());
+        return captor.getValue().toString();
+    }
+
+    private String ndjson(String... mRIDs) {
+        StringBuilder sb = new StringBuilder();
+        for (String mRID : mRIDs)
+            sb.append(new NetworkExportToJson().toJson(createJunction(mRID)).encode()).append("\n");
+        return sb.toString();
+    }
+
+}
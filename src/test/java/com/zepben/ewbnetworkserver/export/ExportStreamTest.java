@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.*;
+
+public class ExportStreamTest {
+
+    private final Vertx vertx = mock(Vertx.class);
+    private final HttpServerResponse response = mock(HttpServerResponse.class);
+    private final NetworkExportToJson networkExportToJson = mock(NetworkExportToJson.class);
+    private final Junction junction = mock(Junction.class);
+
+    private final List<Handler<Void>> pendingContextHandlers = new ArrayList<>();
+    private final List<String> written = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void beforeEach() {
+        doReturn(response).when(response).setStatusCode(anyInt());
+        doReturn(response).when(response).setChunked(anyBoolean());
+        doReturn(response).when(response).putHeader(any(CharSequence.class), any(CharSequence.class));
+        doReturn(response).when(response).closeHandler(any());
+        doReturn(response).when(response).drainHandler(any());
+        doAnswer(inv -> {
+            written.add(inv.<Buffer>getArgument(0).toString());
+            return response;
+        }).when(response).write(any(Buffer.class));
+        doAnswer(inv -> {
+            written.add(inv.<Buffer>getArgument(0).toString());
+            return null;
+        }).when(response).end(any(Buffer.class));
+        doAnswer(inv -> pendingContextHandlers.add(inv.getArgument(0))).when(vertx).runOnContext(any());
+
+        doReturn("j1").when(junction).getMRID();
+        doAnswer(inv -> new JsonObject().put("mRID", inv.<PowerSystemResource>getArgument(0).getMRID())).when(networkExportToJson).toJson(any());
+        doAnswer(inv -> new JsonObject().put("id", inv.<PowerSystemResource>getArgument(0).getMRID())).when(networkExportToJson).toFeature(any());
+    }
+
+    @Test
+    public void streamsNdjson() {
+        createStream(ExportFormat.NDJSON, 3).start();
+
+        verify(response, times(1)).setChunked(true);
+        verify(response, times(1)).putHeader(any(CharSequence.class), eq("application/x-ndjson"));
+        verify(response, never()).write(any(Buffer.class));
+        assertThat(written, hasSize(1));
+        assertThat(written.get(0), equalTo("{\"mRID\":\"j1\"}\n{\"mRID\":\"j1\"}\n{\"mRID\":\"j1\"}\n"));
+    }
+
+    @Test
+    public void yieldsBetweenChunks() {
+        createStream(ExportFormat.NDJSON, ExportStream.MAX_OBJECTS_PER_CHUNK * 2 + 1).start();
+
+        assertThat(written, hasSize(1));
+        runPendingContextHandlers();
+        assertThat(written, hasSize(2));
+        runPendingContextHandlers();
+        assertThat(written, hasSize(3));
+        verify(response, times(1)).end(any(Buffer.class));
+
+        assertThat(String.join("", written).split("\n").length, equalTo(ExportStream.MAX_OBJECTS_PER_CHUNK * 2 + 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void waitsForDrain() {
+        ArgumentCaptor<Handler<Void>> drainHandler = ArgumentCaptor.forClass(Handler.class);
+        doReturn(true).when(response).writeQueueFull();
+
+        createStream(ExportFormat.NDJSON, ExportStream.MAX_OBJECTS_PER_CHUNK + 1).start();
+        verify(response).drainHandler(drainHandler.capture());
+
+        assertThat(written, hasSize(1));
+        assertThat(pendingContextHandlers, hasSize(0));
+
+        drainHandler.getValue().handle(null);
+        assertThat(written, hasSize(2));
+        verify(response, times(1)).end(any(Buffer.class));
+
+        // Further drains after the stream has been waiting are ignored.
+        drainHandler.getValue().handle(null);
+        assertThat(written, hasSize(2));
+    }
+
+    @Test
+    public void streamsGeoJsonFeatureCollections() {
+        createStream(ExportFormat.GEOJSON, ExportStream.MAX_OBJECTS_PER_CHUNK + 1).start();
+        runPendingContextHandlers();
+
+        verify(response, times(1)).putHeader(any(CharSequence.class), eq("application/geo+json"));
+
+        JsonObject collection = new JsonObject(String.join("", written));
+        assertThat(collection.getString("type"), equalTo("FeatureCollection"));
+        assertThat(collection.getJsonArray("features").size(), equalTo(ExportStream.MAX_OBJECTS_PER_CHUNK + 1));
+        assertThat(collection.getJsonArray("features").getJsonObject(0).getString("id"), equalTo("j1"));
+    }
+
+    @Test
+    public void streamsEmptyExports() {
+        createStream(ExportFormat.GEOJSON, 0).start();
+
+        assertThat(new JsonObject(String.join("", written)).getJsonArray("features").size(), equalTo(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void stopsWhenClosed() {
+        ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+
+        createStream(ExportFormat.NDJSON, ExportStream.MAX_OBJECTS_PER_CHUNK + 1).start();
+        verify(response).closeHandler(closeHandler.capture());
+
+        closeHandler.getValue().handle(null);
+        runPendingContextHandlers();
+
+        assertThat(written, hasSize(1));
+        verify(response, never()).end(any(Buffer.class));
+    }
+
+    private ExportStream createStream(ExportFormat format, int count) {
+        return new ExportStream(vertx, response, format, Collections.nCopies(count, junction).iterator(), networkExportToJson);
+    }
+
+    private void runPendingContextHandlers() {
+        List<Handler<Void>> handlers = new ArrayList<>(pendingContextHandlers);
+        pendingContextHandlers.clear();
+        handlers.forEach(handler -> handler.handle(null));
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61970.base.core.BaseVoltage;
+import com.zepben.evolve.cim.iec61970.base.core.ConnectivityNode;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.Substation;
+import com.zepben.evolve.cim.iec61970.base.core.Terminal;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.grpc.JsonMethods;
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class NetworkExportServiceTest {
+
+    private final NetworkService networkService = new NetworkService();
+    private final ContainerMembership containerMembership = new ContainerMembership(networkService);
+    private final AtomicInteger consumerCalls = new AtomicInteger();
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    public void before() throws Exception {
+        Substation zone = new Substation("zone");
+        Feeder feeder = new Feeder("f1");
+        zone.addFeeder(feeder);
+        feeder.setNormalEnergizingSubstation(zone);
+        networkService.add(zone);
+        networkService.add(feeder);
+
+        BaseVoltage baseVoltage = new BaseVoltage("bv");
+        for (int i = 0; i < 100; ++i) {
+            AcLineSegment line = new AcLineSegment("line" + i);
+            line.setName("a line with a name long enough to need a few chunks");
+            line.setBaseVoltage(baseVoltage);
+            line.addContainer(feeder);
+            feeder.addEquipment(line);
+            networkService.add(line);
+        }
+        containerMembership.build();
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+            .directExecutor()
+            .addService(new NetworkExportService(containerMembership, consumerService(), this::encodeRequest))
+            .build()
+            .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @AfterEach
+    public void after() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void streamsFeedersInSizeBoundedChunks() {
+        List<JsonObject> responses = stream(NetworkExportService.STREAM_FEEDER, new JsonObject().put("mRID", "f1").put("maxChunkBytes", 2048));
+
+        responses.forEach(response -> assertThat(response.encode().length(), lessThanOrEqualTo(2048 + 100)));
+        List<String> mRIDs = translatedMRIDs(responses);
+
+        assertThat(responses.size() > 1, equalTo(true));
+        assertThat(mRIDs.size(), equalTo(102));
+        assertThat(mRIDs.get(0), equalTo("f1"));
+        assertThat(mRIDs.get(100), equalTo("line99"));
+        assertThat(mRIDs.get(101), equalTo("bv"));
+    }
+
+    @Test
+    public void streamsTheObjectsTheMembersReferTo() {
+        Location location = new Location("loc");
+        Terminal terminal = mock(Terminal.class);
+        doReturn("t1").when(terminal).getMRID();
+        doReturn(new ConnectivityNode("cn1")).when(terminal).getConnectivityNode();
+
+        AcLineSegment line = mock(AcLineSegment.class);
+        doReturn("line").when(line).getMRID();
+        doReturn(location).when(line).getLocation();
+        doReturn(Collections.singletonList(terminal)).when(line).getTerminals();
+
+        Feeder feeder = new Feeder("f2");
+        feeder.setNormalHeadTerminal(terminal);
+
+        assertThat(NetworkExportService.objectsOf(Arrays.asList(feeder, line)), contains("f2", "line", "t1", "cn1", "loc"));
+    }
+
+    @Test
+    public void translatesObjectsInBatches() {
+        Feeder feeder = networkService.get(Feeder.class, "f1");
+        for (int i = 100; i < NetworkExportService.TRANSLATE_BATCH_SIZE + 100; ++i) {
+            AcLineSegment line = new AcLineSegment("line" + i);
+            line.addContainer(feeder);
+            feeder.addEquipment(line);
+            networkService.add(line);
+        }
+        containerMembership.onFeederChanged("f1");
+
+        List<String> mRIDs = translatedMRIDs(stream(NetworkExportService.STREAM_FEEDER, new JsonObject().put("mRID", "f1")));
+
+        assertThat(mRIDs.size(), equalTo(NetworkExportService.TRANSLATE_BATCH_SIZE + 102));
+        assertThat(consumerCalls.get(), equalTo(2));
+    }
+
+    @Test
+    public void streamsZones() {
+        List<JsonObject> responses = stream(NetworkExportService.STREAM_ZONE, new JsonObject().put("mRID", "zone"));
+
+        assertThat(responses.size(), equalTo(1));
+        assertThat(translatedMRIDs(responses).subList(0, 3), contains("zone", "f1", "line0"));
+        assertThat(translatedMRIDs(responses).size(), equalTo(103));
+    }
+
+    @Test
+    public void rejectsInvalidRequests() {
+        expect(() -> stream(NetworkExportService.STREAM_FEEDER, new JsonObject()))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("INVALID_ARGUMENT: mRID must be a string.");
+
+        expect(() -> stream(NetworkExportService.STREAM_FEEDER, new JsonObject().put("mRID", "f1").put("maxChunkBytes", 10)))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("INVALID_ARGUMENT: maxChunkBytes must be between 1024 and 4194304.");
+
+        expect(() -> stream(NetworkExportService.STREAM_FEEDER, new JsonObject().put("mRID", "zone")))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("NOT_FOUND: Feeder 'zone' was not found.");
+
+        expect(() -> stream(NetworkExportService.STREAM_ZONE, new JsonObject().put("mRID", "f1")))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("NOT_FOUND: Zone substation 'f1' was not found.");
+    }
+
+    // Stands in for NetworkConsumerService, answering each mRID with the mRID as the object.
+    private BindableService consumerService() {
+        MethodDescriptor<JsonObject, JsonObject> method = JsonMethods.serverStreaming("test.NetworkConsumer", ConsumerObjects.METHOD_NAME);
+        return () -> ServerServiceDefinition.builder("test.NetworkConsumer")
+            .addMethod(method, ServerCalls.asyncServerStreamingCall((request, responseObserver) -> {
+                consumerCalls.incrementAndGet();
+                request.getJsonArray(ConsumerObjects.MRIDS_FIELD)
+                    .forEach(mRID -> responseObserver.onNext(new JsonObject().put("mRID", mRID)));
+                responseObserver.onCompleted();
+            }))
+            .build();
+    }
+
+    private byte[] encodeRequest(MethodDescriptor<?, ?> method, Collection<String> mRIDs) {
+        return new JsonObject().put(ConsumerObjects.MRIDS_FIELD, new JsonArray(new ArrayList<>(mRIDs))).toBuffer().getBytes();
+    }
+
+    private List<String> translatedMRIDs(List<JsonObject> responses) {
+        List<String> mRIDs = new ArrayList<>();
+        responses.forEach(response -> response.getJsonArray("objects").forEach(object ->
+            mRIDs.add(Buffer.buffer(((JsonObject) object).getBinary("protobuf")).toJsonObject().getString("mRID"))));
+        return mRIDs;
+    }
+
+    private List<JsonObject> stream(MethodDescriptor<JsonObject, JsonObject> method, JsonObject request) {
+        List<JsonObject> responses = new ArrayList<>();
+        ClientCalls.blockingServerStreamingCall(channel, method, CallOptions.DEFAULT.withCompression("gzip"), request).forEachRemaining(responses::add);
+        return responses;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.export;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.core.Substation;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.zepben.ewbnetworkserver.TestObjectCreators.createFeederMock;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.*;
+
+public class NetworkExportToJsonTest {
+
+    private final NetworkExportToJson networkExportToJson = new NetworkExportToJson();
+
+    @Test
+    public void convertsEquipment() {
+        Junction junction = createJunction(point(1.0, 2.0));
+
+        JsonObject expected = new JsonObject()
+            .put("mRID", "j1")
+            .put("name", "junction 1")
+            .put("type", junction.getClass().getSimpleName())
+            .put("normalFeeders", new JsonArray().add("f1"))
+            .put("currentFeeders", new JsonArray().add("f2"))
+            .put("baseVoltage", 11000)
+            .put("location", new JsonArray().add(new JsonArray().add(1.0).add(2.0)));
+
+        assertThat(networkExportToJson.toJson(junction), equalTo(expected));
+    }
+
+    @Test
+    public void convertsFeatures() {
+        JsonObject point = networkExportToJson.toFeature(createJunction(point(1.0, 2.0)));
+        assertThat(point.getString("type"), equalTo("Feature"));
+        assertThat(point.getString("id"), equalTo("j1"));
+        assertThat(point.getJsonObject("geometry"), equalTo(new JsonObject()
+            .put("type", "Point")
+            .put("coordinates", new JsonArray().add(1.0).add(2.0))));
+        assertThat(point.getJsonObject("properties").getString("mRID"), equalTo("j1"));
+        assertThat(point.getJsonObject("properties").containsKey("location"), equalTo(false));
+
+        JsonObject line = networkExportToJson.toFeature(createJunction(point(1.0, 2.0), point(3.0, 4.0)));
+        assertThat(line.getJsonObject("geometry"), equalTo(new JsonObject()
+            .put("type", "LineString")
+            .put("coordinates", new JsonArray()
+                .add(new JsonArray().add(1.0).add(2.0))
+                .add(new JsonArray().add(3.0).add(4.0)))));
+    }
+
+    @Test
+    public void handlesMissingLocations() {
+        Substation substation = mock(Substation.class);
+        doReturn("s1").when(substation).getMRID();
+
+        assertThat(networkExportToJson.toJson(substation).containsKey("location"), equalTo(false));
+        assertThat(networkExportToJson.toJson(substation).containsKey("normalFeeders"), equalTo(false));
+        assertThat(networkExportToJson.toFeature(substation).getJsonObject("geometry"), nullValue());
+    }
+
+    private Junction createJunction(PositionPoint... points) {
+        Location location = mock(Location.class);
+        doReturn(Arrays.asList(points)).when(location).getPoints();
+
+        Feeder normalFeeder = createFeederMock("f1");
+        Feeder currentFeeder = createFeederMock("f2");
+
+        Junction junction = mock(Junction.class);
+        doReturn("j1").when(junction).getMRID();
+        doReturn("junction 1").when(junction).getName();
+        doReturn(location).when(junction).getLocation();
+        doReturn(Collections.singletonList(normalFeeder)).when(junction).getNormalFeeders();
+        doReturn(Collections.singletonList(currentFeeder)).when(junction).getCurrentFeeders();
+        doReturn(11000).when(junction).getBaseVoltageValue();
+        return junction;
+    }
+
+    private PositionPoint point(double x, double y) {
+        return new PositionPoint(x, y);
+    }
+
+}
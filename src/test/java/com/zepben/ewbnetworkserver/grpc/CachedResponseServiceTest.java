@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.grpc;
+
+import com.google.common.io.ByteStreams;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class CachedResponseServiceTest {
+
+    private static final MethodDescriptor<String, String> UNARY = method(MethodDescriptor.MethodType.UNARY, "Unary");
+    private static final MethodDescriptor<String, String> STREAMING = method(MethodDescriptor.MethodType.SERVER_STREAMING, "Streaming");
+    private static final MethodDescriptor<String, String> FAILING = method(MethodDescriptor.MethodType.UNARY, "Failing");
+
+    private final AtomicInteger numCalls = new AtomicInteger(0);
+    private final BindableService service = () -> ServerServiceDefinition.builder("test.Service")
+        .addMethod(UNARY, ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+            responseObserver.onNext(request + "-" + numCalls.incrementAndGet());
+            responseObserver.onCompleted();
+        }))
+        .addMethod(STREAMING, ServerCalls.asyncServerStreamingCall((request, responseObserver) -> {
+            numCalls.incrementAndGet();
+            responseObserver.onNext(request + "-a");
+            responseObserver.onNext(request + "-b");
+            responseObserver.onCompleted();
+        }))
+        .addMethod(FAILING, ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+            numCalls.incrementAndGet();
+            responseObserver.onError(Status.NOT_FOUND.withDescription(request).asRuntimeException());
+        }))
+        .build();
+
+    private final GrpcResponseCache responseCache = new GrpcResponseCache(1024);
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    public void after() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void servesRepeatedRequestsFromTheCache() throws Exception {
+        start(new CachedResponseService(service, responseCache));
+
+        assertThat(unary("a"), equalTo("a-1"));
+        assertThat(unary("a"), equalTo("a-1"));
+        assertThat(unary("b"), equalTo("b-2"));
+        assertThat(numCalls.get(), equalTo(2));
+        assertThat(responseCache.size(), equalTo(2));
+    }
+
+    @Test
+    public void servesStreamedResponsesFromTheCache() throws Exception {
+        start(new CachedResponseService(service, responseCache));
+
+        assertThat(streaming("a"), contains("a-a", "a-b"));
+        assertThat(streaming("a"), contains("a-a", "a-b"));
+        assertThat(numCalls.get(), equalTo(1));
+    }
+
+    @Test
+    public void networkChangesInvalidateCachedResponses() throws Exception {
+        start(new CachedResponseService(service, responseCache));
+
+        assertThat(unary("a"), equalTo("a-1"));
+        responseCache.onRemoved(new AcLineSegment("line"));
+        assertThat(unary("a"), equalTo("a-2"));
+    }
+
+    @Test
+    public void doesNotCacheFailures() throws Exception {
+        start(new CachedResponseService(service, responseCache));
+
+        for (int i = 0; i < 2; ++i) {
+            expect(() -> ClientCalls.blockingUnaryCall(channel, FAILING, CallOptions.DEFAULT, "a"))
+                .toThrow(StatusRuntimeException.class)
+                .withMessage("NOT_FOUND: a");
+        }
+        assertThat(numCalls.get(), equalTo(2));
+    }
+
+    @Test
+    public void releasesRecordingsWhenCallsFinish() throws Exception {
+        start(new CachedResponseService(service, responseCache));
+
+        assertThat(streaming("a"), contains("a-a", "a-b"));
+        expect(() -> ClientCalls.blockingUnaryCall(channel, FAILING, CallOptions.DEFAULT, "a")).toThrow(StatusRuntimeException.class);
+
+        assertThat(responseCache.recordingBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void sharesTheRecordingBudgetBetweenCalls() throws Exception {
+        start(new CachedResponseService(service, responseCache));
+
+        // Holds the whole budget as if other calls were still recording.
+        responseCache.reserve(1024);
+        assertThat(unary("a"), equalTo("a-1"));
+        assertThat(unary("a"), equalTo("a-2"));
+        assertThat(responseCache.size(), equalTo(0));
+
+        responseCache.release(1024);
+        assertThat(unary("a"), equalTo("a-3"));
+        assertThat(unary("a"), equalTo("a-3"));
+        assertThat(responseCache.recordingBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void callsTheServiceWhenDisabled() throws Exception {
+        start(new CachedResponseService(service, new GrpcResponseCache(0)));
+
+        assertThat(unary("a"), equalTo("a-1"));
+        assertThat(unary("a"), equalTo("a-2"));
+    }
+
+    private void start(BindableService cachedService) throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(cachedService).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    private String unary(String request) {
+        return ClientCalls.blockingUnaryCall(channel, UNARY, CallOptions.DEFAULT, request);
+    }
+
+    private List<String> streaming(String request) {
+        List<String> responses = new ArrayList<>();
+        ClientCalls.blockingServerStreamingCall(channel, STREAMING, CallOptions.DEFAULT, request).forEachRemaining(responses::add);
+        return responses;
+    }
+
+    private static MethodDescriptor<String, String> method(MethodDescriptor.MethodType type, String name) {
+        return MethodDescriptor.<String, String>newBuilder()
+            .setType(type)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName("test.Service", name))
+            .setRequestMarshaller(new StringMarshaller())
+            .setResponseMarshaller(new StringMarshaller())
+            .build();
+    }
+
+    private static class StringMarshaller implements MethodDescriptor.Marshaller<String> {
+
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            try {
+                return new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
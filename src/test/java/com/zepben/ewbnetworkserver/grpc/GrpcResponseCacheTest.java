@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.grpc;
+
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class GrpcResponseCacheTest {
+
+    private final byte[] request1 = {1};
+    private final byte[] request2 = {2};
+    private final byte[] request3 = {3};
+    private final List<byte[]> response = Arrays.asList(new byte[10], new byte[9]);
+
+    @Test
+    public void evictsLeastRecentlyUsedResponsesWhenFull() {
+        GrpcResponseCache cache = new GrpcResponseCache(40);
+
+        assertThat(cache.put("method", request1, response, cache.generation()), equalTo(true));
+        assertThat(cache.put("method", request2, response, cache.generation()), equalTo(true));
+        assertThat(cache.get("method", new byte[]{1}), notNullValue());
+
+        assertThat(cache.put("method", request3, response, cache.generation()), equalTo(true));
+
+        assertThat(cache.get("method", request2), nullValue());
+        assertThat(cache.get("method", request1), equalTo(response));
+        assertThat(cache.get("method", request3), equalTo(response));
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.numBytes(), equalTo(40L));
+    }
+
+    @Test
+    public void keysByMethodAndRequest() {
+        GrpcResponseCache cache = new GrpcResponseCache(1024);
+
+        cache.put("method1", request1, response, cache.generation());
+
+        assertThat(cache.get("method1", request1), notNullValue());
+        assertThat(cache.get("method2", request1), nullValue());
+        assertThat(cache.get("method1", request2), nullValue());
+    }
+
+    @Test
+    public void doesNotCacheResponsesLargerThanTheCache() {
+        GrpcResponseCache cache = new GrpcResponseCache(10);
+
+        assertThat(cache.put("method", request1, response, cache.generation()), equalTo(false));
+        assertThat(cache.put("method", request1, Collections.emptyList(), cache.generation()), equalTo(true));
+    }
+
+    @Test
+    public void limitsTheBytesBeingRecorded() {
+        GrpcResponseCache cache = new GrpcResponseCache(10);
+
+        assertThat(cache.reserve(6), equalTo(true));
+        assertThat(cache.reserve(6), equalTo(false));
+        assertThat(cache.reserve(4), equalTo(true));
+        assertThat(cache.recordingBytes(), equalTo(10L));
+
+        cache.release(6);
+        assertThat(cache.reserve(6), equalTo(true));
+    }
+
+    @Test
+    public void networkChangesInvalidateEverything() {
+        GrpcResponseCache cache = new GrpcResponseCache(1024);
+        long generation = cache.generation();
+        cache.put("method", request1, response, generation);
+
+        cache.onAdded(new AcLineSegment("line"));
+
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.numBytes(), equalTo(0L));
+        assertThat(cache.put("method", request1, response, generation), equalTo(false));
+
+        generation = cache.generation();
+        cache.put("method", request1, response, generation);
+        cache.onFeederChanged("feeder");
+        assertThat(cache.get("method", request1), nullValue());
+    }
+
+}
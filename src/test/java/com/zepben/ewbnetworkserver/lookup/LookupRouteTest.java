@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.lookup;
+
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import com.zepben.idcorrelator.IdCorrelator;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.BodyHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.*;
+
+public class LookupRouteTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final NetworkService networkService = mock(NetworkService.class);
+    private final IdCorrelator idCorrelator = mock(IdCorrelator.class);
+
+    private TestHttpServer server;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        doReturn(new Junction("j1")).when(networkService).get(PowerSystemResource.class, "j1");
+        doReturn(new Breaker("b1")).when(networkService).get(PowerSystemResource.class, "b1");
+        doReturn(new Breaker("b2")).when(networkService).get(PowerSystemResource.class, "b2");
+        doReturn(new HashSet<>(Arrays.asList("b2", "b1"))).when(idCorrelator).coreIds("GIS", "gis-1");
+
+        LookupRoute lookupRoute = new LookupRoute(networkService, idCorrelator, new NetworkExportToJson());
+        Router router = Router.router(vertx);
+        router.post("/assets").handler(BodyHandler.create()).handler(lookupRoute::lookupAssets);
+
+        server = TestHttpServer.start(vertx, router);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void looksUpMRIDs() throws Exception {
+        JsonArray results = post("/assets", new JsonObject().put("ids", new JsonArray().add("j1").add("missing").add("b1")).encode(), 200)
+            .getJsonArray("results");
+
+        assertThat(results.size(), equalTo(3));
+        assertThat(results.getJsonObject(0).getString("id"), equalTo("j1"));
+        assertThat(results.getJsonObject(0).getBoolean("found"), equalTo(true));
+        assertThat(results.getJsonObject(0).getJsonArray("objects").getJsonObject(0).getString("type"), equalTo("Junction"));
+        assertThat(results.getJsonObject(1), equalTo(new JsonObject().put("id", "missing").put("found", false).put("objects", new JsonArray())));
+        assertThat(results.getJsonObject(2).getJsonArray("objects").getJsonObject(0).getString("mRID"), equalTo("b1"));
+    }
+
+    @Test
+    public void looksUpCorrelatedIds() throws Exception {
+        JsonArray results = post("/assets?systemTag=GIS", new JsonObject().put("ids", new JsonArray().add("gis-1").add("gis-2")).encode(), 200)
+            .getJsonArray("results");
+
+        JsonArray objects = results.getJsonObject(0).getJsonArray("objects");
+        assertThat(objects.size(), equalTo(2));
+        assertThat(objects.getJsonObject(0).getString("mRID"), equalTo("b1"));
+        assertThat(objects.getJsonObject(1).getString("mRID"), equalTo("b2"));
+        assertThat(results.getJsonObject(1).getBoolean("found"), equalTo(false));
+
+        verify(networkService, never()).get(PowerSystemResource.class, "gis-1");
+    }
+
+    @Test
+    public void validatesTheBody() throws Exception {
+        String expected = "Expected a JSON object with an 'ids' array in the request body.";
+        assertThat(post("/assets", "not json", 400).getString("message"), equalTo(expected));
+        assertThat(post("/assets", "{\"ids\":\"j1\"}", 400).getString("message"), equalTo(expected));
+        assertThat(post("/assets", "{}", 400).getString("message"), equalTo(expected));
+        assertThat(post("/assets", "{\"ids\":[\"j1\",2]}", 400).getString("message"), equalTo("Invalid id '2', ids must be strings."));
+
+        JsonArray tooMany = new JsonArray();
+        for (int i = 0; i <= LookupRoute.MAX_IDS; ++i)
+            tooMany.add("id" + i);
+        assertThat(post("/assets", new JsonObject().put("ids", tooMany).encode(), 400).getString("message"),
+            equalTo("Too many ids, a maximum of 10000 can be looked up at once."));
+    }
+
+    private JsonObject post(String uri, String body, int expectedStatus) throws Exception {
+        return server.request(HttpMethod.POST, uri, Collections.emptyMap(), body).json(expectedStatus);
+    }
+
+}
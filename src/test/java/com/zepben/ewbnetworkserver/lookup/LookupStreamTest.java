@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.lookup;
+
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.*;
+
+public class LookupStreamTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+    private final StringBuffer written = new StringBuffer();
+    private final CompletableFuture<String> ended = new CompletableFuture<>();
+
+    // Every third id is not found.
+    private final Function<String, List<PowerSystemResource>> resolver = id ->
+        Integer.parseInt(id.substring(2)) % 3 == 0 ? Collections.emptyList() : Collections.singletonList(new Junction(id));
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void streamsResultsInRequestOrder() throws Exception {
+        List<String> ids = ids(LookupStream.IDS_PER_CHUNK * LookupStream.MAX_CHUNKS_IN_FLIGHT * 3 + 7);
+        captureOutput();
+
+        vertx.runOnContext(ignored -> new LookupStream(vertx, response, ids, resolver, new NetworkExportToJson()).start());
+
+        JsonArray results = new JsonObject(ended.get(5, TimeUnit.SECONDS)).getJsonArray("results");
+        assertThat(results.size(), equalTo(ids.size()));
+        for (int i = 0; i < ids.size(); ++i) {
+            JsonObject result = results.getJsonObject(i);
+            assertThat(result.getString("id"), equalTo(ids.get(i)));
+            assertThat(result.getBoolean("found"), equalTo(i % 3 != 0));
+            assertThat(result.getJsonArray("objects").size(), equalTo(i % 3 != 0 ? 1 : 0));
+        }
+
+        verify(response, times(1)).setChunked(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void waitsForTheWriteQueueToDrain() throws Exception {
+        List<String> ids = ids(LookupStream.IDS_PER_CHUNK * 3);
+        captureOutput();
+        doReturn(true).when(response).writeQueueFull();
+
+        vertx.runOnContext(ignored -> new LookupStream(vertx, response, ids, resolver, new NetworkExportToJson()).start());
+
+        Thread.sleep(200);
+        verify(response, times(1)).write(any(Buffer.class));
+
+        ArgumentCaptor<Handler<Void>> drainHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(response).drainHandler(drainHandler.capture());
+
+        doReturn(false).when(response).writeQueueFull();
+        vertx.runOnContext(ignored -> drainHandler.getValue().handle(null));
+
+        assertThat(new JsonObject(ended.get(5, TimeUnit.SECONDS)).getJsonArray("results").size(), equalTo(ids.size()));
+    }
+
+    @Test
+    public void handlesNoIds() throws Exception {
+        captureOutput();
+
+        new LookupStream(vertx, response, Collections.emptyList(), resolver, new NetworkExportToJson()).start();
+
+        assertThat(ended.get(5, TimeUnit.SECONDS), equalTo("{\"results\":[]}"));
+        verify(response, never()).setChunked(anyBoolean());
+    }
+
+    private void captureOutput() {
+        doAnswer(invocation -> {
+            written.append(invocation.getArgument(0).toString());
+            return response;
+        }).when(response).write(any(Buffer.class));
+
+        doAnswer(invocation -> {
+            ended.complete(written.append(invocation.getArgument(0).toString()).toString());
+            return null;
+        }).when(response).end(any(Buffer.class));
+
+        doAnswer(invocation -> {
+            ended.complete(written.append(invocation.getArgument(0).toString()).toString());
+            return null;
+        }).when(response).end(anyString());
+    }
+
+    private List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+            ids.add("id" + i);
+        return ids;
+    }
+
+}
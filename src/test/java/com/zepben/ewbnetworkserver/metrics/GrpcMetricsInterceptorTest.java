@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.testutils.junit.SystemLogExtension;
+import io.grpc.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class GrpcMetricsInterceptorTest {
+
+    @RegisterExtension
+    public SystemLogExtension systemOutRule = SystemLogExtension.SYSTEM_OUT.captureLog().muteOnSuccess();
+
+    private final CounterFamily callsStarted = new CounterFamily("started", "help", "method");
+    private final HistogramFamily callDuration = new HistogramFamily("duration", "help", HistogramFamily.LATENCY_BUCKETS, "method", "code");
+    private final GaugeFamily inFlight = new GaugeFamily("in_flight", "help", "method");
+    private GrpcMetricsInterceptor interceptor = new GrpcMetricsInterceptor(callsStarted, callDuration, inFlight, 0);
+
+    private final ServerCall<String, String> call = mock(ServerCall.class);
+    private final ServerCallHandler<String, String> next = mock(ServerCallHandler.class);
+    private final ServerCall.Listener<String> listener = mock(ServerCall.Listener.class);
+
+    @Test
+    public void recordsCompletedCalls() {
+        ArgumentCaptor<ServerCall<String, String>> wrappedCall = startCall();
+
+        assertThat(collect(inFlight), containsString("in_flight{method=\"test.Service/Method\"} 1\n"));
+        assertThat(collect(callsStarted), containsString("started{method=\"test.Service/Method\"} 1\n"));
+
+        wrappedCall.getValue().close(Status.NOT_FOUND, new Metadata());
+
+        verify(call, times(1)).close(any(), any());
+        assertThat(collect(inFlight), containsString("in_flight{method=\"test.Service/Method\"} 0\n"));
+        assertThat(collect(callDuration), containsString("duration_count{method=\"test.Service/Method\",code=\"NOT_FOUND\"} 1\n"));
+    }
+
+    @Test
+    public void recordsCancelledCallsOnce() {
+        startCall();
+
+        ServerCall.Listener<String> wrappedListener = interceptor.interceptCall(call, new Metadata(), next);
+        wrappedListener.onCancel();
+        wrappedListener.onCancel();
+
+        verify(listener, times(2)).onCancel();
+        assertThat(collect(callDuration), containsString("duration_count{method=\"test.Service/Method\",code=\"CANCELLED\"} 1\n"));
+    }
+
+    @Test
+    public void recordsCancellationsAfterTheDeadlineAsDeadlineExceeded() {
+        startCall();
+        ServerCall.Listener<String> wrappedListener = interceptor.interceptCall(call, new Metadata(), next);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Context.CancellableContext context = Context.current().withDeadlineAfter(0, TimeUnit.NANOSECONDS, scheduler);
+            context.run(wrappedListener::onCancel);
+            context.cancel(null);
+        } finally {
+            scheduler.shutdownNow();
+        }
+
+        assertThat(collect(callDuration), containsString("duration_count{method=\"test.Service/Method\",code=\"DEADLINE_EXCEEDED\"} 1\n"));
+    }
+
+    @Test
+    public void logsSlowCallsWithTheirRequest() {
+        interceptor = new GrpcMetricsInterceptor(callsStarted, callDuration, inFlight, 1);
+        ArgumentCaptor<ServerCall<String, String>> wrappedCall = startCall();
+        wrappedCall.getValue().close(Status.OK, new Metadata());
+
+        assertThat(systemOutRule.getLog(), containsString("Slow gRPC call to test.Service/Method took "));
+        assertThat(systemOutRule.getLog(), containsString("[OK]: no request"));
+
+        ServerCall.Listener<String> wrappedListener = interceptor.interceptCall(call, new Metadata(), next);
+        wrappedListener.onMessage("mrids: \"a\"\nmrids: \"b\"\n");
+        wrappedListener.onMessage("mrids: \"c\"\n");
+        wrappedListener.onCancel();
+
+        verify(listener, times(2)).onMessage(any());
+        assertThat(systemOutRule.getLog(), containsString("[CANCELLED]: mrids: \"a\" mrids: \"b\" (+1 more requests)"));
+    }
+
+    @Test
+    public void doesNotLogWhenSlowCallLoggingIsDisabled() {
+        ArgumentCaptor<ServerCall<String, String>> wrappedCall = startCall();
+        wrappedCall.getValue().close(Status.OK, new Metadata());
+
+        assertThat(systemOutRule.getLog(), not(containsString("Slow gRPC call")));
+    }
+
+    @Test
+    public void describesRequests() {
+        assertThat(GrpcMetricsInterceptor.describe(null, 0), equalTo("no request"));
+        assertThat(GrpcMetricsInterceptor.describe("a\n  b\n", 1), equalTo("a b"));
+        assertThat(GrpcMetricsInterceptor.describe("a", 3), equalTo("a (+2 more requests)"));
+        assertThat(GrpcMetricsInterceptor.describe(new byte[]{1, 2, 3}, 1), equalTo("base64:AQID"));
+
+        StringBuilder longRequest = new StringBuilder();
+        for (int i = 0; i <= GrpcMetricsInterceptor.MAX_LOGGED_REQUEST_LENGTH; ++i)
+            longRequest.append('x');
+        assertThat(GrpcMetricsInterceptor.describe(longRequest.toString(), 1).length(), equalTo(GrpcMetricsInterceptor.MAX_LOGGED_REQUEST_LENGTH + 3));
+    }
+
+    private ArgumentCaptor<ServerCall<String, String>> startCall() {
+        MethodDescriptor<String, String> method = MethodDescriptor.<String, String>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName("test.Service/Method")
+            .setRequestMarshaller(mock(MethodDescriptor.Marshaller.class))
+            .setResponseMarshaller(mock(MethodDescriptor.Marshaller.class))
+            .build();
+        doReturn(method).when(call).getMethodDescriptor();
+        doReturn(listener).when(next).startCall(any(), any());
+
+        interceptor.interceptCall(call, new Metadata(), next);
+
+        ArgumentCaptor<ServerCall<String, String>> wrappedCall = ArgumentCaptor.forClass(ServerCall.class);
+        verify(next, times(1)).startCall(wrappedCall.capture(), any());
+        return wrappedCall;
+    }
+
+    private String collect(Collector collector) {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        collector.collect(writer);
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class GrpcStreamMetricsTest {
+
+    private final HistogramFamily streamMessages = new HistogramFamily("messages", "help", new double[]{1, 10}, 1, "method", "direction");
+    private final HistogramFamily streamBytes = new HistogramFamily("bytes", "help", new double[]{100, 1000}, 1, "method", "direction");
+    private final GrpcStreamMetrics streamMetrics = new GrpcStreamMetrics(streamMessages, streamBytes);
+
+    @Test
+    public void recordsMessagesAndBytesWhenTheStreamCloses() {
+        ServerStreamTracer tracer = streamMetrics.newServerStreamTracer("test.Service/Method", new Metadata());
+        tracer.serverCallStarted(callInfo("test.Service/Method"));
+        tracer.inboundMessage(0);
+        tracer.inboundWireSize(50);
+        for (int i = 0; i < 5; ++i) {
+            tracer.outboundMessage(i);
+            tracer.outboundWireSize(150);
+        }
+
+        assertThat(collect(streamMessages), not(containsString("messages_count")));
+
+        tracer.streamClosed(Status.OK);
+        tracer.streamClosed(Status.CANCELLED);
+
+        String messages = collect(streamMessages);
+        assertThat(messages, containsString("messages_bucket{method=\"test.Service/Method\",direction=\"received\",le=\"1\"} 1\n"));
+        assertThat(messages, containsString("messages_bucket{method=\"test.Service/Method\",direction=\"sent\",le=\"1\"} 0\n"));
+        assertThat(messages, containsString("messages_bucket{method=\"test.Service/Method\",direction=\"sent\",le=\"10\"} 1\n"));
+        assertThat(messages, containsString("messages_count{method=\"test.Service/Method\",direction=\"sent\"} 1\n"));
+
+        String bytes = collect(streamBytes);
+        assertThat(bytes, containsString("bytes_sum{method=\"test.Service/Method\",direction=\"sent\"} 750\n"));
+        assertThat(bytes, containsString("bytes_sum{method=\"test.Service/Method\",direction=\"received\"} 50\n"));
+    }
+
+    @Test
+    public void labelsMethodsTheServerDoesNotHaveAsUnknown() {
+        ServerStreamTracer tracer = streamMetrics.newServerStreamTracer("made.up/" + Math.random(), new Metadata());
+        tracer.inboundMessage(0);
+        tracer.streamClosed(Status.UNIMPLEMENTED);
+
+        String messages = collect(streamMessages);
+        assertThat(messages, containsString("messages_count{method=\"unknown\",direction=\"received\"} 1\n"));
+        assertThat(messages, not(containsString("made.up")));
+    }
+
+    private ServerStreamTracer.ServerCallInfo<?, ?> callInfo(String fullMethodName) {
+        MethodDescriptor<?, ?> method = MethodDescriptor.newBuilder(mock(MethodDescriptor.Marshaller.class), mock(MethodDescriptor.Marshaller.class))
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName(fullMethodName)
+            .build();
+
+        ServerStreamTracer.ServerCallInfo<?, ?> callInfo = mock(ServerStreamTracer.ServerCallInfo.class);
+        doReturn(method).when(callInfo).getMethodDescriptor();
+        return callInfo;
+    }
+
+    private String collect(Collector collector) {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        collector.collect(writer);
+        return writer.toString();
+    }
+
+}
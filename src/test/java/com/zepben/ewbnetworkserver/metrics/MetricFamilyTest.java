@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class MetricFamilyTest {
+
+    @Test
+    public void histogramsUseCumulativeBuckets() {
+        HistogramFamily family = new HistogramFamily("test_seconds", "help", new double[]{0.1, 1}, "route");
+
+        family.labels("/a").observeNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        family.labels("/a").observeNanos(TimeUnit.MILLISECONDS.toNanos(500));
+        family.labels("/a").observeNanos(TimeUnit.SECONDS.toNanos(5));
+
+        assertThat(family.labels("/a").count(), equalTo(3L));
+
+        String text = collect(family);
+        assertThat(text, containsString("# TYPE test_seconds histogram\n"));
+        assertThat(text, containsString("test_seconds_bucket{route=\"/a\",le=\"0.1\"} 1\n"));
+        assertThat(text, containsString("test_seconds_bucket{route=\"/a\",le=\"1\"} 2\n"));
+        assertThat(text, containsString("test_seconds_bucket{route=\"/a\",le=\"+Inf\"} 3\n"));
+        assertThat(text, containsString("test_seconds_sum{route=\"/a\"} 5.55\n"));
+        assertThat(text, containsString("test_seconds_count{route=\"/a\"} 3\n"));
+    }
+
+    @Test
+    public void unscaledHistogramsReportTheObservedValues() {
+        HistogramFamily family = new HistogramFamily("test_bytes", "help", new double[]{10, 100}, 1, "method");
+
+        family.labels("m").observe(5);
+        family.labels("m").observe(50);
+
+        String text = collect(family);
+        assertThat(text, containsString("test_bytes_bucket{method=\"m\",le=\"10\"} 1\n"));
+        assertThat(text, containsString("test_bytes_bucket{method=\"m\",le=\"100\"} 2\n"));
+        assertThat(text, containsString("test_bytes_sum{method=\"m\"} 55\n"));
+    }
+
+    @Test
+    public void countersAccumulatePerLabel() {
+        CounterFamily family = new CounterFamily("test_total", "help", "layer");
+
+        family.inc("a");
+        family.inc(4, "a");
+        family.inc("b");
+
+        String text = collect(family);
+        assertThat(text, containsString("test_total{layer=\"a\"} 5\n"));
+        assertThat(text, containsString("test_total{layer=\"b\"} 1\n"));
+    }
+
+    @Test
+    public void gaugesCanBeSetAndAdjusted() {
+        GaugeFamily family = new GaugeFamily("test_gauge", "help");
+
+        family.set(3);
+        family.labels().inc();
+        family.labels().dec();
+        family.labels().add(0.5);
+
+        assertThat(collect(family), containsString("test_gauge 3.5\n"));
+
+        family.clear();
+        assertThat(collect(family), equalTo("# HELP test_gauge help\n# TYPE test_gauge gauge\n"));
+    }
+
+    @Test
+    public void reusesChildrenForTheSameLabels() {
+        CounterFamily family = new CounterFamily("test_total", "help", "a", "b");
+
+        assertThat(family.labels("x", "y"), sameInstance(family.labels("x", "y")));
+    }
+
+    @Test
+    public void validatesLabelCount() {
+        CounterFamily family = new CounterFamily("test_total", "help", "a", "b");
+
+        expect(() -> family.labels("x"))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("Metric 'test_total' expects 2 label values, but 1 were supplied.");
+    }
+
+    private String collect(Collector collector) {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        collector.collect(writer);
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class PrometheusTextWriterTest {
+
+    @Test
+    public void writesSamples() {
+        PrometheusTextWriter writer = new PrometheusTextWriter()
+            .header("metric_name", "gauge", "Some help\\text.")
+            .sample("metric_name", Collections.emptyList(), Collections.emptyList(), 1)
+            .sample("metric_name", Arrays.asList("a", "b"), Arrays.asList("x\"y", "line\nbreak"), 1.5)
+            .sample("metric_name_bucket", Collections.singletonList("a"), Collections.singletonList("x"), "le", "+Inf", 3);
+
+        assertThat(writer.toString(), equalTo(
+            "# HELP metric_name Some help\\\\text.\n" +
+                "# TYPE metric_name gauge\n" +
+                "metric_name 1\n" +
+                "metric_name{a=\"x\\\"y\",b=\"line\\nbreak\"} 1.5\n" +
+                "metric_name_bucket{a=\"x\",le=\"+Inf\"} 3\n"));
+    }
+
+    @Test
+    public void formatsValues() {
+        assertThat(PrometheusTextWriter.format(Double.POSITIVE_INFINITY), equalTo("+Inf"));
+        assertThat(PrometheusTextWriter.format(Double.NEGATIVE_INFINITY), equalTo("-Inf"));
+        assertThat(PrometheusTextWriter.format(Double.NaN), equalTo("NaN"));
+        assertThat(PrometheusTextWriter.format(42), equalTo("42"));
+        assertThat(PrometheusTextWriter.format(0.25), equalTo("0.25"));
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.*;
+
+public class RouteMetricsHandlerTest {
+
+    private final HistogramFamily requestDuration = new HistogramFamily("duration", "help", HistogramFamily.LATENCY_BUCKETS, "method", "route", "status");
+    private final GaugeFamily inFlight = new GaugeFamily("in_flight", "help");
+    private final RouteMetricsHandler handler = new RouteMetricsHandler(requestDuration, inFlight);
+
+    private final Route metricsRoute = mock(Route.class);
+    private final Route matchedRoute = mock(Route.class);
+    private final RoutingContext context = mock(RoutingContext.class, RETURNS_DEEP_STUBS);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void recordsRequestsAgainstTheRoutePattern() {
+        doReturn(metricsRoute).when(context).currentRoute();
+        doReturn(HttpMethod.GET).when(context.request()).method();
+        doReturn(200).when(context.response()).getStatusCode();
+        doReturn("/ewb/network/api/v1/equipment/:mRID").when(matchedRoute).getPath();
+
+        handler.handle(context);
+
+        verify(context, times(1)).next();
+        assertThat(collect(inFlight), containsString("in_flight 1\n"));
+
+        ArgumentCaptor<Handler<Void>> bodyEndHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(context, times(1)).addBodyEndHandler(bodyEndHandler.capture());
+
+        doReturn(matchedRoute).when(context).currentRoute();
+        bodyEndHandler.getValue().handle(null);
+
+        assertThat(collect(inFlight), containsString("in_flight 0\n"));
+        assertThat(collect(requestDuration), containsString("duration_count{method=\"GET\",route=\"/ewb/network/api/v1/equipment/:mRID\",status=\"200\"} 1\n"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void recordsUnmatchedRequests() {
+        doReturn(metricsRoute).when(context).currentRoute();
+        doReturn(HttpMethod.POST).when(context.request()).method();
+        doReturn(404).when(context.response()).getStatusCode();
+
+        handler.handle(context);
+
+        ArgumentCaptor<Handler<Void>> bodyEndHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(context, times(1)).addBodyEndHandler(bodyEndHandler.capture());
+        bodyEndHandler.getValue().handle(null);
+
+        assertThat(collect(requestDuration), containsString("duration_count{method=\"POST\",route=\"unmatched\",status=\"404\"} 1\n"));
+    }
+
+    private String collect(Collector collector) {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        collector.collect(writer);
+        return writer.toString();
+    }
+
+}
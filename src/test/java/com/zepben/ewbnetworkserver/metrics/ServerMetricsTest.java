@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.metrics;
+
+import com.zepben.evolve.cim.iec61970.base.core.IdentifiedObject;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.patch.PatchLayer;
+import com.zepben.ewbnetworkserver.patch.PatchResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.*;
+
+public class ServerMetricsTest {
+
+    private final ServerMetrics serverMetrics = new ServerMetrics();
+
+    @Test
+    public void exposesAllMetricFamilies() {
+        String text = serverMetrics.scrape();
+
+        assertThat(text, containsString("# TYPE ewb_http_request_duration_seconds histogram\n"));
+        assertThat(text, containsString("# TYPE ewb_http_requests_in_flight gauge\n"));
+        assertThat(text, containsString("# TYPE ewb_grpc_call_duration_seconds histogram\n"));
+        assertThat(text, containsString("# TYPE ewb_grpc_calls_in_flight gauge\n"));
+        assertThat(text, containsString("# TYPE ewb_grpc_calls_started_total counter\n"));
+        assertThat(text, containsString("# TYPE ewb_grpc_stream_messages histogram\n"));
+        assertThat(text, containsString("# TYPE ewb_grpc_stream_bytes histogram\n"));
+        assertThat(text, containsString("# TYPE ewb_vertx_event_loop_lag_seconds gauge\n"));
+        assertThat(text, containsString("# TYPE ewb_vertx_worker_pool_queue_depth gauge\n"));
+        assertThat(text, containsString("# TYPE jvm_memory_heap_used_bytes gauge\n"));
+        assertThat(text, containsString("# TYPE jvm_gc_collections_total counter\n"));
+        assertThat(text, containsString("# TYPE ewb_startup_phase_duration_seconds gauge\n"));
+        assertThat(text, containsString("# TYPE ewb_network_objects gauge\n"));
+        assertThat(text, containsString("# TYPE ewb_patches_total counter\n"));
+        assertThat(text, containsString("# TYPE ewb_patch_features_total counter\n"));
+    }
+
+    @Test
+    public void recordsStartupPhases() {
+        serverMetrics.recordStartupPhase("load_network", TimeUnit.MILLISECONDS.toNanos(1500));
+
+        assertThat(serverMetrics.scrape(), containsString("ewb_startup_phase_duration_seconds{phase=\"load_network\"} 1.5\n"));
+    }
+
+    @Test
+    public void countsNetworkObjectsByType() {
+        NetworkService networkService = mock(NetworkService.class);
+        doReturn(Arrays.asList(new Breaker("b1"), new Breaker("b2"), new Junction("j1"))).when(networkService).listOf(IdentifiedObject.class);
+
+        serverMetrics.updateNetworkObjectCounts(networkService);
+
+        assertThat(serverMetrics.scrape(), containsString("ewb_network_objects{type=\"Breaker\"} 2\n"));
+        assertThat(serverMetrics.scrape(), containsString("ewb_network_objects{type=\"Junction\"} 1\n"));
+
+        doReturn(Collections.singletonList(new Junction("j1"))).when(networkService).listOf(IdentifiedObject.class);
+        serverMetrics.updateNetworkObjectCounts(networkService);
+
+        assertThat(serverMetrics.scrape(), not(containsString("ewb_network_objects{type=\"Breaker\"}")));
+    }
+
+    @Test
+    public void countsIdCorrelations() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("GIS", 10);
+        counts.put("SCADA", 5);
+        serverMetrics.updateIdCorrelations(counts, 2048);
+
+        String text = serverMetrics.scrape();
+        assertThat(text, containsString("ewb_id_correlations{system_tag=\"GIS\"} 10\n"));
+        assertThat(text, containsString("ewb_id_correlations{system_tag=\"SCADA\"} 5\n"));
+        assertThat(text, containsString("ewb_id_correlation_bytes 2048\n"));
+    }
+
+    @Test
+    public void countsPatches() {
+        PatchMetrics patchMetrics = serverMetrics.patchMetrics();
+        patchMetrics.addFeature(PatchLayer.hvLines);
+        patchMetrics.addFeature(PatchLayer.hvLines);
+        patchMetrics.removeFeature(PatchLayer.poles);
+        patchMetrics.addResult(new PatchResult(1).addError("error").addWarning("warning1").addWarning("warning2"));
+
+        String text = serverMetrics.scrape();
+        assertThat(text, containsString("ewb_patches_total 1\n"));
+        assertThat(text, containsString("ewb_patch_features_total{layer=\"hvLines\",action=\"add\"} 2\n"));
+        assertThat(text, containsString("ewb_patch_features_total{layer=\"poles\",action=\"remove\"} 1\n"));
+        assertThat(text, containsString("ewb_patch_errors_total 1\n"));
+        assertThat(text, containsString("ewb_patch_warnings_total 2\n"));
+    }
+
+    @Test
+    public void respondsToScrapes() {
+        RoutingContext context = mock(RoutingContext.class);
+        HttpServerResponse response = mock(HttpServerResponse.class);
+        doReturn(response).when(context).response();
+        doReturn(response).when(response).putHeader(anyString(), anyString());
+
+        serverMetrics.scrapeHandler().handle(context);
+
+        verify(response, times(1)).putHeader("Content-Type", ServerMetrics.CONTENT_TYPE);
+        verify(response, times(1)).end(contains("ewb_http_request_duration_seconds"));
+    }
+
+    @Test
+    public void monitorsVertx() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            serverMetrics.start(vertx);
+            Thread.sleep(1500);
+
+            String text = serverMetrics.scrape();
+            assertThat(text, containsString("ewb_vertx_event_loop_lag_seconds{event_loop=\"0\"}"));
+            assertThat(text, containsString("ewb_vertx_worker_pool_queue_depth 0\n"));
+        } finally {
+            vertx.close();
+        }
+    }
+
+}
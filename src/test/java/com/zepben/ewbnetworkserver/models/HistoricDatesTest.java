@@ -0,0 +1,290 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import com.zepben.ewbnetworkserver.diff.NetworkSnapshot;
+import com.zepben.ewbnetworkserver.digest.CanonicalEncoder;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+public class HistoricDatesTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final Map<LocalDate, AtomicInteger> loadCounts = new ConcurrentHashMap<>();
+    private final Map<LocalDate, AtomicInteger> resolveCounts = new ConcurrentHashMap<>();
+    private final CountDownLatch loadLatch = new CountDownLatch(1);
+    private final LocalDate failingDate = LocalDate.of(2020, 1, 31);
+    private final LocalDate weekend = LocalDate.of(2020, 1, 4);
+    private final LocalDate missingDate = LocalDate.of(2019, 12, 31);
+
+    private final HistoricDates historicDates = new HistoricDates(() -> vertx, 2, this::resolveDate, this::createModel);
+    private TestHttpServer server;
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void loadsDatesOnDemand() throws Exception {
+        startServer();
+
+        assertThat(get("/dates/2020-01-01/ewb/hello", null, 503), equalTo("{\"message\":\"The network for 2020-01-01 is loading.\"}"));
+        assertThat(get("/dates/2020-01-01/ewb/hello", null, 503), equalTo("{\"message\":\"The network for 2020-01-01 is loading.\"}"));
+
+        loadLatch.countDown();
+        awaitLoaded("/dates/2020-01-01/ewb/hello");
+
+        assertThat(get("/dates/2020-01-01/ewb/hello", null, 200), equalTo("2020-01-01"));
+        assertThat(get("/ewb/hello", "2020-01-01", 200), equalTo("2020-01-01"));
+        assertThat(get("/ewb/hello", null, 200), equalTo("current"));
+        get("/dates/2020-01-01/ewb/missing", null, 404);
+
+        assertThat(loadCounts.get(LocalDate.of(2020, 1, 1)).get(), equalTo(1));
+    }
+
+    @Test
+    public void unloadsTheLeastRecentlyUsedDate() throws Exception {
+        loadLatch.countDown();
+        startServer();
+
+        awaitLoaded("/dates/2020-01-01/ewb/hello");
+        awaitLoaded("/dates/2020-01-02/ewb/hello");
+        get("/dates/2020-01-01/ewb/hello", null, 200);
+        awaitLoaded("/dates/2020-01-03/ewb/hello");
+
+        assertThat(historicDates.dates(), contains(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 3)));
+
+        awaitLoaded("/dates/2020-01-02/ewb/hello");
+        assertThat(loadCounts.get(LocalDate.of(2020, 1, 2)).get(), equalTo(2));
+        assertThat(loadCounts.get(LocalDate.of(2020, 1, 1)).get(), equalTo(1));
+    }
+
+    @Test
+    public void sharesNetworksBetweenDatesWithTheSameData() throws Exception {
+        loadLatch.countDown();
+        startServer();
+
+        awaitLoaded("/dates/2020-01-04/ewb/hello");
+        assertThat(get("/dates/2020-01-04/ewb/hello", null, 200), equalTo("2020-01-03"));
+        awaitLoaded("/dates/2020-01-03/ewb/hello");
+        assertThat(get("/dates/2020-01-03/ewb/hello", null, 200), equalTo("2020-01-03"));
+
+        assertThat(historicDates.dates(), contains(LocalDate.of(2020, 1, 3)));
+        assertThat(loadCounts.get(LocalDate.of(2020, 1, 3)).get(), equalTo(1));
+        assertThat(loadCounts.containsKey(weekend), equalTo(false));
+    }
+
+    @Test
+    public void reportsDatesWithoutData() throws Exception {
+        startServer();
+
+        assertThat(get("/dates/2019-12-31/ewb/hello", null, 503), equalTo("{\"message\":\"The network for 2019-12-31 is loading.\"}"));
+        awaitStatus("/dates/2019-12-31/ewb/hello", 404);
+
+        // Dates without data are remembered rather than searched for again.
+        assertThat(get("/dates/2019-12-31/ewb/hello", null, 404), equalTo("{\"message\":\"Unable to load the network for 2019-12-31.\"}"));
+        assertThat(resolveCount(missingDate), equalTo(1));
+        assertThat(historicDates.dates(), empty());
+        assertThat(loadCounts.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void skipsUnloadedDatesAndLimitsQueuedLoads() throws Exception {
+        startServer();
+
+        get("/dates/2020-01-01/ewb/hello", null, 503);
+        long end = System.currentTimeMillis() + 5000;
+        while (!loadCounts.containsKey(LocalDate.of(2020, 1, 1)) && (System.currentTimeMillis() < end))
+            Thread.sleep(10);
+
+        // 2020-01-02 is queued behind the running load, and unloaded by 2020-01-03 before it starts.
+        get("/dates/2020-01-02/ewb/hello", null, 503);
+        awaitDates(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 2));
+        get("/dates/2020-01-01/ewb/hello", null, 503);
+        get("/dates/2020-01-03/ewb/hello", null, 503);
+        awaitDates(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 3));
+
+        // 2020-01-02 and 2020-01-03 are both still queued, so 2020-01-05 has to wait for one of them to start. It is resolved
+        // again by the next request once the first resolution has finished without queueing it.
+        LocalDate waiting = LocalDate.of(2020, 1, 5);
+        end = System.currentTimeMillis() + 5000;
+        while ((resolveCount(waiting) < 2) && (System.currentTimeMillis() < end)) {
+            get("/dates/2020-01-05/ewb/hello", null, 503);
+            Thread.sleep(10);
+        }
+        assertThat(resolveCount(waiting), greaterThanOrEqualTo(2));
+        assertThat(historicDates.dates(), contains(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 3)));
+
+        loadLatch.countDown();
+        awaitLoaded("/dates/2020-01-03/ewb/hello");
+
+        assertThat(loadCounts.containsKey(LocalDate.of(2020, 1, 2)), equalTo(false));
+        assertThat(loadCounts.get(LocalDate.of(2020, 1, 3)).get(), equalTo(1));
+    }
+
+    @Test
+    public void reportsDatesThatFailToLoad() throws Exception {
+        loadLatch.countDown();
+        startServer();
+
+        get("/dates/2020-01-31/ewb/hello", null, 503);
+
+        String body = "";
+        long end = System.currentTimeMillis() + 5000;
+        while (!body.contains("Unable") && (System.currentTimeMillis() < end)) {
+            Thread.sleep(10);
+            body = new String(request("/dates/2020-01-31/ewb/hello", null).body(), StandardCharsets.UTF_8);
+        }
+
+        assertThat(get("/dates/2020-01-31/ewb/hello", null, 404), equalTo("{\"message\":\"Unable to load the network for 2020-01-31.\"}"));
+        assertThat(loadCounts.get(failingDate).get(), equalTo(1));
+    }
+
+    @Test
+    public void passesLoadedDatesToHandlers() throws Exception {
+        startServer();
+
+        assertThat(get("/snapshot/2020-01-01", null, 503), equalTo("{\"message\":\"The network for 2020-01-01 is loading.\"}"));
+
+        loadLatch.countDown();
+        awaitLoaded("/snapshot/2020-01-01");
+
+        assertThat(get("/snapshot/2020-01-01", null, 200), equalTo("2020-01-01"));
+        assertThat(loadCounts.get(LocalDate.of(2020, 1, 1)).get(), equalTo(1));
+    }
+
+    @Test
+    public void validatesDates() throws Exception {
+        startServer();
+
+        assertThat(get("/dates/yesterday/ewb/hello", null, 400), equalTo("{\"message\":\"Invalid date 'yesterday', expected yyyy-MM-dd.\"}"));
+        assertThat(get("/ewb/hello", "2020-13-01", 400), equalTo("{\"message\":\"Invalid date '2020-13-01', expected yyyy-MM-dd.\"}"));
+    }
+
+    @Test
+    public void canBeDisabled() {
+        assertThat(historicDates.isEnabled(), equalTo(true));
+        assertThat(new HistoricDates(() -> vertx, 0, this::resolveDate, this::createModel).isEnabled(), equalTo(false));
+    }
+
+    @Nullable
+    private LocalDate resolveDate(LocalDate date) {
+        resolveCounts.computeIfAbsent(date, key -> new AtomicInteger()).incrementAndGet();
+        if (date.equals(missingDate))
+            return null;
+        return date.equals(weekend) ? date.minusDays(1) : date;
+    }
+
+    private int resolveCount(LocalDate date) {
+        AtomicInteger count = resolveCounts.get(date);
+        return count == null ? 0 : count.get();
+    }
+
+    private NetworkModels.Model createModel(LocalDate date) {
+        loadCounts.computeIfAbsent(date, key -> new AtomicInteger()).incrementAndGet();
+
+        Router router = Router.router(vertx);
+        router.get("/ewb/hello").handler(context -> context.response().end(date.toString()));
+
+        return new NetworkModels.Model() {
+            @Override
+            public boolean load() {
+                try {
+                    loadLatch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return !date.equals(failingDate);
+            }
+
+            @Override
+            public Router router() {
+                return router;
+            }
+
+            @Override
+            public NetworkSnapshot snapshot() {
+                return NetworkSnapshot.of(date, new NetworkService(), new CanonicalEncoder());
+            }
+        };
+    }
+
+    private void startServer() throws Exception {
+        Router router = Router.router(vertx);
+        historicDates.mount(router);
+        router.get("/ewb/hello").handler(context -> context.response().end("current"));
+        router.get("/snapshot/:date").handler(context -> historicDates.withModel(context,
+            LocalDate.parse(context.pathParam("date")),
+            model -> context.response().end(model.snapshot().date().toString())));
+
+        server = TestHttpServer.start(vertx, router);
+    }
+
+    private void awaitLoaded(String uri) throws Exception {
+        awaitStatus(uri, 200);
+    }
+
+    private void awaitStatus(String uri, int expectedStatus) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while ((status(uri) != expectedStatus) && (System.currentTimeMillis() < end))
+            Thread.sleep(10);
+    }
+
+    private void awaitDates(LocalDate... dates) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while (!historicDates.dates().equals(Arrays.asList(dates)) && (System.currentTimeMillis() < end))
+            Thread.sleep(10);
+        assertThat(historicDates.dates(), contains(dates));
+    }
+
+    private int status(String uri) throws Exception {
+        return server.get(uri).statusCode();
+    }
+
+    private String get(String uri, @Nullable String date, int expectedStatus) throws Exception {
+        return request(uri, date).text(expectedStatus);
+    }
+
+    private TestHttpServer.Response request(String uri, @Nullable String date) throws Exception {
+        return server.get(uri, date == null ? Collections.emptyMap() : Collections.singletonMap(HistoricDates.DATE_HEADER, date));
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class ModelsRouteTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final NetworkModels networkModels = mock(NetworkModels.class);
+
+    private TestHttpServer server;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        doReturn(Collections.singletonList(new JsonObject().put("name", "north").put("status", "LOADED"))).when(networkModels).toJson();
+        doReturn(NetworkModels.ReloadResult.STARTED).when(networkModels).reload(any(), any());
+
+        ModelsRoute modelsRoute = new ModelsRoute(networkModels);
+        Router router = Router.router(vertx);
+        router.get("/status").handler(modelsRoute::status);
+        router.post("/:name/reload").handler(modelsRoute::reload);
+
+        server = TestHttpServer.start(vertx, router);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void reportsModelStatus() throws Exception {
+        JsonArray models = server.request(HttpMethod.GET, "/status").json(200).getJsonArray("models");
+
+        assertThat(models, equalTo(new JsonArray().add(new JsonObject().put("name", "north").put("status", "LOADED"))));
+    }
+
+    @Test
+    public void reloadsModels() throws Exception {
+        assertThat(server.request(HttpMethod.POST, "/north/reload").json(202),
+            equalTo(new JsonObject().put("name", "north").put("status", "LOADING")));
+
+        doReturn(NetworkModels.ReloadResult.ALREADY_LOADING).when(networkModels).reload(any(), any());
+        assertThat(server.request(HttpMethod.POST, "/north/reload").json(409).getString("message"),
+            equalTo("Model 'north' is already loading."));
+
+        doReturn(NetworkModels.ReloadResult.UNKNOWN_MODEL).when(networkModels).reload(any(), any());
+        assertThat(server.request(HttpMethod.POST, "/east/reload").json(404).getString("message"), equalTo("Model 'east' was not found."));
+    }
+
+}
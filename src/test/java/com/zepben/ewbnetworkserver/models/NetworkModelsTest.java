@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import com.zepben.ewbnetworkserver.diff.NetworkSnapshot;
+import com.zepben.ewbnetworkserver.digest.CanonicalEncoder;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class NetworkModelsTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicBoolean failLoad = new AtomicBoolean(false);
+    @Nullable private volatile CountDownLatch loadLatch = null;
+
+    private final NetworkModels networkModels = new NetworkModels(Arrays.asList("north", "south"), this::createModel);
+
+    private TestHttpServer server;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        Router router = Router.router(vertx);
+        networkModels.mount(router);
+        router.get("/ewb/hello").handler(context -> context.response().end("default"));
+
+        server = TestHttpServer.start(vertx, router);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void reportsModelsBeforeLoading() throws Exception {
+        assertThat(networkModels.isEmpty(), equalTo(false));
+        assertThat(networkModels.names(), contains("north", "south"));
+        assertThat(networkModels.contains("north"), equalTo(true));
+        assertThat(networkModels.contains("east"), equalTo(false));
+
+        JsonObject north = networkModels.toJson().get(0);
+        assertThat(north.getString("name"), equalTo("north"));
+        assertThat(north.getString("path"), equalTo("/models/north"));
+        assertThat(north.getString("status"), equalTo("PENDING"));
+        assertThat(north.getBoolean("serving"), equalTo(false));
+
+        assertThat(get("/models/north/ewb/hello", null, 503), equalTo("{\"message\":\"Model 'north' is pending.\"}"));
+        assertThat(get("/ewb/hello", null, 200), equalTo("default"));
+    }
+
+    @Test
+    public void routesByPathAndHeader() throws Exception {
+        loadAll();
+
+        assertThat(get("/models/north/ewb/hello", null, 200), equalTo("north-1"));
+        assertThat(get("/models/south/ewb/hello?q=1", null, 200), equalTo("south-2"));
+        assertThat(get("/ewb/hello", "south", 200), equalTo("south-2"));
+        assertThat(get("/ewb/hello", null, 200), equalTo("default"));
+        get("/models/east/ewb/hello", null, 404);
+        get("/models/north/ewb/missing", null, 404);
+    }
+
+    @Test
+    public void reloadsModels() throws Exception {
+        loadAll();
+
+        assertThat(networkModels.reload(vertx, "north"), equalTo(NetworkModels.ReloadResult.STARTED));
+        awaitStatus(0, "LOADED");
+
+        assertThat(get("/models/north/ewb/hello", null, 200), equalTo("north-3"));
+        assertThat(networkModels.reload(vertx, "east"), equalTo(NetworkModels.ReloadResult.UNKNOWN_MODEL));
+    }
+
+    @Test
+    public void keepsServingTheOldModelWhileReloading() throws Exception {
+        loadAll();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        loadLatch = latch;
+        assertThat(networkModels.reload(vertx, "north"), equalTo(NetworkModels.ReloadResult.STARTED));
+        awaitStatus(0, "LOADING");
+
+        assertThat(networkModels.reload(vertx, "north"), equalTo(NetworkModels.ReloadResult.ALREADY_LOADING));
+        assertThat(get("/models/north/ewb/hello", null, 200), equalTo("north-1"));
+
+        latch.countDown();
+        awaitStatus(0, "LOADED");
+        assertThat(get("/models/north/ewb/hello", null, 200), equalTo("north-3"));
+    }
+
+    @Test
+    public void keepsServingTheOldModelIfReloadingFails() throws Exception {
+        loadAll();
+
+        failLoad.set(true);
+        assertThat(networkModels.reload(vertx, "south"), equalTo(NetworkModels.ReloadResult.STARTED));
+        awaitStatus(1, "FAILED");
+
+        assertThat(networkModels.toJson().get(1).getBoolean("serving"), equalTo(true));
+        assertThat(get("/models/south/ewb/hello", null, 200), equalTo("south-2"));
+    }
+
+    @Test
+    public void substitutesTheModelIntoThePatchApi() {
+        assertThat(NetworkModels.patchApiFor("https://patches/{model}/api", "north"), equalTo("https://patches/north/api"));
+        assertThat(NetworkModels.patchApiFor("https://patches/api?model={model}", null), equalTo("https://patches/api?model="));
+        assertThat(NetworkModels.patchApiFor("https://patches/api", null), equalTo("https://patches/api"));
+    }
+
+    @Test
+    public void reportsModelsThatFailToLoad() throws Exception {
+        failLoad.set(true);
+        networkModels.loadAll(vertx);
+        awaitStatus(0, "FAILED");
+        awaitStatus(1, "FAILED");
+
+        assertThat(get("/models/north/ewb/hello", null, 503), equalTo("{\"message\":\"Model 'north' is failed.\"}"));
+    }
+
+    private NetworkModels.Model createModel(String name) {
+        int modelGeneration = generation.incrementAndGet();
+        Router router = Router.router(vertx);
+        router.get("/ewb/hello").handler(context -> context.response().end(name + "-" + modelGeneration));
+
+        return new NetworkModels.Model() {
+            @Override
+            public boolean load() {
+                CountDownLatch latch = loadLatch;
+                try {
+                    if (latch != null)
+                        latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return !failLoad.get();
+            }
+
+            @Override
+            public Router router() {
+                return router;
+            }
+
+            @Override
+            public NetworkSnapshot snapshot() {
+                return NetworkSnapshot.of(LocalDate.of(2020, 1, 1), new NetworkService(), new CanonicalEncoder());
+            }
+        };
+    }
+
+    private void loadAll() throws Exception {
+        networkModels.loadAll(vertx);
+        awaitStatus(0, "LOADED");
+        awaitStatus(1, "LOADED");
+    }
+
+    private void awaitStatus(int index, String status) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while (!networkModels.toJson().get(index).getString("status").equals(status) && (System.currentTimeMillis() < end))
+            Thread.sleep(10);
+
+        assertThat(networkModels.toJson().get(index).getString("status"), equalTo(status));
+    }
+
+    private String get(String uri, @Nullable String model, int expectedStatus) throws Exception {
+        return request(uri, model).text(expectedStatus);
+    }
+
+    private TestHttpServer.Response request(String uri, @Nullable String model) throws Exception {
+        return server.get(uri, model == null ? Collections.emptyMap() : Collections.singletonMap(NetworkModels.MODEL_HEADER, model));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.models;
+
+import com.zepben.evolve.cim.iec61970.base.core.BaseVoltage;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import com.zepben.evolve.cim.iec61970.base.wires.PowerTransformerEnd;
+import com.zepben.evolve.services.network.NetworkService;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReferenceDataTest {
+
+    private final ReferenceData referenceData = new ReferenceData(true);
+
+    @Test
+    public void sharesEquivalentBaseVoltagesBetweenNetworks() {
+        NetworkService north = new NetworkService();
+        BaseVoltage northBv = addNetwork(north, "bv11", 11000);
+
+        NetworkService south = new NetworkService();
+        BaseVoltage southBv = addNetwork(south, "bv11", 11000);
+
+        assertThat(referenceData.intern(north), equalTo(0));
+        assertThat(referenceData.intern(south), equalTo(1));
+        assertThat(referenceData.numBaseVoltages(), equalTo(1));
+
+        assertThat(south.get(Junction.class, "j").getBaseVoltage(), sameInstance(northBv));
+        assertThat(south.get(PowerTransformerEnd.class, "end").getBaseVoltage(), sameInstance(northBv));
+        assertThat(south.get(BaseVoltage.class, "bv11"), sameInstance(northBv));
+        assertThat(south.get(BaseVoltage.class, "bv11"), not(sameInstance(southBv)));
+    }
+
+    @Test
+    public void keepsDifferentBaseVoltagesSeparate() {
+        NetworkService north = new NetworkService();
+        addNetwork(north, "bv", 11000);
+
+        NetworkService south = new NetworkService();
+        BaseVoltage southBv = addNetwork(south, "bv", 22000);
+
+        referenceData.intern(north);
+
+        assertThat(referenceData.intern(south), equalTo(0));
+        assertThat(referenceData.numBaseVoltages(), equalTo(2));
+        assertThat(south.get(Junction.class, "j").getBaseVoltage(), sameInstance(southBv));
+    }
+
+    private BaseVoltage addNetwork(NetworkService networkService, String mRID, int nominalVoltage) {
+        BaseVoltage baseVoltage = new BaseVoltage(mRID);
+        baseVoltage.setNominalVoltage(nominalVoltage);
+
+        Junction junction = new Junction("j");
+        junction.setBaseVoltage(baseVoltage);
+
+        PowerTransformerEnd end = new PowerTransformerEnd("end");
+        end.setBaseVoltage(baseVoltage);
+
+        networkService.add(baseVoltage);
+        networkService.add(junction);
+        networkService.add(end);
+        return baseVoltage;
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.partition;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61968.metering.UsagePoint;
+import com.zepben.evolve.cim.iec61970.base.core.*;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import com.zepben.evolve.cim.iec61970.base.wires.EnergySource;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.evolve.services.network.tracing.ConnectivityResult;
+import com.zepben.ewbnetworkserver.Services;
+import com.zepben.ewbnetworkserver.patch.Patch;
+import com.zepben.ewbnetworkserver.tiles.LngLatBounds;
+import com.zepben.testutils.junit.SystemLogExtension;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.zepben.ewbnetworkserver.patch.PatchProperties.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class NetworkPartitionTest {
+
+    @RegisterExtension
+    public SystemLogExtension systemOutRule = SystemLogExtension.SYSTEM_OUT.captureLog().muteOnSuccess();
+
+    private final Services services = new Services();
+    private final NetworkService networkService = services.networkService();
+
+    // zone1 is supplied by source1 through busbar1 and feeds feeder1 and feeder2. zone2 is supplied by source2 and feeds feeder3.
+    private final Substation zone1 = add(new Substation("zone1"));
+    private final Substation zone2 = add(new Substation("zone2"));
+
+    private final EnergySource source1 = conductingEquipment(new EnergySource("source1"), 1, 145.0, -37.8);
+    private final Junction busbar1 = conductingEquipment(new Junction("busbar1"), 3, 145.0, -37.8);
+    private final Breaker cb1 = conductingEquipment(new Breaker("cb1"), 2, 145.0, -37.8);
+    private final AcLineSegment line1 = conductingEquipment(new AcLineSegment("line1"), 2, 145.0, -37.8, 145.1, -37.9);
+    private final Breaker cb2 = conductingEquipment(new Breaker("cb2"), 2, 145.0, -37.8);
+    private final AcLineSegment line2 = conductingEquipment(new AcLineSegment("line2"), 2, 145.0, -37.8, 144.9, -37.7);
+
+    private final EnergySource source2 = conductingEquipment(new EnergySource("source2"), 1, 151.2, -33.9);
+    private final Breaker cb3 = conductingEquipment(new Breaker("cb3"), 2, 151.2, -33.9);
+    private final AcLineSegment line3 = conductingEquipment(new AcLineSegment("line3"), 2, 151.2, -33.9, 151.3, -33.8);
+
+    private final Feeder feeder1 = feeder("feeder1", zone1, cb1, line1);
+    private final Feeder feeder2 = feeder("feeder2", zone1, cb2, line2);
+    private final Feeder feeder3 = feeder("feeder3", zone2, cb3, line3);
+
+    private final UsagePoint usagePoint = add(new UsagePoint("usagePoint"));
+
+    public NetworkPartitionTest() {
+        connect(source1, 1, busbar1, 1);
+        connect(busbar1, 2, cb1, 1);
+        connect(busbar1, 3, cb2, 1);
+        connect(cb1, 2, line1, 1);
+        connect(cb2, 2, line2, 1);
+        connect(source2, 1, cb3, 1);
+        connect(cb3, 2, line3, 1);
+
+        zone1.addEquipment(busbar1);
+        busbar1.addContainer(zone1);
+
+        usagePoint.addEquipment(line2);
+        line2.addUsagePoint(usagePoint);
+    }
+
+    @Test
+    public void isDisabledWithoutFeedersOrZones() {
+        NetworkPartition networkPartition = new NetworkPartition(Collections.emptyList(), Collections.emptyList());
+
+        assertThat(networkPartition.isEnabled(), equalTo(false));
+        assertThat(networkPartition.prune(services), equalTo(0));
+        assertThat(networkPartition.includes(patch(feature("unknown", 0, 0)), networkService), equalTo(true));
+
+        assertThat(networkService.listOf(Equipment.class).size(), equalTo(9));
+    }
+
+    @Test
+    public void keepsSelectedFeedersAndThePathToTheirSource() {
+        NetworkPartition networkPartition = new NetworkPartition(Collections.singletonList("feeder1"), Collections.emptyList());
+
+        assertThat(networkPartition.isEnabled(), equalTo(true));
+        assertThat(networkPartition.prune(services), equalTo(5));
+
+        assertThat(mRIDs(networkService.listOf(Equipment.class)), containsInAnyOrder("source1", "busbar1", "cb1", "line1"));
+        assertThat(mRIDs(networkService.listOf(Feeder.class)), contains("feeder1"));
+        assertThat(zone1.getFeeders(), contains(feeder1));
+        assertThat(zone2.getFeeders(), empty());
+
+        assertThat(networkService.contains("line2-t1"), equalTo(false));
+        assertThat(networkService.contains("line2-location"), equalTo(false));
+        assertThat(networkService.contains("usagePoint"), equalTo(false));
+        assertThat(connectedTo(busbar1), containsInAnyOrder("source1", "cb1"));
+
+        assertThat(networkPartition.bounds(), equalTo(new LngLatBounds(145.0, -37.9, 145.1, -37.8)));
+    }
+
+    @Test
+    public void keepsTheFeedersOfSelectedZones() {
+        NetworkPartition networkPartition = new NetworkPartition(Collections.emptyList(), Collections.singletonList("zone1"));
+
+        assertThat(networkPartition.prune(services), equalTo(3));
+
+        assertThat(mRIDs(networkService.listOf(Equipment.class)), containsInAnyOrder("source1", "busbar1", "cb1", "line1", "cb2", "line2"));
+        assertThat(mRIDs(networkService.listOf(Feeder.class)), containsInAnyOrder("feeder1", "feeder2"));
+        assertThat(networkService.contains("usagePoint"), equalTo(true));
+    }
+
+    @Test
+    public void combinesFeedersAndZones() {
+        NetworkPartition networkPartition = new NetworkPartition(Collections.singletonList("feeder3"), Collections.singletonList("zone1"));
+
+        assertThat(networkPartition.prune(services), equalTo(0));
+        assertThat(networkService.listOf(Feeder.class).size(), equalTo(3));
+    }
+
+    @Test
+    public void unlinksBoundaryEquipmentFromRemovedFeeders() {
+        line1.addContainer(feeder2);
+        feeder2.addEquipment(line1);
+
+        new NetworkPartition(Collections.singletonList("feeder1"), Collections.emptyList()).prune(services);
+
+        assertThat(line1.getContainers(), contains(feeder1));
+        assertThat(networkService.contains("line1"), equalTo(true));
+    }
+
+    @Test
+    public void warnsAboutUnknownFeedersAndZones() {
+        new NetworkPartition(Collections.singletonList("unknown feeder"), Collections.singletonList("unknown zone")).prune(services);
+
+        assertThat(systemOutRule.getLog(), containsString("Unable to partition the network by feeder 'unknown feeder', it was not found."));
+        assertThat(systemOutRule.getLog(), containsString("Unable to partition the network by zone 'unknown zone', it was not found."));
+    }
+
+    @Test
+    public void warnsWhenNoSourceIsFound() {
+        networkService.disconnect(source2.getTerminal(1));
+
+        new NetworkPartition(Collections.singletonList("feeder3"), Collections.emptyList()).prune(services);
+
+        assertThat(mRIDs(networkService.listOf(Equipment.class)), containsInAnyOrder("cb3", "line3"));
+        assertThat(systemOutRule.getLog(), containsString("Unable to find a source upstream of feeder 'feeder3'."));
+    }
+
+    @Test
+    public void includesPatchesThatTouchThePartition() {
+        NetworkPartition networkPartition = new NetworkPartition(Collections.singletonList("feeder1"), Collections.emptyList());
+        networkPartition.prune(services);
+
+        // Assets that are in the partition, or connect to it.
+        assertThat(networkPartition.includes(patch(feature("line1", 0, 0)), networkService), equalTo(true));
+        assertThat(networkPartition.includes(patch(feature("new", 0, 0).put("properties", properties("new").put(CONNECTED_ASSETS,
+            new JsonArray().add(new JsonObject().put(CONNECTED_ASSET_ID, "cb1"))))), networkService), equalTo(true));
+
+        // Assets within the bounds of the partition.
+        assertThat(networkPartition.includes(patch(feature("new", 145.05, -37.85)), networkService), equalTo(true));
+        assertThat(networkPartition.includes(patch(lineFeature("new", 144.0, -37.0, 145.05, -37.85)), networkService), equalTo(true));
+
+        // Assets in other regions.
+        assertThat(networkPartition.includes(patch(feature("line3", 151.25, -33.85)), networkService), equalTo(false));
+        assertThat(networkPartition.includes(patch(feature("new", 151.25, -33.85).put("properties", properties("new").put(CONNECTED_ASSETS,
+            new JsonArray().add(new JsonObject().put(CONNECTED_ASSET_ID, "cb3")).add("invalid")))), networkService), equalTo(false));
+        assertThat(networkPartition.includes(patch(lineFeature("new", 151.25, -33.85, 151.3, -33.8)), networkService), equalTo(false));
+    }
+
+    private <T extends IdentifiedObject> T add(T identifiedObject) {
+        networkService.add(identifiedObject);
+        return identifiedObject;
+    }
+
+    private <T extends ConductingEquipment> T conductingEquipment(T conductingEquipment, int numTerminals, double... lngLats) {
+        for (int i = 1; i <= numTerminals; ++i) {
+            Terminal terminal = add(new Terminal(conductingEquipment.getMRID() + "-t" + i));
+            terminal.setConductingEquipment(conductingEquipment);
+            conductingEquipment.addTerminal(terminal);
+        }
+
+        Location location = add(new Location(conductingEquipment.getMRID() + "-location"));
+        for (int i = 0; i < lngLats.length; i += 2)
+            location.addPoint(new PositionPoint(lngLats[i], lngLats[i + 1]));
+        conductingEquipment.setLocation(location);
+
+        return add(conductingEquipment);
+    }
+
+    private Feeder feeder(String mRID, Substation zone, ConductingEquipment... equipment) {
+        Feeder feeder = add(new Feeder(mRID));
+        feeder.setNormalHeadTerminal(equipment[0].getTerminal(1));
+        feeder.setNormalEnergizingSubstation(zone);
+        zone.addFeeder(feeder);
+
+        Arrays.stream(equipment).forEach(conductingEquipment -> {
+            conductingEquipment.addContainer(feeder);
+            feeder.addEquipment(conductingEquipment);
+        });
+
+        return feeder;
+    }
+
+    private void connect(ConductingEquipment from, int fromTerminal, ConductingEquipment to, int toTerminal) {
+        networkService.connect(from.getTerminal(fromTerminal), from.getMRID() + "-" + to.getMRID());
+        networkService.connect(to.getTerminal(toTerminal), from.getMRID() + "-" + to.getMRID());
+    }
+
+    private List<String> connectedTo(ConductingEquipment conductingEquipment) {
+        return conductingEquipment.getTerminals()
+            .stream()
+            .flatMap(terminal -> NetworkService.connectedTerminals(terminal).stream())
+            .map(ConnectivityResult::getTo)
+            .map(IdentifiedObject::getMRID)
+            .collect(Collectors.toList());
+    }
+
+    private List<String> mRIDs(List<? extends IdentifiedObject> identifiedObjects) {
+        return identifiedObjects.stream().map(IdentifiedObject::getMRID).collect(Collectors.toList());
+    }
+
+    private Patch patch(JsonObject feature) {
+        return Patch.parse(new JsonObject().put("id", 1).put("add", new JsonArray().add(feature)).put("remove", new JsonArray()))
+            .orElseThrow(AssertionError::new);
+    }
+
+    private JsonObject feature(String gisId, double lng, double lat) {
+        return new JsonObject()
+            .put("type", "Feature")
+            .put("geometry", new JsonObject().put("type", "Point").put("coordinates", new JsonArray().add(lng).add(lat)))
+            .put("properties", properties(gisId));
+    }
+
+    private JsonObject lineFeature(String gisId, double... lngLats) {
+        JsonArray coordinates = new JsonArray();
+        for (int i = 0; i < lngLats.length; i += 2)
+            coordinates.add(new JsonArray().add(lngLats[i]).add(lngLats[i + 1]));
+
+        return new JsonObject()
+            .put("type", "Feature")
+            .put("geometry", new JsonObject().put("type", "LineString").put("coordinates", coordinates))
+            .put("properties", properties(gisId));
+    }
+
+    private JsonObject properties(String gisId) {
+        return new JsonObject().put(GIS_ID, gisId).put(LAYER_ID, "hvLines");
+    }
+
+}
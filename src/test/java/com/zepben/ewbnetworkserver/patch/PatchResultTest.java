@@ -46,6 +46,8 @@ public class PatchResultTest {
         PatchResult patchResult = new PatchResult(123)
             .addAffectedFeedersFromAsset(asset1)
             .addAffectedFeedersFromAsset(asset2)
+            .addMRID("asset1")
+            .addMRID("asset1")
             .addError("error1")
             .addError("error%d", 2)
             .addWarning("warning%d", 1)
@@ -54,6 +56,7 @@ public class PatchResultTest {
         assertThat(patchResult.patchId(), equalTo(123));
         assertThat(patchResult.affectedNormalFeeders(), containsInAnyOrder("f1", "f2", "f3"));
         assertThat(patchResult.affectedCurrentFeeders(), containsInAnyOrder("f4", "f5", "f6"));
+        assertThat(patchResult.mRIDs(), contains("asset1"));
         assertThat(patchResult.errors(), contains("error1", "error2"));
         assertThat(patchResult.warnings(), contains("warning1", "warning2"));
     }
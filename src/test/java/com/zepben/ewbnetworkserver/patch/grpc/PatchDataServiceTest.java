@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.patch.grpc;
+
+import com.zepben.evolve.cim.iec61970.base.core.Feeder;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.patch.LoadManipulations;
+import com.zepben.ewbnetworkserver.patch.LoadOperation;
+import com.zepben.ewbnetworkserver.patch.LoadType;
+import com.zepben.ewbnetworkserver.patch.PatchResult;
+import com.zepben.ewbnetworkserver.patch.PatchResults;
+import com.zepben.ewbnetworkserver.patch.routes.LoadManipulationsToJson;
+import com.zepben.ewbnetworkserver.patch.routes.PatchResultToJson;
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class PatchDataServiceTest {
+
+    private final LoadManipulations loadManipulations = new LoadManipulations();
+    private final PatchResults patchResults = new PatchResults();
+    private final NetworkService networkService = new NetworkService();
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    public void before() throws Exception {
+        AcLineSegment line = new AcLineSegment("line1");
+        line.addContainer(new Feeder("f1"));
+        networkService.add(line);
+
+        loadManipulations.add("tx3", LoadOperation.Added, LoadType.Load, 3, 1);
+        loadManipulations.add("line1", LoadOperation.Added, LoadType.Load, 1, 1);
+        loadManipulations.add("tx2", LoadOperation.Added, LoadType.Load, 2, 1);
+
+        patchResults.set(Arrays.asList(
+            new PatchResult(1).addMRID("line1").addAffectedFeedersFromAsset(line),
+            new PatchResult(2).addMRID("tx2").addMRID("tx3").addError("error1"),
+            new PatchResult(3).addMRID("tx3")));
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+            .directExecutor()
+            .addService(new PatchDataService(loadManipulations, new LoadManipulationsToJson(), patchResults, new PatchResultToJson(), networkService))
+            .build()
+            .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @AfterEach
+    public void after() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void streamsLoadManipulationsInChunks() {
+        List<JsonObject> responses = stream(PatchDataService.STREAM_LOAD_MANIPULATIONS, new JsonObject().put("chunkSize", 2));
+
+        assertThat(responses.size(), equalTo(2));
+        assertThat(responses.get(0).encode(), equalTo("{\"loadManipulations\":[{\"mRID\":\"line1\",\"values\":[1.0]},{\"mRID\":\"tx2\",\"values\":[2.0]}]}"));
+        assertThat(responses.get(1).encode(), equalTo("{\"loadManipulations\":[{\"mRID\":\"tx3\",\"values\":[3.0]}]}"));
+    }
+
+    @Test
+    public void filtersLoadManipulations() {
+        assertThat(loadManipulationMRIDs(new JsonObject().put("mRIDs", new JsonArray().add("tx2").add("unknown"))), contains("tx2"));
+        assertThat(loadManipulationMRIDs(new JsonObject().put("feeders", new JsonArray().add("f1"))), contains("line1"));
+        assertThat(loadManipulationMRIDs(new JsonObject().put("patchIds", new JsonArray().add(2))), contains("tx2", "tx3"));
+        assertThat(loadManipulationMRIDs(new JsonObject()
+            .put("patchIds", new JsonArray().add(2))
+            .put("mRIDs", new JsonArray().add("tx3").add("line1"))), contains("tx3"));
+        assertThat(loadManipulationMRIDs(new JsonObject().put("feeders", new JsonArray().add("f2"))), empty());
+    }
+
+    @Test
+    public void streamsPatchResults() {
+        List<JsonObject> responses = stream(PatchDataService.STREAM_PATCH_RESULTS, new JsonObject());
+
+        assertThat(responses.size(), equalTo(1));
+        assertThat(responses.get(0).getJsonArray("results").getJsonObject(1).encode(),
+            equalTo("{\"patchId\":2,\"affectedNormalFeeders\":[],\"affectedCurrentFeeders\":[],\"errors\":[\"error1\"],\"warnings\":[]}"));
+    }
+
+    @Test
+    public void filtersPatchResults() {
+        assertThat(patchIds(new JsonObject().put("patchIds", new JsonArray().add(1).add(3))), contains(1, 3));
+        assertThat(patchIds(new JsonObject().put("mRIDs", new JsonArray().add("tx3"))), contains(2, 3));
+        assertThat(patchIds(new JsonObject().put("feeders", new JsonArray().add("f1"))), contains(1));
+        assertThat(patchIds(new JsonObject().put("patchIds", new JsonArray().add(4))), empty());
+    }
+
+    @Test
+    public void rejectsInvalidRequests() {
+        expect(() -> stream(PatchDataService.STREAM_PATCH_RESULTS, new JsonObject().put("chunkSize", 0)))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("INVALID_ARGUMENT: chunkSize must be between 1 and 10000.");
+
+        expect(() -> stream(PatchDataService.STREAM_LOAD_MANIPULATIONS, new JsonObject().put("mRIDs", "tx2")))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("INVALID_ARGUMENT: mRIDs must be an array of strings.");
+
+        expect(() -> stream(PatchDataService.STREAM_PATCH_RESULTS, new JsonObject().put("patchIds", new JsonArray().add("1"))))
+            .toThrow(StatusRuntimeException.class)
+            .withMessage("INVALID_ARGUMENT: patchIds must be an array of integers.");
+    }
+
+    private List<String> loadManipulationMRIDs(JsonObject request) {
+        List<String> mRIDs = new ArrayList<>();
+        stream(PatchDataService.STREAM_LOAD_MANIPULATIONS, request).forEach(response -> response.getJsonArray("loadManipulations")
+            .forEach(entry -> mRIDs.add(((JsonObject) entry).getString("mRID"))));
+        return mRIDs;
+    }
+
+    private List<Integer> patchIds(JsonObject request) {
+        List<Integer> patchIds = new ArrayList<>();
+        stream(PatchDataService.STREAM_PATCH_RESULTS, request).forEach(response -> response.getJsonArray("results")
+            .forEach(entry -> patchIds.add(((JsonObject) entry).getInteger("patchId"))));
+        return patchIds;
+    }
+
+    private List<JsonObject> stream(MethodDescriptor<JsonObject, JsonObject> method, JsonObject request) {
+        List<JsonObject> responses = new ArrayList<>();
+        Iterator<JsonObject> iterator = ClientCalls.blockingServerStreamingCall(channel, method, CallOptions.DEFAULT, request);
+        iterator.forEachRemaining(responses::add);
+        return responses;
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.zepben.testutils.exception.ExpectException;
+import com.zepben.testutils.junit.SystemLogExtension;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.URI;
+
+import static com.zepben.collectionutils.CollectionUtils.arrayOf;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ReplayCmdArgsTest {
+
+    @RegisterExtension
+    public SystemLogExtension systemOutRule = SystemLogExtension.SYSTEM_OUT.captureLog().muteOnSuccess();
+
+    private final ReplayCmdArgs cmdArgs = new ReplayCmdArgs();
+
+    @Test
+    public void allOptions() throws Exception {
+        cmdArgs.parse(arrayOf("-f", "capture.log.gz",
+            "-u", "http://localhost:8080/base",
+            "-fmt", "ACCESS_LOG",
+            "-s", "250",
+            "-n", "16",
+            "-rd", "5",
+            "-t", "10"));
+
+        assertThat(cmdArgs.file(), equalTo("capture.log.gz"));
+        assertThat(cmdArgs.url(), equalTo(URI.create("http://localhost:8080/base")));
+        assertThat(cmdArgs.format(), equalTo(ReplayFormat.ACCESS_LOG));
+        assertThat(cmdArgs.speed(), equalTo(250));
+        assertThat(cmdArgs.concurrency(), equalTo(16));
+        assertThat(cmdArgs.routeDepth(), equalTo(5));
+        assertThat(cmdArgs.timeout(), equalTo(10));
+    }
+
+    @Test
+    public void defaultOptions() throws Exception {
+        cmdArgs.parse(arrayOf("-f", "capture.log", "-u", "http://localhost:8080"));
+
+        assertThat(cmdArgs.format(), equalTo(ReplayFormat.CAPTURE));
+        assertThat(cmdArgs.speed(), equalTo(100));
+        assertThat(cmdArgs.concurrency(), equalTo(8));
+        assertThat(cmdArgs.routeDepth(), equalTo(0));
+        assertThat(cmdArgs.timeout(), equalTo(60));
+    }
+
+    @Test
+    public void validatesOptions() {
+        expect(() -> cmdArgs.parse(arrayOf()))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: file.");
+
+        expect(() -> cmdArgs.parse(arrayOf("-f", "capture.log")))
+            .toThrow(ParseException.class)
+            .withMessage("Missing required option: url.");
+
+        validateOption("-u", "localhost:8080", "Invalid URL 'localhost:8080', expected http(s)://host[:port][/path].");
+        validateOption("-fmt", "abc", "Unknown FORMAT value 'abc', expected CAPTURE or ACCESS_LOG.");
+        validateOption("-s", "abc", "Invalid integer 'abc' for argument speed.");
+        validateOption("-n", "abc", "Invalid integer 'abc' for argument concurrency.");
+        validateOption("-rd", "abc", "Invalid integer 'abc' for argument route-depth.");
+        validateOption("-t", "abc", "Invalid integer 'abc' for argument timeout.");
+    }
+
+    @Test
+    public void mustParseBeforeUse() {
+        validateIllegalOptionUsage(cmdArgs::file);
+        validateIllegalOptionUsage(cmdArgs::url);
+        validateIllegalOptionUsage(cmdArgs::format);
+        validateIllegalOptionUsage(cmdArgs::speed);
+        validateIllegalOptionUsage(cmdArgs::concurrency);
+        validateIllegalOptionUsage(cmdArgs::routeDepth);
+        validateIllegalOptionUsage(cmdArgs::timeout);
+    }
+
+    private void validateOption(String option, String value, String expectedMessage) {
+        String[] args = option.equals("-u") ? arrayOf("-f", "capture.log", option, value) : arrayOf(option, value, "-f", "capture.log", "-u", "http://localhost:8080");
+        expect(() -> cmdArgs.parse(args))
+            .toThrow(ParseException.class)
+            .withMessage(expectedMessage);
+    }
+
+    private void validateIllegalOptionUsage(ExpectException.RunWithException runnable) {
+        expect(runnable)
+            .toThrow(IllegalStateException.class)
+            .withMessage("INTERNAL ERROR: You called an option getter before you parsed the options or when help was requested.");
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import io.vertx.core.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReplayFileReaderTest {
+
+    @Test
+    public void readsCaptures() throws Exception {
+        String capture = "2020-10-19T10:11:12.345 POST /ewb/network/api/v1/a\n" +
+            "{\"a\": 1}\n" +
+            "\n" +
+            "2020-10-19T10:11:12.845 PUT /ewb/network/api/v1/b?c=d\n" +
+            "line 1\n" +
+            "line 2\n" +
+            "\n" +
+            "2020-10-19T10:11:13 Dropped 3 request bodies as the route debug buffer was full.\n" +
+            "\n" +
+            "2020-10-19T10:11:14.001 POST /ewb/network/api/v1/c\n" +
+            "trailing newline\n" +
+            "\n" +
+            "\n";
+
+        List<ReplayRequest> requests = ReplayFileReader.readCapture(new ByteArrayInputStream(capture.getBytes(UTF_8)));
+
+        assertThat(requests, hasSize(3));
+        validateRequest(requests.get(0), localTime("2020-10-19T10:11:12.345"), HttpMethod.POST, "/ewb/network/api/v1/a", "{\"a\": 1}");
+        validateRequest(requests.get(1), localTime("2020-10-19T10:11:12.845"), HttpMethod.PUT, "/ewb/network/api/v1/b?c=d", "line 1\nline 2");
+        validateRequest(requests.get(2), localTime("2020-10-19T10:11:14.001"), HttpMethod.POST, "/ewb/network/api/v1/c", "trailing newline\n");
+    }
+
+    @Test
+    public void keepsCapturedBodiesByteForByte() throws Exception {
+        String capture = "2020-10-19T10:11:12.345 POST /ewb/network/api/v1/a\r\n" +
+            "line 1\r\n" +
+            "line 2\n" +
+            "line 3\r\n" +
+            "\r\n";
+
+        List<ReplayRequest> requests = ReplayFileReader.readCapture(new ByteArrayInputStream(capture.getBytes(UTF_8)));
+
+        assertThat(requests, hasSize(1));
+        validateRequest(requests.get(0), localTime("2020-10-19T10:11:12.345"), HttpMethod.POST, "/ewb/network/api/v1/a", "line 1\r\nline 2\nline 3");
+    }
+
+    @Test
+    public void readsAccessLogs() throws Exception {
+        String accessLog = "10:11:12.345 [vert.x-eventloop-thread-0] INFO  i.v.e.w.h.i.LoggerHandlerImpl - 0:0:0:0:0:0:0:1 - - " +
+            "[Mon, 19 Oct 2020 10:11:12 GMT] \"GET /ewb/network/api/v1/a HTTP/1.1\" 200 123 \"-\" \"curl/7.68.0\"\n" +
+            "some other log line\n" +
+            "127.0.0.1 - frank [19/Oct/2020:10:11:13 +0000] \"POST /ewb/network/api/v1/b?c=d HTTP/2.0\" 200 2326\n" +
+            "127.0.0.1 - frank [not a date] \"GET /ewb/network/api/v1/c HTTP/1.1\" 200 2326\n";
+
+        List<ReplayRequest> requests = ReplayFileReader.readAccessLog(new BufferedReader(new StringReader(accessLog)));
+
+        assertThat(requests, hasSize(2));
+        validateRequest(requests.get(0), Instant.parse("2020-10-19T10:11:12Z"), HttpMethod.GET, "/ewb/network/api/v1/a", null);
+        validateRequest(requests.get(1), Instant.parse("2020-10-19T10:11:13Z"), HttpMethod.POST, "/ewb/network/api/v1/b?c=d", null);
+    }
+
+    private Instant localTime(String time) {
+        return LocalDateTime.parse(time).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private void validateRequest(ReplayRequest request, Instant timestamp, HttpMethod method, String uri, String body) {
+        assertThat(request.timestamp(), equalTo(timestamp));
+        assertThat(request.method(), equalTo(method));
+        assertThat(request.uri(), equalTo(uri));
+        if (body == null)
+            assertThat(request.body(), nullValue());
+        else
+            assertThat(request.body().toString(), equalTo(body));
+    }
+
+}
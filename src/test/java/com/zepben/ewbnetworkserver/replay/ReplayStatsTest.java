@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import io.vertx.core.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+
+public class ReplayStatsTest {
+
+    @Test
+    public void groupsRoutes() {
+        assertThat(new ReplayStats(0).route(HttpMethod.GET, "/ewb/network/api/v1/equipment/abc?x=y"), equalTo("GET /ewb/network/api/v1/equipment/abc"));
+        assertThat(new ReplayStats(5).route(HttpMethod.GET, "/ewb/network/api/v1/equipment/abc?x=y"), equalTo("GET /ewb/network/api/v1/equipment/*"));
+        assertThat(new ReplayStats(5).route(HttpMethod.GET, "/ewb/network/api/v1/equipment"), equalTo("GET /ewb/network/api/v1/equipment"));
+    }
+
+    @Test
+    public void calculatesPercentiles() {
+        ReplayStats stats = new ReplayStats(0);
+        for (int i = 100; i >= 1; --i)
+            stats.record(HttpMethod.GET, "/a", 200, TimeUnit.MILLISECONDS.toNanos(i));
+        stats.record(HttpMethod.GET, "/b", 500, TimeUnit.MILLISECONDS.toNanos(1000));
+
+        assertThat(stats.percentileMillis("GET /a", 50), equalTo(50.0));
+        assertThat(stats.percentileMillis("GET /a", 95), equalTo(95.0));
+        assertThat(stats.percentileMillis("GET /a", 99), equalTo(99.0));
+        assertThat(stats.percentileMillis("GET /b", 50), equalTo(1000.0));
+        assertThat(stats.percentileMillis(ReplayStats.ALL_ROUTES, 99), equalTo(100.0));
+        assertThat(stats.percentileMillis("GET /c", 99), equalTo(0.0));
+
+        assertThat(stats.count(), equalTo(101L));
+        assertThat(stats.errors(), equalTo(1L));
+    }
+
+    @Test
+    public void reportsEachRoute() {
+        ReplayStats stats = new ReplayStats(0);
+        stats.start(0);
+        stats.record(HttpMethod.GET, "/a", 200, TimeUnit.MILLISECONDS.toNanos(10));
+        stats.record(HttpMethod.GET, "/a", 200, TimeUnit.MILLISECONDS.toNanos(20));
+        stats.record(HttpMethod.POST, "/b", 0, TimeUnit.MILLISECONDS.toNanos(30));
+        stats.finish(TimeUnit.SECONDS.toNanos(2));
+
+        List<String> report = stats.report();
+
+        assertThat(report, hasSize(4));
+        assertThat(report.get(0), startsWith("ROUTE"));
+        assertThat(report.get(1), equalTo(String.format("%-7s %8d %8d %10s %10s %10s %10s", "GET /a", 2, 0, "1.0", "10.00", "20.00", "20.00")));
+        assertThat(report.get(2), equalTo(String.format("%-7s %8d %8d %10s %10s %10s %10s", "POST /b", 1, 1, "0.5", "30.00", "30.00", "30.00")));
+        assertThat(report.get(3), containsString(ReplayStats.ALL_ROUTES));
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.replay;
+
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ReplayerTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private TestHttpServer server;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        server = TestHttpServer.start(vertx, request -> request.bodyHandler(body -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            received.add(request.method() + " " + request.uri() + " " + body);
+            vertx.setTimer(20, id -> {
+                inFlight.decrementAndGet();
+                request.response().setStatusCode(request.path().endsWith("missing") ? 404 : 200).end("ok");
+            });
+        }));
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void replaysRequests() throws Exception {
+        Instant now = Instant.now();
+        List<ReplayRequest> requests = Arrays.asList(
+            new ReplayRequest(now, HttpMethod.POST, "/a", Buffer.buffer("body a")),
+            new ReplayRequest(now, HttpMethod.GET, "/b?c=d", null),
+            new ReplayRequest(now, HttpMethod.PUT, "/a", Buffer.buffer("body c")),
+            new ReplayRequest(now, HttpMethod.GET, "/missing", null),
+            new ReplayRequest(now, HttpMethod.GET, "/b", null));
+
+        ReplayStats stats = replay(requests, 0, 2);
+
+        assertThat(received, containsInAnyOrder("POST /a body a", "GET /b?c=d ", "PUT /a body c", "GET /missing ", "GET /b "));
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(2));
+        assertThat(stats.count(), equalTo(5L));
+        assertThat(stats.errors(), equalTo(1L));
+        assertThat(stats.percentileMillis("GET /b", 50), greaterThanOrEqualTo(20.0));
+    }
+
+    @Test
+    public void replaysAtScaledSpeed() throws Exception {
+        Instant now = Instant.now();
+        List<ReplayRequest> requests = Arrays.asList(
+            new ReplayRequest(now, HttpMethod.GET, "/a", null),
+            new ReplayRequest(now.plusMillis(400), HttpMethod.GET, "/b", null));
+
+        long start = System.nanoTime();
+        replay(requests, 200, 8);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(received.size(), equalTo(2));
+        assertThat(elapsedMs, greaterThanOrEqualTo(200L));
+    }
+
+    @Test
+    public void reportsFailedRequests() throws Exception {
+        Instant now = Instant.now();
+        ReplayCmdArgs cmdArgs = new ReplayCmdArgs() {
+            @Override
+            URI url() {
+                return URI.create("http://localhost:1");
+            }
+
+            @Override
+            int speed() {
+                return 0;
+            }
+
+            @Override
+            int concurrency() {
+                return 1;
+            }
+
+            @Override
+            int routeDepth() {
+                return 0;
+            }
+
+            @Override
+            int timeout() {
+                return 5;
+            }
+        };
+
+        ReplayStats stats = ReplayMain.replay(vertx, cmdArgs, Collections.singletonList(new ReplayRequest(now, HttpMethod.GET, "/a", null)));
+
+        assertThat(stats.count(), equalTo(1L));
+        assertThat(stats.errors(), equalTo(1L));
+    }
+
+    private ReplayStats replay(List<ReplayRequest> requests, int speed, int concurrency) throws Exception {
+        Replayer replayer = new Replayer(vertx,
+            vertx.createHttpClient(),
+            ReplayMain.target(URI.create("http://localhost:" + server.port() + "/")),
+            speed,
+            concurrency,
+            5000,
+            new ReplayStats(0));
+
+        CompletableFuture<ReplayStats> result = new CompletableFuture<>();
+        replayer.replay(requests).setHandler(event -> result.complete(event.result()));
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+}
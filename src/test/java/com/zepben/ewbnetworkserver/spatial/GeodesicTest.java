@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class GeodesicTest {
+
+    @Test
+    public void calculatesGreatCircleDistances() {
+        assertThat(Geodesic.distance(144.9631, -37.8136, 151.2093, -33.8688), closeTo(713_400, 500));
+        assertThat(Geodesic.distance(0, 0, 1, 0), closeTo(111_195, 1));
+        assertThat(Geodesic.distance(0, 0, 180, 0), closeTo(Math.PI * Geodesic.EARTH_RADIUS, 1));
+        assertThat(Geodesic.distance(144.96, -37.81, 144.96, -37.81), equalTo(0.0));
+    }
+
+    @Test
+    public void measuresToTheClosestPointOfALocation() {
+        PositionPoint west = new PositionPoint(144.95, -37.81);
+        PositionPoint east = new PositionPoint(144.97, -37.81);
+
+        assertThat(Geodesic.distance(144.96, -37.80, Collections.singletonList(west)), equalTo(Geodesic.distance(144.96, -37.80, 144.95, -37.81)));
+        assertThat(Geodesic.distance(144.96, -37.80, Arrays.asList(west, east)), closeTo(Geodesic.distance(144.96, -37.80, 144.96, -37.81), 0.01));
+        assertThat(Geodesic.distance(144.90, -37.81, Arrays.asList(west, east)), closeTo(Geodesic.distance(144.90, -37.81, 144.95, -37.81), 0.01));
+        assertThat(Geodesic.distance(144.96, -37.81, Arrays.asList(west, west)), equalTo(Geodesic.distance(144.96, -37.81, 144.95, -37.81)));
+    }
+
+    @Test
+    public void boundsDistanceIsALowerBound() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; ++i) {
+            double lng = random.nextDouble() * 360 - 180;
+            double lat = random.nextDouble() * 170 - 85;
+            double minLng = random.nextDouble() * 300 - 150;
+            double minLat = random.nextDouble() * 150 - 75;
+            double maxLng = minLng + random.nextDouble() * 20;
+            double maxLat = minLat + random.nextDouble() * 10;
+
+            double bound = Geodesic.boundsDistance(lng, lat, minLng, minLat, maxLng, maxLat);
+            for (int j = 0; j < 10; ++j) {
+                double pointLng = minLng + random.nextDouble() * (maxLng - minLng);
+                double pointLat = minLat + random.nextDouble() * (maxLat - minLat);
+                assertThat(bound, lessThanOrEqualTo(Geodesic.distance(lng, lat, pointLng, pointLat) + 1e-6));
+            }
+        }
+    }
+
+    @Test
+    public void boundsDistanceIsExactForEdges() {
+        assertThat(Geodesic.boundsDistance(144.96, -37.81, 144.9, -37.9, 145.0, -37.8), equalTo(0.0));
+        assertThat(Geodesic.boundsDistance(144.96, -37.7, 144.9, -37.9, 145.0, -37.8), closeTo(Geodesic.distance(144.96, -37.7, 144.96, -37.8), 0.01));
+        assertThat(Geodesic.boundsDistance(144.8, -37.85, 144.9, -37.9, 145.0, -37.8), closeTo(Geodesic.distance(144.8, -37.85, 144.9, -37.85), 1));
+    }
+
+}
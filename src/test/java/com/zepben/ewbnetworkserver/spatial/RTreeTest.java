@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.ewbnetworkserver.tiles.LngLatBounds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class RTreeTest {
+
+    @Test
+    public void findsTheSameItemsAsAScan() {
+        Random random = new Random(1);
+        List<LngLatBounds> items = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i)
+            items.add(randomBounds(random, 0.01));
+
+        RTree<LngLatBounds> tree = new RTree<>(items, item -> item);
+        assertThat(tree.size(), equalTo(5000));
+        assertThat(tree.height(), equalTo(5));
+
+        for (int i = 0; i < 100; ++i) {
+            LngLatBounds query = randomBounds(random, 0.2);
+
+            Set<LngLatBounds> found = new HashSet<>();
+            assertThat(tree.search(query, found::add), equalTo(true));
+
+            assertThat(found, equalTo(items.stream().filter(query::intersects).collect(Collectors.toSet())));
+        }
+    }
+
+    @Test
+    public void findsNearestItemsInOrder() {
+        Random random = new Random(2);
+        List<LngLatBounds> items = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i)
+            items.add(randomBounds(random, 0));
+
+        RTree<LngLatBounds> tree = new RTree<>(items, item -> item);
+
+        for (int i = 0; i < 100; ++i) {
+            double lng = 144 + random.nextDouble() * 3;
+            double lat = -38 + random.nextDouble() * 3;
+
+            List<Double> found = new ArrayList<>();
+            tree.nearest((minLng, minLat, maxLng, maxLat) -> Geodesic.boundsDistance(lng, lat, minLng, minLat, maxLng, maxLat),
+                item -> Geodesic.distance(lng, lat, item.minLng(), item.minLat()),
+                Double.POSITIVE_INFINITY,
+                (item, distance) -> found.add(distance) && (found.size() < 5));
+
+            List<Double> expected = items.stream()
+                .map(item -> Geodesic.distance(lng, lat, item.minLng(), item.minLat()))
+                .sorted()
+                .limit(5)
+                .collect(Collectors.toList());
+            assertThat(found, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void stopsNearestSearchesAtTheMaxDistance() {
+        List<LngLatBounds> items = new ArrayList<>();
+        for (int i = 0; i < 100; ++i)
+            items.add(new LngLatBounds(i, 0, i, 0));
+
+        RTree<LngLatBounds> tree = new RTree<>(items, item -> item);
+
+        List<LngLatBounds> found = new ArrayList<>();
+        tree.nearest((minLng, minLat, maxLng, maxLat) -> Math.max(0, minLng), item -> item.minLng(), 9.5, (item, distance) -> found.add(item));
+        assertThat(found.size(), equalTo(10));
+    }
+
+    @Test
+    public void stopsWhenTheVisitorReturnsFalse() {
+        List<LngLatBounds> items = new ArrayList<>();
+        for (int i = 0; i < 100; ++i)
+            items.add(new LngLatBounds(i, i, i, i));
+
+        RTree<LngLatBounds> tree = new RTree<>(items, item -> item);
+
+        List<LngLatBounds> found = new ArrayList<>();
+        assertThat(tree.search(new LngLatBounds(0, 0, 100, 100), item -> found.add(item) && (found.size() < 10)), equalTo(false));
+        assertThat(found.size(), equalTo(10));
+    }
+
+    @Test
+    public void iteratesItemsWithTheirBounds() {
+        List<LngLatBounds> items = new ArrayList<>();
+        for (int i = 0; i < 20; ++i)
+            items.add(new LngLatBounds(i, -i, i + 1, -i + 1));
+
+        RTree<LngLatBounds> tree = new RTree<>(items, item -> item);
+
+        List<LngLatBounds> visited = new ArrayList<>();
+        tree.forEach((item, bounds) -> {
+            assertThat(bounds, equalTo(item));
+            visited.add(item);
+        });
+        assertThat(new HashSet<>(visited), equalTo(new HashSet<>(items)));
+    }
+
+    @Test
+    public void handlesEmptyTrees() {
+        RTree<LngLatBounds> tree = new RTree<>(Collections.emptyList(), item -> item);
+
+        assertThat(tree.size(), equalTo(0));
+        assertThat(tree.search(new LngLatBounds(-180, -90, 180, 90), item -> false), equalTo(true));
+    }
+
+    private LngLatBounds randomBounds(Random random, double maxSize) {
+        double lng = 144 + random.nextDouble() * 2;
+        double lat = -38 + random.nextDouble() * 2;
+        return new LngLatBounds(lng, lat, lng + random.nextDouble() * maxSize, lat + random.nextDouble() * maxSize);
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import com.zepben.evolve.cim.iec61970.base.wires.Junction;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.tiles.LngLatBounds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class SpatialIndexTest {
+
+    private final LngLatBounds melbourne = new LngLatBounds(144.9, -37.9, 145.0, -37.8);
+    private final LngLatBounds everywhere = new LngLatBounds(-180, -90, 180, 90);
+
+    private final Breaker breaker = located(new Breaker("breaker"), 144.96, -37.81);
+    private final AcLineSegment line = located(new AcLineSegment("line"), 144.95, -37.85, 145.05, -37.75);
+    private final Junction sydney = located(new Junction("sydney"), 151.2, -33.86);
+
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+
+    @Test
+    public void indexesLocatedObjects() {
+        build(breaker, line, sydney, new Breaker("no location"));
+
+        assertThat(spatialIndex.size(), equalTo(3));
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> true, 10)), containsInAnyOrder("breaker", "line"));
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> psr instanceof Breaker, 10)), containsInAnyOrder("breaker"));
+        assertThat(spatialIndex.query(melbourne, psr -> true, 1).size(), equalTo(1));
+        assertThat(spatialIndex.query(melbourne, psr -> true, 0), empty());
+    }
+
+    @Test
+    public void tracksAddedAndRemovedObjects() {
+        build(breaker, line);
+
+        Junction added = located(new Junction("added"), 144.91, -37.89);
+        spatialIndex.onAdded(added);
+        spatialIndex.onRemoved(breaker);
+        spatialIndex.onAdded(new Breaker("no location"));
+
+        assertThat(spatialIndex.size(), equalTo(2));
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> true, 10)), containsInAnyOrder("line", "added"));
+
+        spatialIndex.onRemoved(added);
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> true, 10)), containsInAnyOrder("line"));
+    }
+
+    @Test
+    public void replacesObjectsAddedWithTheSameMRID() {
+        build(breaker);
+
+        spatialIndex.onRemoved(breaker);
+        spatialIndex.onAdded(located(new Breaker("breaker"), 151.2, -33.86));
+
+        assertThat(spatialIndex.query(melbourne, psr -> true, 10), empty());
+        assertThat(mRIDs(spatialIndex.query(everywhere, psr -> true, 10)), containsInAnyOrder("breaker"));
+    }
+
+    @Test
+    public void repacksWhenThereAreManyChanges() {
+        build(breaker, line);
+
+        List<String> expected = new ArrayList<>(Arrays.asList("breaker", "line"));
+        for (int i = 0; i < SpatialIndex.MAX_OVERLAY_SIZE + 10; ++i) {
+            spatialIndex.onAdded(located(new Junction("j" + i), 144.9 + i * 0.00001, -37.85));
+            expected.add("j" + i);
+        }
+        spatialIndex.onRemoved(breaker);
+        expected.remove("breaker");
+
+        assertThat(spatialIndex.size(), equalTo(expected.size()));
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> true, 10000)), containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test
+    public void publishesChangesWhenPatchesFinish() {
+        build(breaker, line);
+
+        spatialIndex.onPatchesStarted();
+        spatialIndex.onRemoved(breaker);
+        spatialIndex.onAdded(located(new Junction("added"), 144.91, -37.89));
+
+        assertThat(spatialIndex.size(), equalTo(2));
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> true, 10)), containsInAnyOrder("breaker", "line"));
+
+        spatialIndex.onPatchesFinished();
+
+        assertThat(spatialIndex.size(), equalTo(2));
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> true, 10)), containsInAnyOrder("line", "added"));
+    }
+
+    @Test
+    public void repacksOnceWhenPatchesMakeManyChanges() {
+        build(breaker, line);
+
+        List<String> expected = new ArrayList<>(Arrays.asList("breaker", "line"));
+        spatialIndex.onPatchesStarted();
+        for (int i = 0; i < SpatialIndex.MAX_OVERLAY_SIZE * 3; ++i) {
+            spatialIndex.onAdded(located(new Junction("j" + i), 144.9 + i * 0.00001, -37.85));
+            expected.add("j" + i);
+        }
+        spatialIndex.onRemoved(line);
+        expected.remove("line");
+        spatialIndex.onPatchesFinished();
+
+        assertThat(spatialIndex.size(), equalTo(expected.size()));
+        assertThat(mRIDs(spatialIndex.query(melbourne, psr -> true, 10000)), containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test
+    public void countsObjectsThatAreRemovedAndAddedAgain() {
+        build(breaker, line);
+
+        spatialIndex.onRemoved(breaker);
+        spatialIndex.onRemoved(breaker);
+        assertThat(spatialIndex.size(), equalTo(1));
+
+        Breaker replacement = located(new Breaker("breaker"), 144.97, -37.82);
+        spatialIndex.onAdded(replacement);
+        assertThat(spatialIndex.size(), equalTo(2));
+
+        spatialIndex.onRemoved(replacement);
+        spatialIndex.onRemoved(new Breaker("no location"));
+        assertThat(spatialIndex.size(), equalTo(1));
+    }
+
+    @Test
+    public void findsNearestObjects() {
+        build(breaker, line, sydney);
+        Junction added = located(new Junction("added"), 144.961, -37.811);
+        spatialIndex.onAdded(added);
+
+        List<SpatialIndex.Neighbour> nearest = spatialIndex.nearest(144.96, -37.81, psr -> true, 2, Double.POSITIVE_INFINITY);
+        assertThat(neighbourMRIDs(nearest), contains("breaker", "added"));
+        assertThat(nearest.get(0).distance(), equalTo(0.0));
+        assertThat(nearest.get(1).distance(), closeTo(141, 1));
+
+        assertThat(neighbourMRIDs(spatialIndex.nearest(144.96, -37.81, psr -> psr instanceof Junction, 5, Double.POSITIVE_INFINITY)), contains("added", "sydney"));
+        assertThat(neighbourMRIDs(spatialIndex.nearest(144.96, -37.81, psr -> psr instanceof Junction, 5, 1000)), contains("added"));
+
+        spatialIndex.onRemoved(breaker);
+        assertThat(neighbourMRIDs(spatialIndex.nearest(144.96, -37.81, psr -> true, 1, Double.POSITIVE_INFINITY)), contains("added"));
+    }
+
+    @Test
+    public void measuresToTheClosestPartOfLines() {
+        build(breaker, line);
+
+        List<SpatialIndex.Neighbour> nearest = spatialIndex.nearest(145.0, -37.80, psr -> true, 1, Double.POSITIVE_INFINITY);
+        assertThat(nearest.get(0).psr(), equalTo(line));
+        assertThat(nearest.get(0).distance(), closeTo(0, 1));
+    }
+
+    private void build(PowerSystemResource... psrs) {
+        NetworkService networkService = mock(NetworkService.class);
+        doReturn(Arrays.asList(psrs)).when(networkService).listOf(PowerSystemResource.class);
+        spatialIndex.build(networkService);
+    }
+
+    private <T extends PowerSystemResource> T located(T psr, double... lngLats) {
+        Location location = new Location();
+        for (int i = 0; i < lngLats.length; i += 2)
+            location.addPoint(new PositionPoint(lngLats[i], lngLats[i + 1]));
+        psr.setLocation(location);
+        return psr;
+    }
+
+    private List<String> mRIDs(List<PowerSystemResource> psrs) {
+        return psrs.stream().map(PowerSystemResource::getMRID).collect(Collectors.toList());
+    }
+
+    private List<String> neighbourMRIDs(List<SpatialIndex.Neighbour> neighbours) {
+        return neighbours.stream().map(neighbour -> neighbour.psr().getMRID()).collect(Collectors.toList());
+    }
+
+}
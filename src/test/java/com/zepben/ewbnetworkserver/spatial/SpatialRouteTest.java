@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.spatial;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.BaseVoltage;
+import com.zepben.evolve.cim.iec61970.base.core.ConductingEquipment;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import com.zepben.evolve.cim.iec61970.base.wires.Disconnector;
+import com.zepben.evolve.services.network.NetworkService;
+import com.zepben.ewbnetworkserver.export.NetworkExportToJson;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.*;
+
+public class SpatialRouteTest {
+
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private final SpatialRoute spatialRoute = new SpatialRoute(spatialIndex, new NetworkExportToJson());
+
+    private final RoutingContext context = mock(RoutingContext.class);
+    private final HttpServerRequest request = mock(HttpServerRequest.class);
+    private final HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+
+    @BeforeEach
+    public void beforeEach() {
+        doReturn(request).when(context).request();
+        doReturn(response).when(context).response();
+
+        NetworkService networkService = mock(NetworkService.class);
+        doReturn(Arrays.asList(
+            create(new Breaker("b1"), 11000, 144.96, -37.81),
+            create(new Disconnector("d1"), 22000, 144.97, -37.82),
+            create(new AcLineSegment("l1"), 11000, 144.95, -37.85),
+            create(new Breaker("b2"), 11000, 151.2, -33.86)
+        )).when(networkService).listOf(PowerSystemResource.class);
+        spatialIndex.build(networkService);
+    }
+
+    @Test
+    public void queriesBoundingBoxes() {
+        JsonObject result = query("144.9,-37.9,145.0,-37.8", null, null, null);
+
+        assertThat(result.getString("type"), equalTo("FeatureCollection"));
+        assertThat(result.getBoolean("truncated"), equalTo(false));
+        assertThat(mRIDs(result), containsInAnyOrder("b1", "d1", "l1"));
+    }
+
+    @Test
+    public void filtersByTypeIncludingSuperTypes() {
+        assertThat(mRIDs(query("144.9,-37.9,145.0,-37.8", "Breaker", null, null)), containsInAnyOrder("b1"));
+        assertThat(mRIDs(query("144.9,-37.9,145.0,-37.8", "Switch", null, null)), containsInAnyOrder("b1", "d1"));
+        assertThat(mRIDs(query("144.9,-37.9,145.0,-37.8", "Disconnector, AcLineSegment", null, null)), containsInAnyOrder("d1", "l1"));
+    }
+
+    @Test
+    public void filtersByVoltage() {
+        assertThat(mRIDs(query("144.9,-37.9,145.0,-37.8", null, "11000", null)), containsInAnyOrder("b1", "l1"));
+        assertThat(mRIDs(query("144.9,-37.9,145.0,-37.8", "Switch", "22000,33000", null)), containsInAnyOrder("d1"));
+    }
+
+    @Test
+    public void limitsResults() {
+        JsonObject result = query("144.9,-37.9,145.0,-37.8", null, null, "2");
+
+        assertThat(result.getBoolean("truncated"), equalTo(true));
+        assertThat(result.getJsonArray("features").size(), equalTo(2));
+
+        assertThat(query("144.9,-37.9,145.0,-37.8", null, null, "3").getBoolean("truncated"), equalTo(false));
+    }
+
+    @Test
+    public void validatesParameters() {
+        validateError(null, null, null, "Missing required parameter 'bbox', expected minLng,minLat,maxLng,maxLat.");
+        validateError("1,2,3", null, null, "Invalid bbox '1,2,3', expected minLng,minLat,maxLng,maxLat.");
+        validateError("1,2,a,4", null, null, "Invalid bbox '1,2,a,4', expected minLng,minLat,maxLng,maxLat.");
+        validateError("3,2,1,4", null, null, "Invalid bbox '3,2,1,4', the minimum cannot be greater than the maximum.");
+        validateError("1,2,3,4", "11kV", null, "Invalid voltage '11kV', expected a whole number of volts.");
+        validateError("1,2,3,4", null, "0", "Invalid limit '0', expected a number between 1 and 10000.");
+        validateError("1,2,3,4", null, "10001", "Invalid limit '10001', expected a number between 1 and 10000.");
+    }
+
+    @Test
+    public void queriesNearestObjects() {
+        JsonObject result = nearest("144.96", "-37.81", "Switch", null, "2", null);
+
+        assertThat(result.getString("type"), equalTo("FeatureCollection"));
+        assertThat(mRIDs(result), contains("b1", "d1"));
+        assertThat(result.getJsonArray("features").getJsonObject(0).getJsonObject("properties").getDouble("distance"), equalTo(0.0));
+
+        assertThat(mRIDs(nearest("144.96", "-37.81", null, "11000", null, "5000")), contains("b1", "l1"));
+    }
+
+    @Test
+    public void validatesNearestParameters() {
+        validateNearestError(null, "-37.81", null, null, "Missing required parameter 'lng'.");
+        validateNearestError("144.96", "north", null, null, "Invalid lat 'north', expected a number between -90 and 90.");
+        validateNearestError("181", "-37.81", null, null, "Invalid lng '181', expected a number between -180 and 180.");
+        validateNearestError("144.96", "-37.81", "1001", null, "Invalid k '1001', expected a number between 1 and 1000.");
+        validateNearestError("144.96", "-37.81", null, "-1", "Invalid maxDistance '-1', expected a distance in metres.");
+    }
+
+    private JsonObject query(String bbox, String type, String voltage, String limit) {
+        reset(response);
+        doReturn(bbox).when(request).getParam(SpatialRoute.BBOX_PARAM);
+        doReturn(type).when(request).getParam(SpatialRoute.TYPE_PARAM);
+        doReturn(voltage).when(request).getParam(SpatialRoute.VOLTAGE_PARAM);
+        doReturn(limit).when(request).getParam(SpatialRoute.LIMIT_PARAM);
+
+        spatialRoute.queryBoundingBox(context);
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(response).end(captor.capture());
+        return new JsonObject(captor.getValue());
+    }
+
+    private JsonObject nearest(String lng, String lat, String type, String voltage, String k, String maxDistance) {
+        reset(response);
+        doReturn(lng).when(request).getParam(SpatialRoute.LNG_PARAM);
+        doReturn(lat).when(request).getParam(SpatialRoute.LAT_PARAM);
+        doReturn(type).when(request).getParam(SpatialRoute.TYPE_PARAM);
+        doReturn(voltage).when(request).getParam(SpatialRoute.VOLTAGE_PARAM);
+        doReturn(k).when(request).getParam(SpatialRoute.K_PARAM);
+        doReturn(maxDistance).when(request).getParam(SpatialRoute.MAX_DISTANCE_PARAM);
+
+        spatialRoute.queryNearest(context);
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(response).end(captor.capture());
+        return new JsonObject(captor.getValue());
+    }
+
+    private void validateNearestError(String lng, String lat, String k, String maxDistance, String message) {
+        assertThat(nearest(lng, lat, null, null, k, maxDistance).getString("message"), equalTo(message));
+        verify(response, times(1)).setStatusCode(400);
+    }
+
+    private void validateError(String bbox, String voltage, String limit, String message) {
+        assertThat(query(bbox, null, voltage, limit).getString("message"), equalTo(message));
+        verify(response, times(1)).setStatusCode(400);
+    }
+
+    private List<String> mRIDs(JsonObject result) {
+        List<String> mRIDs = new ArrayList<>();
+        result.getJsonArray("features").forEach(feature -> mRIDs.add(((JsonObject) feature).getString("id")));
+        return mRIDs;
+    }
+
+    private <T extends ConductingEquipment> T create(T equipment, int voltage, double lng, double lat) {
+        BaseVoltage baseVoltage = new BaseVoltage();
+        baseVoltage.setNominalVoltage(voltage);
+        equipment.setBaseVoltage(baseVoltage);
+        equipment.setLocation(new Location().addPoint(new PositionPoint(lng, lat)));
+        return equipment;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.zepben.ewbnetworkserver.tiles.TestTiles.*;
+import static com.zepben.testutils.exception.ExpectException.expect;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MvtTileTest {
+
+    @Test
+    public void roundTripsLayersAndFeatures() {
+        MvtTile.Feature noId = new MvtTile.Feature(null, new int[0], MvtTile.LINESTRING, geometry(false, new int[]{0, 0, 10, 10}));
+        byte[] bytes = tile(layer("points", point(1, 5, 6)), layer("lines", line(Long.MAX_VALUE, 1, 2, 3, 4), noId)).encode();
+
+        MvtTile tile = MvtTile.decode(bytes);
+
+        assertThat(tile.layers().size(), equalTo(2));
+        assertThat(tile.numFeatures(), equalTo(3));
+
+        MvtTile.Layer lines = tile.layers().get(1);
+        assertThat(lines.name(), equalTo("lines"));
+        assertThat(lines.version(), equalTo(2));
+        assertThat(lines.extent(), equalTo(4096));
+        assertThat(lines.keys(), equalTo(layer("").keys()));
+        assertThat(lines.values().get(0), equalTo(layer("").values().get(0)));
+
+        MvtTile.Feature feature = lines.features().get(0);
+        assertThat(feature.id(), equalTo(Long.MAX_VALUE));
+        assertThat(feature.type(), equalTo(MvtTile.LINESTRING));
+        assertThat(feature.tags(), equalTo(new int[]{0, 0}));
+        assertThat(feature.geometry(), equalTo(line(0, 1, 2, 3, 4).geometry()));
+        assertThat(lines.features().get(1).id(), nullValue());
+
+        assertThat(tile.encode(), equalTo(bytes));
+    }
+
+    @Test
+    public void skipsUnknownFields() {
+        byte[] layer = tile(layer("network", point(1, 5, 6))).encode();
+        byte[] unknown = new byte[]{0x08, (byte) 0x96, 0x01, 0x11, 1, 2, 3, 4, 5, 6, 7, 8, 0x15, 1, 2, 3, 4};
+        byte[] bytes = Arrays.copyOf(unknown, unknown.length + layer.length);
+        System.arraycopy(layer, 0, bytes, unknown.length, layer.length);
+
+        MvtTile tile = MvtTile.decode(bytes);
+
+        assertThat(tile.layers().size(), equalTo(1));
+        assertThat(tile.numFeatures(), equalTo(1));
+    }
+
+    @Test
+    public void rejectsInvalidTiles() {
+        byte[] bytes = tileBytes(point(1, 5, 6));
+
+        expect(() -> MvtTile.decode(Arrays.copyOf(bytes, bytes.length - 1)))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("Invalid vector tile, truncated field.");
+
+        expect(() -> MvtTile.decode(new byte[]{0x0b}))
+            .toThrow(IllegalArgumentException.class)
+            .withMessage("Invalid vector tile, unsupported wire type 3.");
+    }
+
+}
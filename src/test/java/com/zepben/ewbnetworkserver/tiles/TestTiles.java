@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class TestTiles {
+
+    static MvtTile.Feature point(long id, int x, int y) {
+        return new MvtTile.Feature(id, new int[]{0, 0}, MvtTile.POINT, geometry(false, new int[]{x, y}));
+    }
+
+    static MvtTile.Feature line(long id, int... xy) {
+        return new MvtTile.Feature(id, new int[]{0, 0}, MvtTile.LINESTRING, geometry(false, xy));
+    }
+
+    static MvtTile.Feature polygon(long id, int[]... rings) {
+        return new MvtTile.Feature(id, new int[]{0, 0}, MvtTile.POLYGON, geometry(true, rings));
+    }
+
+    static MvtTile.Layer layer(String name, MvtTile.Feature... features) {
+        return new MvtTile.Layer(2,
+            name,
+            4096,
+            new ArrayList<>(Arrays.asList(features)),
+            Collections.singletonList("type"),
+            Collections.singletonList(new byte[]{0x0a, 0x03, 'a', 'c', 'r'}));
+    }
+
+    static MvtTile tile(MvtTile.Layer... layers) {
+        return new MvtTile(Arrays.asList(layers));
+    }
+
+    static byte[] tileBytes(MvtTile.Feature... features) {
+        return tile(layer("network", features)).encode();
+    }
+
+    static int[] geometry(boolean closed, int[]... parts) {
+        List<Integer> geometry = new ArrayList<>();
+        int x = 0;
+        int y = 0;
+        for (int[] part : parts) {
+            for (int i = 0; i < part.length / 2; ++i) {
+                if (i == 0)
+                    geometry.add(command(1, 1));
+                else if (i == 1)
+                    geometry.add(command(2, (part.length / 2) - 1));
+
+                geometry.add(zigZag(part[i * 2] - x));
+                geometry.add(zigZag(part[(i * 2) + 1] - y));
+                x = part[i * 2];
+                y = part[(i * 2) + 1];
+            }
+
+            if (closed)
+                geometry.add(command(7, 1));
+        }
+
+        return geometry.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int command(int id, int count) {
+        return id | (count << 3);
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+}
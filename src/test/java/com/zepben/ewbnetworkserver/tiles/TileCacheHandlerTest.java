@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.zepben.ewbnetworkserver.tiles.TestTiles.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TileCacheHandlerTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final TileCache cache = new TileCache(1024 * 1024);
+    private final AtomicInteger numRendered = new AtomicInteger();
+    private final byte[] tile = tileBytes(point(1, 10, 10));
+
+    private volatile int statusCode = 200;
+    private TestHttpServer server;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        Router router = Router.router(vertx);
+        server = TestHttpServer.start(vertx, router);
+
+        RequestOptions target = new RequestOptions().setHost("localhost").setPort(server.port()).setURI(TileCacheHandler.PATH);
+        TileRenderer renderer = new TileRenderer(vertx, vertx.createHttpClient(), target, 5000, cache, 16);
+
+        router.get(TileCacheHandler.ROUTE_PATH).handler(new TileCacheHandler(cache, renderer));
+        router.get(TileCacheHandler.ROUTE_PATH).handler(this::renderTile);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void rendersMissingTilesThenServesThemFromTheCache() throws Exception {
+        TestHttpServer.Response miss = get("/16/1/2", "gzip");
+        TestHttpServer.Response hit = get("/16/1/2", "gzip");
+
+        assertThat(miss.header(TileRenderer.CACHE_HEADER), equalTo("MISS"));
+        assertThat(hit.header(TileRenderer.CACHE_HEADER), equalTo("HIT"));
+        assertThat(hit.header("Content-Type"), equalTo("application/vnd.mapbox-vector-tile"));
+        assertThat(hit.header("Content-Encoding"), equalTo("gzip"));
+        assertThat(CachedTile.gunzip(hit.body()), equalTo(tile));
+        assertThat(numRendered.get(), equalTo(1));
+    }
+
+    @Test
+    public void servesUncompressedTilesToClientsWithoutGzip() throws Exception {
+        TestHttpServer.Response response = get("/16/1/2", null);
+
+        assertThat(response.header("Content-Encoding"), nullValue());
+        assertThat(response.body(), equalTo(tile));
+    }
+
+    @Test
+    public void passesThroughRequestsItCannotCache() throws Exception {
+        assertThat(get("/16/1/2?filter=abc", "gzip").header(TileRenderer.CACHE_HEADER), nullValue());
+        assertThat(get("/16/abc/2", "gzip").header(TileRenderer.CACHE_HEADER), nullValue());
+        assertThat(get("/1/2/2", "gzip").header(TileRenderer.CACHE_HEADER), nullValue());
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test
+    public void fallsBackToTheRouteWhenRenderingFails() throws Exception {
+        statusCode = 500;
+
+        TestHttpServer.Response response = get("/16/1/2", "gzip");
+
+        assertThat(response.statusCode(), equalTo(500));
+        assertThat(response.header(TileRenderer.CACHE_HEADER), nullValue());
+        assertThat(numRendered.get(), equalTo(2));
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    private void renderTile(RoutingContext context) {
+        numRendered.incrementAndGet();
+        context.response().setStatusCode(statusCode).end(Buffer.buffer(tile));
+    }
+
+    private TestHttpServer.Response get(String tilePath, @Nullable String acceptEncoding) throws Exception {
+        Map<String, String> headers = acceptEncoding == null ? Collections.emptyMap() : Collections.singletonMap("Accept-Encoding", acceptEncoding);
+        return server.get(TileCacheHandler.PATH + tilePath, headers);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TileCacheTest {
+
+    private final TileKey melbourne = new TileKey(10, 924, 628);
+    private final TileKey sydney = new TileKey(10, 942, 614);
+    private final TileKey world = new TileKey(0, 0, 0);
+
+    @Test
+    public void evictsLeastRecentlyUsedTilesWhenFull() {
+        CachedTile tile = CachedTile.of(new byte[100], 1, false);
+        int tileSize = tile.gzipped().length;
+        TileCache cache = new TileCache(tileSize * 2L);
+
+        assertThat(cache.put(melbourne, tile, cache.generation()), equalTo(true));
+        assertThat(cache.put(sydney, tile, cache.generation()), equalTo(true));
+        assertThat(cache.get(melbourne), notNullValue());
+
+        assertThat(cache.put(world, tile, cache.generation()), equalTo(true));
+
+        assertThat(cache.get(sydney), nullValue());
+        assertThat(cache.get(melbourne), notNullValue());
+        assertThat(cache.get(world), notNullValue());
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.numBytes(), equalTo(tileSize * 2L));
+    }
+
+    @Test
+    public void replacingTilesUpdatesTheSize() {
+        TileCache cache = new TileCache(1024 * 1024);
+        CachedTile small = CachedTile.of(new byte[10], 1, false);
+        CachedTile large = CachedTile.of(new byte[10000], 1, false);
+
+        cache.put(melbourne, small, cache.generation());
+        cache.put(melbourne, large, cache.generation());
+
+        assertThat(cache.size(), equalTo(1));
+        assertThat(cache.numBytes(), equalTo((long) large.gzipped().length));
+    }
+
+    @Test
+    public void doesNotCacheTilesRenderedBeforeAnInvalidation() {
+        TileCache cache = new TileCache(1024 * 1024);
+        long generation = cache.generation();
+
+        cache.invalidate(new LngLatBounds(0, 0, 0, 0));
+
+        assertThat(cache.put(melbourne, CachedTile.of(new byte[10], 1, false), generation), equalTo(false));
+        assertThat(cache.get(melbourne), nullValue());
+    }
+
+    @Test
+    public void canBeDisabled() {
+        TileCache cache = new TileCache(0);
+
+        assertThat(cache.isEnabled(), equalTo(false));
+        assertThat(cache.put(melbourne, CachedTile.of(new byte[10], 1, false), cache.generation()), equalTo(false));
+    }
+
+    @Test
+    public void onlyInvalidatesIntersectingTiles() {
+        TileCache cache = createCacheWithTiles();
+
+        assertThat(cache.invalidate(new LngLatBounds(144.9, -37.9, 145.0, -37.8)), equalTo(2));
+
+        assertThat(cache.get(melbourne), nullValue());
+        assertThat(cache.get(world), nullValue());
+        assertThat(cache.get(sydney), notNullValue());
+        assertThat(cache.numBytes(), equalTo((long) cache.get(sydney).gzipped().length));
+    }
+
+    @Test
+    public void invalidatesTilesForNetworkChanges() {
+        TileCache cache = createCacheWithTiles();
+        AcLineSegment acLineSegment = new AcLineSegment("line");
+        acLineSegment.setLocation(new Location().addPoint(new PositionPoint(151.20, -33.86)).addPoint(new PositionPoint(151.21, -33.87)));
+
+        cache.onRemoved(new Breaker("no location"));
+        assertThat(cache.size(), equalTo(3));
+
+        cache.onRemoved(acLineSegment);
+        assertThat(cache.get(sydney), nullValue());
+        assertThat(cache.get(world), nullValue());
+        assertThat(cache.get(melbourne), notNullValue());
+
+        cache = createCacheWithTiles();
+        cache.onAdded(acLineSegment);
+        assertThat(cache.get(sydney), nullValue());
+        assertThat(cache.get(melbourne), notNullValue());
+    }
+
+    private TileCache createCacheWithTiles() {
+        TileCache cache = new TileCache(1024 * 1024);
+        cache.put(melbourne, CachedTile.of(new byte[10], 1, false), cache.generation());
+        cache.put(sydney, CachedTile.of(new byte[10], 1, false), cache.generation());
+        cache.put(world, CachedTile.of(new byte[10], 1, false), cache.generation());
+        return cache;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TileKeyTest {
+
+    private final LngLatBounds melbourne = new LngLatBounds(144.96, -37.81, 144.96, -37.81);
+
+    @Test
+    public void findsCoveringTiles() {
+        assertThat(TileKey.covering(melbourne, 0), contains(new TileKey(0, 0, 0)));
+        assertThat(TileKey.covering(melbourne, 10), contains(new TileKey(10, 924, 628)));
+        assertThat(TileKey.covering(new LngLatBounds(-180, -85, 180, 85), 1), containsInAnyOrder(
+            new TileKey(1, 0, 0),
+            new TileKey(1, 0, 1),
+            new TileKey(1, 1, 0),
+            new TileKey(1, 1, 1)));
+    }
+
+    @Test
+    public void coveringTilesIncludeTheBuffer() {
+        // 924.3306 becomes 925.0006 at the eastern edge of the bounds, within the buffer of tile 924.
+        LngLatBounds bounds = new LngLatBounds(144.96, -37.81, 144.96 + (0.67 * 360.0 / 1024), -37.81);
+
+        assertThat(TileKey.covering(bounds, 10), contains(new TileKey(10, 924, 628), new TileKey(10, 925, 628)));
+        assertThat(new TileKey(10, 923, 628).intersects(melbourne), equalTo(false));
+        assertThat(new TileKey(10, 924, 628).intersects(melbourne), equalTo(true));
+        assertThat(new TileKey(10, 924, 628).intersects(bounds), equalTo(true));
+        assertThat(new TileKey(10, 925, 628).intersects(bounds), equalTo(true));
+        assertThat(new TileKey(10, 926, 628).intersects(bounds), equalTo(false));
+    }
+
+    @Test
+    public void validatesKeys() {
+        assertThat(TileKey.isValid(0, 0, 0), equalTo(true));
+        assertThat(TileKey.isValid(2, 3, 3), equalTo(true));
+        assertThat(TileKey.isValid(2, 4, 3), equalTo(false));
+        assertThat(TileKey.isValid(2, 3, -1), equalTo(false));
+        assertThat(TileKey.isValid(-1, 0, 0), equalTo(false));
+        assertThat(TileKey.isValid(TileKey.MAX_ZOOM + 1, 0, 0), equalTo(false));
+    }
+
+    @Test
+    public void findsChildren() {
+        assertThat(new TileKey(3, 2, 5).children(), contains(
+            new TileKey(4, 4, 10),
+            new TileKey(4, 4, 11),
+            new TileKey(4, 5, 10),
+            new TileKey(4, 5, 11)));
+        assertThat(new TileKey(3, 2, 5).toString(), equalTo("3/2/5"));
+    }
+
+}
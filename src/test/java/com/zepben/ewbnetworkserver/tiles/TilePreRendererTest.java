@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.evolve.cim.iec61968.common.Location;
+import com.zepben.evolve.cim.iec61968.common.PositionPoint;
+import com.zepben.evolve.cim.iec61970.base.core.PowerSystemResource;
+import com.zepben.evolve.cim.iec61970.base.wires.AcLineSegment;
+import com.zepben.evolve.cim.iec61970.base.wires.Breaker;
+import com.zepben.evolve.services.network.NetworkService;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TilePreRendererTest {
+
+    private final LngLatBounds melbourne = new LngLatBounds(144.96, -37.81, 144.96, -37.81);
+    private final TileRenderer renderer = mock(TileRenderer.class);
+    private final List<TileKey> rendered = new ArrayList<>();
+    private final List<Handler<AsyncResult<CachedTile>>> inFlight = new ArrayList<>();
+    private final Runnable onComplete = mock(Runnable.class);
+
+    @Test
+    public void rendersEachZoomLevelOfTheExtent() {
+        TilePreRenderer preRenderer = createPreRenderer(3, 4, key -> Future.succeededFuture(tileWithFeatures(1)));
+
+        preRenderer.start(melbourne, onComplete);
+
+        assertThat(rendered, contains(new TileKey(0, 0, 0), new TileKey(1, 1, 1), new TileKey(2, 3, 2), new TileKey(3, 7, 4)));
+        assertThat(preRenderer.numRendered(), equalTo(4));
+        verify(onComplete, times(1)).run();
+    }
+
+    @Test
+    public void doesNotRenderBelowEmptyTiles() {
+        TilePreRenderer preRenderer = createPreRenderer(10, 4, key -> Future.succeededFuture(tileWithFeatures(key.z() < 2 ? 1 : 0)));
+
+        preRenderer.start(melbourne, onComplete);
+
+        assertThat(rendered, contains(new TileKey(0, 0, 0), new TileKey(1, 1, 1), new TileKey(2, 3, 2)));
+        verify(onComplete, times(1)).run();
+    }
+
+    @Test
+    public void countsFailures() {
+        TilePreRenderer preRenderer = createPreRenderer(10, 4, key -> Future.failedFuture("failed"));
+
+        preRenderer.start(melbourne, onComplete);
+
+        assertThat(rendered, contains(new TileKey(0, 0, 0)));
+        assertThat(preRenderer.numRendered(), equalTo(0));
+        assertThat(preRenderer.numFailed(), equalTo(1));
+        verify(onComplete, times(1)).run();
+    }
+
+    @Test
+    public void limitsTheNumberOfTilesRenderedInParallel() {
+        LngLatBounds australia = new LngLatBounds(113, -43, 153, -10);
+        doAnswer(invocation -> {
+            rendered.add(invocation.getArgument(0));
+            inFlight.add(invocation.getArgument(1));
+            return null;
+        }).when(renderer).render(any(), any());
+
+        TilePreRenderer preRenderer = new TilePreRenderer(renderer, 4, 3);
+        preRenderer.start(australia, onComplete);
+
+        int maxInFlight = 0;
+        while (!inFlight.isEmpty()) {
+            maxInFlight = Math.max(maxInFlight, inFlight.size());
+            inFlight.remove(0).handle(Future.succeededFuture(tileWithFeatures(1)));
+        }
+
+        assertThat(maxInFlight, equalTo(3));
+        assertThat("no tile is rendered twice", rendered.size(), equalTo((int) rendered.stream().distinct().count()));
+        assertThat(rendered.stream().filter(key -> key.z() == 4).count(), equalTo((long) TileKey.covering(australia, 4).size()));
+        verify(onComplete, times(1)).run();
+    }
+
+    @Test
+    public void skipsEmptyNetworks() {
+        TilePreRenderer preRenderer = createPreRenderer(10, 4, key -> Future.succeededFuture(tileWithFeatures(1)));
+
+        preRenderer.start(null, onComplete);
+
+        assertThat(rendered, empty());
+        verify(onComplete, times(1)).run();
+    }
+
+    @Test
+    public void findsTheNetworkExtent() {
+        NetworkService networkService = mock(NetworkService.class);
+        AcLineSegment acLineSegment = new AcLineSegment("line");
+        acLineSegment.setLocation(new Location().addPoint(new PositionPoint(144.9, -37.8)).addPoint(new PositionPoint(145.1, -37.9)));
+        Breaker breaker = new Breaker("breaker");
+        breaker.setLocation(new Location().addPoint(new PositionPoint(146.0, -38.0)));
+        Breaker unlocated = new Breaker("unlocated");
+
+        doReturn(Arrays.asList(acLineSegment, breaker, unlocated)).when(networkService).listOf(PowerSystemResource.class);
+        assertThat(TilePreRenderer.networkExtent(networkService), equalTo(new LngLatBounds(144.9, -38.0, 146.0, -37.8)));
+
+        doReturn(Collections.singletonList(unlocated)).when(networkService).listOf(PowerSystemResource.class);
+        assertThat(TilePreRenderer.networkExtent(networkService), nullValue());
+    }
+
+    private TilePreRenderer createPreRenderer(int maxZoom, int concurrency, Function<TileKey, AsyncResult<CachedTile>> render) {
+        doAnswer(invocation -> {
+            TileKey key = invocation.getArgument(0);
+            rendered.add(key);
+            invocation.<Handler<AsyncResult<CachedTile>>>getArgument(1).handle(render.apply(key));
+            return null;
+        }).when(renderer).render(any(), any());
+
+        return new TilePreRenderer(renderer, maxZoom, concurrency);
+    }
+
+    private CachedTile tileWithFeatures(int numFeatures) {
+        return CachedTile.of(new byte[0], numFeatures, false);
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import com.zepben.ewbnetworkserver.TestHttpServer;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.RequestOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.zepben.ewbnetworkserver.tiles.TestTiles.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TileRendererTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final TileCache cache = new TileCache(1024 * 1024);
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile int statusCode = 200;
+    private volatile boolean gzipPayload = false;
+    private volatile long delayMs = 0;
+    private volatile boolean dropMidBody = false;
+
+    private TileRenderer renderer;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        TestHttpServer server = TestHttpServer.start(vertx, this::serveTile);
+
+        RequestOptions target = new RequestOptions().setHost("localhost").setPort(server.port()).setURI("/tiles");
+        renderer = new TileRenderer(vertx, vertx.createHttpClient(), target, 5000, cache, 16);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        vertx.close();
+    }
+
+    @Test
+    public void rendersSimplifiesAndCachesTiles() throws Exception {
+        CachedTile tile = render(new TileKey(10, 924, 628)).result();
+
+        assertThat(requests, contains("/tiles/10/924/628 bypass identity"));
+        assertThat(tile.numFeatures(), equalTo(2));
+        assertThat(tile.isGzippedPayload(), equalTo(false));
+        assertThat(MvtTile.decode(tile.uncompressed()).layers().get(0).features().get(1).geometry(), equalTo(geometry(false, new int[]{0, 0, 4000, 0})));
+        assertThat(cache.get(new TileKey(10, 924, 628)), sameInstance(tile));
+    }
+
+    @Test
+    public void rendersFullDetailTilesUnchanged() throws Exception {
+        CachedTile tile = render(new TileKey(16, 0, 0)).result();
+
+        assertThat(tile.uncompressed(), equalTo(tileBytes(point(1, 10, 10), line(2, 0, 0, 100, 1, 4000, 0))));
+    }
+
+    @Test
+    public void keepsGzippedPayloadsGzipped() throws Exception {
+        gzipPayload = true;
+
+        CachedTile tile = render(new TileKey(16, 0, 0)).result();
+
+        assertThat(tile.isGzippedPayload(), equalTo(true));
+        assertThat(tile.uncompressed(), equalTo(tileBytes(point(1, 10, 10), line(2, 0, 0, 100, 1, 4000, 0))));
+    }
+
+    @Test
+    public void sharesRendersOfTheSameTile() throws Exception {
+        delayMs = 100;
+        CompletableFuture<AsyncResult<CachedTile>> first = new CompletableFuture<>();
+        CompletableFuture<AsyncResult<CachedTile>> second = new CompletableFuture<>();
+
+        renderer.render(new TileKey(10, 924, 628), first::complete);
+        renderer.render(new TileKey(10, 924, 628), second::complete);
+
+        assertThat(first.get(5, TimeUnit.SECONDS).result(), sameInstance(second.get(5, TimeUnit.SECONDS).result()));
+        assertThat(requests.size(), equalTo(1));
+
+        render(new TileKey(10, 924, 628));
+        assertThat(requests.size(), equalTo(2));
+    }
+
+    @Test
+    public void completesSharedRendersOnTheContextOfEachRequest() throws Exception {
+        delayMs = 100;
+        Context first = vertx.getOrCreateContext();
+        Context second = vertx.getOrCreateContext();
+        CompletableFuture<Context> firstCompletedOn = new CompletableFuture<>();
+        CompletableFuture<Context> secondCompletedOn = new CompletableFuture<>();
+
+        TileKey key = new TileKey(10, 924, 628);
+        first.runOnContext(ignored -> renderer.render(key, result -> firstCompletedOn.complete(Vertx.currentContext())));
+        second.runOnContext(ignored -> renderer.render(key, result -> secondCompletedOn.complete(Vertx.currentContext())));
+
+        assertThat(firstCompletedOn.get(5, TimeUnit.SECONDS), sameInstance(first));
+        assertThat(secondCompletedOn.get(5, TimeUnit.SECONDS), sameInstance(second));
+        assertThat(requests.size(), equalTo(1));
+    }
+
+    @Test
+    public void doesNotCacheTilesInvalidatedWhileRendering() throws Exception {
+        delayMs = 100;
+        CompletableFuture<AsyncResult<CachedTile>> result = new CompletableFuture<>();
+
+        renderer.render(new TileKey(10, 924, 628), result::complete);
+        cache.invalidate(new LngLatBounds(0, 0, 0, 0));
+
+        assertThat(result.get(5, TimeUnit.SECONDS).succeeded(), equalTo(true));
+        assertThat(cache.get(new TileKey(10, 924, 628)), nullValue());
+    }
+
+    @Test
+    public void reportsRenderFailures() throws Exception {
+        statusCode = 400;
+
+        AsyncResult<CachedTile> result = render(new TileKey(10, 924, 628));
+
+        assertThat(result.failed(), equalTo(true));
+        assertThat(result.cause().getMessage(), equalTo("Failed to render tile 10/924/628: 400 Bad Request"));
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test
+    public void reportsFailuresPartWayThroughTheBody() throws Exception {
+        dropMidBody = true;
+
+        AsyncResult<CachedTile> result = render(new TileKey(10, 924, 628));
+
+        assertThat(result.failed(), equalTo(true));
+        assertThat(cache.size(), equalTo(0));
+
+        // The failed render must not be left for later requests of the tile to wait on.
+        dropMidBody = false;
+        assertThat(render(new TileKey(10, 924, 628)).succeeded(), equalTo(true));
+        assertThat(requests.size(), equalTo(2));
+    }
+
+    private AsyncResult<CachedTile> render(TileKey key) throws Exception {
+        CompletableFuture<AsyncResult<CachedTile>> result = new CompletableFuture<>();
+        renderer.render(key, result::complete);
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    private void serveTile(HttpServerRequest request) {
+        requests.add(request.uri() + " " + request.getHeader(TileRenderer.CACHE_HEADER) + " " + request.getHeader("Accept-Encoding"));
+        vertx.setTimer(delayMs + 1, id -> {
+            byte[] tile = tileBytes(point(1, 10, 10), line(2, 0, 0, 100, 1, 4000, 0));
+            if (dropMidBody) {
+                request.response().setChunked(true).write(Buffer.buffer(tile).slice(0, tile.length / 2));
+                request.connection().close();
+                return;
+            }
+
+            request.response()
+                .setStatusCode(statusCode)
+                .end(Buffer.buffer(gzipPayload ? CachedTile.of(tile, 0, false).gzipped() : tile));
+        });
+    }
+
+}
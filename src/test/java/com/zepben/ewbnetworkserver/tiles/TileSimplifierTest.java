@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Zeppelin Bend Pty Ltd
+ * This file is part of ewb-network-server.
+ *
+ * ewb-network-server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ewb-network-server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with ewb-network-server.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.zepben.ewbnetworkserver.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.zepben.ewbnetworkserver.tiles.TestTiles.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TileSimplifierTest {
+
+    private final TileSimplifier simplifier = new TileSimplifier(16);
+
+    @Test
+    public void leavesFullDetailZoomsAlone() {
+        MvtTile tile = tile(layer("network", point(1, 10, 10), point(2, 11, 11), line(3, 0, 0, 100, 1, 4000, 0)));
+
+        assertThat(simplifier.simplify(tile, 16), sameInstance(tile));
+        assertThat(simplifier.simplify(tile, 20), sameInstance(tile));
+    }
+
+    @Test
+    public void simplifiesLines() {
+        MvtTile tile = tile(layer("network",
+            line(1, 0, 0, 100, 1, 200, 0, 4000, 0),
+            line(2, 0, 0, 2000, 500, 4000, 0),
+            new MvtTile.Feature(3L, new int[0], MvtTile.LINESTRING, geometry(false, new int[]{0, 0, 10, 1, 20, 0}, new int[]{50, 50, 60, 51, 70, 50}))));
+
+        List<MvtTile.Feature> features = simplifier.simplify(tile, 15).layers().get(0).features();
+
+        assertThat(features.get(0).geometry(), equalTo(geometry(false, new int[]{0, 0, 4000, 0})));
+        assertThat(features.get(1).geometry(), equalTo(geometry(false, new int[]{0, 0, 2000, 500, 4000, 0})));
+        assertThat(features.get(2).geometry(), equalTo(geometry(false, new int[]{0, 0, 20, 0}, new int[]{50, 50, 70, 50})));
+    }
+
+    @Test
+    public void thinsPointsMoreAtLowerZooms() {
+        MvtTile tile = tile(
+            layer("a", point(1, 10, 10), point(2, 12, 12), point(3, 100, 100), point(4, 500, 500)),
+            layer("b", point(5, 10, 10)));
+
+        assertThat(ids(simplifier.simplify(tile, 15), 0), contains(1L, 3L, 4L));
+        assertThat(ids(simplifier.simplify(tile, 8), 0), contains(1L, 4L));
+        assertThat(ids(simplifier.simplify(tile, 0), 0), contains(1L, 4L));
+        assertThat("layers are thinned independently", ids(simplifier.simplify(tile, 8), 1), contains(5L));
+    }
+
+    @Test
+    public void doesNotThinMultiPoints() {
+        MvtTile.Feature multiPoint = new MvtTile.Feature(2L, new int[0], MvtTile.POINT, new int[]{(1 | (2 << 3)), 20, 20, 2, 2});
+        MvtTile tile = tile(layer("network", point(1, 10, 10), multiPoint));
+
+        assertThat(ids(simplifier.simplify(tile, 15), 0), contains(1L, 2L));
+    }
+
+    @Test
+    public void simplifiesPolygons() {
+        int[] square = {0, 0, 1000, 0, 1000, 3, 1000, 1000, 0, 1000};
+        int[] hole = {100, 100, 100, 900, 900, 900, 900, 100};
+        int[] tiny = {2000, 2000, 2004, 2000, 2004, 2004};
+        int[] tinyHole = {2001, 2001, 2001, 2002, 2002, 2002};
+
+        MvtTile tile = tile(layer("network",
+            polygon(1, square, hole),
+            polygon(2, tiny, tinyHole),
+            polygon(3, square, hole, tiny, tinyHole)));
+
+        List<MvtTile.Feature> features = simplifier.simplify(tile, 10).layers().get(0).features();
+
+        int[] simplifiedSquare = {0, 0, 1000, 0, 1000, 1000, 0, 1000};
+        assertThat(ids(features), contains(1L, 3L));
+        assertThat(features.get(0).geometry(), equalTo(geometry(true, simplifiedSquare, hole)));
+        assertThat(features.get(1).geometry(), equalTo(geometry(true, simplifiedSquare, hole)));
+    }
+
+    private List<Long> ids(MvtTile tile, int layer) {
+        return ids(tile.layers().get(layer).features());
+    }
+
+    private List<Long> ids(List<MvtTile.Feature> features) {
+        return features.stream().map(MvtTile.Feature::id).collect(Collectors.toList());
+    }
+
+}